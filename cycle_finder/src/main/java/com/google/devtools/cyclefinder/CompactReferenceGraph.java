@@ -0,0 +1,398 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.cyclefinder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * An immutable form of a ReferenceGraph that is searched for cycles. Nodes are numbered densely
+ * and each node's direct edges are stored contiguously (compressed sparse row), so finding
+ * strongly connected components and shortest cycles only allocates primitive arrays.
+ *
+ * Like the ReferenceGraph, it doesn't store subtype and superclass edges. They are followed
+ * from the type hierarchy during the search, and only the edges of the cycles that are found
+ * are created.
+ */
+class CompactReferenceGraph {
+
+  private static final int[] NO_NODES = new int[0];
+
+  private final ReferenceGraph graph;
+  private final TypeNode[] nodes;
+  private final Map<TypeNode, Integer> nodeIds;
+  // The direct edges of node n are edgeOffsets[n] until edgeOffsets[n + 1].
+  private final int[] edgeOffsets;
+  private final int[] edgeTargets;
+  private final Edge[] edges;
+  // The superclass of each node, or -1.
+  private final int[] superclasses;
+  // The subtypes implied by each direct edge, and all the subtypes of each node, which most
+  // edges share. Both are computed when first needed, possibly by several search threads.
+  private final AtomicReferenceArray<int[]> edgeSubtypes;
+  private final AtomicReferenceArray<int[]> nodeSubtypes;
+
+  private CompactReferenceGraph(
+      ReferenceGraph graph, TypeNode[] nodes, Map<TypeNode, Integer> nodeIds, int[] edgeOffsets,
+      int[] edgeTargets, Edge[] edges, int[] superclasses) {
+    this.graph = graph;
+    this.nodes = nodes;
+    this.nodeIds = nodeIds;
+    this.edgeOffsets = edgeOffsets;
+    this.edgeTargets = edgeTargets;
+    this.edges = edges;
+    this.superclasses = superclasses;
+    edgeSubtypes = new AtomicReferenceArray<>(edges.length);
+    nodeSubtypes = new AtomicReferenceArray<>(nodes.length);
+  }
+
+  /**
+   * Creates a compact copy of a reference graph. Nodes and edges are numbered in the graph's
+   * iteration order, followed by the nodes that are only reached as edge targets or through the
+   * type hierarchy.
+   */
+  public static CompactReferenceGraph create(ReferenceGraph graph) {
+    Map<TypeNode, Integer> nodeIds = new HashMap<>();
+    List<TypeNode> nodeList = new ArrayList<>();
+    for (TypeNode node : graph.getNodes()) {
+      addNode(node, nodeIds, nodeList);
+    }
+    int edgeCount = 0;
+    for (int i = 0; i < nodeList.size(); i++) {
+      TypeNode node = nodeList.get(i);
+      for (Edge e : graph.getEdges(node)) {
+        addNode(e.getTarget(), nodeIds, nodeList);
+        for (TypeNode subtype : graph.getSubtypes(e.getTarget())) {
+          addNode(subtype, nodeIds, nodeList);
+        }
+        edgeCount++;
+      }
+      addNode(graph.getSuperclass(node), nodeIds, nodeList);
+    }
+    int nodeCount = nodeList.size();
+    int[] edgeOffsets = new int[nodeCount + 1];
+    int[] edgeTargets = new int[edgeCount];
+    Edge[] edges = new Edge[edgeCount];
+    int[] superclasses = new int[nodeCount];
+    int edgeIndex = 0;
+    for (int origin = 0; origin < nodeCount; origin++) {
+      TypeNode node = nodeList.get(origin);
+      edgeOffsets[origin] = edgeIndex;
+      for (Edge e : graph.getEdges(node)) {
+        edgeTargets[edgeIndex] = nodeIds.get(e.getTarget());
+        edges[edgeIndex] = e;
+        edgeIndex++;
+      }
+      TypeNode superclass = graph.getSuperclass(node);
+      superclasses[origin] = superclass != null ? nodeIds.get(superclass) : -1;
+    }
+    edgeOffsets[nodeCount] = edgeIndex;
+    return new CompactReferenceGraph(graph, nodeList.toArray(new TypeNode[0]), nodeIds,
+        edgeOffsets, edgeTargets, edges, superclasses);
+  }
+
+  private static void addNode(
+      TypeNode node, Map<TypeNode, Integer> nodeIds, List<TypeNode> nodeList) {
+    if (node != null && !nodeIds.containsKey(node)) {
+      nodeIds.put(node, nodeList.size());
+      nodeList.add(node);
+    }
+  }
+
+  public int getNodeCount() {
+    return nodes.length;
+  }
+
+  public TypeNode getNode(int id) {
+    return nodes[id];
+  }
+
+  /**
+   * Returns the id of a node, or -1 if it isn't in the graph.
+   */
+  public int getNodeId(TypeNode node) {
+    Integer id = nodeIds.get(node);
+    return id != null ? id : -1;
+  }
+
+  /**
+   * Returns the edge that the search followed from one node to another.
+   */
+  public Edge getEdge(int origin, int target) {
+    return graph.getEdge(nodes[origin], nodes[target]);
+  }
+
+  private int[] getEdgeSubtypes(int edge) {
+    int[] result = edgeSubtypes.get(edge);
+    if (result == null) {
+      List<TypeNode> targets = graph.getSubtypeTargets(edges[edge]);
+      int target = edgeTargets[edge];
+      if (targets.isEmpty()) {
+        result = NO_NODES;
+      } else if (targets.size() == graph.getSubtypes(nodes[target]).size()) {
+        // None were suppress-listed.
+        result = nodeSubtypes.get(target);
+        if (result == null) {
+          result = toNodeIds(targets);
+          nodeSubtypes.set(target, result);
+        }
+      } else {
+        result = toNodeIds(targets);
+      }
+      edgeSubtypes.set(edge, result);
+    }
+    return result;
+  }
+
+  private int[] toNodeIds(List<TypeNode> nodeList) {
+    int[] ids = new int[nodeList.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = nodeIds.get(nodeList.get(i));
+    }
+    return ids;
+  }
+
+  /**
+   * Iterates over the targets of a node's edges in ReferenceGraph.getAllEdges() order: the
+   * node's direct edges, the subtypes implied by them, then the same for each superclass. A
+   * target may be returned more than once.
+   */
+  private final class Neighbors {
+    private int origin;
+    // The node or the superclass whose edges are being followed.
+    private int level;
+    private int edge;
+    private boolean followingSubtypes;
+    private int[] subtypes = NO_NODES;
+    private int subtype;
+
+    private void reset(int node) {
+      origin = level = node;
+      edge = edgeOffsets[node];
+      followingSubtypes = false;
+      subtypes = NO_NODES;
+      subtype = 0;
+    }
+
+    /**
+     * Returns the next target, or -1 when there are none left.
+     */
+    private int next() {
+      while (true) {
+        int target;
+        if (subtype < subtypes.length) {
+          target = subtypes[subtype++];
+        } else if (edge < edgeOffsets[level + 1]) {
+          if (followingSubtypes) {
+            subtypes = getEdgeSubtypes(edge++);
+            subtype = 0;
+            continue;
+          }
+          target = edgeTargets[edge++];
+        } else if (!followingSubtypes) {
+          followingSubtypes = true;
+          edge = edgeOffsets[level];
+          continue;
+        } else if (superclasses[level] != -1) {
+          level = superclasses[level];
+          edge = edgeOffsets[level];
+          followingSubtypes = false;
+          continue;
+        } else {
+          return -1;
+        }
+        // References to the type itself aren't edges.
+        if (target != origin && target != level) {
+          return target;
+        }
+      }
+    }
+  }
+
+  /**
+   * Finds the strongly connected components with more than one node that are reachable from the
+   * seed nodes, using an iterative version of Tarjan's algorithm.
+   * http://en.wikipedia.org/wiki/Tarjan's_strongly_connected_components_algorithm
+   */
+  public Components getStronglyConnectedComponents(Iterable<TypeNode> seedNodes) {
+    int n = nodes.length;
+    int[] index = new int[n];
+    Arrays.fill(index, -1);
+    int[] lowlink = new int[n];
+    boolean[] onStack = new boolean[n];
+    int[] stack = new int[n];
+    int stackSize = 0;
+    // The explicit call stack holds the visited node and its remaining edges.
+    int[] callNodes = new int[n];
+    List<Neighbors> callEdges = new ArrayList<>();
+    int nextIndex = 0;
+    List<int[]> components = new ArrayList<>();
+
+    for (TypeNode seed : seedNodes) {
+      int seedId = getNodeId(seed);
+      if (seedId == -1 || index[seedId] != -1) {
+        continue;
+      }
+      int depth = 0;
+      callNodes[0] = seedId;
+      getNeighbors(callEdges, 0).reset(seedId);
+      index[seedId] = lowlink[seedId] = nextIndex++;
+      stack[stackSize++] = seedId;
+      onStack[seedId] = true;
+      while (depth >= 0) {
+        int v = callNodes[depth];
+        int w = callEdges.get(depth).next();
+        if (w != -1) {
+          if (index[w] == -1) {
+            index[w] = lowlink[w] = nextIndex++;
+            stack[stackSize++] = w;
+            onStack[w] = true;
+            depth++;
+            callNodes[depth] = w;
+            getNeighbors(callEdges, depth).reset(w);
+          } else if (onStack[w]) {
+            lowlink[v] = Math.min(lowlink[v], index[w]);
+          }
+          continue;
+        }
+        // All of v's edges are done.
+        if (lowlink[v] == index[v]) {
+          int start = stackSize;
+          do {
+            onStack[stack[--start]] = false;
+          } while (stack[start] != v);
+          if (stackSize - start > 1) {
+            components.add(Arrays.copyOfRange(stack, start, stackSize));
+          }
+          stackSize = start;
+        }
+        depth--;
+        if (depth >= 0) {
+          int parent = callNodes[depth];
+          lowlink[parent] = Math.min(lowlink[parent], lowlink[v]);
+        }
+      }
+    }
+    return new Components(components, n);
+  }
+
+  // Iterators are reused by each depth of the call stack.
+  private Neighbors getNeighbors(List<Neighbors> callEdges, int depth) {
+    if (depth == callEdges.size()) {
+      callEdges.add(new Neighbors());
+    }
+    return callEdges.get(depth);
+  }
+
+  /**
+   * Runs a breadth-first search to find a tight cycle through the root node, staying within the
+   * root's strongly connected component.
+   *
+   * @return the ids of the cycle's nodes, in order starting with the root. Each node's edge is
+   *     the one getEdge() returns for the next node, and the last node's edge is to the root.
+   */
+  public int[] findShortestCycle(int root, Components components) {
+    int component = components.componentOf[root];
+    int[] members = components.members.get(component);
+    // Search state is indexed by each node's position within its component.
+    int[] backlinks = new int[members.length];
+    Arrays.fill(backlinks, -1);
+    int[] queue = new int[members.length];
+    int head = 0;
+    int tail = 0;
+    queue[tail++] = root;
+    Neighbors neighbors = new Neighbors();
+    int last = -1;
+    outer: while (head < tail) {
+      int source = queue[head++];
+      neighbors.reset(source);
+      for (int target = neighbors.next(); target != -1; target = neighbors.next()) {
+        if (target == root) {
+          last = source;
+          break outer;
+        }
+        if (components.componentOf[target] != component) {
+          continue;
+        }
+        int local = components.localIndex[target];
+        if (backlinks[local] == -1) {
+          backlinks[local] = source;
+          queue[tail++] = target;
+        }
+      }
+    }
+    assert last != -1 : "no cycle in strongly connected component";
+    int length = 1;
+    for (int node = last; node != root; node = backlinks[components.localIndex[node]]) {
+      length++;
+    }
+    int[] cycle = new int[length];
+    int node = last;
+    for (int i = length - 1; i > 0; i--) {
+      cycle[i] = node;
+      node = backlinks[components.localIndex[node]];
+    }
+    cycle[0] = root;
+    return cycle;
+  }
+
+  /**
+   * The strongly connected components of a CompactReferenceGraph.
+   */
+  public static class Components {
+
+    private final List<int[]> members;
+    // The component of each node, or -1 for nodes not in any component.
+    private final int[] componentOf;
+    // The position of each node within its component's members.
+    private final int[] localIndex;
+
+    private Components(List<int[]> members, int nodeCount) {
+      this.members = members;
+      componentOf = new int[nodeCount];
+      Arrays.fill(componentOf, -1);
+      localIndex = new int[nodeCount];
+      for (int c = 0; c < members.size(); c++) {
+        int[] nodes = members.get(c);
+        for (int i = 0; i < nodes.length; i++) {
+          componentOf[nodes[i]] = c;
+          localIndex[nodes[i]] = i;
+        }
+      }
+    }
+
+    public int size() {
+      return members.size();
+    }
+
+    /**
+     * Returns the node ids of a component, in the order they were found.
+     */
+    public int[] getMembers(int component) {
+      return members.get(component);
+    }
+
+    /**
+     * Returns the position of a node within its component's members.
+     */
+    public int getLocalIndex(int node) {
+      return localIndex[node];
+    }
+  }
+}
@@ -14,10 +14,12 @@
 
 package com.google.devtools.cyclefinder;
 
+import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
 import com.google.common.collect.Iterables;
-import com.google.common.collect.Sets;
+import com.google.common.collect.Lists;
 import com.google.common.io.Files;
+import com.google.common.util.concurrent.Futures;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.file.RegularInputFile;
 import com.google.devtools.j2objc.translate.LambdaTypeElementAdder;
@@ -25,6 +27,7 @@ import com.google.devtools.j2objc.translate.OuterReferenceResolver;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
+import com.google.devtools.j2objc.util.PersistentWorker;
 import java.io.File;
 import java.io.IOException;
 import java.io.PrintStream;
@@ -32,9 +35,15 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Function;
 
 /**
  * A tool for finding possible reference cycles in a Java program.
@@ -43,6 +52,9 @@ import java.util.Set;
  */
 public class CycleFinder {
 
+  // Components with at least this many types have their root searches split across workers.
+  private static final int LARGE_COMPONENT_SIZE = 256;
+
   private final Options options;
   private final com.google.devtools.j2objc.Options j2objcOptions;
   private final NameList restrictToList;
@@ -80,15 +92,16 @@ public class CycleFinder {
     return parser;
   }
 
-  private static void exitOnErrors() {
+  // Prints any errors, and returns their number.
+  private static int printErrors() {
     int nErrors = ErrorUtil.errorCount();
     if (nErrors > 0) {
       System.err.println("Failed with " + nErrors + " errors:");
       for (String error : ErrorUtil.getErrorMessages()) {
         System.err.println("error: " + error);
       }
-      System.exit(nErrors);
     }
+    return nErrors;
   }
 
   private void testFileExistence() {
@@ -143,17 +156,53 @@ public class CycleFinder {
         new GraphBuilder(suppressList, options.externalAnnotations());
 
     List<String> sourceFiles = options.getSourceFiles();
-    File strippedDir = stripIncompatible(sourceFiles, parser);
+    EdgeCache edgeCache = null;
+    File strippedDir;
+    // Maps stripped source files back to their input files.
+    Map<String, String> originalPaths = new HashMap<>();
+    Function<String, String> originalPath = path -> {
+      String normalizedPath = EdgeCache.normalize(path);
+      return originalPaths.getOrDefault(normalizedPath, normalizedPath);
+    };
+    if (options.getEdgeCacheFile() == null) {
+      strippedDir = stripIncompatible(sourceFiles, parser);
+    } else {
+      edgeCache = EdgeCache.load(options.getEdgeCacheFile(), getEdgeCacheConfiguration());
+      edgeCache.validate(sourceFiles);
+      for (String root : edgeCache.getSourceRoots()) {
+        parser.prependSourcepathEntry(root);
+      }
+      sourceFiles = edgeCache.getFilesToParse();
+      strippedDir = null;
+      if (!sourceFiles.isEmpty()) {
+        // Unchanged files are stripped too, since javac reads them from the sourcepath.
+        List<String> inputFiles = edgeCache.getInputFiles();
+        List<String> strippedFiles = new ArrayList<>(inputFiles);
+        strippedDir = stripIncompatible(strippedFiles, parser);
+        Map<String, String> strippedPaths = new HashMap<>();
+        for (int i = 0; i < inputFiles.size(); i++) {
+          String strippedFile = EdgeCache.normalize(strippedFiles.get(i));
+          originalPaths.put(strippedFile, inputFiles.get(i));
+          strippedPaths.put(inputFiles.get(i), strippedFile);
+        }
+        sourceFiles = new ArrayList<>(Lists.transform(sourceFiles, strippedPaths::get));
+      }
+    }
 
+    Map<String, String> parsedPackages = new HashMap<>();
     Parser.Handler handler = new Parser.Handler() {
       @Override
       public void handleParsedUnit(String path, CompilationUnit unit) {
         new LambdaTypeElementAdder(unit).run();
         new OuterReferenceResolver(unit).run();
         graphBuilder.visitAST(unit);
+        parsedPackages.put(originalPath.apply(path),
+            unit.getPackage().getPackageElement().getQualifiedName().toString());
       }
     };
-    parser.parseFiles(sourceFiles, handler, options.sourceVersion());
+    if (!sourceFiles.isEmpty()) {
+      parser.parseFiles(sourceFiles, handler, options.sourceVersion());
+    }
 
     FileUtil.deleteTempDir(strippedDir);
     parser.close();
@@ -162,14 +211,94 @@ public class CycleFinder {
       return;
     }
 
+    if (edgeCache != null) {
+      graphBuilder.addTypeFacts(edgeCache.getValidTypes());
+      edgeCache.update(graphBuilder.getTypeFacts(), parsedPackages, originalPath);
+      edgeCache.save();
+    }
+
     // Construct the graph.
     referenceGraph = graphBuilder.constructGraph().getGraph();
   }
 
+  /**
+   * Returns the options that affect the reference graph, other than the input files.
+   */
+  private List<String> getEdgeCacheConfiguration() throws IOException {
+    List<String> configuration = new ArrayList<>(Arrays.asList(
+        options.fileEncoding(), options.sourceVersion().flag()));
+    configuration.addAll(options.getPlatformModuleSystemOptions());
+    // Source directories are left out, since the files found in them are checked one by one.
+    for (String entry : splitPath(options.getSourcepath())) {
+      configuration.add(entry);
+      if (new File(entry).isFile()) {
+        configuration.add(EdgeCache.contentHash(entry));
+      }
+    }
+    for (String entry : Iterables.concat(
+        splitPath(options.getBootclasspath()), splitPath(options.getClasspath()))) {
+      configuration.add(entry);
+      File file = new File(entry);
+      if (file.isFile()) {
+        configuration.add(EdgeCache.contentHash(entry));
+      } else if (file.isDirectory()) {
+        for (File classFile : Files.fileTraverser().depthFirstPreOrder(file)) {
+          configuration.add(classFile.getPath() + ':' + classFile.length() + ':'
+              + classFile.lastModified());
+        }
+      }
+    }
+    for (String file : Iterables.concat(
+        options.getSuppressListFiles(), options.getExternalAnnotationFiles())) {
+      configuration.add(file);
+      configuration.add(Strings.nullToEmpty(EdgeCache.contentHash(file)));
+    }
+    return configuration;
+  }
+
+  private static Iterable<String> splitPath(String path) {
+    return Splitter.on(File.pathSeparatorChar).omitEmptyStrings().split(Strings.nullToEmpty(path));
+  }
+
   public List<List<Edge>> findCycles() {
-    for (ReferenceGraph component :
-        referenceGraph.getStronglyConnectedComponents(getSeedNodes(referenceGraph))) {
-      handleStronglyConnectedComponent(component);
+    CompactReferenceGraph graph = CompactReferenceGraph.create(referenceGraph);
+    CompactReferenceGraph.Components components =
+        graph.getStronglyConnectedComponents(getSeedNodes(referenceGraph));
+    int jobs = options.jobs();
+    if (jobs <= 1) {
+      for (int i = 0; i < components.size(); i++) {
+        cycles.addAll(handleStronglyConnectedComponent(graph, components, i, null));
+      }
+      return cycles;
+    }
+
+    // Components are independent, so small ones are each searched by a worker. Large components
+    // are searched here, with their root searches split across the workers. Results are merged
+    // in component order, so the output is the same as a single-threaded search.
+    ExecutorService executor = Executors.newFixedThreadPool(jobs);
+    try {
+      List<Future<List<List<Edge>>>> results = new ArrayList<>();
+      for (int i = 0; i < components.size(); i++) {
+        int component = i;
+        results.add(
+            components.getMembers(i).length < LARGE_COMPONENT_SIZE
+                ? executor.submit(
+                    () -> handleStronglyConnectedComponent(graph, components, component, null))
+                : null);
+      }
+      for (int i = 0; i < components.size(); i++) {
+        if (results.get(i) == null) {
+          results.set(
+              i,
+              Futures.immediateFuture(
+                  handleStronglyConnectedComponent(graph, components, i, executor)));
+        }
+      }
+      for (Future<List<List<Edge>>> result : results) {
+        cycles.addAll(Futures.getUnchecked(result));
+      }
+    } finally {
+      executor.shutdownNow();
     }
     return cycles;
   }
@@ -187,20 +316,63 @@ public class CycleFinder {
     return seedNodes;
   }
 
-  private void handleStronglyConnectedComponent(ReferenceGraph subgraph) {
+  /**
+   * Returns the cycles for one strongly connected component. If an executor is specified, the
+   * searches from several roots are run in parallel, and cycles are kept in the same order as a
+   * sequential search would find them.
+   */
+  private List<List<Edge>> handleStronglyConnectedComponent(
+      CompactReferenceGraph graph, CompactReferenceGraph.Components components, int component,
+      ExecutorService executor) {
+    List<List<Edge>> componentCycles = new ArrayList<>();
     // Make sure to find at least one cycle for each type in the SCC.
-    Set<TypeNode> unusedTypes = Sets.newHashSet(subgraph.getNodes());
-    while (!unusedTypes.isEmpty()) {
-      TypeNode root = Iterables.getFirst(unusedTypes, null);
-      assert root != null;
-      List<Edge> cycle = subgraph.findShortestCycle(root);
-      if (shouldAddCycle(cycle)) {
-        cycles.add(cycle);
+    int[] members = components.getMembers(component);
+    boolean[] used = new boolean[members.length];
+    if (executor == null) {
+      for (int i = 0; i < members.length; i++) {
+        if (!used[i]) {
+          int[] cycleNodes = graph.findShortestCycle(members[i], components);
+          addCycle(graph, components, cycleNodes, used, componentCycles);
+        }
       }
-      for (Edge e : cycle) {
-        unusedTypes.remove(e.getOrigin());
+      return componentCycles;
+    }
+
+    int chunkSize = options.jobs() * 4;
+    int next = 0;
+    while (next < members.length) {
+      // Speculatively search from the next unused roots. A root covered by a cycle found earlier
+      // in the same chunk is skipped, just as it would have been by a sequential search.
+      List<Integer> roots = new ArrayList<>();
+      List<Future<int[]>> searches = new ArrayList<>();
+      for (; next < members.length && roots.size() < chunkSize; next++) {
+        if (!used[next]) {
+          int root = members[next];
+          roots.add(next);
+          searches.add(executor.submit(() -> graph.findShortestCycle(root, components)));
+        }
+      }
+      for (int i = 0; i < roots.size(); i++) {
+        if (!used[roots.get(i)]) {
+          addCycle(graph, components, Futures.getUnchecked(searches.get(i)), used, componentCycles);
+        }
       }
     }
+    return componentCycles;
+  }
+
+  private void addCycle(
+      CompactReferenceGraph graph, CompactReferenceGraph.Components components, int[] cycleNodes,
+      boolean[] used, List<List<Edge>> componentCycles) {
+    List<Edge> cycle = new ArrayList<>(cycleNodes.length);
+    for (int i = 0; i < cycleNodes.length; i++) {
+      int origin = cycleNodes[i];
+      cycle.add(graph.getEdge(origin, cycleNodes[(i + 1) % cycleNodes.length]));
+      used[components.getLocalIndex(origin)] = true;
+    }
+    if (shouldAddCycle(cycle)) {
+      componentCycles.add(cycle);
+    }
   }
 
   public ReferenceGraph getReferenceGraph() {
@@ -235,22 +407,41 @@ public class CycleFinder {
     out.println(cycles.size() + " CYCLES FOUND.");
   }
 
-  public static void main(String[] args) throws IOException {
+  /** Runs the cycle finder, and returns its exit status. */
+  static int run(String[] args) throws IOException {
     if (args.length == 0) {
       Options.help(true);
     }
     Options options = Options.parse(args);
+    // Captured types are numbered from the start of each run, as an edge cache assumes.
+    NameUtil.resetCaptureCount();
     CycleFinder finder = new CycleFinder(options);
     finder.testFileExistence();
-    exitOnErrors();
+    if (printErrors() > 0) {
+      return ErrorUtil.errorCount();
+    }
     finder.constructGraph();
-    exitOnErrors();
+    if (printErrors() > 0) {
+      return ErrorUtil.errorCount();
+    }
     if (options.printReferenceGraph()) {
       finder.getReferenceGraph().print(System.out);
+      return 0;
     } else {
       List<List<Edge>> cycles = finder.findCycles();
       printCycles(cycles, System.out);
-      System.exit(ErrorUtil.errorCount() + cycles.size());
+      return ErrorUtil.errorCount() + cycles.size();
+    }
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (PersistentWorker.isPersistentWorker(args)) {
+      PersistentWorker.run(args, CycleFinder::run);
+      return;
+    }
+    int status = run(args);
+    if (status != 0) {
+      System.exit(status);
     }
   }
 }
@@ -61,6 +61,14 @@ class Edge {
         "(capture " + varName + " with type " + target.getName() + ")");
   }
 
+  /**
+   * Recreates an edge saved by an EdgeCache.
+   */
+  static Edge restore(
+      TypeNode origin, TypeNode target, String fieldQualifiedName, String description) {
+    return new Edge(origin, target, fieldQualifiedName, description);
+  }
+
   public TypeNode getOrigin() {
     return origin;
   }
@@ -73,6 +81,10 @@ class Edge {
     return fieldQualifiedName;
   }
 
+  String getDescription() {
+    return description;
+  }
+
   @Override
   public String toString() {
     return origin.getName() + " -> " + description;
@@ -0,0 +1,506 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.cyclefinder;
+
+import com.google.common.base.Splitter;
+import com.google.common.collect.HashMultimap;
+import com.google.common.collect.SetMultimap;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * A persistent cache of what GraphBuilder found about each type, so that cycle_finder only
+ * reparses the source files that changed since its previous run.
+ *
+ * <p>A type's supertypes, fields and captures only depend on its own declaration and on the
+ * types it refers to, so its facts are grouped by the source file that declares it. When a file
+ * changes, its types are dropped along with every cached type that refers to them, and the
+ * files that refer to the dropped types are reparsed. Types without a source file are kept until
+ * the configuration (classpath, suppress lists, etc.) changes. Captured types are numbered per
+ * run, so they're always dropped and found again, along with the types that refer to them.
+ */
+final class EdgeCache {
+
+  // Bump when GraphBuilder's output or the file layout changes.
+  private static final int FORMAT_VERSION = 1;
+  // The group for types that aren't declared in a source file.
+  private static final String NO_SOURCE_FILE = "";
+
+  /**
+   * What GraphBuilder found about one type, before the graph is constructed.
+   */
+  static final class TypeFacts {
+    final TypeNode node;
+    String declaringFile;
+    final boolean hasOuterRef;
+    // The source files whose own code refers to this type.
+    final Set<String> rootFiles = new LinkedHashSet<>();
+    // The types looked up while following this type.
+    final Set<TypeNode> references = new LinkedHashSet<>();
+    TypeNode superclass;
+    final List<TypeNode> supertypes = new ArrayList<>();
+    final List<Edge> edges = new ArrayList<>();
+    TypeNode outerDeclaration;
+    Edge outerEdge;
+
+    TypeFacts(TypeNode node, String declaringFile, boolean hasOuterRef) {
+      this.node = node;
+      this.declaringFile = declaringFile;
+      this.hasOuterRef = hasOuterRef;
+    }
+  }
+
+  private static final class SourceFileEntry {
+    final String contentHash;
+    // The file's package, or null if it wasn't parsed as an input file.
+    final String packageName;
+    final List<TypeFacts> types = new ArrayList<>();
+
+    SourceFileEntry(String contentHash, String packageName) {
+      this.contentHash = contentHash;
+      this.packageName = packageName;
+    }
+  }
+
+  private final File cacheFile;
+  private final String configurationKey;
+  private Map<String, SourceFileEntry> entries = new LinkedHashMap<>();
+  private final Map<String, String> contentHashes = new HashMap<>();
+  private final Set<String> inputFiles = new LinkedHashSet<>();
+  private final Set<String> filesToParse = new LinkedHashSet<>();
+  private final Set<String> sourceRoots = new LinkedHashSet<>();
+  private final List<TypeFacts> validTypes = new ArrayList<>();
+
+  private EdgeCache(File cacheFile, List<String> configuration) {
+    this.cacheFile = cacheFile;
+    Hasher hasher = Hashing.sha256().newHasher().putInt(FORMAT_VERSION);
+    for (String s : configuration) {
+      hasher.putString(s, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    this.configurationKey = hasher.hash().toString();
+  }
+
+  /**
+   * Loads a cache file. The configuration strings are the options that affect the graph, such as
+   * the classpath and suppress lists; if they differ from the saved ones, the cache starts empty.
+   */
+  static EdgeCache load(File cacheFile, List<String> configuration) {
+    EdgeCache cache = new EdgeCache(cacheFile, configuration);
+    if (cacheFile.exists()) {
+      try (DataInputStream in = new DataInputStream(
+          new BufferedInputStream(new FileInputStream(cacheFile)))) {
+        cache.read(in);
+      } catch (IOException e) {
+        // A corrupt or truncated cache is discarded, and is rewritten by save().
+        cache.entries.clear();
+      }
+    }
+    return cache;
+  }
+
+  /**
+   * Returns the content hash of a file, or null if it doesn't exist.
+   */
+  static String contentHash(String path) throws IOException {
+    File file = new File(path);
+    return file.isFile() ? Files.asByteSource(file).hash(Hashing.sha256()).toString() : null;
+  }
+
+  private String currentHash(String path) throws IOException {
+    if (!contentHashes.containsKey(path)) {
+      contentHashes.put(path, contentHash(path));
+    }
+    return contentHashes.get(path);
+  }
+
+  static String normalize(String path) {
+    return new File(path).getAbsolutePath();
+  }
+
+  /**
+   * Checks the cached types against the current input files. Afterwards, getFilesToParse()
+   * returns the files whose types need to be found again, and getValidTypes() returns the cached
+   * types to add to the graph.
+   */
+  void validate(List<String> sourceFiles) throws IOException {
+    for (String path : sourceFiles) {
+      inputFiles.add(normalize(path));
+    }
+    for (String path : inputFiles) {
+      SourceFileEntry entry = entries.get(path);
+      if (entry == null || !entry.contentHash.equals(currentHash(path))) {
+        filesToParse.add(path);
+      }
+    }
+
+    // Drop captured types and the types declared in changed or deleted files, then the types
+    // that refer to them.
+    SetMultimap<TypeNode, TypeFacts> referringTypes = HashMultimap.create();
+    Deque<TypeFacts> worklist = new ArrayDeque<>();
+    for (Map.Entry<String, SourceFileEntry> entry : entries.entrySet()) {
+      String path = entry.getKey();
+      boolean valid = path.equals(NO_SOURCE_FILE)
+          || entry.getValue().contentHash.equals(currentHash(path));
+      for (TypeFacts type : entry.getValue().types) {
+        for (TypeNode reference : type.references) {
+          referringTypes.put(reference, type);
+        }
+        if (!valid || NameUtil.hasCapture(type.node.getSignature())) {
+          worklist.add(type);
+        }
+      }
+    }
+    Set<TypeFacts> dropped = Collections.newSetFromMap(new IdentityHashMap<>());
+    while (!worklist.isEmpty()) {
+      TypeFacts type = worklist.remove();
+      if (dropped.add(type)) {
+        worklist.addAll(referringTypes.get(type.node));
+      }
+    }
+    for (TypeFacts type : dropped) {
+      for (String file : type.rootFiles) {
+        if (inputFiles.contains(file)) {
+          filesToParse.add(file);
+        }
+      }
+    }
+
+    // Unchanged input files are found by javac through their source roots.
+    for (String path : inputFiles) {
+      if (!filesToParse.contains(path)) {
+        String root = getSourceRoot(path, entries.get(path).packageName);
+        if (root != null) {
+          sourceRoots.add(root);
+        } else {
+          filesToParse.add(path);
+        }
+      }
+    }
+
+    // Keep the remaining types that are still referred to by a file that isn't reparsed,
+    // directly or through other kept types.
+    Map<TypeNode, TypeFacts> keptTypes = new LinkedHashMap<>();
+    for (SourceFileEntry entry : entries.values()) {
+      for (TypeFacts type : entry.types) {
+        if (!dropped.contains(type)) {
+          type.rootFiles.removeIf(f -> !inputFiles.contains(f) || filesToParse.contains(f));
+          keptTypes.put(type.node, type);
+        }
+      }
+    }
+    Set<TypeFacts> reachable = Collections.newSetFromMap(new IdentityHashMap<>());
+    for (TypeFacts type : keptTypes.values()) {
+      if (!type.rootFiles.isEmpty() && reachable.add(type)) {
+        worklist.add(type);
+      }
+    }
+    while (!worklist.isEmpty()) {
+      for (TypeNode reference : worklist.remove().references) {
+        TypeFacts referencedType = keptTypes.get(reference);
+        if (referencedType != null && reachable.add(referencedType)) {
+          worklist.add(referencedType);
+        }
+      }
+    }
+    for (TypeFacts type : keptTypes.values()) {
+      if (reachable.contains(type)) {
+        validTypes.add(type);
+      }
+    }
+  }
+
+  private static String getSourceRoot(String path, String packageName) {
+    if (packageName == null) {
+      return null;
+    }
+    File dir = new File(path).getParentFile();
+    if (!packageName.isEmpty()) {
+      List<String> parts = Splitter.on('.').splitToList(packageName);
+      for (int i = parts.size() - 1; i >= 0 && dir != null; i--) {
+        if (!dir.getName().equals(parts.get(i))) {
+          return null;
+        }
+        dir = dir.getParentFile();
+      }
+    }
+    return dir != null ? dir.getPath() : null;
+  }
+
+  /**
+   * Returns the input files that need to be parsed, in their original order.
+   */
+  List<String> getFilesToParse() {
+    List<String> result = new ArrayList<>();
+    for (String path : inputFiles) {
+      if (filesToParse.contains(path)) {
+        result.add(path);
+      }
+    }
+    return result;
+  }
+
+  /**
+   * Returns the normalized paths of all input files.
+   */
+  List<String> getInputFiles() {
+    return new ArrayList<>(inputFiles);
+  }
+
+  /**
+   * Returns the source roots of the input files that aren't parsed.
+   */
+  Set<String> getSourceRoots() {
+    return sourceRoots;
+  }
+
+  List<TypeFacts> getValidTypes() {
+    return validTypes;
+  }
+
+  /**
+   * Replaces the cache's contents with the types of a GraphBuilder. The specified function maps
+   * the paths the parser reported to the input files they came from.
+   *
+   * @param parsedPackages the package of each input file that was parsed
+   */
+  void update(
+      Collection<TypeFacts> types, Map<String, String> parsedPackages,
+      Function<String, String> originalPath) throws IOException {
+    Map<String, SourceFileEntry> updated = new LinkedHashMap<>();
+    for (String path : inputFiles) {
+      String packageName = parsedPackages.get(path);
+      if (packageName != null) {
+        updated.put(path, new SourceFileEntry(currentHash(path), packageName));
+      } else if (!filesToParse.contains(path)) {
+        SourceFileEntry entry = entries.get(path);
+        updated.put(path, new SourceFileEntry(entry.contentHash, entry.packageName));
+      }
+    }
+    updated.put(NO_SOURCE_FILE, new SourceFileEntry("", null));
+    for (TypeFacts type : types) {
+      String declaringFile = type.declaringFile != null
+          ? normalize(originalPath.apply(type.declaringFile)) : null;
+      if (declaringFile == null || currentHash(declaringFile) == null) {
+        declaringFile = NO_SOURCE_FILE;
+      }
+      type.declaringFile = declaringFile.equals(NO_SOURCE_FILE) ? null : declaringFile;
+      List<String> rootFiles = new ArrayList<>(type.rootFiles);
+      type.rootFiles.clear();
+      for (String file : rootFiles) {
+        type.rootFiles.add(normalize(originalPath.apply(file)));
+      }
+      SourceFileEntry entry = updated.get(declaringFile);
+      if (entry == null) {
+        entry = new SourceFileEntry(currentHash(declaringFile), null);
+        updated.put(declaringFile, entry);
+      }
+      entry.types.add(type);
+    }
+    entries = updated;
+  }
+
+  /**
+   * Saves the cache. It is written to a temporary file first and then renamed, so concurrent
+   * runs sharing a cache file never read a partially written one.
+   */
+  void save() throws IOException {
+    File dir = cacheFile.getAbsoluteFile().getParentFile();
+    if (!dir.exists() && !dir.mkdirs()) {
+      throw new IOException("cannot create edge cache directory: " + dir);
+    }
+    File tmpFile = File.createTempFile(cacheFile.getName(), ".tmp", dir);
+    try {
+      try (DataOutputStream out = new DataOutputStream(
+          new BufferedOutputStream(new FileOutputStream(tmpFile)))) {
+        write(out);
+      }
+      java.nio.file.Files.move(
+          tmpFile.toPath(),
+          cacheFile.toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      tmpFile.delete();
+    }
+  }
+
+  // The file starts with the configuration key, followed by a table of all nodes, which the
+  // types' facts refer to by index.
+  private void write(DataOutputStream out) throws IOException {
+    out.writeUTF(configurationKey);
+    Map<TypeNode, Integer> nodeIds = new LinkedHashMap<>();
+    // Types are numbered first, so that their declared names are kept.
+    for (SourceFileEntry entry : entries.values()) {
+      for (TypeFacts type : entry.types) {
+        nodeIds.putIfAbsent(type.node, nodeIds.size());
+      }
+    }
+    for (SourceFileEntry entry : entries.values()) {
+      for (TypeFacts type : entry.types) {
+        for (TypeNode node : getReferencedNodes(type)) {
+          nodeIds.putIfAbsent(node, nodeIds.size());
+        }
+      }
+    }
+    out.writeInt(nodeIds.size());
+    for (TypeNode node : nodeIds.keySet()) {
+      out.writeUTF(node.getSignature());
+      writeString(out, node.getName());
+      writeString(out, node.getQualifiedName());
+    }
+
+    out.writeInt(entries.size());
+    for (Map.Entry<String, SourceFileEntry> mapEntry : entries.entrySet()) {
+      SourceFileEntry entry = mapEntry.getValue();
+      out.writeUTF(mapEntry.getKey());
+      out.writeUTF(entry.contentHash);
+      writeString(out, entry.packageName);
+      out.writeInt(entry.types.size());
+      for (TypeFacts type : entry.types) {
+        out.writeInt(nodeIds.get(type.node));
+        out.writeBoolean(type.hasOuterRef);
+        out.writeInt(type.rootFiles.size());
+        for (String file : type.rootFiles) {
+          out.writeUTF(file);
+        }
+        out.writeInt(type.references.size());
+        for (TypeNode node : type.references) {
+          out.writeInt(nodeIds.get(node));
+        }
+        out.writeInt(type.superclass != null ? nodeIds.get(type.superclass) : -1);
+        out.writeInt(type.supertypes.size());
+        for (TypeNode node : type.supertypes) {
+          out.writeInt(nodeIds.get(node));
+        }
+        out.writeInt(type.edges.size());
+        for (Edge e : type.edges) {
+          writeEdge(out, e, nodeIds);
+        }
+        out.writeInt(type.outerEdge != null ? nodeIds.get(type.outerDeclaration) : -1);
+        if (type.outerEdge != null) {
+          writeEdge(out, type.outerEdge, nodeIds);
+        }
+      }
+    }
+  }
+
+  private static List<TypeNode> getReferencedNodes(TypeFacts type) {
+    List<TypeNode> nodes = new ArrayList<>(type.references);
+    if (type.superclass != null) {
+      nodes.add(type.superclass);
+    }
+    nodes.addAll(type.supertypes);
+    for (Edge e : type.edges) {
+      nodes.add(e.getTarget());
+    }
+    if (type.outerEdge != null) {
+      nodes.add(type.outerDeclaration);
+      nodes.add(type.outerEdge.getTarget());
+    }
+    return nodes;
+  }
+
+  private static void writeEdge(DataOutputStream out, Edge e, Map<TypeNode, Integer> nodeIds)
+      throws IOException {
+    out.writeInt(nodeIds.get(e.getTarget()));
+    writeString(out, e.getFieldQualifiedName());
+    out.writeUTF(e.getDescription());
+  }
+
+  private static void writeString(DataOutputStream out, String s) throws IOException {
+    out.writeBoolean(s != null);
+    if (s != null) {
+      out.writeUTF(s);
+    }
+  }
+
+  private void read(DataInputStream in) throws IOException {
+    if (!in.readUTF().equals(configurationKey)) {
+      return;
+    }
+    TypeNode[] nodes = new TypeNode[in.readInt()];
+    for (int i = 0; i < nodes.length; i++) {
+      nodes[i] = new TypeNode(in.readUTF(), readString(in), readString(in));
+    }
+
+    int entryCount = in.readInt();
+    for (int i = 0; i < entryCount; i++) {
+      String path = in.readUTF();
+      SourceFileEntry entry = new SourceFileEntry(in.readUTF(), readString(in));
+      int typeCount = in.readInt();
+      for (int j = 0; j < typeCount; j++) {
+        TypeNode node = nodes[in.readInt()];
+        TypeFacts type = new TypeFacts(
+            node, path.equals(NO_SOURCE_FILE) ? null : path, in.readBoolean());
+        for (int n = in.readInt(); n > 0; n--) {
+          type.rootFiles.add(in.readUTF());
+        }
+        for (int n = in.readInt(); n > 0; n--) {
+          type.references.add(nodes[in.readInt()]);
+        }
+        int superclass = in.readInt();
+        type.superclass = superclass != -1 ? nodes[superclass] : null;
+        for (int n = in.readInt(); n > 0; n--) {
+          type.supertypes.add(nodes[in.readInt()]);
+        }
+        for (int n = in.readInt(); n > 0; n--) {
+          type.edges.add(readEdge(in, node, nodes));
+        }
+        int outerDeclaration = in.readInt();
+        if (outerDeclaration != -1) {
+          type.outerDeclaration = nodes[outerDeclaration];
+          type.outerEdge = readEdge(in, node, nodes);
+        }
+        entry.types.add(type);
+      }
+      entries.put(path, entry);
+    }
+  }
+
+  private static Edge readEdge(DataInputStream in, TypeNode origin, TypeNode[] nodes)
+      throws IOException {
+    TypeNode target = nodes[in.readInt()];
+    String fieldQualifiedName = readString(in);
+    return Edge.restore(origin, target, fieldQualifiedName, in.readUTF());
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+}
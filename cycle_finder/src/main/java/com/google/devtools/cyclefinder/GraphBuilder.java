@@ -15,9 +15,7 @@
 package com.google.devtools.cyclefinder;
 
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.SetMultimap;
-import com.google.common.collect.Sets;
 import com.google.devtools.j2objc.ast.ClassInstanceCreation;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.CreationReference;
@@ -37,8 +35,11 @@ import com.google.devtools.j2objc.util.TypeUtil;
 import com.google.j2objc.annotations.RetainedWith;
 import com.google.j2objc.annotations.Weak;
 import com.google.j2objc.annotations.WeakOuter;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -72,6 +73,11 @@ public class GraphBuilder {
   private final SetMultimap<TypeNode, TypeNode> subtypes = HashMultimap.create();
   private final SetMultimap<TypeNode, Edge> possibleOuterEdges = HashMultimap.create();
   private final Set<TypeNode> hasOuterRef = new HashSet<>();
+  // Bookkeeping for the EdgeCache: the source file that declares each type, the source files
+  // that refer to each type directly, and the types looked up while following each type.
+  private final Map<TypeNode, String> declaringFiles = new HashMap<>();
+  private final SetMultimap<TypeNode, String> rootFiles = HashMultimap.create();
+  private final SetMultimap<TypeNode, TypeNode> references = HashMultimap.create();
 
   public GraphBuilder(NameList suppressList, ExternalAnnotations externalAnnotations) {
     this.suppressList = suppressList;
@@ -80,8 +86,8 @@ public class GraphBuilder {
 
   public GraphBuilder constructGraph() {
     addOuterEdges();
-    addSubtypeEdges();
-    addSuperclassEdges();
+    // Subtype and superclass edges are derived by the graph as it's searched.
+    graph.setTypeHierarchy(superclasses, subtypes, suppressList);
     return this;
   }
 
@@ -89,6 +95,64 @@ public class GraphBuilder {
     return graph;
   }
 
+  /**
+   * Returns what was found about each type, before constructGraph() adds the outer edges and
+   * the type hierarchy.
+   */
+  List<EdgeCache.TypeFacts> getTypeFacts() {
+    Map<TypeNode, EdgeCache.TypeFacts> factsByType = new LinkedHashMap<>();
+    for (TypeNode type : allTypes.values()) {
+      EdgeCache.TypeFacts facts =
+          new EdgeCache.TypeFacts(type, declaringFiles.get(type), hasOuterRef.contains(type));
+      facts.rootFiles.addAll(rootFiles.get(type));
+      facts.references.addAll(references.get(type));
+      facts.superclass = superclasses.get(type);
+      facts.edges.addAll(graph.getEdges(type));
+      factsByType.put(type, facts);
+    }
+    for (Map.Entry<TypeNode, TypeNode> entry : subtypes.entries()) {
+      factsByType.get(entry.getValue()).supertypes.add(entry.getKey());
+    }
+    for (Map.Entry<TypeNode, Edge> entry : possibleOuterEdges.entries()) {
+      EdgeCache.TypeFacts facts = factsByType.get(entry.getValue().getOrigin());
+      facts.outerDeclaration = entry.getKey();
+      facts.outerEdge = entry.getValue();
+    }
+    return new ArrayList<>(factsByType.values());
+  }
+
+  /**
+   * Adds the facts saved by an earlier run. Types already visited by this builder are skipped,
+   * since their facts are current, but they keep the cached files that refer to them.
+   */
+  void addTypeFacts(Collection<EdgeCache.TypeFacts> cachedFacts) {
+    for (EdgeCache.TypeFacts facts : cachedFacts) {
+      TypeNode type = facts.node;
+      rootFiles.putAll(type, facts.rootFiles);
+      if (allTypes.containsKey(type.getSignature())) {
+        continue;
+      }
+      allTypes.put(type.getSignature(), type);
+      declaringFiles.put(type, facts.declaringFile);
+      references.putAll(type, facts.references);
+      if (facts.hasOuterRef) {
+        hasOuterRef.add(type);
+      }
+      if (facts.superclass != null) {
+        superclasses.put(type, facts.superclass);
+      }
+      for (TypeNode supertype : facts.supertypes) {
+        subtypes.put(supertype, type);
+      }
+      for (Edge e : facts.edges) {
+        graph.addEdge(e);
+      }
+      if (facts.outerEdge != null) {
+        possibleOuterEdges.put(facts.outerDeclaration, facts.outerEdge);
+      }
+    }
+  }
+
   private void addEdge(Edge e) {
     if (!e.getOrigin().equals(e.getTarget())) {
       graph.addEdge(e);
@@ -110,41 +174,6 @@ public class GraphBuilder {
     }
   }
 
-  private void addSubtypeEdges() {
-    for (TypeNode type : allTypes.values()) {
-      for (Edge e : ImmutableList.copyOf(graph.getEdges(type))) {
-        Set<TypeNode> targetSubtypes = subtypes.get(e.getTarget());
-        Set<TypeNode> suppressListed = new HashSet<>();
-        String fieldName = e.getFieldQualifiedName();
-        if (fieldName == null) {
-          continue;  // Outer or capture field.
-        }
-        for (TypeNode subtype : targetSubtypes) {
-          if (suppressList.isSuppressListedTypeForField(fieldName, subtype)
-              || suppressList.containsType(subtype)) {
-            suppressListed.add(subtype);
-            suppressListed.addAll(subtypes.get(subtype));
-          }
-        }
-        for (TypeNode subtype : Sets.difference(targetSubtypes, suppressListed)) {
-          addEdge(Edge.newSubtypeEdge(e, subtype));
-        }
-      }
-    }
-  }
-
-  private void addSuperclassEdges() {
-    for (TypeNode type : allTypes.values()) {
-      TypeNode superclassNode = superclasses.get(type);
-      while (superclassNode != null) {
-        for (Edge e : graph.getEdges(superclassNode)) {
-          addEdge(Edge.newSuperclassEdge(e, type, superclassNode));
-        }
-        superclassNode = superclasses.get(superclassNode);
-      }
-    }
-  }
-
   private static final TypeVisitor<Integer, Void> TYPE_DEPTH_COUNTER =
       new SimpleTypeVisitor8<Integer, Void>(0) {
 
@@ -196,26 +225,44 @@ public class GraphBuilder {
 
     private final CaptureInfo captureInfo;
     private final NameUtil nameUtil;
+    private final String sourceFile;
+    // The type being followed, or null while visiting the unit's own references.
+    private TypeNode referringType;
 
     private Visitor(CompilationUnit unit) {
       super(unit);
       captureInfo = unit.getEnv().captureInfo();
       nameUtil = new NameUtil(typeUtil);
+      sourceFile = unit.getSourceFilePath();
     }
 
     private TypeNode createNode(TypeMirror type, String signature, String name) {
       TypeNode node = new TypeNode(signature, name, NameUtil.getQualifiedName(type));
       allTypes.put(signature, node);
+      declaringFiles.put(node, getDeclaringFile(type));
+      TypeNode savedReferringType = referringType;
+      referringType = node;
       followType(type, node);
+      referringType = savedReferringType;
       return node;
     }
 
+    private String getDeclaringFile(TypeMirror type) {
+      TypeElement element = null;
+      if (TypeUtil.isDeclaredType(type)) {
+        element = TypeUtil.asTypeElement(type);
+      } else if (TypeUtil.isTypeVariable(type)) {
+        element = ElementUtil.getDeclaringClass(((TypeVariable) type).asElement());
+      }
+      return element != null ? ElementUtil.getSourceFile(element) : null;
+    }
+
     private TypeNode getOrCreateNode(TypeMirror type) {
       type = getElementType(type);
       String signature = nameUtil.getSignature(type);
       TypeNode node = allTypes.get(signature);
       if (node != null) {
-        return node;
+        return addReference(node);
       }
       if (!TypeUtil.isReferenceType(type) || isRawType(type)) {
         return null;
@@ -224,7 +271,16 @@ public class GraphBuilder {
         // Avoid infinite recursion caused by type argument cycles.
         return null;
       }
-      return createNode(type, signature, NameUtil.getName(type));
+      return addReference(createNode(type, signature, NameUtil.getName(type)));
+    }
+
+    private TypeNode addReference(TypeNode node) {
+      if (referringType != null) {
+        references.put(referringType, node);
+      } else {
+        rootFiles.put(node, sourceFile);
+      }
+      return node;
     }
 
     private void visitType(TypeMirror type) {
@@ -377,6 +433,11 @@ public class GraphBuilder {
       TypeMirror type = typeElem.asType();
       TypeNode typeNode = createNode(
           type, nameUtil.getSignature(type), getTypeDeclarationName(node, typeElem));
+      // Lambda and method reference types are synthetic, so their source file is the unit's.
+      declaringFiles.put(typeNode, sourceFile);
+      rootFiles.put(typeNode, sourceFile);
+      // Captured and receiver types are looked up on behalf of the declared type.
+      referringType = typeNode;
       if (captureInfo.needsOuterReference(typeElem)) {
         hasOuterRef.add(typeNode);
       }
@@ -390,6 +451,7 @@ public class GraphBuilder {
       if (ElementUtil.isAnonymous(typeElem)) {
         followCaptureFields(typeElem, typeNode);
       }
+      referringType = null;
     }
 
     @Override
@@ -47,6 +47,10 @@ public class NameUtil {
   private final Map<Element, String> captureNames = new HashMap<>();
   private static int captureCount = 1;
 
+  // Captured types are numbered in the order they're found, so their signatures are only
+  // unique within one run.
+  private static final String CAPTURE_PREFIX = "!CAP";
+
   public NameUtil(TypeUtil typeUtil) {
     this.elementUtil = typeUtil.elementUtil();
     this.typeUtil = typeUtil;
@@ -151,7 +155,7 @@ public class NameUtil {
     if (isCapture(typeParam)) {
       String name = captureNames.get(typeParam);
       if (name == null) {
-        name = "!CAP" + captureCount++ + '!';
+        name = CAPTURE_PREFIX + captureCount++ + '!';
         captureNames.put(typeParam, name);
       }
       sb.append(name);
@@ -297,6 +301,20 @@ public class NameUtil {
     return getQualifiedNameForElement(e.getEnclosingElement());
   }
 
+  /**
+   * Returns whether a signature includes a captured type, whose name isn't stable across runs.
+   */
+  static boolean hasCapture(String signature) {
+    return signature.contains(CAPTURE_PREFIX);
+  }
+
+  /**
+   * Restarts the numbering of captured types, for a new run in the same process.
+   */
+  static void resetCaptureCount() {
+    captureCount = 1;
+  }
+
   private static boolean isCapture(Element e) {
     return ElementUtil.isTypeParameterElement(e)
         && e.getEnclosingElement().getKind() == ElementKind.OTHER;
@@ -65,8 +65,11 @@ class Options {
   private List<String> sourceFiles = Lists.newArrayList();
   private String fileEncoding = System.getProperty("file.encoding", "UTF-8");
   private boolean printReferenceGraph = false;
+  private int jobs = Runtime.getRuntime().availableProcessors();
   private SourceVersion sourceVersion = null;
   private final ExternalAnnotations externalAnnotations = new ExternalAnnotations();
+  private final List<String> externalAnnotationFiles = new ArrayList<>();
+  private File edgeCacheFile = null;
 
   // Flags that are directly forwarded to the javac parser.
   private static final ImmutableSet<String> PLATFORM_MODULE_SYSTEM_OPTIONS =
@@ -149,6 +152,15 @@ class Options {
      printReferenceGraph = true;
   }
 
+  public int jobs() {
+    return jobs;
+  }
+
+  @VisibleForTesting
+  void setJobs(int jobs) {
+    this.jobs = jobs;
+  }
+
   public ExternalAnnotations externalAnnotations() {
     return externalAnnotations;
   }
@@ -156,6 +168,20 @@ class Options {
   @VisibleForTesting
   public void addExternalAnnotationFile(String file) throws IOException {
     externalAnnotations.addExternalAnnotationFile(file);
+    externalAnnotationFiles.add(file);
+  }
+
+  public List<String> getExternalAnnotationFiles() {
+    return externalAnnotationFiles;
+  }
+
+  public File getEdgeCacheFile() {
+    return edgeCacheFile;
+  }
+
+  @VisibleForTesting
+  void setEdgeCacheFile(File file) {
+    edgeCacheFile = file;
   }
 
   public void addPlatformModuleSystemOptions(String... flags) {
@@ -241,6 +267,23 @@ class Options {
         } catch (IllegalArgumentException e) {
           usage("invalid source release: " + args[nArg]);
         }
+      } else if (arg.equals("--jobs") || arg.equals("-j")) {
+        if (++nArg == args.length) {
+          usage(arg + " requires an argument");
+        }
+        try {
+          options.jobs = Integer.parseInt(args[nArg]);
+        } catch (NumberFormatException e) {
+          usage("invalid " + arg + " value: " + args[nArg]);
+        }
+        if (options.jobs < 1) {
+          usage("invalid " + arg + " value: " + args[nArg]);
+        }
+      } else if (arg.equals("--edge-cache")) {
+        if (++nArg == args.length) {
+          usage(arg + " requires an argument");
+        }
+        options.edgeCacheFile = new File(args[nArg]);
       } else if (arg.equals("--print-reference-graph")) {
         options.printReferenceGraph = true;
       } else if (arg.equals("-external-annotation-file")) {
@@ -15,14 +15,14 @@
 package com.google.devtools.cyclefinder;
 
 import com.google.common.collect.HashMultimap;
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableSetMultimap;
 import com.google.common.collect.SetMultimap;
 import java.io.PrintStream;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -30,86 +30,164 @@ import java.util.Set;
 /**
  * A graph representing possible references between Java types.
  *
+ * Only the direct edges are stored. A field edge implies an edge to each
+ * subtype of the field's type, and a class has the edges of its superclasses,
+ * so those edges are derived from the type hierarchy when they are needed
+ * instead of being copied into every subclass. A type has at most one edge
+ * to each target: its own edges come first, then the subtype edges of its
+ * fields, then the edges of each superclass in turn.
+ *
  * @author Keith Stanger
  */
 public class ReferenceGraph {
 
   private SetMultimap<TypeNode, Edge> edges = HashMultimap.create();
+  private Map<TypeNode, TypeNode> superclasses = Collections.emptyMap();
+  private SetMultimap<TypeNode, TypeNode> subtypes = ImmutableSetMultimap.of();
+  private NameList suppressList = null;
+
+  /**
+   * Sets the type hierarchy that subtype and superclass edges are derived
+   * from. Subtype edges of a field aren't derived for subtypes that are
+   * suppress-listed for that field.
+   */
+  void setTypeHierarchy(Map<TypeNode, TypeNode> superclasses,
+      SetMultimap<TypeNode, TypeNode> subtypes, NameList suppressList) {
+    this.superclasses = superclasses;
+    this.subtypes = subtypes;
+    this.suppressList = suppressList;
+  }
 
+  /**
+   * Returns the types that have outgoing edges, either their own or ones
+   * inherited from a superclass.
+   */
   public Set<TypeNode> getNodes() {
-    return Collections.unmodifiableSet(edges.keySet());
+    Set<TypeNode> nodes = new LinkedHashSet<>(edges.keySet());
+    for (TypeNode type : superclasses.keySet()) {
+      for (TypeNode superclass = superclasses.get(type); superclass != null;
+          superclass = superclasses.get(superclass)) {
+        if (edges.containsKey(superclass)) {
+          nodes.add(type);
+          break;
+        }
+      }
+    }
+    return Collections.unmodifiableSet(nodes);
   }
 
+  /**
+   * Returns a type's direct edges, without the derived subtype and
+   * superclass edges.
+   */
   public Set<Edge> getEdges(TypeNode node) {
     return Collections.unmodifiableSet(edges.get(node));
   }
 
-  public void addEdge(Edge e) {
-    edges.put(e.getOrigin(), e);
+  /**
+   * Returns all of a type's edges, including the derived ones.
+   */
+  public List<Edge> getAllEdges(TypeNode node) {
+    Map<TypeNode, Edge> edgesByTarget = new LinkedHashMap<>();
+    for (TypeNode type = node; type != null; type = superclasses.get(type)) {
+      for (Edge e : edges.get(type)) {
+        addDerivedEdge(edgesByTarget, node, type, e);
+      }
+      for (Edge e : edges.get(type)) {
+        for (TypeNode subtype : getSubtypeTargets(e)) {
+          addDerivedEdge(edgesByTarget, node, type, Edge.newSubtypeEdge(e, subtype));
+        }
+      }
+    }
+    return new ArrayList<>(edgesByTarget.values());
   }
 
-  public List<ReferenceGraph> getStronglyConnectedComponents(Set<TypeNode> seedNodes) {
-    List<List<TypeNode>> componentNodesList =
-        Tarjans.getStronglyConnectedComponents(edges, seedNodes);
-    List<ReferenceGraph> components = new ArrayList<>();
-    for (List<TypeNode> componentNodes : componentNodesList) {
-      components.add(getSubgraph(componentNodes));
+  private static void addDerivedEdge(
+      Map<TypeNode, Edge> edgesByTarget, TypeNode node, TypeNode type, Edge e) {
+    TypeNode target = e.getTarget();
+    if (!target.equals(node) && !target.equals(type) && !edgesByTarget.containsKey(target)) {
+      edgesByTarget.put(target, type == node ? e : Edge.newSuperclassEdge(e, node, type));
     }
-    return components;
   }
 
   /**
-   * Runs a version of Dijkstra's algorithm to find a tight cycle in the given
-   * strongly connected component.
+   * Returns the edge from one type to another, in the same form as
+   * getAllEdges(), or null if there isn't one. Only that edge is created.
    */
-  public List<Edge> findShortestCycle(TypeNode root) {
-    Map<TypeNode, Edge> backlinks = new HashMap<>();
-    Set<TypeNode> visited = new HashSet<>();
-    List<TypeNode> toVisit = Lists.newArrayList(root);
-    outer: while (true) {
-      List<TypeNode> visitNext = new ArrayList<>();
-      for (TypeNode source : toVisit) {
-        visited.add(source);
-        for (Edge e : edges.get(source)) {
-          TypeNode target = e.getTarget();
-          if (!visited.contains(target)) {
-            visitNext.add(target);
-            backlinks.put(target, e);
-          } else if (target.equals(root)) {
-            backlinks.put(root, e);
-            break outer;
+  public Edge getEdge(TypeNode origin, TypeNode target) {
+    if (target.equals(origin)) {
+      return null;
+    }
+    for (TypeNode type = origin; type != null; type = superclasses.get(type)) {
+      if (target.equals(type)) {
+        continue;
+      }
+      Edge found = null;
+      for (Edge e : edges.get(type)) {
+        if (e.getTarget().equals(target)) {
+          found = e;
+          break;
+        }
+      }
+      if (found == null) {
+        for (Edge e : edges.get(type)) {
+          if (getSubtypeTargets(e).contains(target)) {
+            found = Edge.newSubtypeEdge(e, target);
+            break;
           }
         }
       }
-      toVisit = visitNext;
-    }
-    List<Edge> cycle = new ArrayList<>();
-    TypeNode curNode = root;
-    while (!curNode.equals(root) || cycle.size() == 0) {
-      Edge nextEdge = backlinks.get(curNode);
-      cycle.add(nextEdge);
-      curNode = nextEdge.getOrigin();
+      if (found != null) {
+        return type == origin ? found : Edge.newSuperclassEdge(found, origin, type);
+      }
     }
-    return Lists.newArrayList(Lists.reverse(cycle));
+    return null;
   }
 
-  private ReferenceGraph getSubgraph(Collection<TypeNode> vertices) {
-    ReferenceGraph subgraph = new ReferenceGraph();
-    for (TypeNode type : vertices) {
-      for (Edge e : edges.get(type)) {
-        if (vertices.contains(e.getTarget())) {
-          subgraph.addEdge(e);
-        }
+  TypeNode getSuperclass(TypeNode node) {
+    return superclasses.get(node);
+  }
+
+  /**
+   * Returns the direct subtypes of a field edge's target that the field may
+   * refer to, leaving out suppress-listed subtypes and their own subtypes.
+   */
+  List<TypeNode> getSubtypeTargets(Edge e) {
+    String fieldName = e.getFieldQualifiedName();
+    if (fieldName == null) {
+      return Collections.emptyList();  // Outer or capture field.
+    }
+    Set<TypeNode> targetSubtypes = subtypes.get(e.getTarget());
+    Set<TypeNode> suppressListed = new HashSet<>();
+    for (TypeNode subtype : targetSubtypes) {
+      if (suppressList.isSuppressListedTypeForField(fieldName, subtype)
+          || suppressList.containsType(subtype)) {
+        suppressListed.add(subtype);
+        suppressListed.addAll(subtypes.get(subtype));
       }
     }
-    return subgraph;
+    List<TypeNode> result = new ArrayList<>(targetSubtypes.size());
+    for (TypeNode subtype : targetSubtypes) {
+      if (!suppressListed.contains(subtype)) {
+        result.add(subtype);
+      }
+    }
+    return result;
+  }
+
+  Set<TypeNode> getSubtypes(TypeNode node) {
+    return subtypes.get(node);
+  }
+
+  public void addEdge(Edge e) {
+    edges.put(e.getOrigin(), e);
   }
 
   public void print(PrintStream printStream) {
-    ArrayList<TypeNode> typeNodes = new ArrayList<>(edges.keySet());
+    ArrayList<TypeNode> typeNodes = new ArrayList<>(getNodes());
     Collections.sort(typeNodes, (a, b) -> a.getName().compareTo(b.getName()));
     for (TypeNode typeNode : typeNodes) {
-      ArrayList<Edge> outgoingEdges = new ArrayList<>(edges.get(typeNode));
+      List<Edge> outgoingEdges = getAllEdges(typeNode);
       Collections.sort(
           outgoingEdges, (a, b) -> a.getTarget().getName().compareTo(b.getTarget().getName()));
       printStream.println("class: " + typeNode);
@@ -212,6 +212,17 @@ public class CycleFinderTest extends TestCase {
     assertNoCycles();
   }
 
+  public void testSubtypeOfSuperclassField() throws Exception {
+    addSourceFile("A.java", "class A { I i; }");
+    addSourceFile("I.java", "interface I {}");
+    addSourceFile("B.java", "class B extends A {}");
+    addSourceFile("C.java", "class C implements I { B b; }");
+    findCycles();
+    assertCycle("LB;", "LC;");
+    assertContains("B -> (superclass A has (C subtype of (field i with type I)))",
+        printCyclesToString());
+  }
+
   public void testSuppressListedOuterReference() throws Exception {
     addSourceFile("A.java", "class A { Inner i; class Inner { void test() { A a = A.this; } } }");
     suppressListEntries.add("OUTER A.Inner");
@@ -466,6 +477,102 @@ public class CycleFinderTest extends TestCase {
     assertNoCycles();
   }
 
+  public void testParallelSearchMatchesSequential() throws Exception {
+    // A single component large enough for its root searches to be split across workers.
+    StringBuilder source = new StringBuilder("class Ring {\n");
+    int size = 300;
+    for (int i = 0; i < size; i++) {
+      source.append(String.format(
+          "  static class C%d { C%d next; C%d skip; }\n", i, (i + 1) % size, (i + 7) % size));
+    }
+    source.append("}\n");
+    addSourceFile("Ring.java", source.toString());
+    addSourceFile("A.java", "class A { B b; }");
+    addSourceFile("B.java", "class B { A a; }");
+
+    Options options = new Options();
+    options.setJobs(1);
+    findCycles(options);
+    String sequential = printCyclesToString();
+    options = new Options();
+    options.setJobs(4);
+    findCycles(options);
+    assertEquals(sequential, printCyclesToString());
+    assertCycle("LA;", "LB;");
+  }
+
+  public void testEdgeCache() throws Exception {
+    addSourceFile("A.java", "class A { B b; }");
+    addSourceFile("B.java", "class B { C c; }");
+    addSourceFile("C.java", "class C { A a; }");
+    addSourceFile("D.java", "class D { Runnable r = () -> { }; }");
+    File cacheFile = new File(tempDir, "edges");
+
+    Options options = new Options();
+    options.setEdgeCacheFile(cacheFile);
+    findCycles(options);
+    assertTrue(cacheFile.exists());
+    String firstRunCycles = printCyclesToString();
+    assertCycle("LA;", "LB;", "LC;");
+
+    // Nothing changed, so the graph comes from the cache.
+    options = new Options();
+    options.setEdgeCacheFile(cacheFile);
+    findCycles(options);
+    assertEquals(firstRunCycles, printCyclesToString());
+
+    // B is reparsed, while A and C are reused from the cache.
+    inputFiles.clear();
+    addSourceFile("A.java", "class A { B b; }");
+    addSourceFile("B.java", "class B { }");
+    addSourceFile("C.java", "class C { A a; }");
+    addSourceFile("D.java", "class D { Runnable r = () -> { }; }");
+    options = new Options();
+    options.setEdgeCacheFile(cacheFile);
+    findCycles(options);
+    assertNoCycles();
+
+    inputFiles.clear();
+    addSourceFile("A.java", "class A { B b; }");
+    addSourceFile("B.java", "class B { D d; }");
+    addSourceFile("C.java", "class C { A a; }");
+    addSourceFile("D.java", "class D { C c; }");
+    options = new Options();
+    options.setEdgeCacheFile(cacheFile);
+    findCycles(options);
+    assertEquals(1, cycles.size());
+    assertCycle("LA;", "LB;", "LD;", "LC;");
+  }
+
+  public void testEdgeCacheCapturedTypes() throws Exception {
+    addSourceFile("I.java", "interface I { void run(); }");
+    addSourceFile("A.java", "import java.util.function.Supplier; "
+        + "class A { I i; void f(Supplier<? extends A> s) { i = s.get()::g; } void g() {} }");
+    addSourceFile("B.java", "class B { }");
+    File cacheFile = new File(tempDir, "edges");
+    NameUtil.resetCaptureCount();
+    Options options = new Options();
+    options.setEdgeCacheFile(cacheFile);
+    findCycles(options);
+
+    // B now has a captured type too, numbered like A's was in the previous run. A's cached
+    // captured type must not be mistaken for it.
+    inputFiles.clear();
+    addSourceFile("I.java", "interface I { void run(); }");
+    addSourceFile("A.java", "import java.util.function.Supplier; "
+        + "class A { I i; void f(Supplier<? extends A> s) { i = s.get()::g; } void g() {} }");
+    addSourceFile("B.java", "import java.util.function.Supplier; "
+        + "class B { I i; void f(Supplier<? extends B> s) { i = s.get()::h; } void h() {} }");
+    NameUtil.resetCaptureCount();
+    findCycles();
+    String uncachedCycles = printCyclesToString();
+    NameUtil.resetCaptureCount();
+    options = new Options();
+    options.setEdgeCacheFile(cacheFile);
+    findCycles(options);
+    assertEquals(uncachedCycles, printCyclesToString());
+  }
+
   private void assertContains(String substr, String str) {
     assertTrue("Expected \"" + substr + "\" within \"" + str + "\"", str.contains(substr));
   }
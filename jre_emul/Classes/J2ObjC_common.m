@@ -24,6 +24,7 @@
 
 #import "FastPointerLookup.h"
 #import "IOSClass.h"
+#import "J2ObjC_source.h"
 #import "JreRetainedWith.h"
 #import "java/lang/AbstractStringBuilder.h"
 #import "java/lang/ArithmeticException.h"
@@ -61,6 +62,24 @@ void JreThrowAssertionError(id __unsafe_unretained msg) {
   @throw [[[JavaLangAssertionError alloc] initWithId:[msg description]] autorelease];  // NOLINT
 }
 
+// The __j2objcprobes custom data segment is built by the linker from the
+// tables defined by the J2OBJC_PROBE_TABLE macro.
+void JreDumpProbes(FILE *out) {
+  extern J2ObjcProbeTable start_probe_section __asm("section$start$__DATA$__j2objcprobes");
+  extern J2ObjcProbeTable end_probe_section __asm("section$end$__DATA$__j2objcprobes");
+  NSUInteger nTables = (NSUInteger)(&end_probe_section - &start_probe_section);
+  for (NSUInteger i = 0; i < nTables; i++) {
+    J2ObjcProbeTable *table = (&start_probe_section) + i;
+    for (jint probe = 0; probe < table->count; probe++) {
+      uint64_t count = __atomic_load_n(&table->counts[probe], __ATOMIC_RELAXED);
+      if (count > 0) {
+        fprintf(out, "%s\t%s\t%llu\t%llu\n", table->source_name, table->names[probe],
+                count, __atomic_load_n(&table->nanos[probe], __ATOMIC_RELAXED));
+      }
+    }
+  }
+}
+
 void JreFinalize(id self) {
   @try {
     [self java_finalize];
@@ -63,6 +63,23 @@ FOUNDATION_EXPORT void JreThrowAssertionError(id __unsafe_unretained msg);
 FOUNDATION_EXPORT void JreRelease(id obj);
 #endif
 
+#if !__has_feature(objc_arc)
+__attribute__((always_inline)) inline void JreReleaseLocal(id *p) {
+  [*p release];
+}
+
+/*!
+ * Releases the object of a local variable when the variable goes out of
+ * scope. Used by the -Xescape-analysis translator flag for objects created
+ * retained that never escape the variable's scope.
+ *
+ * @define JreReleaseAtScopeEnd
+ * @param VAR The local variable, which must not be reassigned.
+ */
+#define JreReleaseAtScopeEnd(VAR) \
+  __attribute__((cleanup(JreReleaseLocal), unused)) id VAR##_release$ = VAR
+#endif
+
 FOUNDATION_EXPORT void JreFinalize(id self);
 
 __attribute__((always_inline)) inline void JreCheckFinalize(id self, Class cls) {
@@ -115,6 +132,69 @@ typedef struct J2ObjcResourceDefinition {
   static J2ObjcResourceDefinition BUF##_resource __attribute__((used, no_sanitize("address"), \
   section("__DATA,__j2objcresource"))) = { QUOTE(BUF), BUF, LEN, HASH };
 
+/*!
+ * Defines the profiling probes of a source file translated with the
+ * --instrument flag. Each probe counts the calls to a method, along with the
+ * total time spent in it, or the objects created at an allocation site. The
+ * linker collects the tables into the __j2objcprobes data section, which is
+ * reported by JreDumpProbes().
+ */
+typedef struct J2ObjcProbeTable {
+  const char * const source_name;
+  const jint count;
+  const char * const * const names;
+  uint64_t * const counts;
+  uint64_t * const nanos;
+} J2ObjcProbeTable;
+
+/*!
+ * Defines a probe table. TABLE##_names must be an array of COUNT Java
+ * signatures, one per probe.
+ */
+#define J2OBJC_PROBE_TABLE(TABLE, SOURCE, COUNT) \
+  static uint64_t TABLE##_counts[COUNT]; \
+  static uint64_t TABLE##_nanos[COUNT]; \
+  static J2ObjcProbeTable TABLE __attribute__((used, no_sanitize("address"), \
+  section("__DATA,__j2objcprobes"))) = { SOURCE, COUNT, TABLE##_names, TABLE##_counts, \
+  TABLE##_nanos };
+
+typedef struct JreProbeFrame {
+  uint64_t *nanos;
+  uint64_t start;
+} JreProbeFrame;
+
+__attribute__((always_inline)) inline JreProbeFrame JreProbeEnter(
+    J2ObjcProbeTable *table, jint probe) {
+  __atomic_fetch_add(&table->counts[probe], 1, __ATOMIC_RELAXED);
+  return (JreProbeFrame){ &table->nanos[probe], clock_gettime_nsec_np(CLOCK_UPTIME_RAW) };
+}
+
+__attribute__((always_inline)) inline void JreProbeExit(JreProbeFrame *frame) {
+  __atomic_fetch_add(
+      frame->nanos, clock_gettime_nsec_np(CLOCK_UPTIME_RAW) - frame->start, __ATOMIC_RELAXED);
+}
+
+/*!
+ * Counts a call to the enclosing function, and adds the time until the
+ * function returns to the probe's total.
+ */
+#define J2OBJC_PROBE_CALL(TABLE, PROBE) \
+  __attribute__((cleanup(JreProbeExit), unused)) JreProbeFrame probe$ = \
+  JreProbeEnter(&TABLE, PROBE)
+
+/*!
+ * Counts an object creation, as an expression.
+ */
+#define J2OBJC_PROBE_ALLOC(TABLE, PROBE) \
+  ((void)__atomic_fetch_add(&TABLE##_counts[PROBE], 1, __ATOMIC_RELAXED))
+
+/*!
+ * Writes the non-zero probe counts of all linked probe tables, one probe per
+ * line as tab-separated source file, Java signature, count and total
+ * nanoseconds.
+ */
+FOUNDATION_EXPORT void JreDumpProbes(FILE *out);
+
 FOUNDATION_EXPORT jint JreIndexOfStr(NSString *str, NSString **values, jint size);
 FOUNDATION_EXPORT NSString *JreEnumConstantName(IOSClass *enumClass, jint ordinal);
 
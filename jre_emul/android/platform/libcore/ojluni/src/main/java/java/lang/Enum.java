@@ -119,7 +119,8 @@ public abstract class Enum<E extends Enum<E>>
      * for use by sophisticated enum-based data structures, such as
      * {@link java.util.EnumSet} and {@link java.util.EnumMap}.
      */
-    private final int ordinal;
+    // J2ObjC modified: not private, so translated enum switches can read the ivar directly.
+    final int ordinal;
 
     /**
      * Returns the ordinal of this enumeration constant (its position
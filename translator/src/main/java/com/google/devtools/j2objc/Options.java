@@ -101,6 +101,8 @@ public class Options {
   private boolean translateClassfiles = false;
   private String annotationsJar = null;
   private CombinedOutput globalCombinedOutput = null;
+  private int combinedOutputShards = 0;
+  private int combinedOutputShardSize = 0;
   private String bootclasspath = null;
   private boolean emitKytheMappings = false;
   private boolean emitSourceHeaders = true;
@@ -113,6 +115,15 @@ public class Options {
   private boolean stripReflectionErrors = false;
   private boolean linkProtocols = false;
   private boolean addTextSegmentAttribute = false;
+  private int constArrayThreshold = 0;
+  private int autoreleasePoolThreshold = 0;
+  private File autoreleasePoolReport = null;
+  private boolean escapeAnalysis = false;
+  private boolean singlePassProcessing = false;
+  private EnumSet<Instrumentation> instrumentation = EnumSet.noneOf(Instrumentation.class);
+  private String moduleName = null;
+  private boolean minimizeHeaderIncludes = false;
+  private File headerIncludeReport = null;
 
   private Mappings mappings = new Mappings();
   private FileUtil fileUtil = new FileUtil();
@@ -216,6 +227,17 @@ public class Options {
     FULL
   }
 
+  /**
+   * What profiling probes should be inserted into generated code, if any.
+   */
+  public enum Instrumentation {
+    // Count calls and time spent in each method.
+    CALLS,
+
+    // Count the objects created at each allocation site.
+    ALLOCATIONS
+  }
+
   /**
    * Different ways that #line debug directives can be emitted.
    */
@@ -297,6 +319,32 @@ public class Options {
     this.globalCombinedOutput = new CombinedOutput(outputName, this);
   }
 
+  /**
+   * Returns the number of shards to split the global combined output into, or
+   * zero if it isn't split into a fixed number of shards.
+   */
+  public int combinedOutputShards() {
+    return combinedOutputShards;
+  }
+
+  @VisibleForTesting
+  public void setCombinedOutputShards(int n) {
+    combinedOutputShards = n;
+  }
+
+  /**
+   * Returns the maximum estimated size in kilobytes of each shard of the
+   * global combined output, or zero if shards aren't capped.
+   */
+  public int combinedOutputShardSize() {
+    return combinedOutputShardSize;
+  }
+
+  @VisibleForTesting
+  public void setCombinedOutputShardSize(int kb) {
+    combinedOutputShardSize = kb;
+  }
+
   /**
    * Set all log handlers in this package with a common level.
    */
@@ -388,6 +436,12 @@ public class Options {
         headerMap.setMappingFiles(getArgValue(args, arg));
       } else if (arg.equals("--output-header-mapping")) {
         headerMap.setOutputMappingFile(new File(getArgValue(args, arg)));
+      } else if (arg.equals("--module-map")) {
+        String s = getArgValue(args, arg);
+        if (!s.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+          usage("invalid --module-map name: " + s);
+        }
+        moduleName = s;
       } else if (arg.equals("--dead-code-report")) {
         addDeadCodeReport(getArgValue(args, arg));
       } else if (arg.equals("--prefix")) {
@@ -415,10 +469,37 @@ public class Options {
         headerMap.setCombineJars();
       } else if (arg.equals("-XglobalCombinedOutput")) {
         setGlobalCombinedOutput(getArgValue(args, arg));
+      } else if (arg.equals("-Xcombined-output-shards")) {
+        String s = getArgValue(args, arg);
+        try {
+          combinedOutputShards = Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+          usage("invalid -Xcombined-output-shards value: " + s);
+        }
+        if (combinedOutputShards < 1) {
+          usage("invalid -Xcombined-output-shards value: " + s);
+        }
+      } else if (arg.equals("-Xcombined-output-shard-size")) {
+        String s = getArgValue(args, arg);
+        try {
+          combinedOutputShardSize = Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+          usage("invalid -Xcombined-output-shard-size value: " + s);
+        }
+        if (combinedOutputShardSize < 1) {
+          usage("invalid -Xcombined-output-shard-size value: " + s);
+        }
       } else if (arg.equals("-XincludeGeneratedSources")) {
         headerMap.setIncludeGeneratedSources();
       } else if (arg.equals("-Xpublic-hdrs")) {
         fileUtil.setHeaderOutputDirectory(new File(getArgValue(args, arg)));
+      } else if (arg.equals("-Xconst-array-threshold")) {
+        String s = getArgValue(args, arg);
+        try {
+          constArrayThreshold = Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+          usage("invalid -Xconst-array-threshold value: " + s);
+        }
       } else if (arg.equals("-Xlink-protocols")) {
         linkProtocols = true;
       } else if (arg.equals("-use-arc")) {
@@ -544,6 +625,23 @@ public class Options {
             }
           }
         }
+      } else if (arg.startsWith("--instrument:")) {
+        String[] subArgs = arg.substring(arg.indexOf(':') + 1).split(",", -1);
+        for (String subArg : subArgs) {
+          switch (subArg) {
+            case "calls": {
+              instrumentation.add(Instrumentation.CALLS);
+              break;
+            }
+            case "allocations": {
+              instrumentation.add(Instrumentation.ALLOCATIONS);
+              break;
+            }
+            default: {
+              usage("invalid --instrument argument: " + subArg);
+            }
+          }
+        }
       } else if (arg.equals("--no-wrapper-methods")) {
         emitWrapperMethods = false;
       } else if (arg.equals("--wrapper-methods")) {
@@ -588,6 +686,23 @@ public class Options {
         lintArgument = arg;
       } else if (arg.equals("-Xtranslate-bootclasspath")) {
         translateBootclasspath = true;
+      } else if (arg.equals("-Xautorelease-pool-threshold")) {
+        String s = getArgValue(args, arg);
+        try {
+          autoreleasePoolThreshold = Integer.parseInt(s);
+        } catch (NumberFormatException e) {
+          usage("invalid -Xautorelease-pool-threshold value: " + s);
+        }
+      } else if (arg.equals("-Xautorelease-pool-report")) {
+        setAutoreleasePoolReport(getArgValue(args, arg));
+      } else if (arg.equals("-Xminimize-header-includes")) {
+        minimizeHeaderIncludes = true;
+      } else if (arg.equals("-Xheader-include-report")) {
+        headerIncludeReport = new File(getArgValue(args, arg));
+      } else if (arg.equals("-Xescape-analysis")) {
+        escapeAnalysis = true;
+      } else if (arg.equals("-Xsingle-pass-processing")) {
+        singlePassProcessing = true;
       } else if (arg.equals("-Xdump-ast")) {
         dumpAST = true;
       } else if (arg.equals("-Xtranslate-classfiles")) {
@@ -688,6 +803,12 @@ public class Options {
           + "-XincludeGeneratedSources");
     }
 
+    if ((combinedOutputShards > 0 || combinedOutputShardSize > 0) && globalCombinedOutput == null) {
+      ErrorUtil.error(
+          "-Xcombined-output-shards and -Xcombined-output-shard-size require "
+          + "-XglobalCombinedOutput");
+    }
+
     // Entry classes are only allowed with --build-closure flag.
     if (!entryClasses.isEmpty() && !buildClosure) {
       ErrorUtil.error("entry class names can only be specified with --build-closure flag");
@@ -1318,4 +1439,105 @@ public class Options {
   public void setAddTextSegmentAttribute(boolean b) {
     addTextSegmentAttribute = b;
   }
+
+  /**
+   * Returns the minimum number of elements for which a constant primitive array
+   * initializer is emitted as static const data, or zero if disabled.
+   */
+  public int constArrayThreshold() {
+    return constArrayThreshold;
+  }
+
+  @VisibleForTesting
+  public void setConstArrayThreshold(int n) {
+    constArrayThreshold = n;
+  }
+
+  /**
+   * Returns the minimum estimated number of autoreleased objects per iteration
+   * for which a loop body is given an autorelease pool, or zero if disabled.
+   */
+  public int autoreleasePoolThreshold() {
+    return autoreleasePoolThreshold;
+  }
+
+  @VisibleForTesting
+  public void setAutoreleasePoolThreshold(int n) {
+    autoreleasePoolThreshold = n;
+  }
+
+  public File getAutoreleasePoolReport() {
+    return autoreleasePoolReport;
+  }
+
+  /**
+   * Sets the file that lists the loops given autorelease pools. An existing
+   * report is truncated, since each translated unit appends to it.
+   */
+  public void setAutoreleasePoolReport(String path) throws IOException {
+    autoreleasePoolReport = new File(path);
+    Files.asCharSink(autoreleasePoolReport, UTF_8).write("");
+  }
+
+  public boolean escapeAnalysis() {
+    return escapeAnalysis;
+  }
+
+  @VisibleForTesting
+  public void setEscapeAnalysis(boolean b) {
+    escapeAnalysis = b;
+  }
+
+  public boolean instrumentCalls() {
+    return instrumentation.contains(Instrumentation.CALLS);
+  }
+
+  public boolean instrumentAllocations() {
+    return instrumentation.contains(Instrumentation.ALLOCATIONS);
+  }
+
+  @VisibleForTesting
+  public void setInstrumentation(EnumSet<Instrumentation> kinds) {
+    instrumentation = kinds;
+  }
+
+  public boolean singlePassProcessing() {
+    return singlePassProcessing;
+  }
+
+  @VisibleForTesting
+  public void setSinglePassProcessing(boolean b) {
+    singlePassProcessing = b;
+  }
+
+  /**
+   * Returns the name of the clang module to generate a module map for, or
+   * null if none is generated.
+   */
+  public String moduleName() {
+    return moduleName;
+  }
+
+  @VisibleForTesting
+  public void setModuleName(String name) {
+    moduleName = name;
+  }
+
+  public boolean minimizeHeaderIncludes() {
+    return minimizeHeaderIncludes;
+  }
+
+  @VisibleForTesting
+  public void setMinimizeHeaderIncludes(boolean b) {
+    minimizeHeaderIncludes = b;
+  }
+
+  public File getHeaderIncludeReport() {
+    return headerIncludeReport;
+  }
+
+  @VisibleForTesting
+  public void setHeaderIncludeReport(File file) {
+    headerIncludeReport = file;
+  }
 }
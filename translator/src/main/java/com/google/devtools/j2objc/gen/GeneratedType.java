@@ -17,6 +17,7 @@ package com.google.devtools.j2objc.gen;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
 import com.google.devtools.j2objc.Options;
 import com.google.devtools.j2objc.ast.AbstractTypeDeclaration;
 import com.google.devtools.j2objc.ast.CompilationUnit;
@@ -41,7 +42,7 @@ public class GeneratedType {
   private final boolean isPrivate;
   private final List<String> superTypes;
   private final Set<Import> headerForwardDeclarations;
-  private final Set<Import> headerIncludes;
+  private Set<Import> headerIncludes;
   private final Set<Import> implementationForwardDeclarations;
   private final Set<Import> implementationIncludes;
   private final String publicDeclarationCode;
@@ -172,6 +173,11 @@ public class GeneratedType {
     return headerIncludes;
   }
 
+  /** Removes header includes that other header includes already provide. */
+  void removeHeaderIncludes(Set<Import> includes) {
+    headerIncludes = ImmutableSet.copyOf(Sets.difference(headerIncludes, includes));
+  }
+
   public Set<Import> getImplementationForwardDeclarations() {
     return implementationForwardDeclarations;
   }
@@ -0,0 +1,193 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.types.Import;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * The include graph of the headers generated by a translation. A type's
+ * header only includes the headers of its supertypes, which must be declared
+ * before it, and forward declares all other types. An include is redundant
+ * when the header of another of the type's supertypes already includes it,
+ * directly or transitively, so it can be removed without changing what the
+ * header or its implementation file declare.
+ *
+ * The report lists the headers that transitively include the most headers
+ * (fan-out) and that are transitively included by the most headers (fan-in),
+ * followed by the includes that remain. Includes by the headers of types that
+ * weren't translated are unknown, so counts stop at them.
+ */
+public class HeaderIncludeGraph {
+
+  private static final int MAX_HOT_SPOTS = 20;
+
+  // Generated types with public declarations, by name.
+  private final Map<String, GeneratedType> types = new LinkedHashMap<>();
+  private final Map<String, String> typeHeaders = new HashMap<>();
+  private int removedCount = 0;
+
+  public void addGenerationUnit(GenerationUnit unit) {
+    String header = unit.getOutputPath() + unit.options().getLanguage().headerSuffix();
+    for (GeneratedType type : unit.getGeneratedTypes()) {
+      if (!type.getPublicDeclarationCode().isEmpty()) {
+        types.put(type.getTypeName(), type);
+        typeHeaders.put(type.getTypeName(), header);
+      }
+    }
+  }
+
+  /**
+   * Removes each type's includes of supertypes that another of its supertypes
+   * already includes.
+   */
+  public void removeRedundantIncludes() {
+    // Computed before any includes are removed; removing redundant includes
+    // doesn't change which types are reachable.
+    Map<String, Set<String>> includedTypes = new HashMap<>();
+    for (String typeName : types.keySet()) {
+      getIncludedTypes(typeName, includedTypes);
+    }
+    for (GeneratedType type : types.values()) {
+      Set<Import> redundant = new HashSet<>();
+      for (Import imp : type.getHeaderIncludes()) {
+        for (Import other : type.getHeaderIncludes()) {
+          if (other != imp
+              && includedTypes.getOrDefault(other.getTypeName(), Collections.emptySet())
+                  .contains(imp.getTypeName())) {
+            redundant.add(imp);
+            break;
+          }
+        }
+      }
+      if (!redundant.isEmpty()) {
+        type.removeHeaderIncludes(redundant);
+        removedCount += redundant.size();
+      }
+    }
+  }
+
+  private Set<String> getIncludedTypes(String typeName, Map<String, Set<String>> includedTypes) {
+    Set<String> result = includedTypes.get(typeName);
+    if (result != null) {
+      return result;
+    }
+    result = new HashSet<>();
+    includedTypes.put(typeName, result);
+    GeneratedType type = types.get(typeName);
+    if (type != null) {
+      for (Import imp : type.getHeaderIncludes()) {
+        result.add(imp.getTypeName());
+        result.addAll(getIncludedTypes(imp.getTypeName(), includedTypes));
+      }
+    }
+    return result;
+  }
+
+  public void writeReport(File file) throws IOException {
+    // Header paths to the headers they include, excluding themselves.
+    Map<String, Set<String>> includes = new TreeMap<>();
+    Map<String, Set<String>> forcedIncludes = new TreeMap<>();
+    int includeCount = 0;
+    for (GeneratedType type : types.values()) {
+      String header = typeHeaders.get(type.getTypeName());
+      Set<String> headerIncludes = includes.computeIfAbsent(header, k -> new TreeSet<>());
+      for (Import imp : type.getHeaderIncludes()) {
+        String included = imp.getImportFileName();
+        if (included.equals(header)) {
+          continue;
+        }
+        if (headerIncludes.add(included)) {
+          includeCount++;
+        }
+        forcedIncludes.computeIfAbsent(header, k -> new TreeSet<>()).add(
+            UnicodeUtils.format("%s (%s %s)", included,
+                imp.isInterface() ? "protocol" : "superclass", imp.getTypeName()));
+      }
+    }
+
+    Map<String, Integer> fanOut = new HashMap<>();
+    Map<String, Integer> fanIn = new HashMap<>();
+    for (String header : includes.keySet()) {
+      Set<String> reachable = getReachableHeaders(header, includes);
+      fanOut.put(header, reachable.size());
+      for (String included : reachable) {
+        fanIn.merge(included, 1, Integer::sum);
+      }
+    }
+
+    List<String> lines = new ArrayList<>();
+    lines.add(UnicodeUtils.format("Headers: %d, includes: %d, redundant includes removed: %d",
+        includes.size(), includeCount, removedCount));
+    lines.add("");
+    lines.add("Most headers included (fan-out):");
+    addHotSpots(lines, fanOut);
+    lines.add("");
+    lines.add("Most included headers (fan-in):");
+    addHotSpots(lines, fanIn);
+    lines.add("");
+    lines.add("Forced includes:");
+    for (Map.Entry<String, Set<String>> entry : forcedIncludes.entrySet()) {
+      for (String include : entry.getValue()) {
+        lines.add("  " + entry.getKey() + ": " + include);
+      }
+    }
+    Files.asCharSink(file, UTF_8).writeLines(lines);
+  }
+
+  private static Set<String> getReachableHeaders(
+      String header, Map<String, Set<String>> includes) {
+    Set<String> reachable = new HashSet<>();
+    Deque<String> queue = new ArrayDeque<>();
+    queue.add(header);
+    while (!queue.isEmpty()) {
+      for (String included : includes.getOrDefault(queue.remove(), Collections.emptySet())) {
+        if (!included.equals(header) && reachable.add(included)) {
+          queue.add(included);
+        }
+      }
+    }
+    return reachable;
+  }
+
+  private static void addHotSpots(List<String> lines, Map<String, Integer> counts) {
+    List<Map.Entry<String, Integer>> entries = new ArrayList<>(counts.entrySet());
+    entries.sort(Map.Entry.<String, Integer>comparingByValue().reversed()
+        .thenComparing(Map.Entry.comparingByKey()));
+    for (Map.Entry<String, Integer> entry : entries.subList(0, Math.min(MAX_HOT_SPOTS,
+        entries.size()))) {
+      if (entry.getValue() > 0) {
+        lines.add(UnicodeUtils.format("  %s: %d", entry.getKey(), entry.getValue()));
+      }
+    }
+  }
+}
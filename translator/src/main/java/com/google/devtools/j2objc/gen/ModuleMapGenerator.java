@@ -0,0 +1,108 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.gen;
+
+import com.google.common.collect.ImmutableSet;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.J2ObjC;
+import com.google.devtools.j2objc.Options;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import com.google.devtools.j2objc.util.HeaderMap;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * Generates a clang module map for the headers of a translation, so that
+ * translated code can be compiled with -fmodules and reuse clang's module
+ * cache instead of textually including each header. Each package is a
+ * submodule that lists its headers, plus an umbrella header that includes them
+ * all and is written next to them, as determined by the {@link HeaderMap}.
+ */
+public class ModuleMapGenerator {
+
+  public static final String MODULE_MAP_FILE = "module.modulemap";
+
+  // Module map keywords, which can't be used as submodule names.
+  private static final Set<String> KEYWORDS = ImmutableSet.of(
+      "config_macros", "conflict", "exclude", "explicit", "export", "export_as", "extern",
+      "framework", "header", "link", "module", "private", "requires", "textual", "umbrella",
+      "use");
+
+  private final Options options;
+  private final String moduleName;
+  // Package names to their header paths. A header that declares types from
+  // several packages, as with combined jars, is only listed by the first one.
+  private final Map<String, Set<String>> packageHeaders = new TreeMap<>();
+  private final Set<String> headers = new HashSet<>();
+
+  public ModuleMapGenerator(Options options) {
+    this.options = options;
+    moduleName = options.moduleName();
+  }
+
+  public void addHeader(String packageName, String headerPath) {
+    if (headers.add(headerPath)) {
+      packageHeaders.computeIfAbsent(packageName, k -> new TreeSet<>()).add(headerPath);
+    }
+  }
+
+  public void generate() {
+    if (packageHeaders.isEmpty()) {
+      return;
+    }
+    HeaderMap headerMap = options.getHeaderMap();
+    StringBuilder moduleMap = new StringBuilder();
+    moduleMap.append(UnicodeUtils.format("module %s {\n", moduleName));
+    moduleMap.append("  requires objc\n");
+    for (Map.Entry<String, Set<String>> entry : packageHeaders.entrySet()) {
+      String umbrellaPath = headerMap.getUmbrellaHeaderPath(entry.getKey());
+      StringBuilder umbrella = new StringBuilder(J2ObjC.getFileHeader(options, entry.getKey()));
+      moduleMap.append(UnicodeUtils.format("\n  module %s {\n", getSubmoduleName(entry.getKey())));
+      moduleMap.append(UnicodeUtils.format("    header \"%s\"\n", umbrellaPath));
+      for (String header : entry.getValue()) {
+        umbrella.append(UnicodeUtils.format("#include \"%s\"\n", header));
+        moduleMap.append(UnicodeUtils.format("    header \"%s\"\n", header));
+      }
+      moduleMap.append("    export *\n  }\n");
+      save(umbrellaPath, umbrella.toString());
+    }
+    moduleMap.append("}\n");
+    save(MODULE_MAP_FILE, moduleMap.toString());
+  }
+
+  private static String getSubmoduleName(String packageName) {
+    if (packageName.isEmpty()) {
+      return "default_package";
+    }
+    String name = packageName.replace('.', '_');
+    return KEYWORDS.contains(name) ? name + '_' : name;
+  }
+
+  private void save(String path, String content) {
+    File outputFile = new File(options.fileUtil().getHeaderOutputDirectory(), path);
+    try {
+      Files.createParentDirs(outputFile);
+      Files.asCharSink(outputFile, options.fileUtil().getCharset()).write(content);
+    } catch (IOException e) {
+      ErrorUtil.error(e.getMessage());
+    }
+  }
+}
@@ -55,6 +55,7 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Modifier;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -94,34 +95,42 @@ public class ClassFileConverter {
   public static CompilationUnit convertClassFile(
       Options options, JavacEnvironment env, InputFile file) {
     try {
-      ClassFileConverter converter = new ClassFileConverter(
-          env, new TranslationEnvironment(options, env), file);
-      converter.setClassPath();
-      return converter.createUnit();
+      ClassFile classFile = ClassFile.create(file);
+      env.fileManager().setLocation(
+          StandardLocation.CLASS_PATH, Collections.singletonList(getClassPathRoot(file, classFile)));
+      return convertClassFile(options, env, file, classFile);
     } catch (IOException e) {
       ErrorUtil.error(e.getMessage());
       return null;
     }
   }
 
-  private ClassFileConverter(JavacEnvironment parserEnv, TranslationEnvironment translationEnv,
-      InputFile file) throws IOException {
-    this.parserEnv = parserEnv;
-    this.translationEnv = translationEnv;
-    this.file = file;
-    this.classFile = ClassFile.create(file);
-    this.typeName = classFile.getFullName();
+  /**
+   * Converts a classfile using an environment whose classpath is already set
+   * to the classfile's root, so that several classfiles can share it.
+   */
+  public static CompilationUnit convertClassFile(
+      Options options, JavacEnvironment env, InputFile file, ClassFile classFile) {
+    ClassFileConverter converter = new ClassFileConverter(
+        env, new TranslationEnvironment(options, env), file, classFile);
+    return converter.createUnit();
   }
 
   /**
-   * Set classpath to the root path of the input file, to support typeElement lookup.
+   * Returns the root path of a classfile, to support typeElement lookup.
    */
-  private void setClassPath() throws IOException {
+  public static File getClassPathRoot(InputFile file, ClassFile classFile) {
     String fullPath = file.getAbsolutePath();
-    String rootPath = fullPath.substring(0, fullPath.lastIndexOf(classFile.getRelativePath()));
-    List<File> classPath = new ArrayList<>();
-    classPath.add(new File(rootPath));
-    parserEnv.fileManager().setLocation(StandardLocation.CLASS_PATH, classPath);
+    return new File(fullPath.substring(0, fullPath.lastIndexOf(classFile.getRelativePath())));
+  }
+
+  private ClassFileConverter(JavacEnvironment parserEnv, TranslationEnvironment translationEnv,
+      InputFile file, ClassFile classFile) {
+    this.parserEnv = parserEnv;
+    this.translationEnv = translationEnv;
+    this.file = file;
+    this.classFile = classFile;
+    this.typeName = classFile.getFullName();
   }
 
   private CompilationUnit createUnit() {
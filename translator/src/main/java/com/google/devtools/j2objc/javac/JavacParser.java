@@ -20,6 +20,7 @@ import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.file.InputFile;
 import com.google.devtools.j2objc.file.RegularInputFile;
 import com.google.devtools.j2objc.pipeline.ProcessingContext;
+import com.google.devtools.j2objc.util.ClassFile;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
@@ -28,18 +29,29 @@ import com.google.devtools.j2objc.util.SourceVersion;
 import com.sun.source.tree.CompilationUnitTree;
 import com.sun.source.util.JavacTask;
 import com.sun.source.util.SourcePositions;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+import com.sun.tools.javac.tree.JCTree.JCClassDecl;
+import com.sun.tools.javac.tree.JCTree.JCCompilationUnit;
+import com.sun.tools.javac.tree.TreeScanner;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.StreamTokenizer;
 import java.io.StringReader;
 import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.ServiceLoader;
+import java.util.Set;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import javax.annotation.processing.Processor;
@@ -59,7 +71,30 @@ import javax.tools.ToolProvider;
  */
 public class JavacParser extends Parser {
 
+  // The file manager shared by the environments this parser creates, and the
+  // paths it was last configured with. Javac caches the package index of each
+  // classpath archive in its file manager, so sharing it avoids reopening and
+  // listing the same jars, such as the boot classpath, for each environment.
   private StandardJavaFileManager fileManager;
+  private List<List<String>> fileManagerPaths;
+  // The version of each archive the file manager has opened, by path.
+  private Map<String, String> fileManagerArchives;
+
+  // After reuseFileManagers(), the file manager of the last parser closed,
+  // which the next parser uses instead of creating one, its charset and the
+  // versions of the archives it has opened.
+  private static boolean reuseFileManagers = false;
+  private static StandardJavaFileManager idleFileManager;
+  private static Charset idleFileManagerCharset;
+  private static Map<String, String> idleFileManagerArchives;
+  // The digests of the current worker request's inputs, by path.
+  private static volatile Map<String, String> inputDigests = Collections.emptyMap();
+
+  // With -Xsingle-pass-processing, the environment that processed annotations
+  // and the units it attributed, by canonical source path, which are
+  // translated without being parsed again.
+  private JavacEnvironment processedEnv;
+  private Map<String, CompilationUnitTree> processedUnits;
 
   public JavacParser(Options options) {
     super(options);
@@ -100,7 +135,12 @@ public class JavacParser extends Parser {
         assert options.translateClassfiles();
         JavacEnvironment parserEnv =
             createEnvironment(Collections.emptyList(), Collections.emptyList(), false);
-        return ClassFileConverter.convertClassFile(options, parserEnv, file);
+        try {
+          return ClassFileConverter.convertClassFile(options, parserEnv, file);
+        } finally {
+          // The converter replaced the shared file manager's classpath.
+          fileManagerPaths = null;
+        }
       }
     } catch (IOException e) {
       ErrorUtil.error(e.getMessage());
@@ -129,20 +169,45 @@ public class JavacParser extends Parser {
   }
 
   private StandardJavaFileManager getFileManager(JavaCompiler compiler,
-      DiagnosticCollector<JavaFileObject> diagnostics) throws IOException {
-    fileManager =
-        compiler.getStandardFileManager(diagnostics, null, options.fileUtil().getCharset());
-    addPaths(StandardLocation.CLASS_PATH, classpathEntries, fileManager);
-    addPaths(StandardLocation.SOURCE_PATH, sourcepathEntries, fileManager);
-    addPaths(StandardLocation.PLATFORM_CLASS_PATH, options.getBootClasspath(), fileManager);
+      boolean processAnnotations) throws IOException {
     List<String> processorPathEntries = options.getProcessorPathEntries();
-    if (!processorPathEntries.isEmpty()) {
-      addPaths(StandardLocation.ANNOTATION_PROCESSOR_PATH, processorPathEntries, fileManager);
+    File outputDirectory = options.fileUtil().getOutputDirectory();
+    List<List<String>> paths = Lists.newArrayList(
+        new ArrayList<>(classpathEntries),
+        new ArrayList<>(sourcepathEntries),
+        new ArrayList<>(options.getBootClasspath()),
+        new ArrayList<>(processorPathEntries),
+        Collections.singletonList(outputDirectory.getPath()));
+    if (fileManager == null) {
+      Charset charset = options.fileUtil().getCharset();
+      fileManager = takeIdleFileManager(charset);
+      if (fileManager == null) {
+        // Diagnostics are reported through each task's collector instead.
+        fileManager = compiler.getStandardFileManager(null, null, charset);
+        fileManagerArchives = new HashMap<>();
+      }
+      fileManager.setLocation(StandardLocation.SOURCE_OUTPUT,
+          Lists.newArrayList(FileUtil.createTempDir("annotations")));
+    } else if (processAnnotations) {
+      // Only collect the sources generated by this processing run.
+      fileManager.setLocation(StandardLocation.SOURCE_OUTPUT,
+          Lists.newArrayList(FileUtil.createTempDir("annotations")));
+    }
+    if (!paths.equals(fileManagerPaths)) {
+      // Archives that were already indexed are reused by the new locations.
+      addPaths(StandardLocation.CLASS_PATH, classpathEntries, fileManager);
+      addPaths(StandardLocation.SOURCE_PATH, sourcepathEntries, fileManager);
+      addPaths(StandardLocation.PLATFORM_CLASS_PATH, options.getBootClasspath(), fileManager);
+      if (!processorPathEntries.isEmpty()) {
+        addPaths(StandardLocation.ANNOTATION_PROCESSOR_PATH, processorPathEntries, fileManager);
+      } else {
+        // Restore the default, in case a reused file manager had a processor path.
+        fileManager.setLocation(StandardLocation.ANNOTATION_PROCESSOR_PATH, null);
+      }
+      fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
+          Lists.newArrayList(outputDirectory));
+      fileManagerPaths = paths;
     }
-    fileManager.setLocation(StandardLocation.CLASS_OUTPUT,
-        Lists.newArrayList(options.fileUtil().getOutputDirectory()));
-    fileManager.setLocation(StandardLocation.SOURCE_OUTPUT,
-        Lists.newArrayList(FileUtil.createTempDir("annotations")));
     return fileManager;
   }
 
@@ -150,7 +215,11 @@ public class JavacParser extends Parser {
       throws IOException {
     List<File> filePaths = new ArrayList<>();
     for (String path : paths) {
-      filePaths.add(new File(path));
+      File file = new File(path);
+      if (file.isFile()) {
+        fileManagerArchives.putIfAbsent(path, archiveVersion(path));
+      }
+      filePaths.add(file);
     }
     fileManager.setLocation(location, filePaths);
   }
@@ -179,7 +248,9 @@ public class JavacParser extends Parser {
       javacOptions.add(explicitProcessors);
     }
     if (processAnnotations) {
-      javacOptions.add("-proc:only");
+      if (!options.singlePassProcessing()) {
+        javacOptions.add("-proc:only");
+      }
     } else {
       javacOptions.add("-proc:none");
     }
@@ -194,8 +265,19 @@ public class JavacParser extends Parser {
   @Override
   public void parseFiles(Collection<String> paths, Handler handler, SourceVersion sourceVersion) {
     List<File> files = new ArrayList<>();
+    List<String> classFilePaths = new ArrayList<>();
     for (String path : paths) {
-      files.add(new File(path));
+      if (options.translateClassfiles() && path.endsWith(".class")) {
+        classFilePaths.add(path);
+      } else if (!convertProcessedUnit(path, handler)) {
+        files.add(new File(path));
+      }
+    }
+    if (!classFilePaths.isEmpty()) {
+      parseClassFiles(classFilePaths, handler);
+    }
+    if (files.isEmpty()) {
+      return;
     }
     try {
       JavacEnvironment env = createEnvironment(files, null, false);
@@ -211,6 +293,7 @@ public class JavacParser extends Parser {
           com.google.devtools.j2objc.ast.CompilationUnit unit = TreeConverter
               .convertCompilationUnit(options, env, ast);
           processDiagnostics(env.diagnostics());
+          releaseTree(ast);
           handler.handleParsedUnit(unit.getSourceFilePath(), unit);
         }
       }
@@ -219,6 +302,92 @@ public class JavacParser extends Parser {
     }
   }
 
+  /**
+   * Converts a source that was attributed when annotations were processed,
+   * returning false if it wasn't.
+   */
+  private boolean convertProcessedUnit(String path, Handler handler) {
+    if (processedUnits == null) {
+      return false;
+    }
+    CompilationUnitTree ast = processedUnits.remove(canonicalPath(new File(path)));
+    if (ast == null) {
+      return false;
+    }
+    CompilationUnit unit = TreeConverter.convertCompilationUnit(options, processedEnv, ast);
+    releaseTree(ast);
+    handler.handleParsedUnit(path, unit);
+    return true;
+  }
+
+  /**
+   * Drops the member trees of a converted unit. javac keeps each class tree
+   * reachable from its symbol until the environment is closed, but after
+   * attribution only the symbols are needed to convert the remaining units.
+   */
+  private static void releaseTree(CompilationUnitTree ast) {
+    JCCompilationUnit unit = (JCCompilationUnit) ast;
+    new TreeScanner() {
+      @Override
+      public void visitClassDef(JCClassDecl tree) {
+        super.visitClassDef(tree);
+        tree.defs = com.sun.tools.javac.util.List.nil();
+      }
+    }.scan(unit.getTypeDecls());
+    unit.docComments = null;
+  }
+
+  private static String canonicalPath(File file) {
+    try {
+      return file.getCanonicalPath();
+    } catch (IOException e) {
+      return file.getAbsolutePath();
+    }
+  }
+
+  /**
+   * Converts classfiles using one javac environment for each classpath root,
+   * such as the directory a jar was extracted to, instead of one per file.
+   */
+  private void parseClassFiles(List<String> paths, Handler handler) {
+    Map<File, Map<InputFile, ClassFile>> classFilesByRoot = new LinkedHashMap<>();
+    for (String path : paths) {
+      InputFile file = new RegularInputFile(path);
+      try {
+        ClassFile classFile = ClassFile.create(file);
+        classFilesByRoot.computeIfAbsent(
+            ClassFileConverter.getClassPathRoot(file, classFile), root -> new LinkedHashMap<>())
+            .put(file, classFile);
+      } catch (IOException e) {
+        ErrorUtil.error(e.getMessage());
+      }
+    }
+    for (Map.Entry<File, Map<InputFile, ClassFile>> entry : classFilesByRoot.entrySet()) {
+      try {
+        JavacEnvironment env =
+            createEnvironment(Collections.emptyList(), Collections.emptyList(), false);
+        File root = entry.getKey();
+        if (root.isFile()) {
+          fileManagerArchives.putIfAbsent(root.getPath(), archiveVersion(root.getPath()));
+        }
+        env.fileManager().setLocation(StandardLocation.CLASS_PATH, Collections.singletonList(root));
+        for (Map.Entry<InputFile, ClassFile> classFile : entry.getValue().entrySet()) {
+          InputFile file = classFile.getKey();
+          CompilationUnit unit =
+              ClassFileConverter.convertClassFile(options, env, file, classFile.getValue());
+          if (unit != null) {
+            handler.handleParsedUnit(file.getAbsolutePath(), unit);
+          }
+        }
+      } catch (IOException e) {
+        ErrorUtil.fatalError(e, "javac file manager error");
+      } finally {
+        // The classpath was set to the root, so restore it for the next environment.
+        fileManagerPaths = null;
+      }
+    }
+  }
+
   /**
    * To allow Java 9 libraries like GSON to be transpiled using -source 1.8, stub out
    * the module-info source. This creates an empty .o file, like package-info.java
@@ -261,7 +430,7 @@ public class JavacParser extends Parser {
       boolean processAnnotations) throws IOException {
     JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
     DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<>();
-    StandardJavaFileManager fileManager = getFileManager(compiler, diagnostics);
+    StandardJavaFileManager fileManager = getFileManager(compiler, processAnnotations);
     List<String> javacOptions = getJavacOptions(processAnnotations);
     if (fileObjects == null) {
       fileObjects = new ArrayList<>();
@@ -311,9 +480,32 @@ public class JavacParser extends Parser {
       }
       try {
         JavacEnvironment env = createEnvironment(inputFiles, null, true);
+        Set<CompilationUnitTree> analyzedUnits = new LinkedHashSet<>();
+        if (options.singlePassProcessing()) {
+          // Collect the original and generated units attributed after the
+          // last processing round.
+          env.task().addTaskListener(new TaskListener() {
+            @Override
+            public void started(TaskEvent e) {}
+
+            @Override
+            public void finished(TaskEvent e) {
+              if (e.getKind() == TaskEvent.Kind.ANALYZE) {
+                analyzedUnits.add(e.getCompilationUnit());
+              }
+            }
+          });
+        }
         env.task().parse();
         env.task().analyze();
         processDiagnostics(env.diagnostics());
+        if (options.singlePassProcessing() && ErrorUtil.errorCount() == 0) {
+          processedEnv = env;
+          processedUnits = new HashMap<>();
+          for (CompilationUnitTree unit : analyzedUnits) {
+            processedUnits.put(canonicalPath(new File(unit.getSourceFile().toUri())), unit);
+          }
+        }
         // The source output directory is created and set in createEnvironment().
         File sourceOutputDirectory =
             env.fileManager().getLocation(StandardLocation.SOURCE_OUTPUT).iterator().next();
@@ -327,13 +519,102 @@ public class JavacParser extends Parser {
     return new JavacProcessingResult(generatedInputs, null);
   }
 
+  @Override
+  public void prependSourcepathEntry(String entry) {
+    super.prependSourcepathEntry(entry);
+    // The processed units were attributed against the original sources, such
+    // as ones that have since been stripped of J2ObjCIncompatible code.
+    processedEnv = null;
+    processedUnits = null;
+  }
+
+  /**
+   * Keeps the file manager of a closed parser open for the next parser to use,
+   * as when a persistent worker parses the sources of one request after
+   * another. Javac indexes each classpath archive in its file manager, so
+   * requests that share jars, such as the boot classpath, only index them once.
+   */
+  public static synchronized void reuseFileManagers() {
+    reuseFileManagers = true;
+  }
+
+  /**
+   * Sets the digests of the current worker request's inputs, by path. Javac
+   * caches an archive's contents by path, so a kept file manager is only
+   * reused if the archives it has opened are unchanged. Archives that aren't
+   * inputs are compared by size and modification time instead.
+   */
+  public static void setInputDigests(Map<String, String> digests) {
+    inputDigests = digests;
+  }
+
+  private static String archiveVersion(String path) {
+    String digest = inputDigests.get(path);
+    if (digest != null) {
+      return digest;
+    }
+    File file = new File(path);
+    return file.length() + ":" + file.lastModified();
+  }
+
+  // Takes the kept file manager, unless it has a different charset or an
+  // archive it has opened has changed since.
+  private StandardJavaFileManager takeIdleFileManager(Charset charset) throws IOException {
+    StandardJavaFileManager result;
+    Map<String, String> archives;
+    boolean reusable;
+    synchronized (JavacParser.class) {
+      result = idleFileManager;
+      archives = idleFileManagerArchives;
+      reusable = result != null && idleFileManagerCharset.equals(charset);
+      idleFileManager = null;
+      idleFileManagerCharset = null;
+      idleFileManagerArchives = null;
+    }
+    if (result == null) {
+      return null;
+    }
+    if (reusable) {
+      for (Map.Entry<String, String> entry : archives.entrySet()) {
+        if (!entry.getValue().equals(archiveVersion(entry.getKey()))) {
+          reusable = false;
+          break;
+        }
+      }
+    }
+    if (!reusable) {
+      result.close();
+      return null;
+    }
+    fileManagerArchives = archives;
+    return result;
+  }
+
+  // Returns true if the file manager is kept for the next parser, instead of
+  // being closed. Only one is kept, in case parsers run in parallel.
+  private static synchronized boolean keepIdleFileManager(
+      StandardJavaFileManager fileManager, Charset charset, Map<String, String> archives) {
+    if (!reuseFileManagers || idleFileManager != null) {
+      return false;
+    }
+    idleFileManager = fileManager;
+    idleFileManagerCharset = charset;
+    idleFileManagerArchives = archives;
+    return true;
+  }
+
   @Override
   public void close() throws IOException {
     if (fileManager != null) {
       try {
-        fileManager.close();
+        if (!keepIdleFileManager(
+            fileManager, options.fileUtil().getCharset(), fileManagerArchives)) {
+          fileManager.close();
+        }
       } finally {
         fileManager = null;
+        fileManagerPaths = null;
+        fileManagerArchives = null;
       }
     }
   }
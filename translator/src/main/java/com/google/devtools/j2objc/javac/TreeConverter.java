@@ -172,6 +172,7 @@ import com.sun.source.util.SourcePositions;
 import com.sun.source.util.TreePath;
 import com.sun.source.util.Trees;
 import com.sun.tools.javac.code.Flags;
+import com.sun.tools.javac.code.Symbol;
 import com.sun.tools.javac.code.Symbol.VarSymbol;
 import com.sun.tools.javac.code.TypeTag;
 import com.sun.tools.javac.code.Types;
@@ -188,9 +189,13 @@ import com.sun.tools.javac.tree.JCTree.JCModifiers;
 import com.sun.tools.javac.tree.JCTree.JCNewClass;
 import com.sun.tools.javac.tree.JCTree.JCVariableDecl;
 import com.sun.tools.javac.tree.JCTree.Tag;
+import com.sun.tools.javac.tree.TreeInfo;
 import com.sun.tools.javac.util.Position;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import javax.lang.model.element.AnnotationMirror;
 import javax.lang.model.element.Element;
@@ -212,6 +217,9 @@ public class TreeConverter {
   private CompilationUnit newUnit;
   private final Trees trees;
   private final SourcePositions sourcePositions;
+  // The javac trees being converted, innermost first. Tree paths are only
+  // built from these when javac needs one, instead of one per converted node.
+  private final Deque<Tree> ancestors = new ArrayDeque<>();
 
   public static CompilationUnit convertCompilationUnit(
       Options options, JavacEnvironment env, CompilationUnitTree javacUnit) {
@@ -223,13 +231,12 @@ public class TreeConverter {
       String mainTypeName = FileUtil.getMainTypeName(sourceFile);
       TranslationEnvironment translationEnv = new TranslationEnvironment(options, env);
       converter.newUnit = new CompilationUnit(translationEnv, sourceFilePath, mainTypeName, source);
-      TreePath path = new TreePath(javacUnit);
-      converter.newUnit.setPackage(converter.convertPackage(path));
+      converter.newUnit.setPackage(converter.convertPackage());
       for (Tree type : javacUnit.getTypeDecls()) {
         if (type.getKind() == Kind.IMPORT) {
           continue;
         }
-        TreeNode newNode = converter.convert(type, path);
+        TreeNode newNode = converter.convert(type);
         if (newNode.getKind() != TreeNode.Kind.EMPTY_STATEMENT) {
           converter.newUnit.addType((AbstractTypeDeclaration) newNode);
         }
@@ -254,11 +261,17 @@ public class TreeConverter {
     sourcePositions = trees.getSourcePositions();
   }
 
-  private TreeNode convert(Tree node, TreePath parent) {
+  private TreeNode convert(Tree node) {
     if (node == null) {
       return null;
     }
-    TreeNode newNode = convertInner(node, parent).setPosition(getPosition(node));
+    ancestors.push(node);
+    TreeNode newNode;
+    try {
+      newNode = convertInner(node).setPosition(getPosition(node));
+    } finally {
+      ancestors.pop();
+    }
     if (newNode instanceof Expression) {
       copyConstantValue(node, (Expression) newNode);
     }
@@ -276,110 +289,110 @@ public class TreeConverter {
   }
 
   @SuppressWarnings("fallthrough")
-  private TreeNode convertInner(Tree javacNode, TreePath parent) {
+  private TreeNode convertInner(Tree javacNode) {
     switch (javacNode.getKind()) {
       case ANNOTATION:
       case TYPE_ANNOTATION:
-        return convertAnnotation((AnnotationTree) javacNode, parent);
+        return convertAnnotation((AnnotationTree) javacNode);
       case ANNOTATION_TYPE:
-        return convertAnnotationTypeDeclaration((ClassTree) javacNode, parent);
+        return convertAnnotationTypeDeclaration((ClassTree) javacNode);
       case ARRAY_ACCESS:
-        return convertArrayAccess((ArrayAccessTree) javacNode, parent);
+        return convertArrayAccess((ArrayAccessTree) javacNode);
       case ARRAY_TYPE:
-        return convertArrayType((ArrayTypeTree) javacNode, parent);
+        return convertArrayType((ArrayTypeTree) javacNode);
       case ASSERT:
-        return convertAssert((AssertTree) javacNode, parent);
+        return convertAssert((AssertTree) javacNode);
       case ASSIGNMENT:
-        return convertAssignment((AssignmentTree) javacNode, parent);
+        return convertAssignment((AssignmentTree) javacNode);
       case BLOCK:
-        return convertBlock((BlockTree) javacNode, parent);
+        return convertBlock((BlockTree) javacNode);
       case BREAK:
         return convertBreakStatement((BreakTree) javacNode);
       case CASE:
-        return convertCase((CaseTree) javacNode, parent);
+        return convertCase((CaseTree) javacNode);
       case CATCH:
-        return convertCatch((CatchTree) javacNode, parent);
+        return convertCatch((CatchTree) javacNode);
       case CLASS:
-        return convertClassDeclaration((ClassTree) javacNode, parent);
+        return convertClassDeclaration((ClassTree) javacNode);
       case COMPILATION_UNIT:
         throw new AssertionError(
             "CompilationUnit must be converted using convertCompilationUnit()");
       case CONDITIONAL_EXPRESSION:
-        return convertConditionalExpression((ConditionalExpressionTree) javacNode, parent);
+        return convertConditionalExpression((ConditionalExpressionTree) javacNode);
       case CONTINUE:
         return convertContinueStatement((ContinueTree) javacNode);
       case DO_WHILE_LOOP:
-        return convertDoStatement((DoWhileLoopTree) javacNode, parent);
+        return convertDoStatement((DoWhileLoopTree) javacNode);
       case EMPTY_STATEMENT:
         return new EmptyStatement();
       case ENHANCED_FOR_LOOP:
-        return convertEnhancedForStatement((EnhancedForLoopTree) javacNode, parent);
+        return convertEnhancedForStatement((EnhancedForLoopTree) javacNode);
       case ENUM:
-        return convertEnum((ClassTree) javacNode, parent);
+        return convertEnum((ClassTree) javacNode);
       case EXPRESSION_STATEMENT:
-        return convertExpressionStatement((ExpressionStatementTree) javacNode, parent);
+        return convertExpressionStatement((ExpressionStatementTree) javacNode);
       case FOR_LOOP:
-        return convertForLoop((ForLoopTree) javacNode, parent);
+        return convertForLoop((ForLoopTree) javacNode);
       case IDENTIFIER:
-        return convertIdent((IdentifierTree) javacNode, parent);
+        return convertIdent((IdentifierTree) javacNode);
       case INSTANCE_OF:
-        return convertInstanceOf((InstanceOfTree) javacNode, parent);
+        return convertInstanceOf((InstanceOfTree) javacNode);
       case INTERFACE:
-        return convertClassDeclaration((ClassTree) javacNode, parent);
+        return convertClassDeclaration((ClassTree) javacNode);
       case IF:
-        return convertIf((IfTree) javacNode, parent);
+        return convertIf((IfTree) javacNode);
       case LABELED_STATEMENT:
-        return convertLabeledStatement((LabeledStatementTree) javacNode, parent);
+        return convertLabeledStatement((LabeledStatementTree) javacNode);
       case LAMBDA_EXPRESSION:
-        return convertLambda((LambdaExpressionTree) javacNode, parent);
+        return convertLambda((LambdaExpressionTree) javacNode);
       case MEMBER_REFERENCE:
-        return convertMemberReference((MemberReferenceTree) javacNode, parent);
+        return convertMemberReference((MemberReferenceTree) javacNode);
       case MEMBER_SELECT:
-        return convertFieldAccess((MemberSelectTree) javacNode, parent);
+        return convertFieldAccess((MemberSelectTree) javacNode);
       case METHOD:
-        return convertMethodDeclaration((MethodTree) javacNode, parent);
+        return convertMethodDeclaration((MethodTree) javacNode);
       case METHOD_INVOCATION:
-        return convertMethodInvocation((MethodInvocationTree) javacNode, parent);
+        return convertMethodInvocation((MethodInvocationTree) javacNode);
       case NEW_ARRAY:
-        return convertNewArray((NewArrayTree) javacNode, parent);
+        return convertNewArray((NewArrayTree) javacNode);
       case NEW_CLASS:
-        return convertNewClass((NewClassTree) javacNode, parent);
+        return convertNewClass((NewClassTree) javacNode);
       case PARAMETERIZED_TYPE:
-        return convertTypeApply((ParameterizedTypeTree) javacNode, parent);
+        return convertTypeApply((ParameterizedTypeTree) javacNode);
       case PARENTHESIZED:
-        return convertParens((ParenthesizedTree) javacNode, parent);
+        return convertParens((ParenthesizedTree) javacNode);
       case PRIMITIVE_TYPE:
-        return convertPrimitiveType((PrimitiveTypeTree) javacNode, parent);
+        return convertPrimitiveType((PrimitiveTypeTree) javacNode);
       case RETURN:
-        return convertReturn((ReturnTree) javacNode, parent);
+        return convertReturn((ReturnTree) javacNode);
       case SWITCH:
-        return convertSwitch((SwitchTree) javacNode, parent);
+        return convertSwitch((SwitchTree) javacNode);
       case THROW:
-        return convertThrow((ThrowTree) javacNode, parent);
+        return convertThrow((ThrowTree) javacNode);
       case TRY:
-        return convertTry((TryTree) javacNode, parent);
+        return convertTry((TryTree) javacNode);
       case TYPE_CAST:
-        return convertTypeCast((TypeCastTree) javacNode, parent);
+        return convertTypeCast((TypeCastTree) javacNode);
       case VARIABLE:
-        return convertVariableDeclaration((VariableTree) javacNode, parent);
+        return convertVariableDeclaration((VariableTree) javacNode);
       case WHILE_LOOP:
-        return convertWhileLoop((WhileLoopTree) javacNode, parent);
+        return convertWhileLoop((WhileLoopTree) javacNode);
 
       case BOOLEAN_LITERAL:
-        return convertBooleanLiteral((LiteralTree) javacNode, parent);
+        return convertBooleanLiteral((LiteralTree) javacNode);
       case CHAR_LITERAL:
-        return convertCharLiteral((LiteralTree) javacNode, parent);
+        return convertCharLiteral((LiteralTree) javacNode);
       case DOUBLE_LITERAL:
       case FLOAT_LITERAL:
       case INT_LITERAL:
       case LONG_LITERAL:
-        return convertNumberLiteral((LiteralTree) javacNode, parent);
+        return convertNumberLiteral((LiteralTree) javacNode);
       case STRING_LITERAL:
-        return convertStringLiteral((LiteralTree) javacNode, parent);
+        return convertStringLiteral((LiteralTree) javacNode);
       case SYNCHRONIZED:
-        return convertSynchronized((SynchronizedTree) javacNode, parent);
+        return convertSynchronized((SynchronizedTree) javacNode);
       case NULL_LITERAL:
-        return new NullLiteral(getTypeMirror(getTreePath(parent, javacNode)));
+        return new NullLiteral(getTypeMirror(javacNode));
 
       case AND:
       case CONDITIONAL_AND:
@@ -400,7 +413,7 @@ public class TreeConverter {
       case RIGHT_SHIFT:
       case UNSIGNED_RIGHT_SHIFT:
       case XOR:
-        return convertBinary((BinaryTree) javacNode, parent);
+        return convertBinary((BinaryTree) javacNode);
 
       case BITWISE_COMPLEMENT:
       case LOGICAL_COMPLEMENT:
@@ -408,11 +421,11 @@ public class TreeConverter {
       case PREFIX_INCREMENT:
       case UNARY_MINUS:
       case UNARY_PLUS:
-        return convertPrefixExpr((UnaryTree) javacNode, parent);
+        return convertPrefixExpr((UnaryTree) javacNode);
 
       case POSTFIX_DECREMENT:
       case POSTFIX_INCREMENT:
-        return convertPostExpr((UnaryTree) javacNode, parent);
+        return convertPostExpr((UnaryTree) javacNode);
 
       case AND_ASSIGNMENT:
       case DIVIDE_ASSIGNMENT:
@@ -425,7 +438,7 @@ public class TreeConverter {
       case RIGHT_SHIFT_ASSIGNMENT:
       case UNSIGNED_RIGHT_SHIFT_ASSIGNMENT:
       case XOR_ASSIGNMENT:
-        return convertAssignOp((CompoundAssignmentTree) javacNode, parent);
+        return convertAssignOp((CompoundAssignmentTree) javacNode);
 
       case OTHER:
         {
@@ -433,7 +446,7 @@ public class TreeConverter {
             // Skip javac's nullchk operators, since j2objc provides its own.
             // TODO(tball): convert to nil_chk() functions in this class, to
             // always check references that javac flagged?
-            return convert(((UnaryTree) javacNode).getExpression(), getTreePath(parent, javacNode));
+            return convert(((UnaryTree) javacNode).getExpression());
           }
           throw new AssertionError("Unknown OTHER node, tag: " + ((JCTree) javacNode).getTag());
         }
@@ -443,7 +456,7 @@ public class TreeConverter {
     }
   }
 
-  private TreeNode convertAnnotation(AnnotationTree node, TreePath parent) {
+  private TreeNode convertAnnotation(AnnotationTree node) {
     List<? extends ExpressionTree> args = node.getArguments();
     String annotationName = node.getAnnotationType().toString();
     AnnotationMirror annotationMirror = ((JCAnnotation) node).attribute;
@@ -451,7 +464,6 @@ public class TreeConverter {
         annotationName.equals(Property.class.getSimpleName())
             || annotationName.equals(Property.class.getName());
     Annotation newNode;
-    TreePath path = getTreePath(parent, node);
     if (isPropertyAnnotation) {
       newNode = new PropertyAnnotation().setAnnotationMirror(annotationMirror);
       if (!args.isEmpty()) {
@@ -466,114 +478,103 @@ public class TreeConverter {
       ExpressionTree expression = assign.getExpression();
       newNode =
           new SingleMemberAnnotation()
-              .setValue((Expression) convert(expression, getTreePath(path, assign)));
+              .setValue((Expression) convert(expression));
     } else {
       NormalAnnotation normalAnn = new NormalAnnotation();
       for (ExpressionTree obj : node.getArguments()) {
         AssignmentTree assign = (AssignmentTree) obj;
         ExpressionTree variable = assign.getVariable();
         ExpressionTree expression = assign.getExpression();
-        TreePath assignPath = getTreePath(path, assign);
-        TreePath variablePath = getTreePath(assignPath, variable);
         SimpleName name =
             convertSimpleName(
-                getElement(variablePath), getTypeMirror(variablePath), getPosition(variable));
+                getElement(variable), getTypeMirror(variable), getPosition(variable));
         MemberValuePair memberPair =
             new MemberValuePair()
                 .setName(name)
-                .setValue((Expression) convert(expression, assignPath));
+                .setValue((Expression) convert(expression));
         normalAnn.addValue(memberPair);
       }
       newNode = normalAnn;
     }
     return newNode
         .setAnnotationMirror(annotationMirror)
-        .setTypeName((Name) convert(node.getAnnotationType(), path));
+        .setTypeName((Name) convert(node.getAnnotationType()));
   }
 
-  private List<Annotation> convertAnnotations(ModifiersTree modifiers, TreePath parent) {
+  private List<Annotation> convertAnnotations(ModifiersTree modifiers) {
     List<Annotation> annotations = new ArrayList<>();
-    TreePath path = getTreePath(parent, modifiers);
     for (AnnotationTree annotation : modifiers.getAnnotations()) {
-      annotations.add((Annotation) convert(annotation, path));
+      annotations.add((Annotation) convert(annotation));
     }
     return annotations;
   }
 
-  private TreeNode convertAnnotationTypeDeclaration(ClassTree node, TreePath parent) {
+  private TreeNode convertAnnotationTypeDeclaration(ClassTree node) {
     AnnotationTypeDeclaration newNode = new AnnotationTypeDeclaration();
-    TreePath path = getTreePath(parent, node);
-    Element element = getElement(path);
-    convertBodyDeclaration(node, path, node.getModifiers(), newNode);
+    Element element = getElement(node);
+    convertBodyDeclaration(node, node.getModifiers(), newNode);
     for (Tree bodyDecl : node.getMembers()) {
       if (bodyDecl.getKind() == Kind.METHOD) {
         MethodTree methodTree = (MethodTree) bodyDecl;
-        TreePath methodPath = getTreePath(path, methodTree);
-        ExecutableElement methodElement = (ExecutableElement) getElement(methodPath);
+        ExecutableElement methodElement = (ExecutableElement) getElement(methodTree);
         Tree defaultValue = methodTree.getDefaultValue();
         ModifiersTree modifiers = methodTree.getModifiers();
         AnnotationTypeMemberDeclaration newMember =
             new AnnotationTypeMemberDeclaration()
-                .setDefault((Expression) convert(defaultValue, methodPath))
+                .setDefault((Expression) convert(defaultValue))
                 .setExecutableElement(methodElement);
         newMember
             .setModifiers((int) ((JCModifiers) modifiers).flags)
-            .setAnnotations(convertAnnotations(modifiers, getTreePath(methodPath, modifiers)))
-            .setJavadoc((Javadoc) getAssociatedJavaDoc(methodTree, methodPath));
+            .setAnnotations(convertAnnotations(modifiers))
+            .setJavadoc((Javadoc) getAssociatedJavaDoc(methodTree));
         newNode.addBodyDeclaration(newMember);
       } else {
-        newNode.addBodyDeclaration((BodyDeclaration) convert(bodyDecl, path));
+        newNode.addBodyDeclaration((BodyDeclaration) convert(bodyDecl));
       }
     }
     return newNode
-        .setName(convertSimpleName(element, getTypeMirror(path), getNamePosition(node)))
+        .setName(convertSimpleName(element, getTypeMirror(node), getNamePosition(node)))
         .setTypeElement((TypeElement) element);
   }
 
-  private TreeNode convertArrayAccess(ArrayAccessTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertArrayAccess(ArrayAccessTree node) {
     return new ArrayAccess()
-        .setArray((Expression) convert(node.getExpression(), path))
-        .setIndex((Expression) convert(node.getIndex(), path));
+        .setArray((Expression) convert(node.getExpression()))
+        .setIndex((Expression) convert(node.getIndex()));
   }
 
-  private TreeNode convertArrayType(ArrayTypeTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertArrayType(ArrayTypeTree node) {
     ArrayType newNode = new ArrayType();
-    Type componentType = Type.newType(getTypeMirror(getTreePath(path, node.getType())));
-    return newNode.setComponentType(componentType).setTypeMirror(getTypeMirror(path));
+    Type componentType = Type.newType(getTypeMirror(node.getType()));
+    return newNode.setComponentType(componentType).setTypeMirror(getTypeMirror(node));
   }
 
-  private TreeNode convertAssert(AssertTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertAssert(AssertTree node) {
     return new AssertStatement()
-        .setExpression((Expression) convert(node.getCondition(), path))
-        .setMessage((Expression) convert(node.getDetail(), path));
+        .setExpression((Expression) convert(node.getCondition()))
+        .setMessage((Expression) convert(node.getDetail()));
   }
 
-  private TreeNode convertAssignment(AssignmentTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertAssignment(AssignmentTree node) {
     Assignment newNode = new Assignment();
     return newNode
         .setOperator(Assignment.Operator.ASSIGN)
-        .setLeftHandSide((Expression) convert(node.getVariable(), path))
-        .setRightHandSide((Expression) convert(node.getExpression(), path));
+        .setLeftHandSide((Expression) convert(node.getVariable()))
+        .setRightHandSide((Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertAssignOp(CompoundAssignmentTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertAssignOp(CompoundAssignmentTree node) {
     Assignment newNode = new Assignment();
     return newNode
         .setOperator(Assignment.Operator.from(node.getKind()))
-        .setLeftHandSide((Expression) convert(node.getVariable(), path))
-        .setRightHandSide((Expression) convert(node.getExpression(), path));
+        .setLeftHandSide((Expression) convert(node.getVariable()))
+        .setRightHandSide((Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertBinary(BinaryTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertBinary(BinaryTree node) {
     InfixExpression newNode = new InfixExpression();
     newNode
-        .setTypeMirror(getTypeMirror(path))
+        .setTypeMirror(getTypeMirror(node))
         .setOperator(InfixExpression.Operator.from(node.getKind()));
 
     // Flatten this tree to avoid stack overflow with very deep trees. This
@@ -599,16 +600,15 @@ public class TreeConverter {
           continue;
         }
       }
-      newNode.addOperand((Expression) convert(child, path));
+      newNode.addOperand((Expression) convert(child));
     }
     return newNode;
   }
 
-  private TreeNode convertBlock(BlockTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertBlock(BlockTree node) {
     Block newNode = new Block();
     for (StatementTree stmt : node.getStatements()) {
-      TreeNode tree = convert(stmt, path);
+      TreeNode tree = convert(stmt);
       if (tree instanceof AbstractTypeDeclaration) {
         tree = new TypeDeclarationStatement().setDeclaration((AbstractTypeDeclaration) tree);
       }
@@ -619,18 +619,16 @@ public class TreeConverter {
 
   private TreeNode convertBodyDeclaration(
       Tree node,
-      TreePath parent,
       ModifiersTree modifiers,
       BodyDeclaration newNode) {
-    TreePath path = getTreePath(parent, node);
     return newNode
         .setModifiers((int) ((JCModifiers) modifiers).flags)
-        .setAnnotations(convertAnnotations(modifiers, path))
-        .setJavadoc((Javadoc) getAssociatedJavaDoc(node, path));
+        .setAnnotations(convertAnnotations(modifiers))
+        .setJavadoc((Javadoc) getAssociatedJavaDoc(node));
   }
 
-  private TreeNode convertBooleanLiteral(LiteralTree node, TreePath parent) {
-    return new BooleanLiteral((Boolean) node.getValue(), getTypeMirror(getTreePath(parent, node)));
+  private TreeNode convertBooleanLiteral(LiteralTree node) {
+    return new BooleanLiteral((Boolean) node.getValue(), getTypeMirror(node));
   }
 
   private TreeNode convertBreakStatement(BreakTree node) {
@@ -643,45 +641,43 @@ public class TreeConverter {
     return newNode;
   }
 
-  private TreeNode convertCase(CaseTree node, TreePath parent) {
+  private TreeNode convertCase(CaseTree node) {
     // Case statements are converted in convertSwitch().
     SwitchCase newNode = new SwitchCase();
     ExpressionTree expressionTree = node.getExpression();
     if (expressionTree != null) {
-      newNode.setExpression((Expression) convert(expressionTree, getTreePath(parent, node)));
+      newNode.setExpression((Expression) convert(expressionTree));
     } else {
       newNode.setIsDefault(true);
     }
     return newNode;
   }
 
-  private TreeNode convertCatch(CatchTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertCatch(CatchTree node) {
     return new CatchClause()
-        .setException((SingleVariableDeclaration) convert(node.getParameter(), path))
-        .setBody((Block) convert(node.getBlock(), path));
+        .setException((SingleVariableDeclaration) convert(node.getParameter()))
+        .setBody((Block) convert(node.getBlock()));
   }
 
-  private TreeNode convertCharLiteral(LiteralTree node, TreePath parent) {
+  private TreeNode convertCharLiteral(LiteralTree node) {
     return new CharacterLiteral(
-        (Character) node.getValue(), getTypeMirror(getTreePath(parent, node)));
+        (Character) node.getValue(), getTypeMirror(node));
   }
 
-  private TreeNode convertClassDeclaration(ClassTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    TypeElement element = (TypeElement) getElement(path);
+  private TreeNode convertClassDeclaration(ClassTree node) {
+    TypeElement element = (TypeElement) getElement(node);
     // javac defines all type declarations with JCClassDecl, so differentiate here
     // to support our different declaration nodes.
     if (element.getKind() == ElementKind.ANNOTATION_TYPE) {
       throw new AssertionError("Annotation type declaration tree conversion not implemented");
     }
 
-    TypeDeclaration newNode = convertClassDeclarationHelper(node, parent);
+    TypeDeclaration newNode = convertClassDeclarationHelper(node);
 
     newNode.setInterface(
         node.getKind() == Kind.INTERFACE || node.getKind() == Kind.ANNOTATION_TYPE);
     if (ElementUtil.isAnonymous(element)) {
-      TypeMirror classType = getTypeMirror(path);
+      TypeMirror classType = getTypeMirror(node);
       if (!classType.getAnnotationMirrors().isEmpty()) {
         newUnit.getEnv().elementUtil().mapElementType(element, classType);
       } else {
@@ -689,9 +685,9 @@ public class TreeConverter {
         // so check to see if a mutated type that has them is necessary.
         GeneratedTypeElement newElement = GeneratedTypeElement.mutableCopy(element);
         boolean annotationFound =
-            copyAnnotations(node.getExtendsClause(), path, newNode, newElement);
+            copyAnnotations(node.getExtendsClause(), newNode, newElement);
         for (Tree clause : node.getImplementsClause()) {
-          annotationFound |= copyAnnotations(clause, path, newNode, newElement);
+          annotationFound |= copyAnnotations(clause, newNode, newElement);
         }
         if (annotationFound) {
           newUnit.getEnv().elementUtil().mapElementType(element, newElement.asType());
@@ -703,14 +699,14 @@ public class TreeConverter {
 
   // Copies annotations from tree to new node, returns true if any annotations were copied.
   private boolean copyAnnotations(
-      Tree clause, TreePath path, TypeDeclaration newNode, GeneratedTypeElement newElement) {
+      Tree clause, TypeDeclaration newNode, GeneratedTypeElement newElement) {
     if (clause == null) {
       return false;
     }
     boolean annotationFound = false;
     if (clause.getKind() == Kind.ANNOTATED_TYPE) {
       for (AnnotationTree annTree : ((AnnotatedTypeTree) clause).getAnnotations()) {
-        Annotation ann = (Annotation) convert(annTree, getTreePath(path, annTree));
+        Annotation ann = (Annotation) convert(annTree);
         newNode.addAnnotation(ann);
         newElement.addAnnotationMirror(ann.getAnnotationMirror());
         annotationFound = true;
@@ -719,14 +715,13 @@ public class TreeConverter {
     return annotationFound;
   }
 
-  private TypeDeclaration convertClassDeclarationHelper(ClassTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TypeDeclaration convertClassDeclarationHelper(ClassTree node) {
     TypeDeclaration newNode = new TypeDeclaration();
-    TypeElement element = (TypeElement) getElement(path);
-    convertBodyDeclaration(node, parent, node.getModifiers(), newNode);
+    TypeElement element = (TypeElement) getElement(node);
+    convertBodyDeclaration(node, node.getModifiers(), newNode);
     List<BodyDeclaration> bodyDeclarations = newNode.getBodyDeclarations();
     for (Tree bodyDecl : node.getMembers()) {
-      Object member = convert(bodyDecl, path);
+      Object member = convert(bodyDecl);
       if (member instanceof BodyDeclaration) { // Not true for enum constants.
         bodyDeclarations.add((BodyDeclaration) member);
       } else if (member instanceof Block) {
@@ -735,18 +730,17 @@ public class TreeConverter {
         bodyDeclarations.add(new Initializer(block, javacBlock.isStatic()));
       }
     }
-    newNode.setName(convertSimpleName(element, getTypeMirror(path), getNamePosition(node)));
+    newNode.setName(convertSimpleName(element, getTypeMirror(node), getNamePosition(node)));
     newNode.setTypeElement(element);
     return newNode;
   }
 
-  private TreeNode convertConditionalExpression(ConditionalExpressionTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertConditionalExpression(ConditionalExpressionTree node) {
     return new ConditionalExpression()
-        .setTypeMirror(getTypeMirror(path))
-        .setExpression((Expression) convert(node.getCondition(), path))
-        .setThenExpression((Expression) convert(node.getTrueExpression(), path))
-        .setElseExpression((Expression) convert(node.getFalseExpression(), path));
+        .setTypeMirror(getTypeMirror(node))
+        .setExpression((Expression) convert(node.getCondition()))
+        .setThenExpression((Expression) convert(node.getTrueExpression()))
+        .setElseExpression((Expression) convert(node.getFalseExpression()));
   }
 
   private TreeNode convertContinueStatement(ContinueTree node) {
@@ -759,37 +753,34 @@ public class TreeConverter {
     return newNode;
   }
 
-  private TreeNode convertDoStatement(DoWhileLoopTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertDoStatement(DoWhileLoopTree node) {
     return new DoStatement()
-        .setExpression(convertWithoutParens(node.getCondition(), path))
-        .setBody((Statement) convert(node.getStatement(), path));
+        .setExpression(convertWithoutParens(node.getCondition()))
+        .setBody((Statement) convert(node.getStatement()));
   }
 
-  private TreeNode convertEnhancedForStatement(EnhancedForLoopTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertEnhancedForStatement(EnhancedForLoopTree node) {
     return new EnhancedForStatement()
         .setParameter(
             (SingleVariableDeclaration)
-                convertSingleVariable(node.getVariable(), path).setPosition(getPosition(node)))
-        .setExpression((Expression) convert(node.getExpression(), path))
-        .setBody((Statement) convert(node.getStatement(), path));
+                convertSingleVariable(node.getVariable()).setPosition(getPosition(node)))
+        .setExpression((Expression) convert(node.getExpression()))
+        .setBody((Statement) convert(node.getStatement()));
   }
 
-  private TreeNode convertEnum(ClassTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    TypeElement element = (TypeElement) getElement(path);
+  private TreeNode convertEnum(ClassTree node) {
+    TypeElement element = (TypeElement) getElement(node);
     if (ElementUtil.isAnonymous(element)) {
-      return convertClassDeclaration(node, parent).setPosition(getPosition(node));
+      return convertClassDeclaration(node).setPosition(getPosition(node));
     }
     EnumDeclaration newNode = new EnumDeclaration();
-    convertBodyDeclaration(node, parent, node.getModifiers(), newNode);
+    convertBodyDeclaration(node, node.getModifiers(), newNode);
     newNode
-        .setName(convertSimpleName(element, getTypeMirror(path), getNamePosition(node)))
+        .setName(convertSimpleName(element, getTypeMirror(node), getNamePosition(node)))
         .setTypeElement(element);
     for (Tree bodyDecl : node.getMembers()) {
       if (bodyDecl.getKind() == Kind.VARIABLE) {
-        TreeNode var = convertVariableDeclaration((VariableTree) bodyDecl, path);
+        TreeNode var = convertVariableDeclaration((VariableTree) bodyDecl);
         if (var.getKind() == TreeNode.Kind.ENUM_CONSTANT_DECLARATION) {
           newNode.addEnumConstant((EnumConstantDeclaration) var);
         } else {
@@ -797,10 +788,10 @@ public class TreeConverter {
         }
       } else if (bodyDecl.getKind() == Kind.BLOCK) {
         BlockTree javacBlock = (BlockTree) bodyDecl;
-        Block block = (Block) convert(javacBlock, path);
+        Block block = (Block) convert(javacBlock);
         newNode.addBodyDeclaration(new Initializer(block, javacBlock.isStatic()));
       } else {
-        newNode.addBodyDeclaration((BodyDeclaration) convert(bodyDecl, path));
+        newNode.addBodyDeclaration((BodyDeclaration) convert(bodyDecl));
       }
     }
     return newNode;
@@ -823,25 +814,23 @@ public class TreeConverter {
     return value != null ? newNode.setConstantValue(value) : newNode;
   }
 
-  private TreeNode convertExpressionStatement(ExpressionStatementTree node, TreePath parent) {
-    TreeNode expr = convert(node.getExpression(), getTreePath(parent, node));
+  private TreeNode convertExpressionStatement(ExpressionStatementTree node) {
+    TreeNode expr = convert(node.getExpression());
     if (expr instanceof Statement) {
       return expr;
     }
     return new ExpressionStatement().setExpression((Expression) expr);
   }
 
-  private TreeNode convertFieldAccess(MemberSelectTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertFieldAccess(MemberSelectTree node) {
     String fieldName = node.getIdentifier().toString();
     SourcePosition pos = getPosition(node);
     ExpressionTree selected = node.getExpression();
-    TreePath selectedPath = getTreePath(path, selected);
-    Element element = getElement(path);
-    TypeMirror typeMirror = getTypeMirror(path);
+    Element element = getElement(node);
+    TypeMirror typeMirror = getTypeMirror(node);
     if (fieldName.equals("this")) {
       return new ThisExpression()
-          .setQualifier((Name) convert(selected, path))
+          .setQualifier((Name) convert(selected))
           .setTypeMirror(typeMirror);
     }
     if ("super".equals(getMemberName(selected))) {
@@ -851,12 +840,12 @@ public class TreeConverter {
               .setTypeMirror(typeMirror);
       if (selected.getKind() == Kind.MEMBER_SELECT) {
         newNode.setQualifier(
-            (Name) convert(((MemberSelectTree) selected).getExpression(), selectedPath));
+            (Name) convert(((MemberSelectTree) selected).getExpression()));
       }
       return newNode;
     }
     if (node.getIdentifier().toString().equals("class")) {
-      Type type = convertType(getTypeMirror(selectedPath), pos, false);
+      Type type = convertType(getTypeMirror(selected), pos, false);
       type.setPosition(getPosition(node));
       return new TypeLiteral(typeMirror).setType(type);
     }
@@ -869,11 +858,11 @@ public class TreeConverter {
       return new QualifiedName()
           .setName(convertSimpleName(element, typeMirror, pos))
           .setQualifier(
-              convertSimpleName(getElement(selectedPath), getTypeMirror(selectedPath), pos))
+              convertSimpleName(getElement(selected), getTypeMirror(selected), pos))
           .setElement(element);
     }
     if (selected.getKind() == Kind.MEMBER_SELECT) {
-      TreeNode newSelected = convertFieldAccess((MemberSelectTree) selected, path).setPosition(pos);
+      TreeNode newSelected = convertFieldAccess((MemberSelectTree) selected).setPosition(pos);
       if (newSelected.getKind() == TreeNode.Kind.QUALIFIED_NAME) {
         return new QualifiedName()
             .setName(convertSimpleName(element, typeMirror, pos))
@@ -888,26 +877,25 @@ public class TreeConverter {
         && !(selected.getKind() == Kind.PARENTHESIZED)) {
       return new QualifiedName()
           .setName(convertSimpleName(element, typeMirror, pos))
-          .setQualifier((Name) convert(selected, path))
+          .setQualifier((Name) convert(selected))
           .setElement(element);
     }
     return new FieldAccess()
         .setVariableElement((VariableElement) element)
-        .setExpression((Expression) convert(selected, path))
+        .setExpression((Expression) convert(selected))
         .setName(convertSimpleName(element, typeMirror, pos).setTypeMirror(typeMirror));
   }
 
-  private TreeNode convertForLoop(ForLoopTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertForLoop(ForLoopTree node) {
     ForStatement newNode =
         new ForStatement()
-            .setExpression((Expression) convert(node.getCondition(), path))
-            .setBody((Statement) convert(node.getStatement(), path));
+            .setExpression((Expression) convert(node.getCondition()))
+            .setBody((Statement) convert(node.getStatement()));
     VariableDeclarationExpression lastVar = null;
     for (StatementTree initializer : node.getInitializer()) {
       if (initializer.getKind() == Kind.VARIABLE) {
         VariableTree var = (VariableTree) initializer;
-        VariableDeclarationExpression newVar = convertVariableExpression(var, path);
+        VariableDeclarationExpression newVar = convertVariableExpression(var);
         if (lastVar == null) {
           newNode.addInitializer(newVar);
           lastVar = newVar;
@@ -916,21 +904,20 @@ public class TreeConverter {
         }
       } else {
         assert initializer.getKind() == Kind.EXPRESSION_STATEMENT;
-        TreePath initializerPath = getTreePath(path, initializer);
         TreeNode expr =
-            convert(((ExpressionStatementTree) initializer).getExpression(), initializerPath);
+            convert(((ExpressionStatementTree) initializer).getExpression());
         newNode.addInitializer((Expression) expr);
       }
     }
     for (ExpressionStatementTree updater : node.getUpdate()) {
-      newNode.addUpdater((Expression) convert(updater.getExpression(), getTreePath(path, updater)));
+      newNode.addUpdater((Expression) convert(updater.getExpression()));
     }
     return newNode;
   }
 
   private TreeNode convertFunctionalExpression(
-      JCFunctionalExpression node, TreePath parent, FunctionalExpression newNode) {
-    List<? extends TypeMirror> targets = getTargets(node, parent);
+      JCFunctionalExpression node, FunctionalExpression newNode) {
+    List<? extends TypeMirror> targets = getTargets(node);
     for (TypeMirror type : targets) {
       newNode.addTargetType(type);
     }
@@ -945,7 +932,7 @@ public class TreeConverter {
                 (ExecutableType) node.getDescriptorType(types)));
   }
 
-  private List<? extends TypeMirror> getTargets(JCFunctionalExpression node, TreePath parent) {
+  private List<? extends TypeMirror> getTargets(JCFunctionalExpression node) {
     try {
       @SuppressWarnings("unchecked")
       com.sun.tools.javac.util.List<com.sun.tools.javac.code.Type> result =
@@ -957,14 +944,13 @@ public class TreeConverter {
     }
     // In earlier versions, the TypeMirror just contained the first type of an intersection type.
     // That's why, the field "targets" is used above. This issue is fixed in JDK 11.
-    TypeMirror t = getTypeMirror(getTreePath(parent, node));
+    TypeMirror t = getTypeMirror(node);
     return newUnit.getEnv().typeUtil().getUpperBounds(t);
   }
 
-  private TreeNode convertIdent(IdentifierTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    Element element = getElement(path);
-    TypeMirror typeMirror = getTypeMirror(path);
+  private TreeNode convertIdent(IdentifierTree node) {
+    Element element = getElement(node);
+    TypeMirror typeMirror = getTypeMirror(node);
     String text = element.toString();
     if (text.equals("this")) {
       return new ThisExpression().setTypeMirror(typeMirror);
@@ -972,97 +958,89 @@ public class TreeConverter {
     return new SimpleName(element, typeMirror);
   }
 
-  private TreeNode convertIf(IfTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertIf(IfTree node) {
     return new IfStatement()
-        .setExpression(convertWithoutParens(node.getCondition(), path))
-        .setThenStatement((Statement) convert(node.getThenStatement(), path))
-        .setElseStatement((Statement) convert(node.getElseStatement(), path));
+        .setExpression(convertWithoutParens(node.getCondition()))
+        .setThenStatement((Statement) convert(node.getThenStatement()))
+        .setElseStatement((Statement) convert(node.getElseStatement()));
   }
 
-  private TreeNode convertInstanceOf(InstanceOfTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    TypeMirror clazz = getTypeMirror(getTreePath(path, node.getType()));
+  private TreeNode convertInstanceOf(InstanceOfTree node) {
+    TypeMirror clazz = getTypeMirror(node.getType());
     return new InstanceofExpression()
-        .setLeftOperand((Expression) convert(node.getExpression(), path))
+        .setLeftOperand((Expression) convert(node.getExpression()))
         .setRightOperand(Type.newType(clazz))
-        .setTypeMirror(getTypeMirror(path));
+        .setTypeMirror(getTypeMirror(node));
   }
 
-  private TreeNode convertLabeledStatement(LabeledStatementTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertLabeledStatement(LabeledStatementTree node) {
     return new LabeledStatement()
         .setLabel(
             (SimpleName) new SimpleName(node.getLabel().toString()).setPosition(getPosition(node)))
-        .setBody((Statement) convert(node.getStatement(), path));
+        .setBody((Statement) convert(node.getStatement()));
   }
 
-  private TreeNode convertLambda(LambdaExpressionTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertLambda(LambdaExpressionTree node) {
     LambdaExpression newNode = new LambdaExpression();
-    convertFunctionalExpression((JCFunctionalExpression) node, parent, newNode);
+    convertFunctionalExpression((JCFunctionalExpression) node, newNode);
     for (VariableTree param : node.getParameters()) {
-      newNode.addParameter((VariableDeclaration) convert(param, path));
+      newNode.addParameter((VariableDeclaration) convert(param));
     }
-    return newNode.setBody(convert(node.getBody(), path));
+    return newNode.setBody(convert(node.getBody()));
   }
 
   private TreeNode convertMethodReference(
-      MemberReferenceTree node, TreePath parent, MethodReference newNode) {
-    TreePath path = getTreePath(parent, node);
-    convertFunctionalExpression((JCMemberReference) node, parent, newNode);
+      MemberReferenceTree node, MethodReference newNode) {
+    convertFunctionalExpression((JCMemberReference) node, newNode);
     if (node.getTypeArguments() != null) {
       for (ExpressionTree typeArg : node.getTypeArguments()) {
         newNode.addTypeArgument(Type.newType(((JCExpression) typeArg).type));
       }
     }
     return newNode
-        .setExecutableElement((ExecutableElement) getElement(path))
+        .setExecutableElement((ExecutableElement) getElement(node))
         .setVarargsType(((JCMemberReference) node).varargsElement);
   }
 
-  private TreeNode convertMemberReference(MemberReferenceTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    Element element = getElement(path);
+  private TreeNode convertMemberReference(MemberReferenceTree node) {
+    Element element = getElement(node);
     SourcePosition pos = getPosition(node);
     if (ElementUtil.isConstructor(element)) {
       CreationReference newNode = new CreationReference();
-      convertMethodReference(node, parent, newNode);
-      TypeMirror qualifierType = getTypeMirror(getTreePath(path, node.getQualifierExpression()));
+      convertMethodReference(node, newNode);
+      TypeMirror qualifierType = getTypeMirror(node.getQualifierExpression());
       return newNode.setType(Type.newType(qualifierType));
     }
     if (((JCMemberReference) node).hasKind(JCMemberReference.ReferenceKind.SUPER)) {
       SuperMethodReference newNode = new SuperMethodReference();
-      convertMethodReference(node, parent, newNode);
+      convertMethodReference(node, newNode);
       if (node.getQualifierExpression().getKind() == Kind.IDENTIFIER) {
         // super::foo
         return newNode;
       } else {
         // Qualifier expression is <name>."super", so it's always a JCFieldAccess.
         MemberSelectTree expr = (MemberSelectTree) node.getQualifierExpression();
-        TreePath exprPath = getTreePath(path, expr);
         return newNode.setQualifier(
             convertSimpleName(
-                getElement(getTreePath(exprPath, expr.getExpression())),
-                getTypeMirror(exprPath),
+                getElement(expr.getExpression()),
+                getTypeMirror(expr),
                 getPosition(expr.getExpression())));
       }
     }
     if (((JCMemberReference) node).hasKind(JCMemberReference.ReferenceKind.UNBOUND)
         || ((JCMemberReference) node).hasKind(JCMemberReference.ReferenceKind.STATIC)) {
       TypeMethodReference newNode = new TypeMethodReference();
-      convertMethodReference(node, parent, newNode);
-      return newNode.setType(convertType(getTypeMirror(path), pos, false));
+      convertMethodReference(node, newNode);
+      return newNode.setType(convertType(getTypeMirror(node), pos, false));
     }
 
     ExpressionMethodReference newNode = new ExpressionMethodReference();
-    convertMethodReference(node, parent, newNode);
-    return newNode.setExpression((Expression) convert(node.getQualifierExpression(), path));
+    convertMethodReference(node, newNode);
+    return newNode.setExpression((Expression) convert(node.getQualifierExpression()));
   }
 
-  private TreeNode convertMethodDeclaration(MethodTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    ExecutableElement element = (ExecutableElement) getElement(path);
+  private TreeNode convertMethodDeclaration(MethodTree node) {
+    ExecutableElement element = (ExecutableElement) getElement(node);
     MethodDeclaration newNode = new MethodDeclaration();
 
     // JCMethodDecl's preferred diagnostic position is the beginning of the method name.
@@ -1076,14 +1054,14 @@ public class TreeConverter {
     Name name = Name.newName(null /* qualifier */, element);
     name.setPosition(new SourcePosition(methodStartPosition, length));
 
-    convertBodyDeclaration(node, parent, node.getModifiers(), newNode);
+    convertBodyDeclaration(node, node.getModifiers(), newNode);
     for (VariableTree param : node.getParameters()) {
-      newNode.addParameter((SingleVariableDeclaration) convert(param, path));
+      newNode.addParameter((SingleVariableDeclaration) convert(param));
     }
     return newNode
         .setIsConstructor(ElementUtil.isConstructor(element))
         .setExecutableElement(element)
-        .setBody((Block) convert(node.getBody(), path))
+        .setBody((Block) convert(node.getBody()))
         .setName(name);
   }
 
@@ -1098,13 +1076,11 @@ public class TreeConverter {
     }
   }
 
-  private TreeNode convertMethodInvocation(MethodInvocationTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertMethodInvocation(MethodInvocationTree node) {
     ExpressionTree method = node.getMethodSelect();
-    TreePath methodInvocationPath = getTreePath(path, method);
     String methodName = getMemberName(method);
-    ExecutableType type = (ExecutableType) getTypeMirror(methodInvocationPath);
-    ExecutableElement element = (ExecutableElement) getElement(methodInvocationPath);
+    ExecutableType type = (ExecutableType) getTypeMirror(method);
+    ExecutableElement element = (ExecutableElement) getElement(method);
     ExpressionTree target =
         method.getKind() == Kind.MEMBER_SELECT ? ((MemberSelectTree) method).getExpression() : null;
 
@@ -1114,7 +1090,7 @@ public class TreeConverter {
               .setExecutablePair(new ExecutablePair(element))
               .setVarargsType(((JCMethodInvocation) node).varargsElement);
       for (ExpressionTree arg : node.getArguments()) {
-        newNode.addArgument((Expression) convert(arg, path));
+        newNode.addArgument((Expression) convert(arg));
       }
       return newNode;
     }
@@ -1123,11 +1099,14 @@ public class TreeConverter {
       if (element == null && node.getArguments().isEmpty()) {
         // If multiple classes have default constructors added, javac may not have an element
         // defined for the super() invocation, so create an equivalent here.
-        TreePath methodPath = parent;
-        while (methodPath.getLeaf().getKind() != Kind.METHOD) {
-          methodPath = methodPath.getParentPath();
+        Tree methodTree = null;
+        for (Tree ancestor : ancestors) {
+          if (ancestor.getKind() == Kind.METHOD) {
+            methodTree = ancestor;
+            break;
+          }
         }
-        ExecutableElement enclosingMethod = (ExecutableElement) getElement(methodPath);
+        ExecutableElement enclosingMethod = (ExecutableElement) getElement(methodTree);
         TypeMirror superclassType = ElementUtil.getDeclaringClass(enclosingMethod).getSuperclass();
         TypeElement superclass = (TypeElement) ((DeclaredType) superclassType).asElement();
         element =
@@ -1138,10 +1117,10 @@ public class TreeConverter {
               .setExecutablePair(new ExecutablePair(element))
               .setVarargsType(((JCMethodInvocation) node).varargsElement);
       if (target != null) {
-        newNode.setExpression((Expression) convert(target, methodInvocationPath));
+        newNode.setExpression((Expression) convert(target));
       }
       for (ExpressionTree arg : node.getArguments()) {
-        newNode.addArgument((Expression) convert(arg, path));
+        newNode.addArgument((Expression) convert(arg));
       }
       return newNode;
     }
@@ -1155,25 +1134,24 @@ public class TreeConverter {
         // foo.bar.MyClass.super.print(...):
         //   target: foo.bar.MyClass.super
         //   target.selected: foo.bar.MyClass
-        TreePath targetPath = getTreePath(getTreePath(path, method), target);
         newNode.setQualifier(
-            (Name) convert(((MemberSelectTree) target).getExpression(), targetPath));
+            (Name) convert(((MemberSelectTree) target).getExpression()));
       }
       for (ExpressionTree arg : node.getArguments()) {
-        newNode.addArgument((Expression) convert(arg, path));
+        newNode.addArgument((Expression) convert(arg));
       }
       return newNode;
     }
 
     MethodInvocation newNode = new MethodInvocation();
     if (target != null) {
-      newNode.setExpression((Expression) convert(target, methodInvocationPath));
+      newNode.setExpression((Expression) convert(target));
     }
     for (ExpressionTree arg : node.getArguments()) {
-      newNode.addArgument((Expression) convert(arg, path));
+      newNode.addArgument((Expression) convert(arg));
     }
     return newNode
-        .setTypeMirror(getTypeMirror(path))
+        .setTypeMirror(getTypeMirror(node))
         .setExecutablePair(new ExecutablePair(element, type))
         .setVarargsType(((JCMethodInvocation) node).varargsElement);
   }
@@ -1182,18 +1160,17 @@ public class TreeConverter {
     return (SimpleName) new SimpleName(element, type).setPosition(pos);
   }
 
-  private TreeNode convertNewArray(NewArrayTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertNewArray(NewArrayTree node) {
     ArrayCreation newNode = new ArrayCreation();
     List<Expression> dimensions = new ArrayList<>();
     for (ExpressionTree dimension : node.getDimensions()) {
-      dimensions.add((Expression) convert(dimension, path));
+      dimensions.add((Expression) convert(dimension));
     }
-    javax.lang.model.type.ArrayType type = (javax.lang.model.type.ArrayType) getTypeMirror(path);
+    javax.lang.model.type.ArrayType type = (javax.lang.model.type.ArrayType) getTypeMirror(node);
     if (node.getInitializers() != null) {
       ArrayInitializer initializers = new ArrayInitializer(type);
       for (ExpressionTree initializer : node.getInitializers()) {
-        initializers.addExpression((Expression) convert(initializer, path));
+        initializers.addExpression((Expression) convert(initializer));
       }
       newNode.setInitializer(initializers);
     }
@@ -1202,11 +1179,10 @@ public class TreeConverter {
         .setDimensions(dimensions);
   }
 
-  private TreeNode convertNewClass(NewClassTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertNewClass(NewClassTree node) {
     ClassInstanceCreation newNode = new ClassInstanceCreation();
-    Expression enclosingExpression = (Expression) convert(node.getEnclosingExpression(), path);
-    ExecutableElement executable = (ExecutableElement) getElement(path);
+    Expression enclosingExpression = (Expression) convert(node.getEnclosingExpression());
+    ExecutableElement executable = (ExecutableElement) getElement(node);
     TypeMirror vargarsType = ((JCNewClass) node).varargsElement;
     // Case where the first parameter of the constructor of an inner class is the outer class (e.g.
     // new Outer().new Inner(...). Move the enclosing expression (e.g. new Outer()) as the first
@@ -1218,22 +1194,22 @@ public class TreeConverter {
       enclosingExpression = null;
     }
     for (ExpressionTree arg : node.getArguments()) {
-      newNode.addArgument((Expression) convert(arg, path));
+      newNode.addArgument((Expression) convert(arg));
     }
     return newNode
         .setExecutablePair(new ExecutablePair(executable))
         .setVarargsType(vargarsType)
         .setExpression(enclosingExpression)
-        .setType(convertType(getTypeMirror(getTreePath(path, node.getIdentifier()))))
-        .setAnonymousClassDeclaration((TypeDeclaration) convert(node.getClassBody(), path));
+        .setType(convertType(getTypeMirror(node.getIdentifier())))
+        .setAnonymousClassDeclaration((TypeDeclaration) convert(node.getClassBody()));
   }
 
-  private TreeNode convertNumberLiteral(LiteralTree node, TreePath parent) {
-    return new NumberLiteral((Number) node.getValue(), getTypeMirror(getTreePath(parent, node)))
+  private TreeNode convertNumberLiteral(LiteralTree node) {
+    return new NumberLiteral((Number) node.getValue(), getTypeMirror(node))
         .setToken(getTreeSource(node));
   }
 
-  private PackageDeclaration convertPackage(TreePath parent) {
+  private PackageDeclaration convertPackage() {
     ExpressionTree pkgName = unit.getPackageName();
     PackageElement pkg =
         pkgName != null
@@ -1249,7 +1225,7 @@ public class TreeConverter {
       Tree node = trees.getTree(pkg);
       newNode = new PackageDeclaration().setPackageElement(pkg);
       for (AnnotationTree pkgAnnotation : unit.getPackageAnnotations()) {
-        newNode.addAnnotation((Annotation) convert(pkgAnnotation, parent));
+        newNode.addAnnotation((Annotation) convert(pkgAnnotation));
       }
       if (unit.getSourceFile().toUri().getPath().endsWith("package-info.java")) {
         if (node == null) {
@@ -1257,7 +1233,7 @@ public class TreeConverter {
           // sources are keyed to their compilation unit, not their package node.
           node = unit;
         }
-        newNode.setJavadoc((Javadoc) getAssociatedJavaDoc(node, getTreePath(parent, node)));
+        newNode.setJavadoc((Javadoc) getAssociatedJavaDoc(node));
       }
       newNode.setName(newUnit.getEnv().elementUtil().getPackageName(pkg));
     }
@@ -1265,82 +1241,76 @@ public class TreeConverter {
     return newNode;
   }
 
-  private TreeNode convertPrefixExpr(UnaryTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertPrefixExpr(UnaryTree node) {
     return new PrefixExpression()
-        .setTypeMirror(getTypeMirror(path))
+        .setTypeMirror(getTypeMirror(node))
         .setOperator(PrefixExpression.Operator.from(node.getKind()))
-        .setOperand((Expression) convert(node.getExpression(), path));
+        .setOperand((Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertParens(ParenthesizedTree node, TreePath parent) {
+  private TreeNode convertParens(ParenthesizedTree node) {
     return new ParenthesizedExpression()
-        .setExpression((Expression) convert(node.getExpression(), getTreePath(parent, node)));
+        .setExpression((Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertPostExpr(UnaryTree node, TreePath parent) {
+  private TreeNode convertPostExpr(UnaryTree node) {
     return new PostfixExpression()
         .setOperator(PostfixExpression.Operator.from(node.getKind()))
-        .setOperand((Expression) convert(node.getExpression(), getTreePath(parent, node)));
+        .setOperand((Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertPrimitiveType(PrimitiveTypeTree node, TreePath parent) {
-    return new PrimitiveType(getTypeMirror(getTreePath(parent, node)));
+  private TreeNode convertPrimitiveType(PrimitiveTypeTree node) {
+    return new PrimitiveType(getTypeMirror(node));
   }
 
-  private TreeNode convertReturn(ReturnTree node, TreePath parent) {
+  private TreeNode convertReturn(ReturnTree node) {
     return new ReturnStatement(
-        (Expression) convert(node.getExpression(), getTreePath(parent, node)));
+        (Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertStringLiteral(LiteralTree node, TreePath parent) {
-    return new StringLiteral((String) node.getValue(), getTypeMirror(getTreePath(parent, node)));
+  private TreeNode convertStringLiteral(LiteralTree node) {
+    return new StringLiteral((String) node.getValue(), getTypeMirror(node));
   }
 
-  private TreeNode convertSwitch(SwitchTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertSwitch(SwitchTree node) {
     SwitchStatement newNode =
-        new SwitchStatement().setExpression(convertWithoutParens(node.getExpression(), path));
+        new SwitchStatement().setExpression(convertWithoutParens(node.getExpression()));
     for (CaseTree switchCase : node.getCases()) {
-      newNode.addStatement((SwitchCase) convert(switchCase, path));
-      TreePath switchCasePath = getTreePath(path, switchCase);
+      newNode.addStatement((SwitchCase) convert(switchCase));
       for (StatementTree s : switchCase.getStatements()) {
-        newNode.addStatement((Statement) convert(s, switchCasePath));
+        newNode.addStatement((Statement) convert(s));
       }
     }
     return newNode;
   }
 
-  private TreeNode convertSynchronized(SynchronizedTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    Expression expr = convertWithoutParens(node.getExpression(), path);
+  private TreeNode convertSynchronized(SynchronizedTree node) {
+    Expression expr = convertWithoutParens(node.getExpression());
     expr.setPosition(getPosition(node));
     return new SynchronizedStatement()
         .setExpression(expr)
-        .setBody((Block) convert(node.getBlock(), path));
+        .setBody((Block) convert(node.getBlock()));
   }
 
-  private TreeNode convertThrow(ThrowTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    return new ThrowStatement().setExpression((Expression) convert(node.getExpression(), path));
+  private TreeNode convertThrow(ThrowTree node) {
+    return new ThrowStatement().setExpression((Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertTry(TryTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertTry(TryTree node) {
     TryStatement newNode = new TryStatement();
     for (Tree obj : node.getResources()) {
       if (obj.getKind() == Kind.VARIABLE) {
-        newNode.addResource(convertVariableExpression((VariableTree) obj, path));
+        newNode.addResource(convertVariableExpression((VariableTree) obj));
       } else {
-        newNode.addResource(convertInner(obj, path));
+        newNode.addResource(convertInner(obj));
       }
     }
     for (CatchTree obj : node.getCatches()) {
-      newNode.addCatchClause((CatchClause) convert(obj, path));
+      newNode.addCatchClause((CatchClause) convert(obj));
     }
     return newNode
-        .setBody((Block) convert(node.getBlock(), path))
-        .setFinally((Block) convert(node.getFinallyBlock(), path));
+        .setBody((Block) convert(node.getBlock()))
+        .setFinally((Block) convert(node.getFinallyBlock()));
   }
 
   private Type convertType(TypeMirror typeMirror) {
@@ -1388,34 +1358,32 @@ public class TreeConverter {
     return (Type) newType.setPosition(pos);
   }
 
-  private TreeNode convertTypeApply(ParameterizedTypeTree node, TreePath parent) {
-    TypeMirror typeMirror = getTypeMirror(getTreePath(parent, node));
+  private TreeNode convertTypeApply(ParameterizedTypeTree node) {
+    TypeMirror typeMirror = getTypeMirror(node);
     return new ParameterizedType().setType(Type.newType(typeMirror)).setTypeMirror(typeMirror);
   }
 
-  private TreeNode convertTypeCast(TypeCastTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertTypeCast(TypeCastTree node) {
     return new CastExpression(
-        getTypeMirror(path), (Expression) convert(node.getExpression(), path));
+        getTypeMirror(node), (Expression) convert(node.getExpression()));
   }
 
-  private TreeNode convertVariableDeclaration(VariableTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    VariableElement element = (VariableElement) getElement(path);
+  private TreeNode convertVariableDeclaration(VariableTree node) {
+    VariableElement element = (VariableElement) getElement(node);
     if (element.getKind() == ElementKind.FIELD) {
       FieldDeclaration newNode =
-          new FieldDeclaration(element, (Expression) convert(node.getInitializer(), path));
-      convertBodyDeclaration(node, parent, node.getModifiers(), newNode);
+          new FieldDeclaration(element, (Expression) convert(node.getInitializer()));
+      convertBodyDeclaration(node, node.getModifiers(), newNode);
       return newNode;
     }
     if (element.getKind() == ElementKind.LOCAL_VARIABLE) {
       return new VariableDeclarationStatement(
-          element, (Expression) convert(node.getInitializer(), path));
+          element, (Expression) convert(node.getInitializer()));
     }
     if (element.getKind() == ElementKind.ENUM_CONSTANT) {
       EnumConstantDeclaration newNode = new EnumConstantDeclaration().setVariableElement(element);
-      convertBodyDeclaration(node, parent, node.getModifiers(), newNode);
-      ClassInstanceCreation init = (ClassInstanceCreation) convert(node.getInitializer(), path);
+      convertBodyDeclaration(node, node.getModifiers(), newNode);
+      ClassInstanceCreation init = (ClassInstanceCreation) convert(node.getInitializer());
       TreeUtil.moveList(init.getArguments(), newNode.getArguments());
       if (init.getAnonymousClassDeclaration() != null) {
         newNode.setAnonymousClassDeclaration(TreeUtil.remove(init.getAnonymousClassDeclaration()));
@@ -1424,49 +1392,46 @@ public class TreeConverter {
           .setExecutablePair(init.getExecutablePair())
           .setVarargsType(init.getVarargsType());
     }
-    return convertSingleVariable(node, parent);
+    return convertSingleVariable(node);
   }
 
-  private TreeNode convertSingleVariable(VariableTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    VariableElement element = (VariableElement) getElement(path);
+  private TreeNode convertSingleVariable(VariableTree node) {
+    VariableElement element = (VariableElement) getElement(node);
     SourcePosition pos = getPosition(node);
     boolean isVarargs = (((VarSymbol) element).flags() & Flags.VARARGS) > 0;
-    Type newType = convertType(getTypeMirror(path), pos, isVarargs);
+    Type newType = convertType(getTypeMirror(node), pos, isVarargs);
     return new SingleVariableDeclaration()
         .setType(newType)
         .setIsVarargs(isVarargs)
-        .setAnnotations(convertAnnotations(node.getModifiers(), path))
+        .setAnnotations(convertAnnotations(node.getModifiers()))
         .setVariableElement(element)
-        .setInitializer((Expression) convert(node.getInitializer(), path));
+        .setInitializer((Expression) convert(node.getInitializer()));
   }
 
   private VariableDeclarationExpression convertVariableExpression(
-      VariableTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
-    VariableElement element = (VariableElement) getElement(path);
+      VariableTree node) {
+    VariableElement element = (VariableElement) getElement(node);
     boolean isVarargs = (((JCVariableDecl) node).sym.flags() & Flags.VARARGS) > 0;
-    Type newType = convertType(getTypeMirror(path), getPosition(node), isVarargs);
+    Type newType = convertType(getTypeMirror(node), getPosition(node), isVarargs);
     VariableDeclarationFragment fragment = new VariableDeclarationFragment();
     fragment
         .setVariableElement(element)
-        .setInitializer((Expression) convert(node.getInitializer(), path));
+        .setInitializer((Expression) convert(node.getInitializer()));
     return new VariableDeclarationExpression().setType(newType).addFragment(fragment);
   }
 
-  private TreeNode convertWhileLoop(WhileLoopTree node, TreePath parent) {
-    TreePath path = getTreePath(parent, node);
+  private TreeNode convertWhileLoop(WhileLoopTree node) {
     return new WhileStatement()
-        .setExpression(convertWithoutParens(node.getCondition(), path))
-        .setBody((Statement) convert(node.getStatement(), path));
+        .setExpression(convertWithoutParens(node.getCondition()))
+        .setBody((Statement) convert(node.getStatement()));
   }
 
-  private TreeNode getAssociatedJavaDoc(Tree node, TreePath path) {
-    Comment comment = convertAssociatedComment(node, path);
+  private TreeNode getAssociatedJavaDoc(Tree node) {
+    Comment comment = convertAssociatedComment(node);
     return comment != null && comment.isDocComment() ? comment : null;
   }
 
-  private Comment convertAssociatedComment(Tree node, TreePath path) {
+  private Comment convertAssociatedComment(Tree node) {
     boolean docCommentsEnabled = newUnit.getEnv().options().docCommentsEnabled();
     DocCommentTable docComments = ((JCCompilationUnit) unit).docComments;
     if (!docCommentsEnabled || docComments == null || !docComments.hasComment((JCTree) node)) {
@@ -1479,7 +1444,7 @@ public class TreeConverter {
         comment = new BlockComment();
         break;
       case JAVADOC:
-        comment = convertJavadocComment(path);
+        comment = convertJavadocComment(node);
         break;
       case LINE:
         comment = new LineComment();
@@ -1494,9 +1459,9 @@ public class TreeConverter {
     return comment;
   }
 
-  private Javadoc convertJavadocComment(TreePath path) {
+  private Javadoc convertJavadocComment(Tree node) {
     return JavadocConverter.convertJavadoc(
-        path, newUnit.getSource(), env, newUnit.getEnv().options().reportJavadocWarnings());
+        getTreePath(node), newUnit.getSource(), env, newUnit.getEnv().options().reportJavadocWarnings());
   }
 
   private static void addOcniComments(CompilationUnit unit, boolean jsniWarnings) {
@@ -1553,8 +1518,8 @@ public class TreeConverter {
   }
 
   // javac uses a ParenthesizedExpression for the if, do, and while statements, while JDT doesn't.
-  private Expression convertWithoutParens(ExpressionTree condition, TreePath parent) {
-    Expression result = (Expression) convert(condition, parent);
+  private Expression convertWithoutParens(ExpressionTree condition) {
+    Expression result = (Expression) convert(condition);
     if (result.getKind() == TreeNode.Kind.PARENTHESIZED_EXPRESSION) {
       result = TreeUtil.remove(((ParenthesizedExpression) result).getExpression());
     }
@@ -1597,16 +1562,29 @@ public class TreeConverter {
     return getSourcePosition(start, endPos);
   }
 
-  private Element getElement(TreePath path) {
-    return trees.getElement(path);
+  private Element getElement(Tree node) {
+    Symbol sym = TreeInfo.symbolFor((JCTree) node);
+    // Only unattributed trees have no symbol, where javac searches their scope.
+    return sym != null ? sym : trees.getElement(getTreePath(node));
   }
 
-  private TypeMirror getTypeMirror(TreePath path) {
-    return trees.getTypeMirror(path);
+  private TypeMirror getTypeMirror(Tree node) {
+    return ((JCTree) node).type;
   }
 
-  private static TreePath getTreePath(TreePath path, Tree tree) {
-    return new TreePath(path, tree);
+  /**
+   * Returns the path of a tree that is being converted, or is a child of the
+   * innermost tree being converted.
+   */
+  private TreePath getTreePath(Tree node) {
+    TreePath path = new TreePath(unit);
+    if (node == unit) {
+      return path;
+    }
+    for (Iterator<Tree> iter = ancestors.descendingIterator(); iter.hasNext(); ) {
+      path = new TreePath(path, iter.next());
+    }
+    return path.getLeaf() == node ? path : new TreePath(path, node);
   }
 
   // Helper class for convertBinary().
@@ -109,7 +109,10 @@ abstract class FileProcessor {
   }
 
   protected boolean isBatchable(InputFile file) {
-    return file.getAbsolutePath().endsWith(".java");
+    String path = file.getAbsolutePath();
+    // Classfiles are batched so that the ones with the same classpath root,
+    // such as the classes of a jar, share a javac environment.
+    return path.endsWith(".java") || (options.translateClassfiles() && path.endsWith(".class"));
   }
 
   private void processBatch() {
@@ -24,8 +24,12 @@ import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
 import java.util.logging.Logger;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipException;
@@ -49,14 +53,24 @@ public class GenerationBatch {
 
   private GenerationUnit globalCombinedUnit = null;
 
+  // Inputs of the global combined output that are assigned to shards once all
+  // inputs are known, or null if it isn't sharded.
+  private List<InputFile> shardedInputs = null;
+
   public GenerationBatch(Options options){
     this.options = options;
     if (options.globalCombinedOutput() != null) {
       globalCombinedUnit = options.globalCombinedOutput().globalGenerationUnit();
+      if (options.combinedOutputShards() > 0 || options.combinedOutputShardSize() > 0) {
+        shardedInputs = new ArrayList<>();
+      }
     }
   }
 
   public List<ProcessingContext> getInputs() {
+    if (shardedInputs != null && !shardedInputs.isEmpty()) {
+      addShards();
+    }
     return inputs;
   }
 
@@ -154,7 +168,9 @@ public class GenerationBatch {
             // Extract JAR file to a temporary directory
             File outputFile = options.fileUtil().extractZipEntry(tempDir, zfile, entry);
             InputFile newFile = new RegularInputFile(outputFile.getAbsolutePath(), internalPath);
-            if (combinedUnit != null) {
+            if (shardedInputs != null) {
+              shardedInputs.add(newFile);
+            } else if (combinedUnit != null) {
               inputs.add(new ProcessingContext(newFile, combinedUnit));
             } else {
               addExtractedJarSource(newFile, filename, internalPath);
@@ -187,10 +203,89 @@ public class GenerationBatch {
    */
   @VisibleForTesting
   public void addSource(InputFile file) {
-    if (globalCombinedUnit != null) {
+    if (shardedInputs != null) {
+      shardedInputs.add(file);
+    } else if (globalCombinedUnit != null) {
       inputs.add(new ProcessingContext(file, globalCombinedUnit));
     } else {
       inputs.add(ProcessingContext.fromFile(file, options));
     }
   }
+
+  /**
+   * Packs the inputs of the global combined output into shards, so that their
+   * generated files can be compiled in parallel without each one parsing the
+   * same headers as every other input's. Inputs are ordered by directory, so
+   * that a package's sources, and then those of neighboring packages, share a
+   * shard. A new shard is started when adding an input would exceed the
+   * shard size, which is the total size divided by the number of shards and
+   * capped by -Xcombined-output-shard-size. An input's source size is used as
+   * the estimate of its generated size. InputFilePreprocessor maps each
+   * input's types to its shard's header.
+   */
+  private void addShards() {
+    Map<String, List<InputFile>> packages = new TreeMap<>();
+    long totalSize = 0;
+    for (InputFile file : shardedInputs) {
+      String unitName = file.getUnitName();
+      String dir = unitName.substring(0, Math.max(0, unitName.lastIndexOf('/')));
+      packages.computeIfAbsent(dir, k -> new ArrayList<>()).add(file);
+      totalSize += estimatedSize(file);
+    }
+    shardedInputs.clear();
+
+    int maxShards = options.combinedOutputShards();
+    long shardSize = maxShards > 0 ? (totalSize + maxShards - 1) / maxShards : totalSize;
+    if (options.combinedOutputShardSize() > 0) {
+      // A size cap takes precedence over the number of shards.
+      shardSize = Math.min(shardSize, options.combinedOutputShardSize() * 1024L);
+      maxShards = Integer.MAX_VALUE;
+    }
+
+    List<List<InputFile>> shards = new ArrayList<>();
+    List<InputFile> shard = new ArrayList<>();
+    long size = 0;
+    for (List<InputFile> files : packages.values()) {
+      files.sort(Comparator.comparing(InputFile::getUnitName));
+      long packageSize = 0;
+      for (InputFile file : files) {
+        packageSize += estimatedSize(file);
+      }
+      // A package that doesn't fit in a shard of its own is split between
+      // shards, otherwise it starts a new shard if it doesn't fit in this one.
+      boolean splitPackage = packageSize > shardSize;
+      for (int i = 0; i < files.size(); i++) {
+        InputFile file = files.get(i);
+        long fileSize = estimatedSize(file);
+        if ((splitPackage || i == 0) && !shard.isEmpty()
+            && size + (splitPackage ? fileSize : packageSize) > shardSize
+            && shards.size() + 1 < maxShards) {
+          shards.add(shard);
+          shard = new ArrayList<>();
+          size = 0;
+        }
+        shard.add(file);
+        size += fileSize;
+      }
+    }
+    shards.add(shard);
+
+    String outputName = options.globalCombinedOutput().globalCombinedOutputName();
+    String extension = "";
+    if (outputName.lastIndexOf(File.separatorChar) < outputName.lastIndexOf(".")) {
+      extension = outputName.substring(outputName.lastIndexOf("."));
+      outputName = outputName.substring(0, outputName.lastIndexOf("."));
+    }
+    for (int i = 0; i < shards.size(); i++) {
+      GenerationUnit unit =
+          GenerationUnit.newCombinedJarUnit(outputName + "_" + (i + 1) + extension, options);
+      for (InputFile file : shards.get(i)) {
+        inputs.add(new ProcessingContext(file, unit));
+      }
+    }
+  }
+
+  private static long estimatedSize(InputFile file) {
+    return Math.max(1, new File(file.getAbsolutePath()).length());
+  }
 }
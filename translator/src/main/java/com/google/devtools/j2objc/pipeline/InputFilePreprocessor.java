@@ -73,7 +73,9 @@ public class InputFilePreprocessor {
   private void processRegularSource(ProcessingContext input) throws IOException {
     InputFile file = input.getFile();
     String source = options.fileUtil().readFile(file);
-    boolean shouldMapHeaders = options.getHeaderMap().useSourceDirectories();
+    // Types in other shards of a sharded combined output are in different headers.
+    boolean shouldMapHeaders = options.getHeaderMap().useSourceDirectories()
+        || options.combinedOutputShards() > 0 || options.combinedOutputShardSize() > 0;
     boolean doIncompatibleStripping = source.contains("J2ObjCIncompatible");
     if (!(shouldMapHeaders || doIncompatibleStripping)) {
       // No need to parse.
@@ -18,12 +18,15 @@ import com.google.common.annotations.VisibleForTesting;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.DebugASTDump;
 import com.google.devtools.j2objc.gen.GenerationUnit;
+import com.google.devtools.j2objc.gen.HeaderIncludeGraph;
+import com.google.devtools.j2objc.gen.ModuleMapGenerator;
 import com.google.devtools.j2objc.gen.ObjectiveCHeaderGenerator;
 import com.google.devtools.j2objc.gen.ObjectiveCImplementationGenerator;
 import com.google.devtools.j2objc.gen.ObjectiveCSegmentedHeaderGenerator;
 import com.google.devtools.j2objc.translate.AbstractMethodRewriter;
 import com.google.devtools.j2objc.translate.AnnotationRewriter;
 import com.google.devtools.j2objc.translate.ArrayRewriter;
+import com.google.devtools.j2objc.translate.AutoreleasePoolRewriter;
 import com.google.devtools.j2objc.translate.Autoboxer;
 import com.google.devtools.j2objc.translate.CastResolver;
 import com.google.devtools.j2objc.translate.ComplexExpressionExtractor;
@@ -33,11 +36,13 @@ import com.google.devtools.j2objc.translate.DefaultMethodShimGenerator;
 import com.google.devtools.j2objc.translate.DestructorGenerator;
 import com.google.devtools.j2objc.translate.EnhancedForRewriter;
 import com.google.devtools.j2objc.translate.EnumRewriter;
+import com.google.devtools.j2objc.translate.EscapeAnalyzer;
 import com.google.devtools.j2objc.translate.ExternalAnnotationInjector;
 import com.google.devtools.j2objc.translate.Functionizer;
 import com.google.devtools.j2objc.translate.GwtConverter;
 import com.google.devtools.j2objc.translate.InitializationNormalizer;
 import com.google.devtools.j2objc.translate.InnerClassExtractor;
+import com.google.devtools.j2objc.translate.Instrumenter;
 import com.google.devtools.j2objc.translate.JavaCloneWriter;
 import com.google.devtools.j2objc.translate.JavaToIOSMethodTranslator;
 import com.google.devtools.j2objc.translate.LabelRewriter;
@@ -65,10 +70,13 @@ import com.google.devtools.j2objc.types.HeaderImportCollector;
 import com.google.devtools.j2objc.types.ImplementationImportCollector;
 import com.google.devtools.j2objc.types.Import;
 import com.google.devtools.j2objc.util.CodeReferenceMap;
+import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.ExternalAnnotations;
 import com.google.devtools.j2objc.util.Parser;
 import com.google.devtools.j2objc.util.TimeTracker;
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
@@ -87,11 +95,13 @@ public class TranslationProcessor extends FileProcessor {
 
   private final CodeReferenceMap deadCodeMap;
   private final List<GenerationUnit> outputs = new ArrayList<>();
+  private final ModuleMapGenerator moduleMap;
   private int processedCount = 0;
 
   public TranslationProcessor(Parser parser, CodeReferenceMap deadCodeMap) {
     super(parser);
     this.deadCodeMap = deadCodeMap;
+    moduleMap = options.moduleName() != null ? new ModuleMapGenerator(options) : null;
   }
 
   @Override
@@ -112,6 +122,10 @@ public class TranslationProcessor extends FileProcessor {
       GenerationUnit genUnit = input.getGenerationUnit();
       genUnit.addCompilationUnit(unit);
       outputs.add(genUnit);
+      if (moduleMap != null) {
+        moduleMap.addHeader(ElementUtil.getName(unit.getPackage().getPackageElement()),
+            genUnit.getOutputPath() + options.getLanguage().headerSuffix());
+      }
 
       // Add out-of-date dependencies to translation list.
       if (closureQueue != null) {
@@ -123,6 +137,23 @@ public class TranslationProcessor extends FileProcessor {
 
   @Override
   protected void processOutputs(Iterable<ProcessingContext> outputs) {
+    File includeReport = options.getHeaderIncludeReport();
+    if (options.minimizeHeaderIncludes() || includeReport != null) {
+      HeaderIncludeGraph includeGraph = new HeaderIncludeGraph();
+      for (ProcessingContext output : outputs) {
+        includeGraph.addGenerationUnit(output.getGenerationUnit());
+      }
+      if (options.minimizeHeaderIncludes()) {
+        includeGraph.removeRedundantIncludes();
+      }
+      if (includeReport != null) {
+        try {
+          includeGraph.writeReport(includeReport);
+        } catch (IOException e) {
+          ErrorUtil.error("Failed writing header include report: " + e.getMessage());
+        }
+      }
+    }
     for (ProcessingContext output : outputs) {
       generateObjectiveCSource(output.getGenerationUnit());
     }
@@ -149,6 +180,11 @@ public class TranslationProcessor extends FileProcessor {
     if (deadCodeMap != null) {
       deadCodeEliminator.run();
       ticker.tick("DeadCodeEliminator");
+      if (deadCodeEliminator.isDeadUnit()) {
+        // Nothing is generated for the unit's stripped classes.
+        ticker.pop();
+        return;
+      }
     }
 
     if (unit.getEnv().options().stripReflection()
@@ -213,6 +249,26 @@ public class TranslationProcessor extends FileProcessor {
     new InnerClassExtractor(unit).run();
     ticker.tick("InnerClassExtractor");
 
+    // After: InnerClassExtractor - Captured variables are explicit arguments.
+    // Before: AutoreleasePoolRewriter - Retained allocations aren't counted.
+    // Before: LabelRewriter - Labeled statements are still present.
+    // Before: Functionizer - Uses hasRetainedResult() of class instance
+    //   creations.
+    EscapeAnalyzer escapeAnalyzer = new EscapeAnalyzer(unit);
+    if (escapeAnalyzer.isEnabled()) {
+      escapeAnalyzer.run();
+      ticker.tick("EscapeAnalyzer");
+    }
+
+    // After: Autoboxer - Boxing conversions are counted as method results.
+    // After: InnerClassExtractor - Allocations in local and anonymous class
+    //   bodies aren't counted.
+    AutoreleasePoolRewriter autoreleasePoolRewriter = new AutoreleasePoolRewriter(unit);
+    if (autoreleasePoolRewriter.isEnabled()) {
+      autoreleasePoolRewriter.run();
+      ticker.tick("AutoreleasePoolRewriter");
+    }
+
     // Generate method shims for classes implementing interfaces that have default methods
     new DefaultMethodShimGenerator(unit, deadCodeMap).run();
     ticker.tick("DefaultMethodShimGenerator");
@@ -221,6 +277,16 @@ public class TranslationProcessor extends FileProcessor {
     new InitializationNormalizer(unit).run();
     ticker.tick("InitializationNormalizer");
 
+    // After: InitializationNormalizer - Constructor probes include field
+    //   initialization, and static initialization isn't a method yet.
+    // Before: Functionizer - Probes move into the functions that implement
+    //   functionized methods.
+    Instrumenter instrumenter = new Instrumenter(unit);
+    if (instrumenter.isEnabled()) {
+      instrumenter.run();
+      ticker.tick("Instrumenter");
+    }
+
     // Adds nil_chk calls wherever an expression is dereferenced.
     // After: InnerClassExtractor - Cannot handle local classes.
     // After: InitializationNormalizer
@@ -371,6 +437,9 @@ public class TranslationProcessor extends FileProcessor {
   }
 
   public void postProcess() {
+    if (moduleMap != null) {
+      moduleMap.generate();
+    }
     if (logger.isLoggable(Level.INFO)) {
       int nFiles = processedCount;
       System.out.println(String.format(
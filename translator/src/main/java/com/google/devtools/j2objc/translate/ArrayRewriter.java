@@ -24,6 +24,8 @@ import com.google.devtools.j2objc.ast.FieldAccess;
 import com.google.devtools.j2objc.ast.FunctionInvocation;
 import com.google.devtools.j2objc.ast.InstanceofExpression;
 import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.NativeDeclaration;
+import com.google.devtools.j2objc.ast.NativeExpression;
 import com.google.devtools.j2objc.ast.NumberLiteral;
 import com.google.devtools.j2objc.ast.PrefixExpression;
 import com.google.devtools.j2objc.ast.QualifiedName;
@@ -31,16 +33,20 @@ import com.google.devtools.j2objc.ast.SimpleName;
 import com.google.devtools.j2objc.ast.TreeUtil;
 import com.google.devtools.j2objc.ast.TypeLiteral;
 import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.gen.LiteralGenerator;
 import com.google.devtools.j2objc.types.ExecutablePair;
 import com.google.devtools.j2objc.types.FunctionElement;
 import com.google.devtools.j2objc.types.GeneratedExecutableElement;
 import com.google.devtools.j2objc.types.GeneratedVariableElement;
 import com.google.devtools.j2objc.types.PointerType;
 import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.util.TranslationUtil;
 import com.google.devtools.j2objc.util.TypeUtil;
 import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
@@ -55,6 +61,10 @@ import javax.lang.model.type.TypeMirror;
  */
 public class ArrayRewriter extends UnitTreeVisitor {
 
+  // Maps the component type and contents of each static const array declared in this unit to its
+  // name. Integral types render their values the same way, so the type is part of the key.
+  private final Map<String, String> constArrays = new HashMap<>();
+
   public ArrayRewriter(CompilationUnit unit) {
     super(unit);
   }
@@ -69,7 +79,8 @@ public class ArrayRewriter extends UnitTreeVisitor {
     boolean retainedResult = node.hasRetainedResult() || options.useARC();
     ArrayInitializer initializer = node.getInitializer();
     if (initializer != null) {
-      return newInitializedArrayInvocation(arrayType, initializer.getExpressions(), retainedResult);
+      return newInitializedArrayInvocation(
+          node, arrayType, initializer.getExpressions(), retainedResult);
     } else {
       List<Expression> dimensions = node.getDimensions();
       if (dimensions.size() == 1) {
@@ -81,7 +92,8 @@ public class ArrayRewriter extends UnitTreeVisitor {
   }
 
   private MethodInvocation newInitializedArrayInvocation(
-      ArrayType arrayType, List<Expression> elements, boolean retainedResult) {
+      ArrayCreation node, ArrayType arrayType, List<Expression> elements,
+      boolean retainedResult) {
     TypeMirror componentType = arrayType.getComponentType();
     TypeElement iosArrayElement = typeUtil.getIosArray(componentType);
 
@@ -100,16 +112,21 @@ public class ArrayRewriter extends UnitTreeVisitor {
     MethodInvocation invocation = new MethodInvocation(
         new ExecutablePair(methodElement), arrayType, new SimpleName(iosArrayElement));
 
-    // Create the array initializer and add it as the first parameter.
-    ArrayInitializer arrayInit = new ArrayInitializer(arrayType);
-    for (Expression element : elements) {
-      arrayInit.addExpression(element.copy());
+    // Add the array values as the first parameter, either as static const data
+    // or as an array initializer.
+    Expression constArray = getConstArray(node, componentType, elements);
+    if (constArray != null) {
+      invocation.addArgument(constArray);
+    } else {
+      ArrayInitializer arrayInit = new ArrayInitializer(arrayType);
+      for (Expression element : elements) {
+        arrayInit.addExpression(element.copy());
+      }
+      invocation.addArgument(arrayInit);
     }
-    invocation.addArgument(arrayInit);
 
     // Add the array size parameter.
-    invocation.addArgument(
-        NumberLiteral.newIntLiteral(arrayInit.getExpressions().size(), typeUtil));
+    invocation.addArgument(NumberLiteral.newIntLiteral(elements.size(), typeUtil));
 
     // Add the type argument for object arrays.
     if (!componentType.getKind().isPrimitive()) {
@@ -119,6 +136,64 @@ public class ArrayRewriter extends UnitTreeVisitor {
     return invocation;
   }
 
+  /**
+   * Returns a reference to a static const C array holding the elements of a
+   * large initializer of primitive constants, or null if the initializer
+   * doesn't qualify. The IOSArray is then filled from the array with a single
+   * memcpy, instead of from a compound literal built on the stack each time.
+   */
+  private Expression getConstArray(
+      ArrayCreation node, TypeMirror componentType, List<Expression> elements) {
+    int threshold = options.constArrayThreshold();
+    if (threshold <= 0 || elements.size() < threshold || !componentType.getKind().isPrimitive()) {
+      return null;
+    }
+    StringBuilder values = new StringBuilder();
+    for (Expression element : elements) {
+      Object value = element.getConstantValue();
+      if (value == null) {
+        return null;
+      }
+      if (values.length() > 0) {
+        values.append(values.length() - values.lastIndexOf("\n") > 80 ? ",\n  " : ", ");
+      }
+      values.append(generateConstant(value, componentType));
+    }
+    String key = componentType.getKind() + ":" + values;
+    String name = constArrays.get(key);
+    if (name == null) {
+      TypeElement type = TreeUtil.getEnclosingTypeElement(node);
+      name = UnicodeUtils.format(
+          "%s_constArray$%d", nameTable.getFullName(type), constArrays.size());
+      constArrays.put(key, name);
+      unit.addNativeBlock(NativeDeclaration.newOuterDeclaration(null, UnicodeUtils.format(
+          "static const %s %s[] = {\n  %s\n};",
+          NameTable.getPrimitiveObjCType(componentType), name, values)));
+    }
+    return new NativeExpression(name, new PointerType(componentType));
+  }
+
+  private static String generateConstant(Object value, TypeMirror type) {
+    if (value instanceof Boolean) {
+      return LiteralGenerator.generate(value);
+    }
+    long l = value instanceof Character ? (Character) value : ((Number) value).longValue();
+    switch (type.getKind()) {
+      case BYTE: return Byte.toString((byte) l);
+      case CHAR: return LiteralGenerator.generate((char) l);
+      case SHORT: return Short.toString((short) l);
+      case INT: return LiteralGenerator.generate((int) l);
+      case LONG: return LiteralGenerator.generate(l);
+      case FLOAT:
+        return LiteralGenerator.generate(
+            value instanceof Character ? (float) l : ((Number) value).floatValue());
+      case DOUBLE:
+        return LiteralGenerator.generate(
+            value instanceof Character ? (double) l : ((Number) value).doubleValue());
+      default: throw new AssertionError("Not a primitive type: " + type);
+    }
+  }
+
   private String paramNameForPrimitive(TypeMirror t) {
     switch (t.getKind()) {
       case BOOLEAN: return "Booleans";
@@ -0,0 +1,292 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.FileWriteMode;
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.ast.ArrayCreation;
+import com.google.devtools.j2objc.ast.Assignment;
+import com.google.devtools.j2objc.ast.Block;
+import com.google.devtools.j2objc.ast.ClassInstanceCreation;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.DoStatement;
+import com.google.devtools.j2objc.ast.EnhancedForStatement;
+import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.ForStatement;
+import com.google.devtools.j2objc.ast.InfixExpression;
+import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.PostfixExpression;
+import com.google.devtools.j2objc.ast.PrefixExpression;
+import com.google.devtools.j2objc.ast.ReturnStatement;
+import com.google.devtools.j2objc.ast.SingleVariableDeclaration;
+import com.google.devtools.j2objc.ast.Statement;
+import com.google.devtools.j2objc.ast.SuperMethodInvocation;
+import com.google.devtools.j2objc.ast.TreeNode;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.ast.WhileStatement;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.ErrorUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Adds autorelease pools to the bodies of loops that create many autoreleased
+ * objects per iteration, as if their loop variables were annotated with
+ * AutoreleasePool. The objects are estimated by counting the class instance
+ * and array creations, string concatenations, and method results of reference
+ * type (which include boxing conversions) in each loop body. Allocations in a
+ * nested loop without a pool are counted as a single iteration.
+ *
+ * A loop is never given a pool when an object created by an iteration could
+ * be used after the pool is drained, which is when the loop body assigns a
+ * local variable of reference type that is declared outside of it, or
+ * returns a reference.
+ */
+public class AutoreleasePoolRewriter extends UnitTreeVisitor {
+
+  private final int threshold;
+  private final Deque<Loop> loops = new ArrayDeque<>();
+  private final List<String> report = new ArrayList<>();
+
+  private static class Loop {
+    private int allocations = 0;
+    private boolean unsafe = false;
+    private final Set<VariableElement> declaredVariables = new HashSet<>();
+  }
+
+  public AutoreleasePoolRewriter(CompilationUnit unit) {
+    super(unit);
+    threshold = options.autoreleasePoolThreshold();
+  }
+
+  public boolean isEnabled() {
+    return threshold > 0;
+  }
+
+  @Override
+  public void endVisit(CompilationUnit node) {
+    File reportFile = options.getAutoreleasePoolReport();
+    if (reportFile == null || report.isEmpty()) {
+      return;
+    }
+    try {
+      Files.asCharSink(reportFile, UTF_8, FileWriteMode.APPEND).writeLines(report);
+    } catch (IOException e) {
+      ErrorUtil.error("Failed writing autorelease pool report: " + e.getMessage());
+    }
+  }
+
+  @Override
+  public boolean visit(ForStatement node) {
+    acceptAll(node.getInitializers());
+    acceptIfNotNull(node.getExpression());
+    acceptAll(node.getUpdaters());
+    visitLoop(node, node.getBody(), node::setBody);
+    return false;
+  }
+
+  @Override
+  public boolean visit(EnhancedForStatement node) {
+    node.getExpression().accept(this);
+    visitLoop(node, node.getBody(), node::setBody);
+    return false;
+  }
+
+  @Override
+  public boolean visit(WhileStatement node) {
+    node.getExpression().accept(this);
+    visitLoop(node, node.getBody(), node::setBody);
+    return false;
+  }
+
+  @Override
+  public boolean visit(DoStatement node) {
+    visitLoop(node, node.getBody(), node::setBody);
+    node.getExpression().accept(this);
+    return false;
+  }
+
+  private void visitLoop(Statement node, Statement body, Consumer<Statement> setBody) {
+    Loop loop = new Loop();
+    loops.push(loop);
+    body.accept(this);
+    loops.pop();
+    boolean hasPool = body instanceof Block && ((Block) body).hasAutoreleasePool();
+    if (!hasPool && !loop.unsafe && loop.allocations >= threshold) {
+      Block block;
+      if (body instanceof Block) {
+        block = (Block) body;
+      } else {
+        block = new Block();
+        setBody.accept(block);
+        block.addStatement(body);
+      }
+      block.setHasAutoreleasePool(true);
+      report.add(UnicodeUtils.format("%s:%d: %s, %d autoreleased objects per iteration",
+          unit.getSourceFilePath(), node.getLineNumber(), getEnclosingName(node),
+          loop.allocations));
+      hasPool = true;
+    }
+    if (!hasPool && !loops.isEmpty()) {
+      loops.peek().allocations += loop.allocations;
+    }
+  }
+
+  private String getEnclosingName(TreeNode node) {
+    String typeName = elementUtil.getBinaryName(TreeUtil.getEnclosingTypeElement(node));
+    MethodDeclaration method = TreeUtil.getEnclosingMethod(node);
+    return method != null
+        ? typeName + '.' + ElementUtil.getName(method.getExecutableElement())
+        : typeName;
+  }
+
+  private void acceptAll(List<? extends TreeNode> nodes) {
+    for (TreeNode node : nodes) {
+      node.accept(this);
+    }
+  }
+
+  private void acceptIfNotNull(TreeNode node) {
+    if (node != null) {
+      node.accept(this);
+    }
+  }
+
+  private void addAllocation() {
+    if (!loops.isEmpty()) {
+      loops.peek().allocations++;
+    }
+  }
+
+  private void addAllocationIfReference(TypeMirror type) {
+    if (TypeUtil.isReferenceType(type)) {
+      addAllocation();
+    }
+  }
+
+  @Override
+  public void endVisit(ClassInstanceCreation node) {
+    if (!node.hasRetainedResult()) {
+      addAllocation();
+    }
+  }
+
+  @Override
+  public void endVisit(ArrayCreation node) {
+    if (!node.hasRetainedResult()) {
+      addAllocation();
+    }
+  }
+
+  @Override
+  public void endVisit(InfixExpression node) {
+    if (node.getOperator() == InfixExpression.Operator.PLUS
+        && typeUtil.isString(node.getTypeMirror())) {
+      addAllocation();
+    }
+  }
+
+  @Override
+  public void endVisit(MethodInvocation node) {
+    addAllocationIfReference(node.getTypeMirror());
+  }
+
+  @Override
+  public void endVisit(SuperMethodInvocation node) {
+    addAllocationIfReference(node.getTypeMirror());
+  }
+
+  @Override
+  public void endVisit(VariableDeclarationFragment node) {
+    declare(node.getVariableElement());
+  }
+
+  @Override
+  public void endVisit(SingleVariableDeclaration node) {
+    declare(node.getVariableElement());
+  }
+
+  private void declare(VariableElement var) {
+    for (Loop loop : loops) {
+      loop.declaredVariables.add(var);
+    }
+  }
+
+  @Override
+  public void endVisit(Assignment node) {
+    if (node.getOperator() == Assignment.Operator.PLUS_ASSIGN
+        && typeUtil.isString(node.getTypeMirror())) {
+      addAllocation();
+    }
+    checkLocalAssignment(node.getLeftHandSide());
+  }
+
+  @Override
+  public void endVisit(PrefixExpression node) {
+    PrefixExpression.Operator op = node.getOperator();
+    if (op == PrefixExpression.Operator.INCREMENT || op == PrefixExpression.Operator.DECREMENT
+        || op == PrefixExpression.Operator.ADDRESS_OF) {
+      checkLocalAssignment(node.getOperand());
+    }
+  }
+
+  @Override
+  public void endVisit(PostfixExpression node) {
+    checkLocalAssignment(node.getOperand());
+  }
+
+  @Override
+  public void endVisit(ReturnStatement node) {
+    Expression expr = node.getExpression();
+    if (expr != null && TypeUtil.isReferenceType(expr.getTypeMirror())) {
+      for (Loop loop : loops) {
+        loop.unsafe = true;
+      }
+    }
+  }
+
+  /**
+   * Marks the loops that don't declare an assigned local variable of
+   * reference type, since the variable isn't retained and may outlive their
+   * pools.
+   */
+  private void checkLocalAssignment(Expression lhs) {
+    VariableElement var = TreeUtil.getVariableElement(lhs);
+    if (var == null || var.getKind().isField() || !TypeUtil.isReferenceType(var.asType())) {
+      return;
+    }
+    for (Loop loop : loops) {
+      if (!loop.declaredVariables.contains(var)) {
+        loop.unsafe = true;
+      }
+    }
+  }
+}
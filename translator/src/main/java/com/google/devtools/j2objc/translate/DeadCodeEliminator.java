@@ -234,6 +234,30 @@ public class DeadCodeEliminator extends UnitTreeVisitor {
     }
   }
 
+  /**
+   * Returns true if, after this eliminator has run, the unit only declares dead classes with
+   * nothing left to generate: no constants, live nested types or native code. The remaining
+   * translation passes can then be skipped, since they would only rewrite discarded code.
+   */
+  public boolean isDeadUnit() {
+    if (unit.getTypes().isEmpty()) {
+      return false;
+    }
+    for (AbstractTypeDeclaration type : unit.getTypes()) {
+      if (!type.isDeadClass() || !type.getBodyDeclarations().isEmpty()) {
+        return false;
+      }
+    }
+    // OCNI blocks outside of the dead classes are still generated.
+    String source = unit.getSource();
+    for (Comment comment : unit.getCommentList()) {
+      if (comment.isBlockComment() && source.startsWith("/*-[", comment.getStartPosition())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
   /**
    * Remove empty classes marked as dead. This needs to be done after translation to avoid inner
    * class references in the AST returned by DeadCodeEliminator.
@@ -14,15 +14,20 @@
 
 package com.google.devtools.j2objc.translate;
 
+import com.google.common.collect.Iterables;
 import com.google.devtools.j2objc.ast.Block;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.EnhancedForStatement;
 import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.ExpressionStatement;
 import com.google.devtools.j2objc.ast.FieldAccess;
 import com.google.devtools.j2objc.ast.FunctionInvocation;
 import com.google.devtools.j2objc.ast.InfixExpression;
 import com.google.devtools.j2objc.ast.LabeledStatement;
 import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.Name;
+import com.google.devtools.j2objc.ast.NativeExpression;
+import com.google.devtools.j2objc.ast.NumberLiteral;
 import com.google.devtools.j2objc.ast.PostfixExpression;
 import com.google.devtools.j2objc.ast.PrefixExpression;
 import com.google.devtools.j2objc.ast.SimpleName;
@@ -43,6 +48,8 @@ import com.google.j2objc.annotations.LoopTranslation;
 import com.google.j2objc.annotations.LoopTranslation.LoopStyle;
 import java.util.List;
 import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.element.VariableElement;
@@ -71,7 +78,9 @@ public class EnhancedForRewriter extends UnitTreeVisitor {
       makeBlock(node.getBody()).setHasAutoreleasePool(true);
     }
 
-    if (TypeUtil.isArray(expressionType)) {
+    if (isEnumValuesInvocation(expression)) {
+      handleEnumValuesIteration(node);
+    } else if (TypeUtil.isArray(expressionType)) {
       handleArrayIteration(node);
     } else if (emitJavaIteratorLoop(loopVariable)) {
       convertToJavaIteratorLoop(node);
@@ -147,6 +156,75 @@ public class EnhancedForRewriter extends UnitTreeVisitor {
     replaceLoop(node, block, loop);
   }
 
+  /**
+   * Returns true if the expression is a call to an enum's values() method.
+   * Its result can't be modified by a loop over it, so the loop can iterate
+   * the enum's backing array instead of a copy.
+   */
+  private boolean isEnumValuesInvocation(Expression expression) {
+    if (!(expression instanceof MethodInvocation)) {
+      return false;
+    }
+    // Skip invocations through an instance, whose receiver must be evaluated.
+    Expression receiver = ((MethodInvocation) expression).getExpression();
+    if (receiver != null
+        && !(receiver instanceof Name && ElementUtil.isTypeElement(((Name) receiver).getElement()))) {
+      return false;
+    }
+    ExecutableElement method = ((MethodInvocation) expression).getExecutableElement();
+    TypeElement declaringClass = ElementUtil.getDeclaringClass(method);
+    return ElementUtil.isEnum(declaringClass) && ElementUtil.isStatic(method)
+        && ElementUtil.getName(method).equals("values") && method.getParameters().isEmpty();
+  }
+
+  private void handleEnumValuesIteration(EnhancedForStatement node) {
+    MethodInvocation expression = (MethodInvocation) node.getExpression();
+    TypeElement enumType = ElementUtil.getDeclaringClass(expression.getExecutableElement());
+    String typeName = nameTable.getFullName(enumType);
+    VariableElement loopVariable = node.getParameter().getVariableElement();
+    TypeMirror bufferType = new PointerType(enumType.asType());
+    VariableElement bufferVariable = GeneratedVariableElement.newLocalVar("b__", bufferType, null)
+        .setTypeQualifiers("const*");
+    VariableElement endVariable = GeneratedVariableElement.newLocalVar("e__", bufferType, null)
+        .setTypeQualifiers("const*");
+    int numConstants = Iterables.size(
+        ElementUtil.filterEnclosedElements(enumType, VariableElement.class,
+            ElementKind.ENUM_CONSTANT));
+
+    // The values array is filled in by the enum's class initialization.
+    TypeMirror voidType = typeUtil.getVoid();
+    FunctionInvocation initCall = new FunctionInvocation(
+        new FunctionElement(typeName + "_initialize", voidType, enumType), voidType);
+    VariableDeclarationStatement bufferDecl = new VariableDeclarationStatement(
+        bufferVariable, new NativeExpression(typeName + "_values_", bufferType));
+    InfixExpression endInit = new InfixExpression(
+        bufferType, InfixExpression.Operator.PLUS, new SimpleName(bufferVariable),
+        NumberLiteral.newIntLiteral(numConstants, typeUtil));
+    VariableDeclarationStatement endDecl = new VariableDeclarationStatement(endVariable, endInit);
+
+    WhileStatement loop = new WhileStatement();
+    loop.setExpression(new InfixExpression(
+        typeUtil.getBoolean(), InfixExpression.Operator.LESS, new SimpleName(bufferVariable),
+        new SimpleName(endVariable)));
+    Block newLoopBody = makeBlock(TreeUtil.remove(node.getBody()));
+    loop.setBody(newLoopBody);
+    // Enum constants are never deallocated, so the loop variable doesn't need
+    // to be retained.
+    newLoopBody.addStatement(0, new VariableDeclarationStatement(loopVariable,
+        new PrefixExpression(
+            enumType.asType(),
+            PrefixExpression.Operator.DEREFERENCE,
+            new PostfixExpression(bufferVariable, PostfixExpression.Operator.INCREMENT))));
+
+    Block block = new Block();
+    List<Statement> stmts = block.getStatements();
+    stmts.add(new ExpressionStatement(initCall));
+    stmts.add(bufferDecl);
+    stmts.add(endDecl);
+    stmts.add(loop);
+    replaceLoop(node, block, loop);
+  }
+
   private boolean emitJavaIteratorLoop(VariableElement loopVariable) {
     AnnotationMirror loopTranslation =
         ElementUtil.getAnnotation(loopVariable, LoopTranslation.class);
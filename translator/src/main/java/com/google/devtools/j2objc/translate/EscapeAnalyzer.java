@@ -0,0 +1,199 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.ast.ArrayAccess;
+import com.google.devtools.j2objc.ast.Assignment;
+import com.google.devtools.j2objc.ast.Block;
+import com.google.devtools.j2objc.ast.ClassInstanceCreation;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.FieldAccess;
+import com.google.devtools.j2objc.ast.InfixExpression;
+import com.google.devtools.j2objc.ast.LabeledStatement;
+import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.NativeStatement;
+import com.google.devtools.j2objc.ast.QualifiedName;
+import com.google.devtools.j2objc.ast.SimpleName;
+import com.google.devtools.j2objc.ast.TreeNode;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.ast.VariableDeclarationStatement;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Finds local variables initialized with a new object that never escapes the
+ * variable's scope, when using reference counting. Those objects are created
+ * with a retained allocating constructor and released when the variable goes
+ * out of scope, instead of being autoreleased.
+ *
+ * Locals aren't retained, so the object escapes when the variable is
+ * reassigned, or when its value is used anywhere except as a receiver, as an
+ * argument of a constructor or invocation, or as the value of a strong field
+ * or array element assignment, which retains it. Field values, array elements
+ * and invocation results may be owned by the object and aren't retained when
+ * read, so they are checked the same way. Throwables are never released early,
+ * and methods with labeled statements are skipped because a jump past the
+ * release doesn't compile.
+ */
+public class EscapeAnalyzer extends UnitTreeVisitor {
+
+  private final Map<VariableElement, VariableDeclarationFragment> candidates =
+      new LinkedHashMap<>();
+  private final Set<VariableElement> escaped = new HashSet<>();
+  private boolean hasLabels = false;
+
+  public EscapeAnalyzer(CompilationUnit unit) {
+    super(unit);
+  }
+
+  public boolean isEnabled() {
+    return options.escapeAnalysis() && options.useReferenceCounting();
+  }
+
+  @Override
+  public boolean visit(MethodDeclaration node) {
+    candidates.clear();
+    escaped.clear();
+    hasLabels = false;
+    return true;
+  }
+
+  @Override
+  public void endVisit(MethodDeclaration node) {
+    if (hasLabels) {
+      return;
+    }
+    for (Map.Entry<VariableElement, VariableDeclarationFragment> entry : candidates.entrySet()) {
+      VariableElement var = entry.getKey();
+      if (escaped.contains(var)) {
+        continue;
+      }
+      VariableDeclarationFragment fragment = entry.getValue();
+      ((ClassInstanceCreation) fragment.getInitializer()).setHasRetainedResult(true);
+      TreeUtil.insertAfter((VariableDeclarationStatement) fragment.getParent(),
+          new NativeStatement(UnicodeUtils.format(
+              "JreReleaseAtScopeEnd(%s);", nameTable.getVariableShortName(var))));
+    }
+  }
+
+  @Override
+  public void endVisit(LabeledStatement node) {
+    hasLabels = true;
+  }
+
+  @Override
+  public void endVisit(VariableDeclarationFragment node) {
+    VariableElement var = node.getVariableElement();
+    Expression initializer = node.getInitializer();
+    TreeNode parent = node.getParent();
+    if (!(initializer instanceof ClassInstanceCreation)
+        || ((ClassInstanceCreation) initializer).hasRetainedResult()
+        || !ElementUtil.isLocalVariable(var)
+        || !(parent instanceof VariableDeclarationStatement)
+        || !(parent.getParent() instanceof Block)
+        || TreeUtil.getEnclosingMethod(node) == null) {
+      return;
+    }
+    TypeMirror type = initializer.getTypeMirror();
+    // String constructors are mapped to autoreleasing factory methods.
+    if (typeUtil.isString(type)
+        || typeUtil.isSubtype(type, typeUtil.getJavaThrowable().asType())) {
+      return;
+    }
+    candidates.put(var, node);
+  }
+
+  @Override
+  public void endVisit(SimpleName node) {
+    VariableElement var = TreeUtil.getVariableElement(node);
+    if (var != null && candidates.containsKey(var) && !isRetainingUse(node, false)) {
+      escaped.add(var);
+    }
+  }
+
+  /**
+   * Returns true if a value is used in a way that either doesn't outlive the
+   * variable, or retains the value. A derived value is one read from the
+   * object, which may be released along with it.
+   */
+  private boolean isRetainingUse(Expression node, boolean derived) {
+    TreeNode child = node;
+    TreeNode parent = node.getParent();
+    while (parent.getKind() == TreeNode.Kind.PARENTHESIZED_EXPRESSION
+        || parent.getKind() == TreeNode.Kind.CAST_EXPRESSION) {
+      child = parent;
+      parent = parent.getParent();
+    }
+    switch (parent.getKind()) {
+      case METHOD_INVOCATION:
+      case SUPER_METHOD_INVOCATION:
+      case FUNCTION_INVOCATION:
+        // The value is a receiver or an argument. The result may be the same
+        // object, as with a builder's "return this", or one that it owns.
+        return isRetainingDerivedUse((Expression) parent);
+      case CLASS_INSTANCE_CREATION:
+      case CONSTRUCTOR_INVOCATION:
+      case SUPER_CONSTRUCTOR_INVOCATION:
+      case EXPRESSION_STATEMENT:
+      case SYNCHRONIZED_STATEMENT:
+      case INSTANCEOF_EXPRESSION:
+        return true;
+      case FIELD_ACCESS:
+        return ((FieldAccess) parent).getExpression() == child
+            && isRetainingDerivedUse((Expression) parent);
+      case QUALIFIED_NAME:
+        return ((QualifiedName) parent).getQualifier() == child
+            && isRetainingDerivedUse((Expression) parent);
+      case ARRAY_ACCESS:
+        return ((ArrayAccess) parent).getArray() == child
+            && isRetainingDerivedUse((Expression) parent);
+      case INFIX_EXPRESSION: {
+        InfixExpression infix = (InfixExpression) parent;
+        InfixExpression.Operator op = infix.getOperator();
+        return op == InfixExpression.Operator.EQUALS || op == InfixExpression.Operator.NOT_EQUALS
+            || typeUtil.isString(infix.getTypeMirror());
+      }
+      case ASSIGNMENT: {
+        Assignment assignment = (Assignment) parent;
+        if (assignment.getRightHandSide() != child) {
+          // Storing into a field or element of the object doesn't leak it,
+          // but reassigning the variable does.
+          return derived;
+        }
+        Expression lhs = assignment.getLeftHandSide();
+        VariableElement lhsVar = TreeUtil.getVariableElement(lhs);
+        return lhs instanceof ArrayAccess
+            || (lhsVar != null && lhsVar.getKind().isField()
+                && !ElementUtil.isWeakReference(lhsVar));
+      }
+      default:
+        return false;
+    }
+  }
+
+  private boolean isRetainingDerivedUse(Expression node) {
+    return !TypeUtil.isReferenceType(node.getTypeMirror()) || isRetainingUse(node, true);
+  }
+}
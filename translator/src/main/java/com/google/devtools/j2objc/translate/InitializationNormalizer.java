@@ -86,6 +86,7 @@ public class InitializationNormalizer extends UnitTreeVisitor {
     private final TypeElement type;
     private final List<Statement> initStatements;
     private final List<Statement> classInitStatements;
+    private final StaticInitializerEvaluator evaluator;
     private int constInitIdx = 0;
 
     private TypeNormalizer(AbstractTypeDeclaration node) {
@@ -93,6 +94,7 @@ public class InitializationNormalizer extends UnitTreeVisitor {
       type = node.getTypeElement();
       initStatements = new ArrayList<>();
       classInitStatements = node.getClassInitStatements();
+      evaluator = new StaticInitializerEvaluator(typeUtil);
     }
 
     private void normalizeMembers() {
@@ -156,6 +158,11 @@ public class InitializationNormalizer extends UnitTreeVisitor {
       }
       Expression initializer = frag.getInitializer();
       Object constantValue = initializer.getConstantValue();
+      if (constantValue == null && classInitStatements.size() == constInitIdx) {
+        // Static final fields computed only from constants are folded as well, unless earlier
+        // class initialization code could read the field before it is assigned.
+        constantValue = evaluator.evaluate(frag.getVariableElement(), initializer);
+      }
       if (constantValue == null) {
         if (initializer.getKind() == TreeNode.Kind.NULL_LITERAL
                 // Without this check, clang strips away the element causing missing symbol errors.
@@ -0,0 +1,132 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.ast.AbstractTypeDeclaration;
+import com.google.devtools.j2objc.ast.Block;
+import com.google.devtools.j2objc.ast.ClassInstanceCreation;
+import com.google.devtools.j2objc.ast.CommaExpression;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.MethodDeclaration;
+import com.google.devtools.j2objc.ast.NativeDeclaration;
+import com.google.devtools.j2objc.ast.NativeExpression;
+import com.google.devtools.j2objc.ast.NativeStatement;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.UnitTreeVisitor;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.UnicodeUtils;
+import java.util.ArrayList;
+import java.util.List;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+
+/**
+ * Inserts the profiling probes requested by the --instrument flag. A call
+ * probe at the start of each method and constructor body counts its calls and
+ * the time spent in it, and an allocation probe counts the objects created by
+ * each class instance creation. The unit's probe table maps each probe id to
+ * a Java signature, so profiles can be reported against the Java source.
+ */
+public class Instrumenter extends UnitTreeVisitor {
+
+  private final List<String> probeNames = new ArrayList<>();
+  private String tableName;
+
+  public Instrumenter(CompilationUnit unit) {
+    super(unit);
+  }
+
+  public boolean isEnabled() {
+    return options.instrumentCalls() || options.instrumentAllocations();
+  }
+
+  @Override
+  public boolean visit(CompilationUnit node) {
+    List<AbstractTypeDeclaration> types = node.getTypes();
+    if (types.isEmpty()) {
+      return false;
+    }
+    tableName = nameTable.getFullName(types.get(0).getTypeElement()) + "_probes";
+    return true;
+  }
+
+  @Override
+  public void endVisit(CompilationUnit node) {
+    if (probeNames.isEmpty()) {
+      return;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append("static const char *const ").append(tableName).append("_names[] = {\n");
+    for (String name : probeNames) {
+      sb.append("  \"").append(UnicodeUtils.escapeStringLiteral(name)).append("\",\n");
+    }
+    sb.append("};\n");
+    sb.append(UnicodeUtils.format("J2OBJC_PROBE_TABLE(%s, \"%s\", %d)", tableName,
+        UnicodeUtils.escapeStringLiteral(node.getSourceFilePath()), probeNames.size()));
+    node.addNativeBlock(NativeDeclaration.newOuterDeclaration(null, sb.toString()));
+  }
+
+  @Override
+  public void endVisit(MethodDeclaration node) {
+    Block body = node.getBody();
+    ExecutableElement method = node.getExecutableElement();
+    if (!options.instrumentCalls() || body == null || ElementUtil.isSynthetic(method)) {
+      return;
+    }
+    int probe = addProbe(getSignature(method));
+    body.addStatement(0, new NativeStatement(
+        UnicodeUtils.format("J2OBJC_PROBE_CALL(%s, %d);", tableName, probe)));
+  }
+
+  @Override
+  public void endVisit(ClassInstanceCreation node) {
+    if (!options.instrumentAllocations()) {
+      return;
+    }
+    MethodDeclaration enclosingMethod = TreeUtil.getEnclosingMethod(node);
+    String site = enclosingMethod != null
+        ? getSignature(enclosingMethod.getExecutableElement())
+        : elementUtil.getBinaryName(TreeUtil.getEnclosingTypeElement(node)) + ".<clinit>()V";
+    int probe = addProbe(UnicodeUtils.format("%s new %s (line %d)", site,
+        elementUtil.getBinaryName(ElementUtil.getDeclaringClass(node.getExecutableElement())),
+        node.getLineNumber()));
+    CommaExpression probeExpr = new CommaExpression(new NativeExpression(
+        UnicodeUtils.format("J2OBJC_PROBE_ALLOC(%s, %d)", tableName, probe),
+        typeUtil.getVoid()));
+    node.replaceWith(probeExpr);
+    probeExpr.addExpression(node);
+  }
+
+  private int addProbe(String name) {
+    probeNames.add(name);
+    return probeNames.size() - 1;
+  }
+
+  /**
+   * Returns a method's binary class name, name and descriptor, such as
+   * "com.foo.Bar.baz(ILjava/lang/String;)V".
+   */
+  private String getSignature(ExecutableElement method) {
+    TypeElement declaringClass = ElementUtil.getDeclaringClass(method);
+    StringBuilder sb = new StringBuilder(elementUtil.getBinaryName(declaringClass));
+    sb.append('.').append(ElementUtil.getName(method)).append('(');
+    for (VariableElement param : method.getParameters()) {
+      sb.append(typeUtil.getSignatureName(param.asType()));
+    }
+    sb.append(')').append(typeUtil.getSignatureName(method.getReturnType()));
+    return sb.toString();
+  }
+}
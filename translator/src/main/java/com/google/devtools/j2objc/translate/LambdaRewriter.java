@@ -15,31 +15,47 @@
 package com.google.devtools.j2objc.translate;
 
 import com.google.devtools.j2objc.ast.ArrayCreation;
+import com.google.devtools.j2objc.ast.Assignment;
 import com.google.devtools.j2objc.ast.Block;
+import com.google.devtools.j2objc.ast.BodyDeclaration;
 import com.google.devtools.j2objc.ast.CastExpression;
 import com.google.devtools.j2objc.ast.ClassInstanceCreation;
 import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.ast.ConditionalExpression;
 import com.google.devtools.j2objc.ast.CreationReference;
+import com.google.devtools.j2objc.ast.DoStatement;
+import com.google.devtools.j2objc.ast.EnhancedForStatement;
 import com.google.devtools.j2objc.ast.Expression;
 import com.google.devtools.j2objc.ast.ExpressionMethodReference;
 import com.google.devtools.j2objc.ast.ExpressionStatement;
 import com.google.devtools.j2objc.ast.FieldDeclaration;
+import com.google.devtools.j2objc.ast.ForStatement;
 import com.google.devtools.j2objc.ast.FunctionalExpression;
+import com.google.devtools.j2objc.ast.InfixExpression;
+import com.google.devtools.j2objc.ast.LabeledStatement;
 import com.google.devtools.j2objc.ast.LambdaExpression;
 import com.google.devtools.j2objc.ast.MethodDeclaration;
 import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.NullLiteral;
+import com.google.devtools.j2objc.ast.ParenthesizedExpression;
 import com.google.devtools.j2objc.ast.ReturnStatement;
 import com.google.devtools.j2objc.ast.SimpleName;
 import com.google.devtools.j2objc.ast.SingleVariableDeclaration;
+import com.google.devtools.j2objc.ast.Statement;
 import com.google.devtools.j2objc.ast.SuperConstructorInvocation;
 import com.google.devtools.j2objc.ast.SuperMethodInvocation;
 import com.google.devtools.j2objc.ast.SuperMethodReference;
+import com.google.devtools.j2objc.ast.ThisExpression;
 import com.google.devtools.j2objc.ast.TreeNode;
 import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.ast.TreeVisitor;
 import com.google.devtools.j2objc.ast.TypeDeclaration;
 import com.google.devtools.j2objc.ast.TypeMethodReference;
 import com.google.devtools.j2objc.ast.UnitTreeVisitor;
 import com.google.devtools.j2objc.ast.VariableDeclaration;
+import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
+import com.google.devtools.j2objc.ast.VariableDeclarationStatement;
+import com.google.devtools.j2objc.ast.WhileStatement;
 import com.google.devtools.j2objc.types.ExecutablePair;
 import com.google.devtools.j2objc.types.GeneratedExecutableElement;
 import com.google.devtools.j2objc.types.GeneratedVariableElement;
@@ -47,8 +63,10 @@ import com.google.devtools.j2objc.util.CaptureInfo;
 import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.TypeUtil;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Set;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
@@ -64,6 +82,7 @@ import javax.lang.model.type.TypeMirror;
 public class LambdaRewriter extends UnitTreeVisitor {
 
   private final CaptureInfo captureInfo;
+  private int hoistedCount = 0;
 
   public LambdaRewriter(CompilationUnit unit) {
     super(unit);
@@ -142,6 +161,102 @@ public class LambdaRewriter extends UnitTreeVisitor {
       }
     }
 
+    /**
+     * Caches the instance of a capturing lambda that is created in a loop, if
+     * its captured values can't change between iterations, so that the
+     * instance is created at most once per execution of the loop. The cache
+     * variable is declared before the outermost such loop.
+     */
+    private void hoistCreation() {
+      if (!captureInfo.isCapturing(lambdaType)) {
+        return;
+      }
+      Statement loop = getHoistingLoop();
+      if (loop == null) {
+        return;
+      }
+      TypeMirror type = lambdaType.asType();
+      VariableElement cacheVar = GeneratedVariableElement.newLocalVar(
+          "lambda" + hoistedCount++ + "__", type, null);
+      TreeNode loopStmt = loop.getParent() instanceof LabeledStatement ? loop.getParent() : loop;
+      TreeUtil.insertBefore((Statement) loopStmt,
+          new VariableDeclarationStatement(cacheVar, new NullLiteral(typeUtil.getNull())));
+      ConditionalExpression cached = new ConditionalExpression().setTypeMirror(type);
+      creation.replaceWith(cached);
+      cached.setExpression(new InfixExpression(
+          typeUtil.getBoolean(), InfixExpression.Operator.EQUALS, new SimpleName(cacheVar),
+          new NullLiteral(typeUtil.getNull())));
+      cached.setThenExpression(new ParenthesizedExpression(
+          new Assignment(new SimpleName(cacheVar), creation)));
+      cached.setElseExpression(new SimpleName(cacheVar));
+    }
+
+    /**
+     * Returns the outermost loop around the creation, within its method, whose
+     * iterations all capture the same values, or null if there isn't one.
+     */
+    private Statement getHoistingLoop() {
+      Statement loop = null;
+      TreeNode child = creation;
+      for (TreeNode parent = creation.getParent();
+           parent != null && !(parent instanceof BodyDeclaration)
+               && !(parent instanceof FunctionalExpression);
+           child = parent, parent = parent.getParent()) {
+        if (parent instanceof Block && ((Block) parent).hasAutoreleasePool()) {
+          // A cached instance wouldn't survive the pool.
+          break;
+        }
+        boolean isLoop = parent instanceof WhileStatement || parent instanceof DoStatement
+            || (parent instanceof ForStatement
+                && !((ForStatement) parent).getInitializers().contains(child))
+            || (parent instanceof EnhancedForStatement
+                && ((EnhancedForStatement) parent).getExpression() != child);
+        if (isLoop) {
+          if (!isLoopInvariant((Statement) parent)) {
+            break;
+          }
+          loop = (Statement) parent;
+        }
+      }
+      return loop;
+    }
+
+    private boolean isLoopInvariant(Statement loop) {
+      Set<VariableElement> loopVars = new HashSet<>();
+      loop.accept(new TreeVisitor() {
+        @Override
+        public void endVisit(VariableDeclarationFragment node) {
+          loopVars.add(node.getVariableElement());
+        }
+
+        @Override
+        public void endVisit(SingleVariableDeclaration node) {
+          loopVars.add(node.getVariableElement());
+        }
+      });
+      Expression outerArg = creation.getExpression();
+      if (outerArg != null && !isInvariant(outerArg, loopVars)) {
+        return false;
+      }
+      for (Expression arg : creation.getCaptureArgs()) {
+        if (!isInvariant(arg, loopVars)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private boolean isInvariant(Expression expr, Set<VariableElement> loopVars) {
+      if (expr instanceof ThisExpression) {
+        return true;
+      }
+      VariableElement var = expr instanceof SimpleName ? TreeUtil.getVariableElement(expr) : null;
+      if (var == null) {
+        return false;
+      }
+      return var.getKind().isField() ? ElementUtil.isFinal(var) : !loopVars.contains(var);
+    }
+
     private void setImplementationBody(TreeNode body) {
       implDecl.setBody(
           body instanceof Block ? (Block) body : asImplementationBlock((Expression) body));
@@ -249,27 +364,37 @@ public class LambdaRewriter extends UnitTreeVisitor {
 
   @Override
   public void endVisit(LambdaExpression node) {
-    new RewriteContext(node).rewriteLambdaExpression(node);
+    RewriteContext context = new RewriteContext(node);
+    context.rewriteLambdaExpression(node);
+    context.hoistCreation();
   }
 
   @Override
   public void endVisit(CreationReference node) {
-    new RewriteContext(node).rewriteCreationReference(node);
+    RewriteContext context = new RewriteContext(node);
+    context.rewriteCreationReference(node);
+    context.hoistCreation();
   }
 
   @Override
   public void endVisit(ExpressionMethodReference node) {
-    new RewriteContext(node).rewriteExpressionMethodReference(node);
+    RewriteContext context = new RewriteContext(node);
+    context.rewriteExpressionMethodReference(node);
+    context.hoistCreation();
   }
 
   @Override
   public void endVisit(SuperMethodReference node) {
-    new RewriteContext(node).rewriteSuperMethodReference(node);
+    RewriteContext context = new RewriteContext(node);
+    context.rewriteSuperMethodReference(node);
+    context.hoistCreation();
   }
 
   @Override
   public void endVisit(TypeMethodReference node) {
-    new RewriteContext(node).rewriteTypeMethodReference(node);
+    RewriteContext context = new RewriteContext(node);
+    context.rewriteTypeMethodReference(node);
+    context.hoistCreation();
   }
 
   private static String getParamName(int i) {
@@ -82,7 +82,7 @@ import javax.lang.model.type.TypeMirror;
  */
 public class NilCheckResolver extends UnitTreeVisitor {
 
-  private static final FunctionElement NIL_CHK_ELEM =
+  static final FunctionElement NIL_CHK_ELEM =
       new FunctionElement("nil_chk", TypeUtil.ID_TYPE, null)
           .addParameters(TypeUtil.ID_TYPE)
           .setIsMacro(true);
@@ -0,0 +1,400 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.devtools.j2objc.ast.CastExpression;
+import com.google.devtools.j2objc.ast.ConditionalExpression;
+import com.google.devtools.j2objc.ast.Expression;
+import com.google.devtools.j2objc.ast.InfixExpression;
+import com.google.devtools.j2objc.ast.MethodInvocation;
+import com.google.devtools.j2objc.ast.Name;
+import com.google.devtools.j2objc.ast.ParenthesizedExpression;
+import com.google.devtools.j2objc.ast.PrefixExpression;
+import com.google.devtools.j2objc.ast.TreeUtil;
+import com.google.devtools.j2objc.util.ElementUtil;
+import com.google.devtools.j2objc.util.TypeUtil;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+
+/**
+ * Evaluates static final field initializers that javac doesn't treat as
+ * constants, but that only combine constants with operators and pure library
+ * methods, such as "Math.max(A, B)" or "Integer.toHexString(FLAGS)". Folded
+ * fields are defined with their value instead of being assigned in the class
+ * initializer, so a class whose static fields all fold needs no +initialize.
+ *
+ * Fields are evaluated in declaration order, and a folded field can be used by
+ * later initializers. Forward references aren't folded, since Java reads
+ * the field's default value in that case. Neither are conversions of float
+ * and double values to strings, since the translator's JVM may format them
+ * differently than the runtime does.
+ */
+final class StaticInitializerEvaluator {
+
+  // Static methods that are deterministic and side-effect free for any
+  // constant arguments, and behave identically in the j2objc runtime.
+  private static final ImmutableSetMultimap<String, String> PURE_METHODS =
+      ImmutableSetMultimap.<String, String>builder()
+      .putAll("java.lang.Math", "abs", "min", "max", "floorDiv", "floorMod")
+      .putAll("java.lang.Integer", "parseInt", "bitCount", "highestOneBit", "lowestOneBit",
+          "numberOfLeadingZeros", "numberOfTrailingZeros", "reverse", "reverseBytes",
+          "rotateLeft", "rotateRight", "signum", "toString", "toHexString", "toOctalString",
+          "toBinaryString")
+      .putAll("java.lang.Long", "parseLong", "bitCount", "highestOneBit", "lowestOneBit",
+          "numberOfLeadingZeros", "numberOfTrailingZeros", "reverse", "reverseBytes",
+          "rotateLeft", "rotateRight", "signum", "toString", "toHexString", "toOctalString",
+          "toBinaryString")
+      .putAll("java.lang.Boolean", "parseBoolean")
+      .putAll("java.lang.String", "valueOf")
+      .build();
+
+  private final TypeUtil typeUtil;
+  private final Map<VariableElement, Object> foldedValues = new HashMap<>();
+
+  StaticInitializerEvaluator(TypeUtil typeUtil) {
+    this.typeUtil = typeUtil;
+  }
+
+  /**
+   * Returns the value of a static final field's initializer, or null if it
+   * can't be computed at translation time.
+   */
+  Object evaluate(VariableElement field, Expression initializer) {
+    if (!ElementUtil.isStatic(field) || !ElementUtil.isFinal(field)) {
+      return null;
+    }
+    TypeMirror type = field.asType();
+    if (!type.getKind().isPrimitive() && !typeUtil.isString(type)) {
+      return null;
+    }
+    Object value = convert(evaluate(initializer), type);
+    if (value != null) {
+      foldedValues.put(field, value);
+    }
+    return value;
+  }
+
+  /**
+   * Returns an expression's value as the boxed form of its type, or null.
+   */
+  private Object evaluate(Expression expr) {
+    Object value = expr.getConstantValue();
+    if (value == null) {
+      value = evaluateNonConstant(expr);
+    }
+    return convert(value, expr.getTypeMirror());
+  }
+
+  private Object evaluateNonConstant(Expression expr) {
+    switch (expr.getKind()) {
+      case PARENTHESIZED_EXPRESSION:
+        return evaluate(((ParenthesizedExpression) expr).getExpression());
+      case SIMPLE_NAME:
+      case QUALIFIED_NAME:
+        {
+          VariableElement var = TreeUtil.getVariableElement((Name) expr);
+          if (var == null) {
+            return null;
+          }
+          Object value = var.getConstantValue();
+          return value != null ? value : foldedValues.get(var);
+        }
+      case CAST_EXPRESSION:
+        return evaluate(((CastExpression) expr).getExpression());
+      case CONDITIONAL_EXPRESSION:
+        {
+          ConditionalExpression conditional = (ConditionalExpression) expr;
+          Object condition = evaluate(conditional.getExpression());
+          if (!(condition instanceof Boolean)) {
+            return null;
+          }
+          return evaluate((Boolean) condition
+              ? conditional.getThenExpression() : conditional.getElseExpression());
+        }
+      case PREFIX_EXPRESSION:
+        return evaluatePrefix((PrefixExpression) expr);
+      case INFIX_EXPRESSION:
+        return evaluateInfix((InfixExpression) expr);
+      case METHOD_INVOCATION:
+        return evaluateInvocation((MethodInvocation) expr);
+      default:
+        return null;
+    }
+  }
+
+  private Object evaluatePrefix(PrefixExpression expr) {
+    Object operand = evaluate(expr.getOperand());
+    if (operand == null) {
+      return null;
+    }
+    switch (expr.getOperator()) {
+      case POSITIVE:
+        return operand;
+      case NEGATIVE:
+        return negate(toNumber(operand));
+      case COMPLEMENT:
+        return binary(InfixExpression.Operator.XOR, operand, -1);
+      case NOT:
+        return operand instanceof Boolean ? !(Boolean) operand : null;
+      default:
+        return null;
+    }
+  }
+
+  private Object evaluateInfix(InfixExpression expr) {
+    InfixExpression.Operator op = expr.getOperator();
+    List<Expression> operands = expr.getOperands();
+    Object result = evaluate(operands.get(0));
+    for (int i = 1; i < operands.size() && result != null; i++) {
+      if ((op == InfixExpression.Operator.CONDITIONAL_AND && Boolean.FALSE.equals(result))
+          || (op == InfixExpression.Operator.CONDITIONAL_OR && Boolean.TRUE.equals(result))) {
+        // The remaining operands aren't evaluated.
+        return result;
+      }
+      Object operand = evaluate(operands.get(i));
+      result = operand != null ? binary(op, result, operand) : null;
+    }
+    return result;
+  }
+
+  private Object evaluateInvocation(MethodInvocation invocation) {
+    ExecutableElement method = invocation.getExecutableElement();
+    String className = ElementUtil.getQualifiedName(ElementUtil.getDeclaringClass(method));
+    String methodName = ElementUtil.getName(method);
+    Expression receiver = invocation.getExpression();
+    if (!ElementUtil.isStatic(method)
+        || !PURE_METHODS.containsEntry(className, methodName)
+        || invocation.getVarargsType() != null
+        || (receiver != null && !(receiver instanceof Name))) {
+      return null;
+    }
+    List<? extends VariableElement> params = method.getParameters();
+    List<Expression> args = invocation.getArguments();
+    Class<?>[] paramClasses = new Class<?>[params.size()];
+    Object[] argValues = new Object[params.size()];
+    for (int i = 0; i < params.size(); i++) {
+      TypeMirror paramType = params.get(i).asType();
+      paramClasses[i] = getRuntimeClass(paramType);
+      argValues[i] = convert(evaluate(args.get(i)), paramType);
+      if (paramClasses[i] == null || argValues[i] == null
+          || (isFloatingPoint(argValues[i]) && typeUtil.isString(method.getReturnType()))) {
+        return null;
+      }
+    }
+    try {
+      Method m = Class.forName(className).getMethod(methodName, paramClasses);
+      return m.invoke(null, argValues);
+    } catch (InvocationTargetException e) {
+      // The method throws for these arguments, so it has to run at class initialization.
+      return null;
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
+  private Class<?> getRuntimeClass(TypeMirror type) {
+    switch (type.getKind()) {
+      case BOOLEAN: return boolean.class;
+      case BYTE: return byte.class;
+      case CHAR: return char.class;
+      case SHORT: return short.class;
+      case INT: return int.class;
+      case LONG: return long.class;
+      case FLOAT: return float.class;
+      case DOUBLE: return double.class;
+      default:
+        return typeUtil.isString(type) ? String.class : null;
+    }
+  }
+
+  /**
+   * Converts a value to the boxed form of a primitive or String type, as an
+   * assignment or cast would. Returns null for other types.
+   */
+  private Object convert(Object value, TypeMirror type) {
+    if (value == null) {
+      return null;
+    }
+    TypeKind kind = type.getKind();
+    if (kind == TypeKind.BOOLEAN) {
+      return value instanceof Boolean ? value : null;
+    }
+    if (kind.isPrimitive()) {
+      Number n = toNumber(value);
+      if (n == null) {
+        return null;
+      }
+      switch (kind) {
+        case BYTE: return n.byteValue();
+        case SHORT: return n.shortValue();
+        case CHAR: return (char) n.intValue();
+        case INT: return n.intValue();
+        case LONG: return n.longValue();
+        case FLOAT: return n.floatValue();
+        case DOUBLE: return n.doubleValue();
+        default: return null;
+      }
+    }
+    return typeUtil.isString(type) && value instanceof String ? value : null;
+  }
+
+  private static boolean isFloatingPoint(Object value) {
+    return value instanceof Float || value instanceof Double;
+  }
+
+  private static Number toNumber(Object value) {
+    if (value instanceof Character) {
+      return (int) (Character) value;
+    }
+    return value instanceof Number ? (Number) value : null;
+  }
+
+  /**
+   * Applies a binary operator with Java's promotion rules.
+   */
+  private static Object binary(InfixExpression.Operator op, Object left, Object right) {
+    if (op == InfixExpression.Operator.PLUS
+        && (left instanceof String || right instanceof String)) {
+      return isFloatingPoint(left) || isFloatingPoint(right) ? null : String.valueOf(left) + right;
+    }
+    if (left instanceof Boolean || right instanceof Boolean) {
+      if (!(left instanceof Boolean && right instanceof Boolean)) {
+        return null;
+      }
+      boolean a = (Boolean) left;
+      boolean b = (Boolean) right;
+      switch (op) {
+        case AND: case CONDITIONAL_AND: return a && b;
+        case OR: case CONDITIONAL_OR: return a || b;
+        case XOR: case NOT_EQUALS: return a ^ b;
+        case EQUALS: return a == b;
+        default: return null;
+      }
+    }
+    Number a = toNumber(left);
+    Number b = toNumber(right);
+    if (a == null || b == null) {
+      return null;
+    }
+    switch (op) {
+      case LEFT_SHIFT:
+      case RIGHT_SHIFT_SIGNED:
+      case RIGHT_SHIFT_UNSIGNED:
+        return shift(op, a, b.longValue());
+      default:
+        break;
+    }
+    if (a instanceof Double || b instanceof Double) {
+      return floatingPoint(op, a.doubleValue(), b.doubleValue(), false);
+    }
+    if (a instanceof Float || b instanceof Float) {
+      return floatingPoint(op, a.floatValue(), b.floatValue(), true);
+    }
+    if (a instanceof Long || b instanceof Long) {
+      return integral(op, a.longValue(), b.longValue(), false);
+    }
+    return integral(op, a.intValue(), b.intValue(), true);
+  }
+
+  private static Object negate(Number n) {
+    if (n instanceof Double) {
+      return -n.doubleValue();
+    } else if (n instanceof Float) {
+      return -n.floatValue();
+    } else if (n instanceof Long) {
+      return -n.longValue();
+    }
+    return n != null ? (Object) (-n.intValue()) : null;
+  }
+
+  private static Object shift(InfixExpression.Operator op, Number value, long distance) {
+    if (value instanceof Double || value instanceof Float) {
+      return null;
+    } else if (value instanceof Long) {
+      long v = value.longValue();
+      switch (op) {
+        case LEFT_SHIFT: return v << distance;
+        case RIGHT_SHIFT_SIGNED: return v >> distance;
+        default: return v >>> distance;
+      }
+    }
+    int v = value.intValue();
+    switch (op) {
+      case LEFT_SHIFT: return v << distance;
+      case RIGHT_SHIFT_SIGNED: return v >> distance;
+      default: return v >>> distance;
+    }
+  }
+
+  private static Object floatingPoint(
+      InfixExpression.Operator op, double a, double b, boolean isFloat) {
+    double result;
+    switch (op) {
+      case TIMES: result = a * b; break;
+      case DIVIDE: result = a / b; break;
+      case REMAINDER: result = a % b; break;
+      case PLUS: result = a + b; break;
+      case MINUS: result = a - b; break;
+      case LESS: return a < b;
+      case GREATER: return a > b;
+      case LESS_EQUALS: return a <= b;
+      case GREATER_EQUALS: return a >= b;
+      case EQUALS: return a == b;
+      case NOT_EQUALS: return a != b;
+      default: return null;
+    }
+    // Float operations are exact when done in double precision and rounded once.
+    return isFloat ? (Object) (float) result : (Object) result;
+  }
+
+  private static Object integral(InfixExpression.Operator op, long a, long b, boolean isInt) {
+    long result;
+    switch (op) {
+      case TIMES: result = a * b; break;
+      case DIVIDE:
+      case REMAINDER:
+        if (b == 0) {
+          return null;  // Throws ArithmeticException at runtime.
+        }
+        if (isInt) {
+          result = op == InfixExpression.Operator.DIVIDE ? (int) a / (int) b : (int) a % (int) b;
+        } else {
+          result = op == InfixExpression.Operator.DIVIDE ? a / b : a % b;
+        }
+        break;
+      case PLUS: result = a + b; break;
+      case MINUS: result = a - b; break;
+      case AND: result = a & b; break;
+      case OR: result = a | b; break;
+      case XOR: result = a ^ b; break;
+      case LESS: return a < b;
+      case GREATER: return a > b;
+      case LESS_EQUALS: return a <= b;
+      case GREATER_EQUALS: return a >= b;
+      case EQUALS: return a == b;
+      case NOT_EQUALS: return a != b;
+      default: return null;
+    }
+    return isInt ? (Object) (int) result : (Object) result;
+  }
+}
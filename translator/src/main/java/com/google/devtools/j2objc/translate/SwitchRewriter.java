@@ -21,6 +21,7 @@ import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.ast.EmptyStatement;
 import com.google.devtools.j2objc.ast.Expression;
 import com.google.devtools.j2objc.ast.ExpressionStatement;
+import com.google.devtools.j2objc.ast.FieldAccess;
 import com.google.devtools.j2objc.ast.FunctionInvocation;
 import com.google.devtools.j2objc.ast.MethodInvocation;
 import com.google.devtools.j2objc.ast.NativeExpression;
@@ -35,6 +36,7 @@ import com.google.devtools.j2objc.ast.VariableDeclarationFragment;
 import com.google.devtools.j2objc.ast.VariableDeclarationStatement;
 import com.google.devtools.j2objc.types.ExecutablePair;
 import com.google.devtools.j2objc.types.FunctionElement;
+import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.NameTable;
 import com.google.devtools.j2objc.util.TypeUtil;
 import java.util.List;
@@ -162,6 +164,17 @@ public class SwitchRewriter extends UnitTreeVisitor {
       return;
     }
     DeclaredType enumType = typeUtil.getSuperclass(type);
+    // Read the ordinal ivar directly when the runtime declares it in the
+    // JavaLangEnum header, which avoids sending a message.
+    VariableElement ordinalField =
+        ElementUtil.findField(TypeUtil.asTypeElement(enumType), "ordinal");
+    if (ordinalField != null && !ElementUtil.isPrivate(ordinalField)) {
+      FunctionInvocation nilChk =
+          new FunctionInvocation(NilCheckResolver.NIL_CHK_ELEM, expr.getTypeMirror());
+      nilChk.addArgument(TreeUtil.remove(expr));
+      node.setExpression(new FieldAccess(ordinalField, nilChk));
+      return;
+    }
     ExecutablePair ordinalMethod = typeUtil.findMethod(enumType, "ordinal");
     MethodInvocation invocation = new MethodInvocation(ordinalMethod, TreeUtil.remove(expr));
     node.setExpression(invocation);
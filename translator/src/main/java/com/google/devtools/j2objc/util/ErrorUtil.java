@@ -52,7 +52,7 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
   private static final boolean CLANG_STYLE_ERROR_MSG = (null != System.getenv("DEVELOPER_DIR"));
   private static Pattern pathAndLinePattern = null;
 
-  public static void reset() {
+  public static synchronized void reset() {
     errorCount = 0;
     warningCount = 0;
     errorMessages = Lists.newArrayList();
@@ -86,6 +86,16 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
     });
   }
 
+  /**
+   * Sets the stream errors and warnings are printed to, and returns the
+   * previous one.
+   */
+  public static synchronized PrintStream setErrorStream(PrintStream stream) {
+    PrintStream previous = errorStream;
+    errorStream = stream;
+    return previous;
+  }
+
   public static String getFullMessage(String tag, String message, boolean clangStyle) {
     String fullMessage = null;
     if (clangStyle) {
@@ -107,7 +117,7 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
     return fullMessage;
   }
 
-  public static void parserDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
+  public static synchronized void parserDiagnostic(Diagnostic<? extends JavaFileObject> diagnostic) {
     Kind kind = diagnostic.getKind();
     if (kind == Kind.ERROR) {
       errorMessages.add(diagnostic.getMessage(null));
@@ -129,13 +139,14 @@ public class ErrorUtil implements DiagnosticListener<JavaFileObject> {
   }
 
   // TODO(tball): Consider more ways to associate errors with GenerationUnits to aid debugging.
-  public static void error(String message) {
+  // Reporting is synchronized, since tools like tree_shaker may parse on several threads.
+  public static synchronized void error(String message) {
     errorMessages.add(message);
     errorStream.println(getFullMessage("error: ", message, CLANG_STYLE_ERROR_MSG));
     errorCount++;
   }
 
-  public static void warning(String message) {
+  public static synchronized void warning(String message) {
     warningMessages.add(message);
     errorStream.println(getFullMessage("warning: ", message, CLANG_STYLE_ERROR_MSG));
     warningCount++;
@@ -14,6 +14,8 @@
 
 package com.google.devtools.j2objc.util;
 
+import static java.nio.charset.StandardCharsets.UTF_8;
+
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Maps;
@@ -23,8 +25,10 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -106,6 +110,9 @@ public class HeaderMap {
   private List<String> inputMappingFiles = null;
   private File outputMappingFile = null;
   private final Map<String, String> map = Maps.newHashMap();
+  // Binary mapping files, which are searched on demand after map, so properties mapping files
+  // take precedence over them. Later binary mapping files take precedence over earlier ones.
+  private final List<HeaderMapFile> mappedFiles = new ArrayList<>();
 
   public void setOutputStyle(OutputStyleOption outputStyle) {
     this.outputStyle = outputStyle;
@@ -158,13 +165,21 @@ public class HeaderMap {
 
     String qualifiedName = ElementUtil.getQualifiedName(type);
 
-    String mappedHeader = map.get(qualifiedName);
+    String mappedHeader = getMapped(qualifiedName);
     if (mappedHeader != null) {
       return mappedHeader;
     }
 
     String name = inferSourceName(type);
     PackageElement pkg = ElementUtil.getPackage(type);
+    if (!name.equals(ElementUtil.getName(type))) {
+      // Other types in a source file are generated in its main type's header.
+      String mainHeader = getMapped(
+          pkg == null || pkg.isUnnamed() ? name : ElementUtil.getName(pkg) + "." + name);
+      if (mainHeader != null) {
+        return mainHeader;
+      }
+    }
     return outputDirFromPackage(pkg) + name + ".h";
   }
 
@@ -188,18 +203,37 @@ public class HeaderMap {
 
   @VisibleForTesting
   public String getMapped(String qualifiedName) {
-    return map.get(qualifiedName);
+    String header = map.get(qualifiedName);
+    for (int i = mappedFiles.size() - 1; header == null && i >= 0; i--) {
+      header = mappedFiles.get(i).get(qualifiedName);
+    }
+    return header;
   }
 
   public String getOutputPath(CompilationUnit unit) {
     return outputDirFromPackage(unit.getPackage().getPackageElement()) + unit.getMainTypeName();
   }
 
+  /**
+   * Returns the path of a package's umbrella header, which is in the same
+   * directory as the package's headers.
+   */
+  public String getUmbrellaHeaderPath(String pkgName) {
+    String name = pkgName.isEmpty() ? "default_package" : pkgName.replace('.', '_');
+    return outputDirFromPackageName(pkgName) + name + ".h";
+  }
+
   private String outputDirFromPackage(PackageElement pkg) {
     if (pkg == null || pkg.isUnnamed()) {
       return "";
     }
-    String pkgName = ElementUtil.getName(pkg);
+    return outputDirFromPackageName(ElementUtil.getName(pkg));
+  }
+
+  private String outputDirFromPackageName(String pkgName) {
+    if (pkgName.isEmpty()) {
+      return "";
+    }
     OutputStyleOption style = outputStyle;
     if (isPlatformPackage(pkgName)) {
       // Use package directories for platform classes if they do not have an entry in the header
@@ -208,7 +242,7 @@ public class HeaderMap {
     }
     switch (style) {
       case PACKAGE:
-        return ElementUtil.getName(pkg).replace('.', File.separatorChar) + File.separatorChar;
+        return pkgName.replace('.', File.separatorChar) + File.separatorChar;
       default:
         return "";
     }
@@ -240,7 +274,12 @@ public class HeaderMap {
         }
       } else {
         for (String resourceName : inputMappingFiles) {
-          loadMappingsFromProperties(FileUtil.loadProperties(resourceName));
+          File file = new File(resourceName);
+          if (HeaderMapFile.isHeaderMapFile(file)) {
+            mappedFiles.add(HeaderMapFile.open(file));
+          } else {
+            loadMappingsFromProperties(FileUtil.loadProperties(resourceName));
+          }
         }
       }
     } catch (IOException e) {
@@ -256,6 +295,11 @@ public class HeaderMap {
     }
   }
 
+  /**
+   * Writes all mappings to the output mapping file, sorted by type name. Files
+   * ending with HeaderMapFile.SUFFIX are written in its binary format, which
+   * is merged from the binary input files without loading them.
+   */
   public void printMappings() {
     if (outputMappingFile == null) {
       return;
@@ -265,10 +309,17 @@ public class HeaderMap {
         outputMappingFile.getParentFile().mkdirs();
         outputMappingFile.createNewFile();
       }
+      Iterator<Map.Entry<byte[], byte[]>> entries = HeaderMapFile.merge(map, mappedFiles);
+      if (outputMappingFile.getName().endsWith(HeaderMapFile.SUFFIX)) {
+        HeaderMapFile.write(outputMappingFile, entries);
+        return;
+      }
       PrintWriter writer = new PrintWriter(outputMappingFile, "UTF-8");
 
-      for (Map.Entry<String, String> entry : map.entrySet()) {
-        writer.println(UnicodeUtils.format("%s=%s", entry.getKey(), entry.getValue()));
+      while (entries.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = entries.next();
+        writer.println(UnicodeUtils.format("%s=%s",
+            new String(entry.getKey(), UTF_8), new String(entry.getValue(), UTF_8)));
       }
 
       writer.close();
@@ -0,0 +1,290 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.primitives.UnsignedBytes;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+
+/**
+ * A header mapping file in a sorted binary format, which is memory-mapped and
+ * searched when a type is looked up instead of being loaded into a map. Since
+ * the entries are sorted, files are merged by streaming their entries.
+ *
+ * The file starts with a magic number, followed by each entry's qualified type
+ * name and header as a 16-bit length and UTF-8 bytes. Entries are sorted by
+ * the unsigned bytes of their names. They are followed by a table of each
+ * entry's 32-bit offset, then by the table's offset and the number of entries.
+ */
+final class HeaderMapFile {
+
+  /** Output mapping files with this suffix are written in the binary format. */
+  static final String SUFFIX = ".j2hmap";
+
+  private static final byte[] MAGIC = "J2OHMAP1".getBytes(UTF_8);
+  private static final int TRAILER_SIZE = 8;
+  private static final Comparator<byte[]> KEY_ORDER = UnsignedBytes.lexicographicalComparator();
+
+  private final ByteBuffer buffer;
+  private final int indexOffset;
+  private final int size;
+
+  private HeaderMapFile(File file, ByteBuffer buffer) throws IOException {
+    this.buffer = buffer;
+    int limit = buffer.limit();
+    if (limit < MAGIC.length + TRAILER_SIZE) {
+      throw new IOException("Invalid header mapping file: " + file);
+    }
+    indexOffset = buffer.getInt(limit - TRAILER_SIZE);
+    size = buffer.getInt(limit - TRAILER_SIZE + 4);
+    if (indexOffset < MAGIC.length || size < 0
+        || (long) indexOffset + 4L * size != limit - TRAILER_SIZE) {
+      throw new IOException("Invalid header mapping file: " + file);
+    }
+  }
+
+  /** Returns true if a file starts with the binary format's magic number. */
+  static boolean isHeaderMapFile(File file) throws IOException {
+    if (!file.isFile()) {
+      return false;
+    }
+    byte[] magic = new byte[MAGIC.length];
+    try (InputStream in = new FileInputStream(file)) {
+      int n = 0;
+      int count;
+      while (n < magic.length && (count = in.read(magic, n, magic.length - n)) > 0) {
+        n += count;
+      }
+      return n == magic.length && Arrays.equals(magic, MAGIC);
+    }
+  }
+
+  static HeaderMapFile open(File file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("Header mapping file is too large: " + file);
+      }
+      return new HeaderMapFile(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+    }
+  }
+
+  int size() {
+    return size;
+  }
+
+  /** Returns the header of a qualified type name, or null if it isn't mapped. */
+  String get(String qualifiedName) {
+    byte[] key = qualifiedName.getBytes(UTF_8);
+    int low = 0;
+    int high = size - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int offset = entryOffset(mid);
+      int cmp = compareKey(offset, key);
+      if (cmp < 0) {
+        low = mid + 1;
+      } else if (cmp > 0) {
+        high = mid - 1;
+      } else {
+        int valueOffset = offset + 2 + length(offset);
+        return new String(bytesAt(valueOffset), UTF_8);
+      }
+    }
+    return null;
+  }
+
+  private int entryOffset(int index) {
+    return buffer.getInt(indexOffset + 4 * index);
+  }
+
+  private int length(int offset) {
+    return buffer.getShort(offset) & 0xffff;
+  }
+
+  private byte[] bytesAt(int offset) {
+    byte[] bytes = new byte[length(offset)];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(offset + 2 + i);
+    }
+    return bytes;
+  }
+
+  // Compares the name at an entry offset with a key, without copying it.
+  private int compareKey(int offset, byte[] key) {
+    int length = length(offset);
+    int n = Math.min(length, key.length);
+    for (int i = 0; i < n; i++) {
+      int cmp = UnsignedBytes.compare(buffer.get(offset + 2 + i), key[i]);
+      if (cmp != 0) {
+        return cmp;
+      }
+    }
+    return length - key.length;
+  }
+
+  /** Returns this file's entries in order, as UTF-8 names and headers. */
+  Iterator<Map.Entry<byte[], byte[]>> entries() {
+    return new Iterator<Map.Entry<byte[], byte[]>>() {
+      private int next = 0;
+
+      @Override
+      public boolean hasNext() {
+        return next < size;
+      }
+
+      @Override
+      public Map.Entry<byte[], byte[]> next() {
+        if (next >= size) {
+          throw new NoSuchElementException();
+        }
+        int offset = entryOffset(next++);
+        byte[] key = bytesAt(offset);
+        return new AbstractMap.SimpleImmutableEntry<>(key, bytesAt(offset + 2 + key.length));
+      }
+    };
+  }
+
+  /**
+   * Returns the sorted union of mappings and files' entries, as UTF-8 names
+   * and headers. Entries in mappings take precedence, followed by those of
+   * later files.
+   */
+  static Iterator<Map.Entry<byte[], byte[]>> merge(
+      Map<String, String> mappings, List<HeaderMapFile> files) {
+    Map.Entry<byte[], byte[]>[] sorted = sortEntries(mappings);
+    PriorityQueue<Cursor> queue = new PriorityQueue<>();
+    addCursor(queue, Arrays.asList(sorted).iterator(), files.size());
+    for (int i = 0; i < files.size(); i++) {
+      addCursor(queue, files.get(i).entries(), i);
+    }
+    return new Iterator<Map.Entry<byte[], byte[]>>() {
+      @Override
+      public boolean hasNext() {
+        return !queue.isEmpty();
+      }
+
+      @Override
+      public Map.Entry<byte[], byte[]> next() {
+        Cursor cursor = queue.poll();
+        if (cursor == null) {
+          throw new NoSuchElementException();
+        }
+        Map.Entry<byte[], byte[]> entry = cursor.current;
+        advance(queue, cursor);
+        // Skip the same name in lower priority sources.
+        while (!queue.isEmpty() && Arrays.equals(queue.peek().current.getKey(), entry.getKey())) {
+          advance(queue, queue.poll());
+        }
+        return entry;
+      }
+    };
+  }
+
+  @SuppressWarnings("unchecked")
+  private static Map.Entry<byte[], byte[]>[] sortEntries(Map<String, String> mappings) {
+    Map.Entry<byte[], byte[]>[] entries = new Map.Entry[mappings.size()];
+    int i = 0;
+    for (Map.Entry<String, String> entry : mappings.entrySet()) {
+      entries[i++] = new AbstractMap.SimpleImmutableEntry<>(
+          entry.getKey().getBytes(UTF_8), entry.getValue().getBytes(UTF_8));
+    }
+    Arrays.sort(entries, (a, b) -> KEY_ORDER.compare(a.getKey(), b.getKey()));
+    return entries;
+  }
+
+  private static void addCursor(
+      PriorityQueue<Cursor> queue, Iterator<Map.Entry<byte[], byte[]>> entries, int priority) {
+    advance(queue, new Cursor(entries, priority));
+  }
+
+  private static void advance(PriorityQueue<Cursor> queue, Cursor cursor) {
+    if (cursor.entries.hasNext()) {
+      cursor.current = cursor.entries.next();
+      queue.add(cursor);
+    }
+  }
+
+  private static class Cursor implements Comparable<Cursor> {
+    private final Iterator<Map.Entry<byte[], byte[]>> entries;
+    private final int priority;
+    private Map.Entry<byte[], byte[]> current;
+
+    private Cursor(Iterator<Map.Entry<byte[], byte[]>> entries, int priority) {
+      this.entries = entries;
+      this.priority = priority;
+    }
+
+    @Override
+    public int compareTo(Cursor other) {
+      int cmp = KEY_ORDER.compare(current.getKey(), other.current.getKey());
+      return cmp != 0 ? cmp : Integer.compare(other.priority, priority);
+    }
+  }
+
+  /** Writes sorted entries, such as those returned by merge(), to a file. */
+  static void write(File file, Iterator<Map.Entry<byte[], byte[]>> entries) throws IOException {
+    int[] offsets = new int[1024];
+    int count = 0;
+    long position = MAGIC.length;
+    try (DataOutputStream out = new DataOutputStream(
+        new BufferedOutputStream(new FileOutputStream(file)))) {
+      out.write(MAGIC);
+      while (entries.hasNext()) {
+        Map.Entry<byte[], byte[]> entry = entries.next();
+        if (count == offsets.length) {
+          offsets = Arrays.copyOf(offsets, count * 2);
+        }
+        offsets[count++] = (int) position;
+        writeBytes(out, entry.getKey());
+        writeBytes(out, entry.getValue());
+        position += 4 + entry.getKey().length + entry.getValue().length;
+        if (position + 4L * count + TRAILER_SIZE > Integer.MAX_VALUE) {
+          throw new IOException("Header mapping file is too large: " + file);
+        }
+      }
+      for (int i = 0; i < count; i++) {
+        out.writeInt(offsets[i]);
+      }
+      out.writeInt((int) position);
+      out.writeInt(count);
+    }
+  }
+
+  private static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+    if (bytes.length > 0xffff) {
+      throw new IOException("Header mapping entry is too long: " + new String(bytes, UTF_8));
+    }
+    out.writeShort(bytes.length);
+    out.write(bytes);
+  }
+}
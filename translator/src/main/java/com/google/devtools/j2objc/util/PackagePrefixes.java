@@ -15,6 +15,7 @@
 package com.google.devtools.j2objc.util;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Splitter;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.j2objc.annotations.ObjectiveCName;
@@ -49,18 +50,46 @@ import javax.lang.model.element.PackageElement;
  * a J2C prefix, but not the com.google.j2objc.annotations classes. Wildcard
  * declarations are matched in the order they are declared.
  *
+ * Wildcards ending in ".*" are stored in a trie of package name segments, so
+ * looking up a package only walks its own segments no matter how many
+ * wildcards are declared. Other wildcards are matched as regular expressions.
+ *
  * @author Tom Ball
  */
 public final class PackagePrefixes {
 
+  private static final Splitter DOT_SPLITTER = Splitter.on('.');
+
   private final PackageInfoLookup packageLookup;
   private final Map<String, String> mappedPrefixes = Maps.newHashMap();
 
-  // A key array is used so that wildcards are checked in declared order.
-  // There is one wildcard value for each key, enforced within this class.
-  // Too bad there's no available equivalent to android.util.ArrayMap.
-  private List<Pattern> wildcardKeys = Lists.newArrayList();
-  private List<String> wildcardValues = Lists.newArrayList();
+  // Wildcards are numbered in declared order, since the first declared match
+  // wins. There is one wildcard value for each key, enforced within this class.
+  private final TrieNode wildcardTrie = new TrieNode();
+  private final List<RegexWildcard> regexWildcards = Lists.newArrayList();
+  private int wildcardCount = 0;
+
+  /**
+   * A package name segment in the wildcard trie. A node with a prefix ends a
+   * wildcard, and matches its package and all of its subpackages.
+   */
+  private static class TrieNode {
+    private final Map<String, TrieNode> children = Maps.newHashMap();
+    private int order;
+    private String prefix;
+  }
+
+  private static class RegexWildcard {
+    private final int order;
+    private final Pattern pattern;
+    private final String prefix;
+
+    private RegexWildcard(int order, Pattern pattern, String prefix) {
+      this.order = order;
+      this.pattern = pattern;
+      this.prefix = prefix;
+    }
+  }
 
   public PackagePrefixes(PackageInfoLookup packageLookup) {
     this.packageLookup = packageLookup;
@@ -73,16 +102,34 @@ public final class PackagePrefixes {
       return value;
     }
 
-    for (int i = 0; i < wildcardKeys.size(); i++) {
-      Pattern p = wildcardKeys.get(i);
-      if (p.matcher(pkg).matches()) {
-        value = wildcardValues.get(i);
-        mappedPrefixes.put(pkg, value);
-        return value;
+    // The trie finds every ".*" wildcard matching one of the package's roots;
+    // the first declared one wins, as would be the longest in a typical file.
+    int order = Integer.MAX_VALUE;
+    TrieNode node = wildcardTrie;
+    for (String segment : DOT_SPLITTER.split(pkg)) {
+      node = node.children.get(segment);
+      if (node == null) {
+        break;
+      }
+      if (node.prefix != null && node.order < order) {
+        order = node.order;
+        value = node.prefix;
+      }
+    }
+    for (RegexWildcard wildcard : regexWildcards) {
+      if (wildcard.order > order) {
+        break;
+      }
+      if (wildcard.pattern.matcher(pkg).matches()) {
+        value = wildcard.prefix;
+        break;
       }
     }
 
-    return null;
+    if (value != null) {
+      mappedPrefixes.put(pkg, value);
+    }
+    return value;
   }
 
   public void addPrefix(String pkg, String prefix) {
@@ -90,23 +137,39 @@ public final class PackagePrefixes {
       throw new IllegalArgumentException("null package or prefix specified");
     }
     if (pkg.contains("*")) {
+      String root = pkg.endsWith(".*") ? pkg.substring(0, pkg.length() - 2) : null;
+      if (root != null && !root.contains("*")) {
+        TrieNode node = wildcardTrie;
+        for (String segment : DOT_SPLITTER.split(root)) {
+          node = node.children.computeIfAbsent(segment, k -> new TrieNode());
+        }
+        if (node.prefix != null) {
+          checkRedefinedPrefix(node.prefix, prefix);
+          return;
+        }
+        node.order = wildcardCount++;
+        node.prefix = prefix;
+        return;
+      }
       String regex = wildcardToRegex(pkg);
-      for (int i = 0; i < wildcardKeys.size(); i++) {
-        if (regex.equals(wildcardKeys.get(i).toString())) {
-          String oldPrefix = wildcardValues.get(i);
-          if (!prefix.equals(oldPrefix)) {
-            ErrorUtil.error("package prefix redefined; was \"" + oldPrefix + ", now " + prefix);
-          }
+      for (RegexWildcard wildcard : regexWildcards) {
+        if (regex.equals(wildcard.pattern.toString())) {
+          checkRedefinedPrefix(wildcard.prefix, prefix);
           return;
         }
       }
-      wildcardKeys.add(Pattern.compile(regex));
-      wildcardValues.add(prefix);
+      regexWildcards.add(new RegexWildcard(wildcardCount++, Pattern.compile(regex), prefix));
     } else {
       mappedPrefixes.put(pkg, prefix);
     }
   }
 
+  private static void checkRedefinedPrefix(String oldPrefix, String prefix) {
+    if (!prefix.equals(oldPrefix)) {
+      ErrorUtil.error("package prefix redefined; was \"" + oldPrefix + ", now " + prefix);
+    }
+  }
+
   /**
    * Return the prefix for a specified package. If a prefix was specified
    * for the package, then that prefix is returned. Otherwise, a camel-cased
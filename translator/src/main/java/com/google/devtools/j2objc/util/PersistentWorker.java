@@ -0,0 +1,502 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.devtools.j2objc.javac.JavacParser;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a tool as a Bazel persistent worker, which reads work requests from
+ * stdin and writes a response to stdout for each one, so that the JVM, its
+ * compiled code and the javac file managers stay warm between requests.
+ *
+ * Requests and responses are length-delimited WorkRequest and WorkResponse
+ * protocol buffers, or JSON objects when the worker is started with
+ * "--worker_protocol=json" (for actions with the "requires-worker-protocol"
+ * execution requirement set to "json"). Only the fields the tools use are
+ * read: a request's arguments, input digests and id. Requests are run one at
+ * a time, with ErrorUtil reset, and anything printed to System.out or
+ * System.err, or reported as an error or warning, is returned as the
+ * response's output. The input digests tell JavacParser which archives have
+ * changed since the previous request.
+ */
+public final class PersistentWorker {
+
+  public static final String PERSISTENT_WORKER_FLAG = "--persistent_worker";
+  private static final String JSON_PROTOCOL_FLAG = "--worker_protocol=json";
+
+  /** A tool's main method, which returns its exit status instead of exiting. */
+  public interface Tool {
+    int run(String[] args) throws IOException;
+  }
+
+  private final Tool tool;
+  private final boolean json;
+  private final InputStream in;
+  private final PrintStream out;
+
+  private PersistentWorker(Tool tool, boolean json, InputStream in, PrintStream out) {
+    this.tool = tool;
+    this.json = json;
+    this.in = in;
+    this.out = out;
+  }
+
+  /** Returns true if a tool was started as a persistent worker. */
+  public static boolean isPersistentWorker(String[] args) {
+    return Arrays.asList(args).contains(PERSISTENT_WORKER_FLAG);
+  }
+
+  /**
+   * Runs work requests until stdin is closed. The startup arguments are the
+   * ones the worker was started with.
+   */
+  public static void run(String[] startupArgs, Tool tool) throws IOException {
+    JavacParser.reuseFileManagers();
+    boolean json = Arrays.asList(startupArgs).contains(JSON_PROTOCOL_FLAG);
+    // Output outside of a request would corrupt the responses.
+    PrintStream out = System.out;
+    System.setOut(System.err);
+    try {
+      new PersistentWorker(tool, json, new BufferedInputStream(System.in), out).run();
+    } finally {
+      System.setOut(out);
+    }
+  }
+
+  private void run() throws IOException {
+    while (true) {
+      WorkRequest request = json ? readJsonRequest() : readProtoRequest();
+      if (request == null) {
+        return;
+      }
+      int exitCode = 1;
+      ByteArrayOutputStream output = new ByteArrayOutputStream();
+      PrintStream outputStream = new PrintStream(output, true, "UTF-8");
+      PrintStream systemOut = System.out;
+      PrintStream systemErr = System.err;
+      PrintStream errorStream = ErrorUtil.setErrorStream(outputStream);
+      System.setOut(outputStream);
+      System.setErr(outputStream);
+      try {
+        ErrorUtil.reset();
+        JavacParser.setInputDigests(request.inputs);
+        exitCode = tool.run(request.arguments.toArray(new String[0]));
+      } catch (IOException | RuntimeException e) {
+        e.printStackTrace(outputStream);
+      } finally {
+        outputStream.flush();
+        System.setOut(systemOut);
+        System.setErr(systemErr);
+        ErrorUtil.setErrorStream(errorStream);
+      }
+      String result = new String(output.toByteArray(), UTF_8);
+      if (json) {
+        writeJsonResponse(request.requestId, exitCode, result);
+      } else {
+        writeProtoResponse(request.requestId, exitCode, result);
+      }
+      out.flush();
+    }
+  }
+
+  private static class WorkRequest {
+    private final List<String> arguments = new ArrayList<>();
+    // The digest of each input, by path.
+    private final Map<String, String> inputs = new HashMap<>();
+    private int requestId;
+  }
+
+  // WorkRequest fields, from Bazel's worker_protocol.proto.
+  private static final int ARGUMENTS_FIELD = 1;
+  private static final int INPUTS_FIELD = 2;
+  private static final int REQUEST_ID_FIELD = 3;
+  // Input fields.
+  private static final int INPUT_PATH_FIELD = 1;
+  private static final int INPUT_DIGEST_FIELD = 2;
+  // WorkResponse fields.
+  private static final int EXIT_CODE_FIELD = 1;
+  private static final int OUTPUT_FIELD = 2;
+  private static final int RESPONSE_REQUEST_ID_FIELD = 3;
+
+  private static final int WIRETYPE_VARINT = 0;
+  private static final int WIRETYPE_FIXED64 = 1;
+  private static final int WIRETYPE_LENGTH_DELIMITED = 2;
+  private static final int WIRETYPE_FIXED32 = 5;
+
+  private WorkRequest readProtoRequest() throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      return null;
+    }
+    byte[] message = new byte[(int) readVarint(in, first)];
+    int n = 0;
+    while (n < message.length) {
+      int count = in.read(message, n, message.length - n);
+      if (count == -1) {
+        throw new EOFException("truncated work request");
+      }
+      n += count;
+    }
+    WorkRequest request = new WorkRequest();
+    ByteInput input = new ByteInput(message);
+    while (input.hasNext()) {
+      long tag = readVarint(input, input.read());
+      int field = (int) (tag >>> 3);
+      switch ((int) (tag & 7)) {
+        case WIRETYPE_VARINT:
+          long value = readVarint(input, input.read());
+          if (field == REQUEST_ID_FIELD) {
+            request.requestId = (int) value;
+          }
+          break;
+        case WIRETYPE_LENGTH_DELIMITED:
+          byte[] bytes = input.read((int) readVarint(input, input.read()));
+          if (field == ARGUMENTS_FIELD) {
+            request.arguments.add(new String(bytes, UTF_8));
+          } else if (field == INPUTS_FIELD) {
+            readProtoInput(bytes, request);
+          }
+          break;
+        case WIRETYPE_FIXED64:
+          input.read(8);
+          break;
+        case WIRETYPE_FIXED32:
+          input.read(4);
+          break;
+        default:
+          throw new IOException("invalid work request");
+      }
+    }
+    return request;
+  }
+
+  private static void readProtoInput(byte[] message, WorkRequest request) throws IOException {
+    String path = null;
+    String digest = "";
+    ByteInput input = new ByteInput(message);
+    while (input.hasNext()) {
+      long tag = readVarint(input, input.read());
+      int field = (int) (tag >>> 3);
+      switch ((int) (tag & 7)) {
+        case WIRETYPE_VARINT:
+          readVarint(input, input.read());
+          break;
+        case WIRETYPE_LENGTH_DELIMITED:
+          byte[] bytes = input.read((int) readVarint(input, input.read()));
+          if (field == INPUT_PATH_FIELD) {
+            path = new String(bytes, UTF_8);
+          } else if (field == INPUT_DIGEST_FIELD) {
+            // Encoded like the JSON protocol's digests.
+            digest = Base64.getEncoder().encodeToString(bytes);
+          }
+          break;
+        case WIRETYPE_FIXED64:
+          input.read(8);
+          break;
+        case WIRETYPE_FIXED32:
+          input.read(4);
+          break;
+        default:
+          throw new IOException("invalid work request");
+      }
+    }
+    if (path != null) {
+      request.inputs.put(path, digest);
+    }
+  }
+
+  private static long readVarint(InputStream in, int first) throws IOException {
+    long result = 0;
+    int b = first;
+    for (int shift = 0; shift < 64; shift += 7) {
+      if (b == -1) {
+        throw new EOFException("truncated work request");
+      }
+      result |= (long) (b & 0x7f) << shift;
+      if ((b & 0x80) == 0) {
+        return result;
+      }
+      b = in.read();
+    }
+    throw new IOException("invalid work request");
+  }
+
+  private void writeProtoResponse(int requestId, int exitCode, String output)
+      throws IOException {
+    ByteArrayOutputStream message = new ByteArrayOutputStream();
+    if (exitCode != 0) {
+      writeVarint(message, EXIT_CODE_FIELD << 3 | WIRETYPE_VARINT);
+      // Negative int32 values are sign-extended to 64 bits.
+      writeVarint(message, exitCode);
+    }
+    if (!output.isEmpty()) {
+      byte[] bytes = output.getBytes(UTF_8);
+      writeVarint(message, OUTPUT_FIELD << 3 | WIRETYPE_LENGTH_DELIMITED);
+      writeVarint(message, bytes.length);
+      message.write(bytes);
+    }
+    if (requestId != 0) {
+      writeVarint(message, RESPONSE_REQUEST_ID_FIELD << 3 | WIRETYPE_VARINT);
+      writeVarint(message, requestId);
+    }
+    writeVarint(out, message.size());
+    message.writeTo(out);
+  }
+
+  private static void writeVarint(OutputStream out, long value) throws IOException {
+    while ((value & ~0x7fL) != 0) {
+      out.write((int) (value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write((int) value);
+  }
+
+  // A protocol buffer message being read.
+  private static class ByteInput extends InputStream {
+    private final byte[] bytes;
+    private int position = 0;
+
+    private ByteInput(byte[] bytes) {
+      this.bytes = bytes;
+    }
+
+    private boolean hasNext() {
+      return position < bytes.length;
+    }
+
+    @Override
+    public int read() {
+      return position < bytes.length ? bytes[position++] & 0xff : -1;
+    }
+
+    private byte[] read(int length) throws IOException {
+      if (length < 0 || length > bytes.length - position) {
+        throw new EOFException("truncated work request");
+      }
+      position += length;
+      return Arrays.copyOfRange(bytes, position - length, position);
+    }
+  }
+
+  private WorkRequest readJsonRequest() throws IOException {
+    int c = skipWhitespace();
+    if (c == -1) {
+      return null;
+    }
+    WorkRequest request = new WorkRequest();
+    expect(c, '{');
+    c = skipWhitespace();
+    if (c == '}') {
+      return request;
+    }
+    while (true) {
+      String name = readJsonString(c);
+      expect(skipWhitespace(), ':');
+      c = skipWhitespace();
+      if (name.equals("arguments")) {
+        expect(c, '[');
+        c = skipWhitespace();
+        while (c != ']') {
+          request.arguments.add(readJsonString(c));
+          c = skipWhitespace();
+          if (c == ',') {
+            c = skipWhitespace();
+          }
+        }
+      } else if (name.equals("inputs")) {
+        readJsonInputs(c, request);
+      } else if (name.equals("requestId")) {
+        request.requestId = (int) Double.parseDouble(readJsonValue(c));
+      } else {
+        skipJsonValue(c);
+      }
+      c = skipWhitespace();
+      if (c == '}') {
+        return request;
+      }
+      expect(c, ',');
+      c = skipWhitespace();
+    }
+  }
+
+  // Reads an array of {"path": ..., "digest": ...} objects.
+  private void readJsonInputs(int c, WorkRequest request) throws IOException {
+    expect(c, '[');
+    c = skipWhitespace();
+    while (c != ']') {
+      expect(c, '{');
+      String path = null;
+      String digest = "";
+      c = skipWhitespace();
+      while (c != '}') {
+        String name = readJsonString(c);
+        expect(skipWhitespace(), ':');
+        c = skipWhitespace();
+        if (name.equals("path")) {
+          path = readJsonString(c);
+        } else if (name.equals("digest")) {
+          digest = readJsonString(c);
+        } else {
+          skipJsonValue(c);
+        }
+        c = skipWhitespace();
+        if (c == ',') {
+          c = skipWhitespace();
+        }
+      }
+      if (path != null) {
+        request.inputs.put(path, digest);
+      }
+      c = skipWhitespace();
+      if (c == ',') {
+        c = skipWhitespace();
+      }
+    }
+  }
+
+  private int skipWhitespace() throws IOException {
+    int c;
+    do {
+      c = in.read();
+    } while (c == ' ' || c == '\t' || c == '\n' || c == '\r');
+    return c;
+  }
+
+  private static void expect(int c, char expected) throws IOException {
+    if (c != expected) {
+      throw new IOException("invalid work request: expected '" + expected + "'");
+    }
+  }
+
+  private String readJsonString(int c) throws IOException {
+    expect(c, '"');
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    StringBuilder sb = new StringBuilder();
+    while ((c = in.read()) != '"') {
+      if (c == -1) {
+        throw new EOFException("truncated work request");
+      }
+      if (c != '\\') {
+        bytes.write(c);
+        continue;
+      }
+      sb.append(new String(bytes.toByteArray(), UTF_8));
+      bytes.reset();
+      c = in.read();
+      switch (c) {
+        case 'b':
+          sb.append('\b');
+          break;
+        case 'f':
+          sb.append('\f');
+          break;
+        case 'n':
+          sb.append('\n');
+          break;
+        case 'r':
+          sb.append('\r');
+          break;
+        case 't':
+          sb.append('\t');
+          break;
+        case 'u':
+          char[] hex = new char[4];
+          for (int i = 0; i < 4; i++) {
+            hex[i] = (char) in.read();
+          }
+          try {
+            sb.append((char) Integer.parseInt(new String(hex), 16));
+          } catch (NumberFormatException e) {
+            throw new IOException("invalid work request: bad escape", e);
+          }
+          break;
+        case -1:
+          throw new EOFException("truncated work request");
+        default:
+          // '"', '\\' and '/'.
+          sb.append((char) c);
+      }
+    }
+    return sb.append(new String(bytes.toByteArray(), UTF_8)).toString();
+  }
+
+  // Reads a number, boolean or null, and returns its text.
+  private String readJsonValue(int c) throws IOException {
+    StringBuilder sb = new StringBuilder();
+    while (c != -1 && c != ',' && c != '}' && c != ']' && c > ' ') {
+      sb.append((char) c);
+      in.mark(1);
+      c = in.read();
+    }
+    in.reset();
+    return sb.toString();
+  }
+
+  private void skipJsonValue(int c) throws IOException {
+    if (c == '"') {
+      readJsonString(c);
+    } else if (c == '[' || c == '{') {
+      char close = c == '[' ? ']' : '}';
+      c = skipWhitespace();
+      while (c != close) {
+        if (close == '}') {
+          readJsonString(c);
+          expect(skipWhitespace(), ':');
+          c = skipWhitespace();
+        }
+        skipJsonValue(c);
+        c = skipWhitespace();
+        if (c == ',') {
+          c = skipWhitespace();
+        } else if (c != close) {
+          throw new IOException("invalid work request: expected '" + close + "'");
+        }
+      }
+    } else {
+      readJsonValue(c);
+    }
+  }
+
+  private void writeJsonResponse(int requestId, int exitCode, String output) {
+    StringBuilder sb = new StringBuilder("{\"exitCode\":").append(exitCode).append(",\"output\":\"");
+    for (int i = 0; i < output.length(); i++) {
+      char c = output.charAt(i);
+      if (c == '"' || c == '\\') {
+        sb.append('\\').append(c);
+      } else if (c < ' ') {
+        sb.append(String.format("\\u%04x", (int) c));
+      } else {
+        sb.append(c);
+      }
+    }
+    sb.append("\",\"requestId\":").append(requestId).append('}');
+    out.println(sb);
+  }
+}
@@ -182,6 +182,52 @@ public class J2ObjCTest extends GenerationTest {
     makeAssertionsForGlobalCombinedOutputJavaFiles();
   }
 
+  public void testShardedGlobalCombinedOutput() throws Exception {
+    options.setGlobalCombinedOutput("testShardedOutputFile");
+    options.setCombinedOutputShards(2);
+    J2ObjC.run(Arrays.asList(exampleJavaPath, packageInfoPath), options);
+    // The package is larger than either shard, so it's split between them.
+    String exampleH = getTranslatedFile("testShardedOutputFile_1.h");
+    String exampleM = getTranslatedFile("testShardedOutputFile_1.m");
+    String packageInfoM = getTranslatedFile("testShardedOutputFile_2.m");
+    assertTranslation(exampleM, "#include \"testShardedOutputFile_1.h\"");
+    assertNotInTranslation(exampleM, "package_info");
+    assertTranslation(packageInfoM, "@implementation ComGoogleDevtoolsJ2objcUtilpackage_info");
+    makeAssertions(exampleH, exampleM, packageInfoM);
+    assertFalse(new File(tempDir, "testShardedOutputFile_3.m").exists());
+  }
+
+  public void testShardedGlobalCombinedOutputKeepsPackages() throws Exception {
+    options.setGlobalCombinedOutput("testShardedOutputFile");
+    options.setCombinedOutputShardSize(1024);
+    J2ObjC.run(Arrays.asList(exampleJavaPath, packageInfoPath), options);
+    String combinedH = getTranslatedFile("testShardedOutputFile_1.h");
+    String combinedM = getTranslatedFile("testShardedOutputFile_1.m");
+    makeAssertions(combinedH, combinedM, combinedM);
+    assertFalse(new File(tempDir, "testShardedOutputFile_2.m").exists());
+  }
+
+  public void testShardedGlobalCombinedOutputIncludesOtherShards() throws Exception {
+    addSourceFile(
+        "package p; public class A { B b() { return new B(); } Object c() { return new C(); } }",
+        "p/A.java");
+    addSourceFile(
+        "package p; public class B { A a() { return new A(); } } class C {}", "p/B.java");
+    options.setGlobalCombinedOutput("testShardedOutputFile");
+    options.setCombinedOutputShards(2);
+    J2ObjC.run(Arrays.asList("p/A.java", "p/B.java"), options);
+    String aM = getTranslatedFile("testShardedOutputFile_1.m");
+    String bM = getTranslatedFile("testShardedOutputFile_2.m");
+    assertTranslation(aM, "@implementation PA");
+    assertTranslation(bM, "@implementation PB");
+    // Types in another shard, including secondary types, are included from its header.
+    assertTranslation(aM, "#include \"testShardedOutputFile_2.h\"");
+    assertTranslation(bM, "#include \"testShardedOutputFile_1.h\"");
+    assertNotInTranslation(aM, "p/B.h");
+    assertNotInTranslation(bM, "p/A.h");
+    assertNoErrors();
+  }
+
   public void testSourceDirsOption() throws Exception {
     options.getHeaderMap().setOutputStyle(HeaderMap.OutputStyleOption.SOURCE);
     J2ObjC.run(Arrays.asList(exampleJavaPath, packageInfoPath), options);
@@ -192,6 +238,24 @@ public class J2ObjCTest extends GenerationTest {
     makeAssertionsForJavaFiles(exampleH, exampleM, packageInfoH, packageInfoM);
   }
 
+  public void testModuleMap() throws Exception {
+    options.setModuleName("Example");
+    J2ObjC.run(Arrays.asList(exampleJavaPath, packageInfoPath), options);
+    String moduleMap = getTranslatedFile("module.modulemap");
+    assertTranslatedLines(moduleMap,
+        "module com_google_devtools_j2objc_util {",
+        "  header \"com/google/devtools/j2objc/util/com_google_devtools_j2objc_util.h\"",
+        "  header \"com/google/devtools/j2objc/util/Example.h\"",
+        "  header \"com/google/devtools/j2objc/util/package-info.h\"",
+        "  export *",
+        "}");
+    String umbrella =
+        getTranslatedFile("com/google/devtools/j2objc/util/com_google_devtools_j2objc_util.h");
+    assertTranslation(umbrella, "#include \"com/google/devtools/j2objc/util/Example.h\"");
+    assertTranslation(umbrella, "#include \"com/google/devtools/j2objc/util/package-info.h\"");
+    assertNoErrors();
+  }
+
   private void assertServiceAnnotationProcessorOutput() throws IOException {
     String translatedAnnotationHeader = getTranslatedFile("ProcessingResult.h");
     String translatedAnnotationImpl = getTranslatedFile("ProcessingResult.m");
@@ -228,6 +292,19 @@ public class J2ObjCTest extends GenerationTest {
     assertServiceAnnotationProcessorOutput();
   }
 
+  // Test processing annotations in the same javac pass as translation.
+  public void testSinglePassAnnotationProcessing() throws Exception {
+    String processorPath = getResourceAsFile("annotations/Processor.jar");
+    options.fileUtil().getClassPathEntries().add(processorPath);
+    options.setSinglePassProcessing(true);
+
+    String examplePath = addSourceFile(EXAMPLE_JAVA_SOURCE, "annotations/Example.java");
+    J2ObjC.run(Collections.singletonList(examplePath), options);
+    assertNoErrors();
+
+    assertServiceAnnotationProcessorOutput();
+  }
+
   // Test a simple annotation processor on the processor path.
   public void testAnnotationProcessingWithProcessorPath() throws Exception {
     String processorPath = getResourceAsFile("annotations/Processor.jar");
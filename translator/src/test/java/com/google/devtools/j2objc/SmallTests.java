@@ -46,6 +46,7 @@ import com.google.devtools.j2objc.translate.AnnotationRewriterTest;
 import com.google.devtools.j2objc.translate.AnonymousClassConverterTest;
 import com.google.devtools.j2objc.translate.ArrayRewriterTest;
 import com.google.devtools.j2objc.translate.AutoboxerTest;
+import com.google.devtools.j2objc.translate.AutoreleasePoolRewriterTest;
 import com.google.devtools.j2objc.translate.CastResolverTest;
 import com.google.devtools.j2objc.translate.ComplexExpressionExtractorTest;
 import com.google.devtools.j2objc.translate.ConstantBranchPrunerTest;
@@ -54,11 +55,13 @@ import com.google.devtools.j2objc.translate.DefaultMethodsTest;
 import com.google.devtools.j2objc.translate.DestructorGeneratorTest;
 import com.google.devtools.j2objc.translate.EnhancedForRewriterTest;
 import com.google.devtools.j2objc.translate.EnumRewriterTest;
+import com.google.devtools.j2objc.translate.EscapeAnalyzerTest;
 import com.google.devtools.j2objc.translate.ExternalAnnotationInjectorTest;
 import com.google.devtools.j2objc.translate.FunctionizerTest;
 import com.google.devtools.j2objc.translate.GwtConverterTest;
 import com.google.devtools.j2objc.translate.InitializationNormalizerTest;
 import com.google.devtools.j2objc.translate.InnerClassExtractorTest;
+import com.google.devtools.j2objc.translate.InstrumenterTest;
 import com.google.devtools.j2objc.translate.JavaCloneWriterTest;
 import com.google.devtools.j2objc.translate.JavaToIOSMethodTranslatorTest;
 import com.google.devtools.j2objc.translate.LambdaTypeElementAdderTest;
@@ -90,9 +93,11 @@ import com.google.devtools.j2objc.util.CodeReferenceMapTest;
 import com.google.devtools.j2objc.util.ElementUtilTest;
 import com.google.devtools.j2objc.util.ErrorUtilTest;
 import com.google.devtools.j2objc.util.FileUtilTest;
+import com.google.devtools.j2objc.util.HeaderMapTest;
 import com.google.devtools.j2objc.util.NameTableTest;
 import com.google.devtools.j2objc.util.PackageInfoLookupTest;
 import com.google.devtools.j2objc.util.PackagePrefixesTest;
+import com.google.devtools.j2objc.util.PersistentWorkerTest;
 import com.google.devtools.j2objc.util.ProGuardUsageParserTest;
 import com.google.devtools.j2objc.util.TranslationUtilTest;
 import com.google.devtools.j2objc.util.UnicodeUtilsTest;
@@ -113,6 +118,7 @@ public class SmallTests {
         ArrayGenericsTest.class,
         ArrayRewriterTest.class,
         AutoboxerTest.class,
+        AutoreleasePoolRewriterTest.class,
         CastResolverTest.class,
         ClassFileConverterTest.class,
         ClassFileTest.class,
@@ -126,6 +132,7 @@ public class SmallTests {
         ElementUtilTest.class,
         EnhancedForRewriterTest.class,
         EnumRewriterTest.class,
+        EscapeAnalyzerTest.class,
         ErrorUtilTest.class,
         ExternalAnnotationInjectorTest.class,
         FileUtilTest.class,
@@ -133,10 +140,12 @@ public class SmallTests {
         GenerateObjectiveCGenericsTest.class,
         GwtConverterTest.class,
         HeaderImportCollectorTest.class,
+        HeaderMapTest.class,
         ImplementationImportCollectorTest.class,
         InfixExpressionTest.class,
         InitializationNormalizerTest.class,
         InnerClassExtractorTest.class,
+        InstrumenterTest.class,
         J2ObjCIncompatibleStripperTest.class,
         J2ObjCTest.class,
         JavaCloneWriterTest.class,
@@ -166,6 +175,7 @@ public class SmallTests {
         PackageInfoLookupTest.class,
         PackageInfoRewriterTest.class,
         PackagePrefixesTest.class,
+        PersistentWorkerTest.class,
         PrimitiveArrayTest.class,
         PrivateDeclarationResolverTest.class,
         ProGuardUsageParserTest.class,
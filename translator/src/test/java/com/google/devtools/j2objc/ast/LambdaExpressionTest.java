@@ -236,4 +236,26 @@ public class LambdaExpressionTest extends GenerationTest {
             + "compareWithId:c1 withId:c2];",
         "}");
   }
+
+  public void testLoopInvariantCapturingLambdaCached() throws IOException {
+    String translation = translateSourceFile(
+        "import java.util.List; class Test { void foo(int i) {} "
+        + "void test(List<Runnable> l, int n) { "
+        + "  for (int k = 0; k < 2; k++) { for (int i = 0; i < n; i++) { l.add(() -> foo(n)); } } "
+        + "  for (int i = 0; i < 3; i++) { int j = i; l.add(() -> foo(j)); } } }",
+        "Test", "Test.m");
+    // The cache is declared before the outermost loop that doesn't declare a
+    // captured variable.
+    assertTranslatedLines(translation,
+        "Test_$Lambda$1 *lambda0__ = nil;",
+        "for (jint k = 0; k < 2; k++) {",
+        "for (jint i = 0; i < n; i++) {",
+        "[((id<JavaUtilList>) nil_chk(l)) addWithId:lambda0__ == nil ? "
+            + "(lambda0__ = create_Test_$Lambda$1_initWithTest_withInt_(self, n)) : lambda0__];");
+    // Lambdas that capture a variable declared in the loop are created by
+    // each iteration.
+    assertTranslation(translation,
+        "addWithId:create_Test_$Lambda$2_initWithTest_withInt_(self, j)];");
+    assertNotInTranslation(translation, "lambda1__");
+  }
 }
@@ -1476,4 +1476,25 @@ public class ObjectiveCHeaderGeneratorTest extends GenerationTest {
     // ... just the source file entry in that jar file.
     assertTranslation(kytheMetadata, "\"path\":\"foo/Test.java\"");
   }
+
+  public void testMinimizeHeaderIncludes() throws IOException {
+    options.setMinimizeHeaderIncludes(true);
+    File report = new File(tempDir, "includes.txt");
+    options.setHeaderIncludeReport(report);
+    addSourceFile("package foo; public interface I {}", "foo/I.java");
+    addSourceFile("package foo; public class B implements I {}", "foo/B.java");
+    addSourceFile("package foo; public class C extends B implements I {}", "foo/C.java");
+    runPipeline("foo/I.java", "foo/B.java", "foo/C.java");
+
+    String translation = getTranslatedFile("foo/C.h");
+    assertTranslation(translation, "#include \"foo/B.h\"");
+    assertNotInTranslation(translation, "#include \"foo/I.h\"");
+    assertTranslation(getTranslatedFile("foo/B.h"), "#include \"foo/I.h\"");
+
+    String reportText = getTranslatedFile("includes.txt");
+    assertTranslation(reportText, "redundant includes removed: 1");
+    assertTranslation(reportText, "foo/C.h: foo/B.h (superclass FooB)");
+    assertTranslation(reportText, "foo/B.h: foo/I.h (protocol FooI)");
+    assertNotInTranslation(reportText, "foo/C.h: foo/I.h");
+  }
 }
@@ -647,7 +647,7 @@ public class StatementGeneratorTest extends GenerationTest {
         + "Test foo() { return Test.ONE; } "
         + "void bar() { switch (foo()) { case ONE: break; case TWO: break; }}}",
         "Example", "Example.m");
-    assertTranslation(translation, "switch ([[self foo] ordinal])");
+    assertTranslation(translation, "switch (((Example_Test *) nil_chk([self foo]))->ordinal_)");
   }
 
   public void testClassVariable() throws IOException {
@@ -15,7 +15,11 @@
 package com.google.devtools.j2objc.javac;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.file.InputFile;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Tests for {@link ClassFileConverter}.
@@ -1315,4 +1319,14 @@ public class ClassFileConverterTest extends GenerationTest {
         "}");
     assertEqualSrcClassfile("Test", source);
   }
+
+  public void testBatchedClassFiles() throws IOException {
+    InputFile foo = createClassFile("foo.bar.Foo", "package foo.bar; class Foo { Bar bar; }");
+    InputFile bar = createClassFile("foo.bar.Bar", "package foo.bar; class Bar {}");
+    Map<String, String> mainTypes = new HashMap<>();
+    parser.parseFiles(Arrays.asList(foo.getAbsolutePath(), bar.getAbsolutePath()),
+        (path, unit) -> mainTypes.put(path, unit.getMainTypeName()), null);
+    assertEquals("Foo", mainTypes.get(foo.getAbsolutePath()));
+    assertEquals("Bar", mainTypes.get(bar.getAbsolutePath()));
+  }
 }
@@ -15,6 +15,12 @@
 package com.google.devtools.j2objc.javac;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.ast.CompilationUnit;
+import com.google.devtools.j2objc.util.Parser;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 /** Tests for {@link JavacParser}. */
 public class JavacParserTest extends GenerationTest {
@@ -35,4 +41,38 @@ public class JavacParserTest extends GenerationTest {
     String source = "package foo$bar.all_mumbles;";
     assertEquals("foo$bar.all_mumbles", JavacParser.packageName(source));
   }
+
+  // Verify that environments sharing a file manager see sourcepath entries
+  // added after it was created.
+  public void testSourcepathEntryAddedAfterParse() throws IOException {
+    assertNotNull(parser.parse(null, "A.java", "class A {}"));
+    File dir = Files.createTempDirectory("sourcepath").toFile();
+    File pkgDir = new File(dir, "foo");
+    assertTrue(pkgDir.mkdir());
+    Files.write(new File(pkgDir, "B.java").toPath(),
+        "package foo; public class B {}".getBytes(StandardCharsets.UTF_8));
+    parser.addSourcepathEntry(dir.getAbsolutePath());
+    CompilationUnit unit = parser.parse(null, "C.java", "class C { foo.B b; }");
+    assertNoErrors();
+    assertNotNull(unit);
+  }
+
+  // Verify that a file manager kept for the next parser isn't reused once an
+  // archive it opened has been rebuilt.
+  public void testKeptFileManagerNotReusedForRebuiltJar() throws IOException {
+    JavacParser.reuseFileManagers();
+    addJarFile("lib.jar", "foo/Lib.java", "package foo; public class Lib { public static int f; }");
+    String jarPath = getTempFile("lib.jar").getPath();
+    try (Parser first = initializeParser(tempDir, options)) {
+      first.addSourcepathEntry(jarPath);
+      assertNotNull(first.parse(null, "A.java", "class A { int a = foo.Lib.f; }"));
+    }
+    addJarFile(
+        "lib.jar", "foo/Lib.java", "package foo; public class Lib { public static int g2; }");
+    try (Parser second = initializeParser(tempDir, options)) {
+      second.addSourcepathEntry(jarPath);
+      assertNotNull(second.parse(null, "B.java", "class B { int b = foo.Lib.g2; }"));
+    }
+    assertNoErrors();
+  }
 }
@@ -120,4 +120,56 @@ public class ArrayRewriterTest extends GenerationTest {
         "[((JavaUtilBase64_Decoder *) nil_chk(val$decoder_)) "
             + "decodeWithByteArray:(IOSByteArray *) nil];");
   }
+
+  public void testConstArrayData() throws IOException {
+    options.setConstArrayThreshold(4);
+    String translation = translateSourceFile(
+        "class Test { "
+            + "  static final int X = 7; "
+            + "  static final byte[] B = { 1, -2, (byte) 0xff, 4 }; "
+            + "  static final byte[] C = { 1, -2, (byte) 0xff, 4 }; "
+            + "  static final char[] S = { 'a', 'b', 'c' }; "
+            + "  int[] test(int y) { return new int[] { X, 2, 3, y }; } "
+            + "  long[] test2() { return new long[] { X, 1L << 40, -1, 0 }; } "
+            + "}", "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "static const jbyte Test_constArray$0[] = {",
+        "  1, -2, -1, 4",
+        "};");
+    assertTranslatedLines(translation,
+        "static const jlong Test_constArray$1[] = {",
+        "  7LL, 1099511627776LL, -1LL, 0LL",
+        "};");
+    // Identical data is shared.
+    assertOccurrences(translation, "Test_constArray$0 count:4]", 2);
+    assertTranslation(translation, "Test_constArray$1 count:4]");
+    // Short or non-constant initializers are unchanged.
+    assertTranslation(translation, "(jchar[]){ 'a', 'b', 'c' } count:3]");
+    assertTranslation(translation, "(jint[]){ Test_X, 2, 3, y } count:4]");
+  }
+
+  public void testConstArrayDataNotSharedBetweenTypes() throws IOException {
+    options.setConstArrayThreshold(4);
+    String translation = translateSourceFile(
+        "class Test { "
+            + "  static final byte[] B = new byte[] { 1, 2, 3, 4 }; "
+            + "  static final short[] S = new short[] { 1, 2, 3, 4 }; "
+            + "  static final int[] I = new int[] { 1, 2, 3, 4 }; "
+            + "}", "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "static const jbyte Test_constArray$0[] = {",
+        "  1, 2, 3, 4",
+        "};");
+    assertTranslatedLines(translation,
+        "static const jshort Test_constArray$1[] = {",
+        "  1, 2, 3, 4",
+        "};");
+    assertTranslatedLines(translation,
+        "static const jint Test_constArray$2[] = {",
+        "  1, 2, 3, 4",
+        "};");
+    assertTranslation(translation, "WithBytes:Test_constArray$0 count:4]");
+    assertTranslation(translation, "WithShorts:Test_constArray$1 count:4]");
+    assertTranslation(translation, "WithInts:Test_constArray$2 count:4]");
+  }
 }
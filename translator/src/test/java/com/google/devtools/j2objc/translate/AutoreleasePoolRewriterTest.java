@@ -0,0 +1,79 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.common.io.Files;
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link AutoreleasePoolRewriter}.
+ */
+public class AutoreleasePoolRewriterTest extends GenerationTest {
+
+  @Override
+  public void setUp() throws IOException {
+    super.setUp();
+    options.setAutoreleasePoolThreshold(3);
+  }
+
+  public void testAllocatingLoopGetsPool() throws IOException {
+    File report = new File(tempDir, "pools.txt");
+    options.setAutoreleasePoolReport(report.getPath());
+    String translation = translateSourceFile(
+        "import java.util.List; class Test { "
+        + "void test(List<String> l) { "
+        + "  for (int i = 0; i < 10; i++) { l.add(\"a\" + i); l.add(new Object().toString()); } "
+        + "  while (l.size() > 1) { l.remove(0); } } }", "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "for (jint i = 0; i < 10; i++) {",
+        "@autoreleasepool {");
+    assertNotInTranslation(translation, "while ([l size] > 1) {\n    @autoreleasepool");
+    assertOccurrences(translation, "@autoreleasepool", 1);
+    assertEquals("Test.java:1: Test.test, 3 autoreleased objects per iteration\n",
+        Files.asCharSource(report, UTF_8).read().replace(tempDir.getPath() + "/", ""));
+  }
+
+  public void testAssignedOuterLocalPreventsPool() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { String test(String[] args) { String last = null; "
+        + "  for (String s : args) { last = s + s; last += s; last += s; } "
+        + "  for (String s : args) { String t = s + s; t += s; t += s; } "
+        + "  for (String s : args) { String t = s + s; t += s; if (t.isEmpty()) return t; } "
+        + "  return last; } }", "Test", "Test.m");
+    // Only the loop whose strings don't escape its iterations is given a pool.
+    assertTranslatedLines(translation,
+        "NSString *t = JreStrcat(\"$$\", s, s);",
+        "JreStrAppend(&t, \"$\", s);",
+        "JreStrAppend(&t, \"$\", s);");
+    assertOccurrences(translation, "@autoreleasepool", 1);
+  }
+
+  public void testNestedLoopAllocationsCounted() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { void test(int n) { "
+        + "  for (int i = 0; i < n; i++) { new Object(); "
+        + "    for (int j = 0; j < n; j++) { new Object(); new Object(); } } } }",
+        "Test", "Test.m");
+    // The inner loop is below the threshold, but the outer loop is not.
+    assertTranslatedLines(translation,
+        "for (jint i = 0; i < n; i++) {",
+        "@autoreleasepool {");
+    assertOccurrences(translation, "@autoreleasepool", 1);
+  }
+}
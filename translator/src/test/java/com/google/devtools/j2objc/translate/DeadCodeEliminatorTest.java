@@ -17,6 +17,7 @@
 package com.google.devtools.j2objc.translate;
 
 import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.util.CodeReferenceMap;
 import java.io.IOException;
 
@@ -591,6 +592,34 @@ public class DeadCodeEliminatorTest extends GenerationTest {
     assertTranslation(translation, "#include <stdlib.h>");
   }
 
+  public void testDeadUnit() throws IOException {
+    String source = "class A {\n"
+        + "  int i;\n"
+        + "  void foo() { new Object() {}; Runnable r = () -> {}; }\n"
+        + "}\n"
+        + "class B {}\n";
+    CodeReferenceMap map = CodeReferenceMap.builder().addClass("A").addClass("B").build();
+    setDeadCodeMap(map);
+    CompilationUnit unit = compileType("A", source);
+    DeadCodeEliminator eliminator = new DeadCodeEliminator(unit, map);
+    eliminator.run();
+    assertTrue(eliminator.isDeadUnit());
+
+    String translation = translateSourceFile(source, "A", "A.h");
+    assertNotInTranslation(translation, "@interface");
+    translation = getTranslatedFile("A.m");
+    assertNotInTranslation(translation, "@implementation");
+  }
+
+  public void testDeadUnitWithConstant() throws IOException {
+    String source = "class A { static final int FOO = 1; }";
+    CompilationUnit unit = compileType("A", source);
+    DeadCodeEliminator eliminator =
+        new DeadCodeEliminator(unit, CodeReferenceMap.builder().addClass("A").build());
+    eliminator.run();
+    assertFalse(eliminator.isDeadUnit());
+  }
+
   public void testDeadClass_StringConstants() throws IOException {
     String source = "class A {\n"
         + "  public static class B {\n"
@@ -102,4 +102,19 @@ public class EnhancedForRewriterTest extends GenerationTest {
         "  break_testLabel2: ;",
         "}");
   }
+
+  public void testEnumValuesIteration() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { enum Color { RED, GREEN, BLUE } "
+        + "int test() { int n = 0; for (Color c : Color.values()) { n += c.ordinal(); } "
+        + "return n; } }", "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "{",
+        "  Test_Color_initialize();",
+        "  Test_Color * const *b__ = Test_Color_values_;",
+        "  Test_Color * const *e__ = b__ + 3;",
+        "  while (b__ < e__) {",
+        "    Test_Color *c = *b__++;");
+    assertNotInTranslation(translation, "Test_Color_values()");
+  }
 }
@@ -0,0 +1,119 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.Options.MemoryManagementOption;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link EscapeAnalyzer}.
+ */
+public class EscapeAnalyzerTest extends GenerationTest {
+
+  @Override
+  public void setUp() throws IOException {
+    super.setUp();
+    options.setEscapeAnalysis(true);
+  }
+
+  public void testNonEscapingLocalReleasedAtScopeEnd() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { int test(String s) { "
+        + "  StringBuilder sb = new StringBuilder(); sb.append(s).append(s); "
+        + "  return sb.length(); } }", "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "JavaLangStringBuilder *sb = new_JavaLangStringBuilder_init();",
+        "JreReleaseAtScopeEnd(sb);");
+  }
+
+  public void testEscapingLocalsAutoreleased() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { Object f; "
+        + "  Object test1() { Object o = new Object(); return o; } "
+        + "  Object test2() { Object o = new Object(); Object p = o; return p; } "
+        + "  StringBuilder test3() { StringBuilder sb = new StringBuilder(); "
+        + "    return sb.append(1); } "
+        + "  void test4() { Object o = new Object(); f = o; } "
+        + "  void test5() { Object o = new Object(); foo(o); } "
+        + "  void foo(Object o) {} }", "Test", "Test.m");
+    assertTranslation(translation, "NSObject *o = create_NSObject_init();");
+    assertTranslation(translation,
+        "JavaLangStringBuilder *sb = create_JavaLangStringBuilder_init();");
+    // Assigning a field retains the object, so it can still be released.
+    assertTranslatedLines(translation,
+        "- (void)test4 {",
+        "NSObject *o = new_NSObject_init();",
+        "JreReleaseAtScopeEnd(o);");
+    // A callee that keeps an argument retains it.
+    assertTranslatedLines(translation,
+        "- (void)test5 {",
+        "NSObject *o = new_NSObject_init();",
+        "JreReleaseAtScopeEnd(o);");
+    assertOccurrences(translation, "JreReleaseAtScopeEnd", 2);
+  }
+
+  public void testDerivedValuesEscape() throws IOException {
+    String translation = translateSourceFile(
+        "import com.google.j2objc.annotations.Weak; import java.util.List; "
+        + "class Test { @Weak Object weak; "
+        + "  static class Foo { Object buf; Object[] items; int n; List<Object> list; "
+        + "    List<Object> getList() { return list; } } "
+        + "  Object test1() { Foo f = new Foo(); return f.buf; } "
+        + "  Object test2() { Foo f = new Foo(); return f.items[0]; } "
+        + "  Object test3() { Foo f = new Foo(); return f.getList(); } "
+        + "  void test4() { Object o = new Object(); weak = o; } "
+        + "  int test5() { Foo f = new Foo(); f.buf = this; f.items[0] = this; "
+        + "    return f.n + f.items.length + f.getList().size(); } }", "Test", "Test.m");
+    // Values read from the object are released with it, so they can't outlive it.
+    assertTranslatedLines(translation,
+        "- (id)test1 {",
+        "Test_Foo *f = create_Test_Foo_init();");
+    assertTranslatedLines(translation,
+        "- (id)test2 {",
+        "Test_Foo *f = create_Test_Foo_init();");
+    assertTranslatedLines(translation,
+        "- (id<JavaUtilList>)test3 {",
+        "Test_Foo *f = create_Test_Foo_init();");
+    // A weak field doesn't retain the object.
+    assertTranslatedLines(translation,
+        "- (void)test4 {",
+        "NSObject *o = create_NSObject_init();");
+    // Primitive values and stores into the object don't leak it.
+    assertTranslatedLines(translation,
+        "- (jint)test5 {",
+        "Test_Foo *f = new_Test_Foo_init();",
+        "JreReleaseAtScopeEnd(f);");
+    assertOccurrences(translation, "JreReleaseAtScopeEnd", 1);
+  }
+
+  public void testLabeledStatementsSkipped() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { int test(int n) { Object o = new Object(); "
+        + "  outer: for (int i = 0; i < n; i++) { for (;;) { if (o.hashCode() > i) break outer; } } "
+        + "  return o.hashCode(); } }", "Test", "Test.m");
+    assertTranslation(translation, "NSObject *o = create_NSObject_init();");
+    assertNotInTranslation(translation, "JreReleaseAtScopeEnd");
+  }
+
+  public void testArcUnchanged() throws IOException {
+    options.setMemoryManagementOption(MemoryManagementOption.ARC);
+    String translation = translateSourceFile(
+        "class Test { int test() { Object o = new Object(); return o.hashCode(); } }",
+        "Test", "Test.m");
+    assertTranslation(translation, "NSObject *o = new_NSObject_init();");
+    assertNotInTranslation(translation, "JreReleaseAtScopeEnd");
+  }
+}
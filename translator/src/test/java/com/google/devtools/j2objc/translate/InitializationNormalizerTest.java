@@ -280,6 +280,56 @@ public class InitializationNormalizerTest extends GenerationTest {
         "    Test_CODE_POINT = Test_getCodePoint();");
   }
 
+  public void testStaticFinalInitializersFoldedFromConstants() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { static final int A = 3; static final int B = Math.max(A, 2) * 2; "
+        + "static final String S = Integer.toHexString(B + 249); "
+        + "static final long L = Long.parseLong(S, 16) - B; }", "Test", "Test.m");
+    assertTranslation(translation, "jint Test_B = 6;");
+    assertTranslation(translation, "NSString *Test_S = @\"ff\";");
+    assertTranslation(translation, "jlong Test_L = 249LL;");
+    assertNotInTranslation(translation, "+ (void)initialize");
+  }
+
+  public void testStaticFinalFloatingPointInitializersFolded() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { static final float F = Math.abs(-1e10f); "
+        + "static final double D = Math.max(1e10, 2); "
+        + "static final float NOT_A_NUMBER = Math.abs(Float.NaN); "
+        + "static final double INF = Math.max(Double.POSITIVE_INFINITY, 0); "
+        + "static final double NEG_INF = -Math.abs(Double.NEGATIVE_INFINITY); }",
+        "Test", "Test.m");
+    assertTranslation(translation, "jfloat Test_F = 1.0E10f;");
+    assertTranslation(translation, "jdouble Test_D = 1.0E10;");
+    assertTranslation(translation, "jfloat Test_NOT_A_NUMBER = NAN;");
+    assertTranslation(translation, "jdouble Test_INF = INFINITY;");
+    assertTranslation(translation, "jdouble Test_NEG_INF = -INFINITY;");
+    assertNotInTranslation(translation, "+ (void)initialize");
+  }
+
+  public void testStaticFinalFloatingPointStringsNotFolded() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { static final float F = Math.abs(-1e10f); "
+        + "static final String S = String.valueOf(F); "
+        + "static final String T = \"d\" + Math.max(1e10, 2); }", "Test", "Test.m");
+    // The runtime formats floating point values itself.
+    assertTranslation(translation, "jfloat Test_F = 1.0E10f;");
+    assertNotInTranslation(translation, "@\"1.0E10\"");
+    assertNotInTranslation(translation, "@\"d1.0E10\"");
+    assertTranslation(translation, "+ (void)initialize");
+  }
+
+  public void testStaticFinalInitializersNotFolded() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { static final int A = Integer.parseInt(\"x\"); "
+        + "static final int B = Math.max(1, 2); "
+        + "static final int C = Integer.getInteger(\"c\", 1); }", "Test", "Test.m");
+    // A throws at runtime, so it and all later initializers stay in +initialize.
+    assertTranslation(translation, "Test_A = JavaLangInteger_parseIntWithNSString_(@\"x\");");
+    assertTranslation(translation, "Test_B = JavaLangMath_maxWithInt_withInt_(1, 2);");
+    assertNotInTranslation(translation, "Test_B = 2;");
+  }
+
   // Verify that a static variable initialized as null doesn't do that in the
   // initialize method, since static variables are always zeroed in C.
   public void testNullInitializationIsStripped() throws IOException {
@@ -0,0 +1,65 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.translate;
+
+import com.google.devtools.j2objc.GenerationTest;
+import com.google.devtools.j2objc.Options.Instrumentation;
+import java.io.IOException;
+import java.util.EnumSet;
+
+/**
+ * Unit tests for {@link Instrumenter}.
+ */
+public class InstrumenterTest extends GenerationTest {
+
+  public void testCallProbes() throws IOException {
+    options.setInstrumentation(EnumSet.of(Instrumentation.CALLS));
+    String translation = translateSourceFile(
+        "class Test { Test() {} int foo(int i) { return i + 1; } native void bar(); }",
+        "Test", "Test.m");
+    assertTranslatedLines(translation,
+        "static const char *const Test_probes_names[] = {",
+        "\"Test.<init>()V\",",
+        "\"Test.foo(I)I\",",
+        "};");
+    assertTranslation(translation, "J2OBJC_PROBE_TABLE(Test_probes, \"");
+    assertTranslation(translation, ", 2)");
+    assertTranslatedLines(translation,
+        "void Test_init(Test *self) {",
+        "J2OBJC_PROBE_CALL(Test_probes, 0);");
+    assertTranslatedLines(translation,
+        "- (jint)fooWithInt:(jint)i {",
+        "J2OBJC_PROBE_CALL(Test_probes, 1);",
+        "return i + 1;");
+    assertNotInTranslation(translation, "J2OBJC_PROBE_ALLOC");
+  }
+
+  public void testAllocationProbes() throws IOException {
+    options.setInstrumentation(EnumSet.of(Instrumentation.ALLOCATIONS));
+    String translation = translateSourceFile(
+        "class Test { Object foo() { return new Object(); } }", "Test", "Test.m");
+    assertTranslation(translation,
+        "\"Test.foo()Ljava/lang/Object; new java.lang.Object (line 1)\",");
+    assertTranslation(translation,
+        "return (J2OBJC_PROBE_ALLOC(Test_probes, 0), create_NSObject_init());");
+    assertNotInTranslation(translation, "J2OBJC_PROBE_CALL");
+  }
+
+  public void testNoProbesByDefault() throws IOException {
+    String translation = translateSourceFile(
+        "class Test { Object foo() { return new Object(); } }", "Test", "Test.m");
+    assertNotInTranslation(translation, "J2OBJC_PROBE");
+  }
+}
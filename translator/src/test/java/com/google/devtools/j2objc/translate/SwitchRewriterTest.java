@@ -97,7 +97,7 @@ public class SwitchRewriterTest extends GenerationTest {
         + "public static void doSomething(EnumType e) {"
         + " switch (e) { case ONE: break; case TWO: break; }}}",
         "A", "A.m");
-    assertTranslation(translation, "switch ([e ordinal]) {");
+    assertTranslation(translation, "switch (((A_EnumType *) nil_chk(e))->ordinal_) {");
     assertTranslation(translation, "case A_EnumType_Enum_ONE:");
   }
 
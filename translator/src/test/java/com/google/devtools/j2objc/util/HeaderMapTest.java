@@ -0,0 +1,61 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Unit tests for {@link HeaderMap}.
+ */
+public class HeaderMapTest extends GenerationTest {
+
+  public void testBinaryMappingFile() throws IOException {
+    String properties = addSourceFile("foo.A=foo/a.h\nfoo.B=foo/b.h\n", "a.mappings");
+    File binaryFile = new File(tempDir, "ab" + HeaderMapFile.SUFFIX);
+    HeaderMap headerMap = new HeaderMap();
+    headerMap.setMappingFiles(properties);
+    headerMap.setOutputMappingFile(binaryFile);
+    headerMap.loadMappings();
+    headerMap.put("foo.C", "foo/c.h");
+    headerMap.printMappings();
+    assertTrue(HeaderMapFile.isHeaderMapFile(binaryFile));
+    assertEquals(3, HeaderMapFile.open(binaryFile).size());
+
+    // Properties mapping files take precedence over binary mapping files, wherever they are in
+    // the list.
+    String override = addSourceFile("foo.B=bar/b.h\n", "b.mappings");
+    headerMap = new HeaderMap();
+    headerMap.setMappingFiles(override + "," + binaryFile.getPath());
+    headerMap.loadMappings();
+    assertEquals("bar/b.h", headerMap.getMapped("foo.B"));
+
+    headerMap = new HeaderMap();
+    headerMap.setMappingFiles(binaryFile.getPath() + "," + override);
+    headerMap.loadMappings();
+    assertEquals("foo/a.h", headerMap.getMapped("foo.A"));
+    assertEquals("bar/b.h", headerMap.getMapped("foo.B"));
+    assertEquals("foo/c.h", headerMap.getMapped("foo.C"));
+    assertNull(headerMap.getMapped("foo.D"));
+
+    // Merged output includes the entries of binary input files.
+    File merged = new File(tempDir, "merged.mappings");
+    headerMap.setOutputMappingFile(merged);
+    headerMap.printMappings();
+    assertEquals("foo.A=foo/a.h\nfoo.B=bar/b.h\nfoo.C=foo/c.h\n",
+        getTranslatedFile("merged.mappings").replace("\r\n", "\n"));
+  }
+}
@@ -111,4 +111,30 @@ public class PackagePrefixesTest extends GenerationTest {
     prefixMap.addPrefixProperties(new StringReader(prefixes));
     assertEquals("FBB", prefixMap.getPrefix("foo.bar.b.Cat"));
   }
+
+  public void testWildcardsMatchInDeclaredOrder() throws IOException {
+    String prefixes =
+        "foo.bar.b.*=FBB\n"
+        + "foo.*=F\n"
+        + "foo.bar.*=FBX\n";
+    PackagePrefixes prefixMap = options.getPackagePrefixes();
+    prefixMap.addPrefixProperties(new StringReader(prefixes));
+    assertEquals("FBB", prefixMap.getPrefix("foo.bar.b"));
+    assertEquals("FBB", prefixMap.getPrefix("foo.bar.b.c"));
+    // foo.* is declared before foo.bar.*, so it wins.
+    assertEquals("F", prefixMap.getPrefix("foo.bar.c"));
+    assertEquals("F", prefixMap.getPrefix("foo"));
+    assertNull(prefixMap.getPrefix("foos"));
+    assertNull(prefixMap.getPrefix("mumble"));
+  }
+
+  public void testWildcardRedefinition() {
+    PackagePrefixes prefixMap = options.getPackagePrefixes();
+    prefixMap.addPrefix("foo.bar.*", "FB");
+    prefixMap.addPrefix("foo.bar.*", "FB");
+    assertEquals(0, ErrorUtil.errorCount());
+    prefixMap.addPrefix("foo.bar.*", "FX");
+    assertEquals(1, ErrorUtil.errorCount());
+    assertEquals("FB", prefixMap.getPrefix("foo.bar.mumble"));
+  }
 }
@@ -0,0 +1,91 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.j2objc.util;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+import com.google.devtools.j2objc.GenerationTest;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintStream;
+
+/**
+ * Unit tests for {@link PersistentWorker}.
+ */
+public class PersistentWorkerTest extends GenerationTest {
+
+  // Reports an error for each "error" argument, and prints the others.
+  private static int runTool(String[] args) {
+    for (String arg : args) {
+      if (arg.equals("error")) {
+        ErrorUtil.error("bad argument");
+      } else {
+        System.out.print(arg);
+      }
+    }
+    return ErrorUtil.errorCount();
+  }
+
+  private String runWorker(byte[] requests, String... startupArgs) throws IOException {
+    InputStream systemIn = System.in;
+    PrintStream systemOut = System.out;
+    ByteArrayOutputStream responses = new ByteArrayOutputStream();
+    System.setIn(new ByteArrayInputStream(requests));
+    System.setOut(new PrintStream(responses, true, "UTF-8"));
+    try {
+      PersistentWorker.run(startupArgs, PersistentWorkerTest::runTool);
+    } finally {
+      System.setIn(systemIn);
+      System.setOut(systemOut);
+    }
+    return new String(responses.toByteArray(), UTF_8);
+  }
+
+  public void testJsonProtocol() throws IOException {
+    String requests =
+        "{\"arguments\": [\"error\", \"a\\\"b\"], \"inputs\": [{\"path\": \"A.java\", "
+        + "\"digest\": \"abc\"}], \"requestId\": 0}\n"
+        + "{\"arguments\": [\"ok\"], \"requestId\": 0}\n";
+    String responses =
+        runWorker(requests.getBytes(UTF_8), "--persistent_worker", "--worker_protocol=json");
+    String[] lines = responses.split("\\R");
+    assertEquals(2, lines.length);
+    assertEquals("{\"exitCode\":1,\"output\":\"error: bad argument\\u000aa\\\"b\",\"requestId\":0}",
+        lines[0]);
+    // Errors are reset between requests.
+    assertEquals("{\"exitCode\":0,\"output\":\"ok\",\"requestId\":0}", lines[1]);
+  }
+
+  public void testProtoProtocol() throws IOException {
+    // WorkRequest { arguments: "error" arguments: "x" request_id: 7 }, then
+    // WorkRequest { arguments: "y" inputs { path: "a" digest: "\001" } }.
+    byte[] requests = {
+      12, 0x0a, 5, 'e', 'r', 'r', 'o', 'r', 0x0a, 1, 'x', 0x18, 7,
+      11, 0x0a, 1, 'y', 0x12, 6, 0x0a, 1, 'a', 0x12, 1, 1
+    };
+    byte[] responses = runWorker(requests, "--persistent_worker").getBytes(UTF_8);
+    byte[] output = "error: bad argument\nx".getBytes(UTF_8);
+    ByteArrayOutputStream expected = new ByteArrayOutputStream();
+    // WorkResponse { exit_code: 1 output: "error: bad argument\nx" request_id: 7 }
+    expected.write(new byte[] {(byte) (6 + output.length), 0x08, 1, 0x12, (byte) output.length});
+    expected.write(output);
+    expected.write(new byte[] {0x18, 7});
+    // WorkResponse { output: "y" }
+    expected.write(new byte[] {3, 0x12, 1, 'y'});
+    assertEquals(new String(expected.toByteArray(), UTF_8), new String(responses, UTF_8));
+  }
+}
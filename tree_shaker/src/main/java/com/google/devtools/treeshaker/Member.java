@@ -17,9 +17,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 final class Member {
-  static Member buildFrom(MemberInfo memberInfo, Type declaringType) {
+  static Member buildFrom(MemberInfo memberInfo, String name, Type declaringType) {
     return new Member(
-        memberInfo.getName(),
+        name,
         declaringType,
         memberInfo.getStatic(),
         memberInfo.getConstructor(),
@@ -38,6 +38,10 @@ final class Member {
   private boolean live;
   private final List<Type> referencedTypes = new ArrayList<>();
   private final List<Member> referencedMembers = new ArrayList<>();
+  private final List<Member> superCalls = new ArrayList<>();
+  private final List<Type> instantiatedTypes = new ArrayList<>();
+  private final List<String> accessedFields = new ArrayList<>();
+  private final List<String> externalReferences = new ArrayList<>();
   private Member originalMember;
   private final Annotations annotations;
 
@@ -108,6 +112,43 @@ final class Member {
     referencedMembers.add(referencedMember);
   }
 
+  // Returns the referenced members that are called with super, and so aren't dispatched on the
+  // receiver's type.
+  List<Member> getSuperCalls() {
+    return superCalls;
+  }
+
+  void addSuperCall(Member referencedMember) {
+    superCalls.add(referencedMember);
+  }
+
+  List<Type> getInstantiatedTypes() {
+    return instantiatedTypes;
+  }
+
+  void addInstantiatedType(Type instantiatedType) {
+    instantiatedTypes.add(instantiatedType);
+  }
+
+  // Fields are named by their declaring type, name and type descriptor, like "foo.Bar.count##I".
+  List<String> getAccessedFields() {
+    return accessedFields;
+  }
+
+  void addAccessedField(String field) {
+    accessedFields.add(field);
+  }
+
+  // Returns the methods and fields referenced in types that aren't in the summaries, named like
+  // members ("get##(I)Ljava/lang/Object;") or fields ("count##I").
+  List<String> getExternalReferences() {
+    return externalReferences;
+  }
+
+  void addExternalReference(String reference) {
+    externalReferences.add(reference);
+  }
+
   Member getOriginalMember() {
     return originalMember;
   }
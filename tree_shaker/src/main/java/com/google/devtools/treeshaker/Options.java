@@ -24,7 +24,6 @@ import com.google.common.io.Files;
 import com.google.common.io.Resources;
 import com.google.devtools.j2objc.util.SourceVersion;
 import com.google.devtools.j2objc.util.Version;
-import com.google.protobuf.ExtensionRegistry;
 import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileInputStream;
@@ -68,12 +67,15 @@ class Options {
   private String fileEncoding = System.getProperty("file.encoding", "UTF-8");
   private boolean treatWarningsAsErrors = false;
   private boolean useClassHierarchyAnalyzer = false;
+  private boolean useVariableTypeAnalyser = false;
   private boolean stripReflection = false;
   private File treeShakerRoots;
   private File outputFile = new File("tree-shaker-report.txt");
   private LibraryInfo summary;
   private String summaryOutputFile;
   private List<LibraryInfo> summaries = Lists.newArrayList();
+  private File summaryCacheDir;
+  private int summaryJobs = Runtime.getRuntime().availableProcessors();
 
   // The default source version number if not passed with -source is determined from the system
   // properties of the running java version after parsing the argument list.
@@ -117,6 +119,10 @@ class Options {
     return useClassHierarchyAnalyzer;
   }
 
+  public boolean useVariableTypeAnalyser() {
+    return useVariableTypeAnalyser;
+  }
+
   public boolean stripReflection() {
     return stripReflection;
   }
@@ -129,6 +135,10 @@ class Options {
     this.useClassHierarchyAnalyzer = useClassHierarchyAnalyzer;
   }
 
+  public void setUseVariableTypeAnalyser(boolean useVariableTypeAnalyser) {
+    this.useVariableTypeAnalyser = useVariableTypeAnalyser;
+  }
+
   public File getTreeShakerRoots() {
     return treeShakerRoots;
   }
@@ -169,6 +179,22 @@ class Options {
     this.summaryOutputFile = summaryOutputFile;
   }
 
+  public File getSummaryCacheDir() {
+    return summaryCacheDir;
+  }
+
+  public void setSummaryCacheDir(File summaryCacheDir) {
+    this.summaryCacheDir = summaryCacheDir;
+  }
+
+  public int summaryJobs() {
+    return summaryJobs;
+  }
+
+  public void setSummaryJobs(int summaryJobs) {
+    this.summaryJobs = summaryJobs;
+  }
+
   private void addManifest(String manifestFile) throws IOException {
     BufferedReader in = new BufferedReader(new FileReader(new File(manifestFile)));
     try {
@@ -233,7 +259,7 @@ class Options {
     List<LibraryInfo> libraryInfos = Lists.newArrayList();
     for (String summary : summaries) {
       try (InputStream in = new FileInputStream(summary)) {
-        libraryInfos.add(LibraryInfo.parseFrom(in, ExtensionRegistry.getEmptyRegistry()));
+        libraryInfos.add(SummaryFormat.parseFrom(in));
       }
     }
     return libraryInfos;
@@ -277,9 +303,7 @@ class Options {
         if (++nArg == args.length) {
           usage("-summary requires an argument");
         }
-        options.setSummary(
-            LibraryInfo.parseFrom(
-                Files.toByteArray(new File(args[nArg])), ExtensionRegistry.getEmptyRegistry()));
+        options.setSummary(SummaryFormat.parseFrom(Files.toByteArray(new File(args[nArg]))));
       } else if (arg.equals("--sourcefilelist") || arg.equals("-s")) {
         if (++nArg == args.length) {
           usage("--sourcefilelist requires an argument");
@@ -300,6 +324,23 @@ class Options {
           usage("--output-summary");
         }
         options.summaryOutputFile = args[nArg];
+      } else if (arg.equals("--summary-cache")) {
+        if (++nArg == args.length) {
+          usage("--summary-cache requires an argument");
+        }
+        options.summaryCacheDir = new File(args[nArg]);
+      } else if (arg.equals("--summary-jobs")) {
+        if (++nArg == args.length) {
+          usage("--summary-jobs requires an argument");
+        }
+        try {
+          options.summaryJobs = Integer.parseInt(args[nArg]);
+        } catch (NumberFormatException e) {
+          usage("invalid --summary-jobs value: " + args[nArg]);
+        }
+        if (options.summaryJobs < 1) {
+          usage("invalid --summary-jobs value: " + args[nArg]);
+        }
       } else if (arg.startsWith(XBOOTCLASSPATH)) {
         // TODO(malvania): Enable the bootclasspath option when we have a class file AST
         //                 parser that can use class jars.
@@ -324,8 +365,13 @@ class Options {
         options.treatWarningsAsErrors = true;
       } else if (arg.equals("--use-class-hierarchy-analyzer")) {
         options.useClassHierarchyAnalyzer = true;
+        options.useVariableTypeAnalyser = false;
       } else if (arg.equals("--use-rapid-type-analyser")) {
         options.useClassHierarchyAnalyzer = false;
+        options.useVariableTypeAnalyser = false;
+      } else if (arg.equals("--use-variable-type-analyser")) {
+        options.useClassHierarchyAnalyzer = false;
+        options.useVariableTypeAnalyser = true;
       } else if (arg.equals("-Xprint-args")) {
         printArgs = true;
       } else if (arg.equals("--strip-reflection")) {
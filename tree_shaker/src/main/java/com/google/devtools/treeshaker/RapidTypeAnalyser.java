@@ -39,6 +39,11 @@ final class RapidTypeAnalyser {
         .filter(Member::isExported)
         .forEach(m -> onMemberReference(m));
 
+    return getUnusedCode(types);
+  }
+
+  /** Returns the types that aren't live, and the members of live types that aren't live. */
+  static CodeReferenceMap getUnusedCode(Collection<Type> types) {
     CodeReferenceMap.Builder unusedBuilder = CodeReferenceMap.builder();
     List<String> uninstantiated = new ArrayList<>();
     for (Type type : types) {
@@ -30,7 +30,7 @@ public class Summarizer {
       LibraryInfo summary = treeShaker.createLibraryInfo();
       File summaryFile = new File(options.getSummaryOutputFile());
       summaryFile.createNewFile();
-      Files.write(summary.toByteArray(), summaryFile);
+      Files.write(SummaryFormat.toByteArray(summary), summaryFile);
     } catch (IOException e) {
       ErrorUtil.error(e.getMessage());
     }
@@ -0,0 +1,129 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.treeshaker;
+
+import com.google.common.hash.HashCode;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.protobuf.ByteString;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+import org.jspecify.nullness.Nullable;
+
+/**
+ * An on-disk cache of per-library LibraryInfo summaries, keyed by a hash of the library's
+ * contents and of the tool configuration used to summarize it. Each entry also records the
+ * dependency hash of the other libraries' declarations it was summarized with, since references
+ * resolve to them; an entry whose dependency hash is out of date is summarized again.
+ */
+final class SummaryCache {
+  // Bump when UsedCodeMarker's output changes, so stale summaries aren't reused.
+  private static final int FORMAT_VERSION = 4;
+  private static final String SUFFIX = ".summary";
+
+  private final File cacheDir;
+  private final HashCode configurationKey;
+
+  /**
+   * Creates a cache in the specified directory. The configuration strings are the options that
+   * affect summary contents, such as the classpath and source version.
+   */
+  SummaryCache(File cacheDir, List<String> configuration) {
+    this.cacheDir = cacheDir;
+    Hasher hasher = Hashing.sha256().newHasher().putInt(FORMAT_VERSION);
+    for (String s : configuration) {
+      hasher.putString(s, StandardCharsets.UTF_8).putByte((byte) 0);
+    }
+    this.configurationKey = hasher.hash();
+  }
+
+  /**
+   * Returns the hash of a library made up of the specified files (source jars or source files).
+   * Files are hashed by path and content, so renaming or editing any of them changes the hash.
+   */
+  static HashCode hash(List<String> files) throws IOException {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (String path : files) {
+      hasher.putString(path, StandardCharsets.UTF_8).putByte((byte) 0);
+      hasher.putBytes(Files.asByteSource(new File(path)).hash(Hashing.sha256()).asBytes());
+    }
+    return hasher.hash();
+  }
+
+  /** Returns the key for a library, given its hash. */
+  String key(HashCode library) {
+    return Hashing.sha256()
+        .newHasher()
+        .putBytes(configurationKey.asBytes())
+        .putBytes(library.asBytes())
+        .hash()
+        .toString();
+  }
+
+  /**
+   * Returns the dependency hash of a library, given the declaration hashes of all libraries
+   * summarized with it. A summary records the members that its references resolve to, which are
+   * declared in the other libraries, so their bodies can change without invalidating it.
+   */
+  static ByteString dependencyHash(List<ByteString> declarationHashes, int library) {
+    Hasher hasher = Hashing.sha256().newHasher();
+    for (int i = 0; i < declarationHashes.size(); i++) {
+      if (i != library) {
+        hasher.putBytes(declarationHashes.get(i).toByteArray());
+      }
+      hasher.putByte((byte) 0);
+    }
+    return ByteString.copyFrom(hasher.hash().asBytes());
+  }
+
+  /** Returns the cached summary for a key, or null if there isn't one. */
+  @Nullable LibraryInfo get(String key) {
+    File file = new File(cacheDir, key + SUFFIX);
+    if (!file.exists()) {
+      return null;
+    }
+    try {
+      return SummaryFormat.parseFrom(Files.toByteArray(file));
+    } catch (IOException e) {
+      // A corrupt or truncated entry is treated as a miss, and is rewritten by put().
+      return null;
+    }
+  }
+
+  /**
+   * Stores a summary. The summary is written to a temporary file first and then renamed, so
+   * concurrent tree_shaker runs sharing a cache never read a partially written entry.
+   */
+  void put(String key, LibraryInfo summary) throws IOException {
+    if (!cacheDir.exists() && !cacheDir.mkdirs()) {
+      throw new IOException("cannot create summary cache directory: " + cacheDir);
+    }
+    File tmpFile = File.createTempFile(key, ".tmp", cacheDir);
+    try {
+      Files.write(SummaryFormat.toByteArray(summary), tmpFile);
+      java.nio.file.Files.move(
+          tmpFile.toPath(),
+          new File(cacheDir, key + SUFFIX).toPath(),
+          StandardCopyOption.REPLACE_EXISTING,
+          StandardCopyOption.ATOMIC_MOVE);
+    } finally {
+      tmpFile.delete();
+    }
+  }
+}
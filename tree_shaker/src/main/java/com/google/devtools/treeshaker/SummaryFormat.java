@@ -0,0 +1,228 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.treeshaker;
+
+import com.google.protobuf.ExtensionRegistry;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads and writes LibraryInfo summaries. Summaries are written in a compact format, where member
+ * and field names are interned in a string table shared by the whole library, and lists of type
+ * ids are sorted and stored as deltas, so most ids are a single byte. Summaries are read in the
+ * format they were written in, and their names and type ids are looked up with a {@link Reader},
+ * so reading a summary doesn't build a second copy of it. Summaries written without a version are
+ * read unchanged.
+ */
+final class SummaryFormat {
+  static final int VERSION = 4;
+  // Version 2 summaries have the same layout, but don't record type flows.
+  private static final int MIN_VERSION = 2;
+  // Version 3 summaries don't mark calls with super, which the type flows depend on.
+  private static final int MIN_TYPE_FLOWS_VERSION = 4;
+
+  private SummaryFormat() {}
+
+  static LibraryInfo parseFrom(byte[] bytes) throws IOException {
+    return validate(LibraryInfo.parseFrom(bytes, ExtensionRegistry.getEmptyRegistry()));
+  }
+
+  static LibraryInfo parseFrom(InputStream in) throws IOException {
+    return validate(LibraryInfo.parseFrom(in, ExtensionRegistry.getEmptyRegistry()));
+  }
+
+  static byte[] toByteArray(LibraryInfo summary) {
+    return encode(summary).toByteArray();
+  }
+
+  /** Returns a summary in the compact format. */
+  static LibraryInfo encode(LibraryInfo summary) {
+    if (summary.getVersion() == VERSION) {
+      return summary;
+    }
+    // The most frequently used names get the lowest, and so shortest, ids.
+    Reader reader = new Reader(summary);
+    Map<String, Integer> counts = new HashMap<>();
+    for (TypeInfo type : summary.getTypeList()) {
+      for (MemberInfo member : type.getMemberList()) {
+        counts.merge(reader.getName(member), 1, Integer::sum);
+        counts.merge(reader.getOriginalMethodName(member), 1, Integer::sum);
+        for (MethodInvocation invocation : member.getInvokedMethodsList()) {
+          counts.merge(reader.getMethod(invocation), 1, Integer::sum);
+        }
+        for (FieldReference field : member.getAccessedFieldsList()) {
+          counts.merge(reader.getField(field), 1, Integer::sum);
+        }
+      }
+    }
+    List<String> strings = new ArrayList<>(counts.keySet());
+    strings.sort(
+        Comparator.comparing((String s) -> counts.get(s))
+            .reversed()
+            .thenComparing(Comparator.naturalOrder()));
+    Map<String, Integer> ids = new HashMap<>();
+    for (String s : strings) {
+      ids.put(s, ids.size());
+    }
+
+    LibraryInfo.Builder builder =
+        summary.toBuilder()
+            .clearType()
+            .clearStringTable()
+            .setVersion(VERSION)
+            .addAllStringTable(strings);
+    for (TypeInfo type : summary.getTypeList()) {
+      TypeInfo.Builder typeBuilder =
+          type.toBuilder()
+              .clearMember()
+              .clearInnerTypes()
+              .addAllInnerTypes(toDeltas(reader.getInnerTypes(type)));
+      for (MemberInfo member : type.getMemberList()) {
+        MemberInfo.Builder memberBuilder =
+            member.toBuilder()
+                .clearName()
+                .clearOriginalMethodName()
+                .clearInvokedMethods()
+                .clearReferencedTypes()
+                .clearInstantiatedTypes()
+                .clearAccessedFields()
+                .setNameId(ids.get(reader.getName(member)))
+                .setOriginalMethodNameId(ids.get(reader.getOriginalMethodName(member)))
+                .addAllReferencedTypes(toDeltas(reader.getReferencedTypes(member)))
+                .addAllInstantiatedTypes(toDeltas(reader.getInstantiatedTypes(member)));
+        for (MethodInvocation invocation : member.getInvokedMethodsList()) {
+          memberBuilder.addInvokedMethods(
+              invocation.toBuilder()
+                  .clearMethod()
+                  .setMethodId(ids.get(reader.getMethod(invocation))));
+        }
+        for (FieldReference field : member.getAccessedFieldsList()) {
+          memberBuilder.addAccessedFields(
+              field.toBuilder().clearField().setFieldId(ids.get(reader.getField(field))));
+        }
+        typeBuilder.addMember(memberBuilder);
+      }
+      builder.addType(typeBuilder);
+    }
+    return builder.build();
+  }
+
+  /** Checks that a summary can be read, so that a corrupt summary fails when it's parsed. */
+  private static LibraryInfo validate(LibraryInfo summary) throws IOException {
+    if (summary.getVersion() == 0) {
+      return summary;
+    }
+    if (summary.getVersion() < MIN_VERSION || summary.getVersion() > VERSION) {
+      throw new IOException("unsupported summary format version: " + summary.getVersion());
+    }
+    int stringCount = summary.getStringTableCount();
+    for (TypeInfo type : summary.getTypeList()) {
+      for (MemberInfo member : type.getMemberList()) {
+        checkStringId(member.getNameId(), stringCount);
+        checkStringId(member.getOriginalMethodNameId(), stringCount);
+        for (MethodInvocation invocation : member.getInvokedMethodsList()) {
+          checkStringId(invocation.getMethodId(), stringCount);
+        }
+        for (FieldReference field : member.getAccessedFieldsList()) {
+          checkStringId(field.getFieldId(), stringCount);
+        }
+      }
+    }
+    if (summary.getVersion() < MIN_TYPE_FLOWS_VERSION && summary.getTypeFlows()) {
+      // The types are shared with the copy, rather than rebuilt.
+      return summary.toBuilder().clearTypeFlows().build();
+    }
+    return summary;
+  }
+
+  private static void checkStringId(int id, int stringCount) throws IOException {
+    if (id < 0 || id >= stringCount) {
+      throw new IOException("invalid string id in summary: " + id);
+    }
+  }
+
+  /** Looks up the names and type ids of a summary, in either format. */
+  static final class Reader {
+    private final boolean compact;
+    private final List<String> strings;
+
+    Reader(LibraryInfo summary) {
+      compact = summary.getVersion() != 0;
+      strings = summary.getStringTableList();
+    }
+
+    String getName(MemberInfo member) {
+      return compact ? strings.get(member.getNameId()) : member.getName();
+    }
+
+    String getOriginalMethodName(MemberInfo member) {
+      return compact
+          ? strings.get(member.getOriginalMethodNameId())
+          : member.getOriginalMethodName();
+    }
+
+    String getMethod(MethodInvocation invocation) {
+      return compact ? strings.get(invocation.getMethodId()) : invocation.getMethod();
+    }
+
+    String getField(FieldReference field) {
+      return compact ? strings.get(field.getFieldId()) : field.getField();
+    }
+
+    List<Integer> getInnerTypes(TypeInfo type) {
+      return getIds(type.getInnerTypesList());
+    }
+
+    List<Integer> getReferencedTypes(MemberInfo member) {
+      return getIds(member.getReferencedTypesList());
+    }
+
+    List<Integer> getInstantiatedTypes(MemberInfo member) {
+      return getIds(member.getInstantiatedTypesList());
+    }
+
+    private List<Integer> getIds(List<Integer> ids) {
+      return compact ? fromDeltas(ids) : ids;
+    }
+  }
+
+  private static List<Integer> toDeltas(List<Integer> ids) {
+    List<Integer> sorted = new ArrayList<>(ids);
+    Collections.sort(sorted);
+    int previous = 0;
+    for (int i = 0; i < sorted.size(); i++) {
+      int id = sorted.get(i);
+      sorted.set(i, id - previous);
+      previous = id;
+    }
+    return sorted;
+  }
+
+  private static List<Integer> fromDeltas(List<Integer> deltas) {
+    List<Integer> ids = new ArrayList<>(deltas.size());
+    int id = 0;
+    for (int delta : deltas) {
+      id += delta;
+      ids.add(id);
+    }
+    return ids;
+  }
+}
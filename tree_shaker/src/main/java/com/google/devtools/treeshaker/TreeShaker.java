@@ -23,6 +23,7 @@ import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.ImmutableSortedSet;
 import com.google.common.collect.Table.Cell;
 import com.google.common.flogger.GoogleLogger;
+import com.google.common.hash.Hashing;
 import com.google.common.io.Files;
 import com.google.devtools.j2objc.ast.CompilationUnit;
 import com.google.devtools.j2objc.file.RegularInputFile;
@@ -31,7 +32,9 @@ import com.google.devtools.j2objc.util.CodeReferenceMap;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import com.google.devtools.j2objc.util.FileUtil;
 import com.google.devtools.j2objc.util.Parser;
+import com.google.devtools.j2objc.util.PersistentWorker;
 import com.google.devtools.j2objc.util.ProGuardUsageParser;
+import com.google.protobuf.ByteString;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.IOException;
@@ -39,7 +42,14 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import org.jspecify.nullness.Nullable;
@@ -92,7 +102,11 @@ public class TreeShaker {
     return parser;
   }
 
-  private static void exitOnErrorsOrWarnings(boolean treatWarningsAsErrors) {
+  /**
+   * Logs any errors and warnings, and returns the status to exit with if there were any, or null
+   * if there weren't.
+   */
+  private static @Nullable Integer checkErrorsOrWarnings(boolean treatWarningsAsErrors) {
     int nErrors = ErrorUtil.errorCount();
     int nWarnings = ErrorUtil.warningCount();
     if (nWarnings > 0 || nErrors > 0) {
@@ -116,8 +130,9 @@ public class TreeShaker {
       if (treatWarningsAsErrors) {
         nErrors += nWarnings;
       }
-      System.exit(nErrors);
+      return nErrors;
     }
+    return null;
   }
 
   private void testFileExistence() {
@@ -170,6 +185,13 @@ public class TreeShaker {
     }
     if (options.useClassHierarchyAnalyzer()) {
       return ClassHierarchyAnalyzer.analyze(tgb.getTypes());
+    } else if (options.useVariableTypeAnalyser()) {
+      if (tgb.hasTypeFlows()) {
+        return VariableTypeAnalyser.analyse(tgb.getTypes());
+      }
+      logger.atWarning().log(
+          "Summaries were created without type flows, using rapid type analysis instead.");
+      return RapidTypeAnalyser.analyse(tgb.getTypes());
     } else {
       return RapidTypeAnalyser.analyse(tgb.getTypes());
     }
@@ -186,12 +208,23 @@ public class TreeShaker {
             .map(summary -> UsedCodeMarker.mark(summary, options.getTreeShakerRoots()))
             .collect(toImmutableList());
     return new TypeGraphBuilder(markedInfo);
+    } else if (options.getSummaryCacheDir() != null) {
+      ImmutableList<LibraryInfo> libraryInfos = createLibraryInfos();
+      return libraryInfos == null ? null : new TypeGraphBuilder(libraryInfos);
     } else {
       return new TypeGraphBuilder(ImmutableList.of(createLibraryInfo()));
     }
   }
 
   @Nullable LibraryInfo createLibraryInfo() throws IOException {
+    List<String> sourceFiles = getSourceFiles(options.getSourceFiles());
+    if (ErrorUtil.errorCount() > 0) {
+      return null;
+    }
+    return createLibraryInfo(sourceFiles);
+  }
+
+  private @Nullable LibraryInfo createLibraryInfo(List<String> sourceFiles) throws IOException {
     UsedCodeMarker.Context context;
     if (options.getTreeShakerRoots() == null) {
       context = new UsedCodeMarker.Context();
@@ -199,10 +232,6 @@ public class TreeShaker {
       context = new UsedCodeMarker.Context(ProGuardUsageParser.parseDeadCodeFile(options.getTreeShakerRoots()));
     }
     Parser parser = createParser(options);
-    List<String> sourceFiles = getSourceFiles();
-    if (ErrorUtil.errorCount() > 0) {
-      return null;
-    }
     File strippedDir = stripIncompatible(sourceFiles, parser);
     Parser.Handler handler =
         new Parser.Handler() {
@@ -221,9 +250,160 @@ public class TreeShaker {
     return context.getLibraryInfo();
   }
 
-  private List<String> getSourceFiles() {
+  /**
+   * Creates a summary for each library: every source jar is a library, and all source files
+   * listed individually are another. Summaries are read from the summary cache when neither the
+   * library nor the declarations of the other libraries have changed, and the remaining libraries
+   * are summarized in parallel.
+   */
+  @Nullable ImmutableList<LibraryInfo> createLibraryInfos() throws IOException {
+    SummaryCache cache = new SummaryCache(options.getSummaryCacheDir(), getCacheConfiguration());
+    List<String> looseFiles = new ArrayList<>();
+    List<List<String>> libraries = new ArrayList<>();
+    for (String file : options.getSourceFiles()) {
+      if (file.endsWith(".java")) {
+        looseFiles.add(file);
+      } else {
+        libraries.add(ImmutableList.of(file));
+      }
+    }
+    if (!looseFiles.isEmpty()) {
+      libraries.add(looseFiles);
+    }
+
+    // Expand all libraries before parsing, since extracting a jar adds it to the shared
+    // sourcepath that each library's parser resolves references with.
+    List<List<String>> librarySources = new ArrayList<>();
+    for (List<String> library : libraries) {
+      librarySources.add(getSourceFiles(library));
+    }
+    if (ErrorUtil.errorCount() > 0) {
+      return null;
+    }
+
+    List<String> keys = new ArrayList<>();
+    for (List<String> library : libraries) {
+      keys.add(cache.key(SummaryCache.hash(library)));
+    }
+
+    ExecutorService executor = Executors.newFixedThreadPool(options.summaryJobs());
+    try {
+      List<Integer> all = new ArrayList<>();
+      for (int i = 0; i < libraries.size(); i++) {
+        all.add(i);
+      }
+      Map<Integer, LibraryInfo> infos = runInParallel(executor, all, i -> cache.get(keys.get(i)));
+      for (Map.Entry<Integer, LibraryInfo> entry : infos.entrySet()) {
+        if (entry.getValue() != null) {
+          logger.atFine().log("Using cached summary %s", keys.get(entry.getKey()));
+        }
+      }
+
+      // Changed libraries are summarized first, since their declarations may have changed.
+      List<Integer> changed = new ArrayList<>();
+      for (int i : all) {
+        if (infos.get(i) == null) {
+          changed.add(i);
+        }
+      }
+      Map<Integer, LibraryInfo> created =
+          runInParallel(executor, changed, i -> createLibraryInfo(librarySources.get(i)));
+      infos.putAll(created);
+      if (ErrorUtil.errorCount() > 0 || infos.containsValue(null)) {
+        return null;
+      }
+
+      // A cached summary is summarized again only if the declarations of the other libraries,
+      // which its references resolve to, changed.
+      List<ByteString> declarationHashes = new ArrayList<>();
+      for (int i : all) {
+        declarationHashes.add(infos.get(i).getDeclarationHash());
+      }
+      List<ByteString> dependencyHashes = new ArrayList<>();
+      List<Integer> stale = new ArrayList<>();
+      for (int i : all) {
+        dependencyHashes.add(SummaryCache.dependencyHash(declarationHashes, i));
+        if (!created.containsKey(i)
+            && !infos.get(i).getDependencyHash().equals(dependencyHashes.get(i))) {
+          stale.add(i);
+        }
+      }
+      Map<Integer, LibraryInfo> recreated =
+          runInParallel(executor, stale, i -> createLibraryInfo(librarySources.get(i)));
+      infos.putAll(recreated);
+      created.putAll(recreated);
+      if (ErrorUtil.errorCount() > 0 || infos.containsValue(null)) {
+        return null;
+      }
+
+      ImmutableList.Builder<LibraryInfo> libraryInfos = ImmutableList.builder();
+      for (int i : all) {
+        LibraryInfo info = infos.get(i);
+        if (created.containsKey(i)) {
+          info = info.toBuilder().setDependencyHash(dependencyHashes.get(i)).build();
+          cache.put(keys.get(i), info);
+        }
+        libraryInfos.add(info);
+      }
+      return libraryInfos.build();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      ErrorUtil.error("interrupted while creating summaries");
+      return null;
+    } catch (ExecutionException e) {
+      ErrorUtil.error("failed creating summaries: " + e.getCause());
+      return null;
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  /** A step in creating a library's summary. */
+  private interface LibraryTask {
+    @Nullable LibraryInfo run(int library) throws IOException;
+  }
+
+  // Runs a task for each of the libraries in parallel, and returns the results by library.
+  private static Map<Integer, LibraryInfo> runInParallel(
+      ExecutorService executor, List<Integer> libraries, LibraryTask task)
+      throws InterruptedException, ExecutionException {
+    Map<Integer, Future<LibraryInfo>> futures = new LinkedHashMap<>();
+    for (int library : libraries) {
+      futures.put(library, executor.submit(() -> task.run(library)));
+    }
+    Map<Integer, LibraryInfo> results = new HashMap<>();
+    for (Map.Entry<Integer, Future<LibraryInfo>> future : futures.entrySet()) {
+      results.put(future.getKey(), future.getValue().get());
+    }
+    return results;
+  }
+
+  // Returns the options that affect summary contents, which are part of the summary cache key.
+  private List<String> getCacheConfiguration() throws IOException {
+    List<String> config = new ArrayList<>();
+    config.add(Strings.nullToEmpty(options.getSourcepath()));
+    config.add(Strings.nullToEmpty(options.getClasspath()));
+    config.add(Strings.nullToEmpty(options.getBootclasspath()));
+    config.add(options.fileEncoding());
+    config.add(options.sourceVersion().flag());
+    config.add(Boolean.toString(options.stripReflection()));
+    config.addAll(options.getPlatformModuleSystemOptions());
+    File roots = options.getTreeShakerRoots();
+    if (roots != null) {
+      config.add(Files.asByteSource(roots).hash(Hashing.sha256()).toString());
+    }
+    // Classpath jars are identified by size and modification time rather than by content,
+    // which is cheap to check and changes whenever the jar is rebuilt.
+    for (String entry : j2objcOptions.fileUtil().getClassPathEntries()) {
+      File f = new File(entry);
+      config.add(entry + ":" + f.length() + ":" + f.lastModified());
+    }
+    return config;
+  }
+
+  private List<String> getSourceFiles(List<String> fileArgs) {
     GenerationBatch batch = new GenerationBatch(j2objcOptions);
-    batch.processFileArgs(options.getSourceFiles());
+    batch.processFileArgs(fileArgs);
     return batch.getInputs().stream()
         .map(input -> input.getFile().getAbsolutePath())
         .collect(Collectors.toList());
@@ -358,7 +538,8 @@ public class TreeShaker {
     }
   }
 
-  public static void main(String[] args) {
+  /** Runs the tree shaker, and returns its exit status. */
+  static int run(String[] args) {
     if (args.length == 0) {
       Options.help(true);
     }
@@ -368,7 +549,10 @@ public class TreeShaker {
       treatWarningsAsErrors = options.treatWarningsAsErrors();
       TreeShaker shaker = new TreeShaker(options);
       shaker.testFileExistence();
-      exitOnErrorsOrWarnings(treatWarningsAsErrors);
+      Integer status = checkErrorsOrWarnings(treatWarningsAsErrors);
+      if (status != null) {
+        return status;
+      }
       CodeReferenceMap unusedCode = shaker.findUnusedCode();
       if (unusedCode != null) {
         writeToFile(options, unusedCode);
@@ -376,6 +560,18 @@ public class TreeShaker {
     } catch (IOException e) {
       ErrorUtil.error(e.getMessage());
     }
-    exitOnErrorsOrWarnings(treatWarningsAsErrors);
+    Integer status = checkErrorsOrWarnings(treatWarningsAsErrors);
+    return status != null ? status : 0;
+  }
+
+  public static void main(String[] args) throws IOException {
+    if (PersistentWorker.isPersistentWorker(args)) {
+      PersistentWorker.run(args, TreeShaker::run);
+      return;
+    }
+    int status = run(args);
+    if (status != 0) {
+      System.exit(status);
+    }
   }
 }
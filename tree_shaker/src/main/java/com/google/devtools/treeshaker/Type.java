@@ -24,8 +24,8 @@ import java.util.Map;
 import java.util.Set;
 
 final class Type {
-  static Type buildFrom(TypeInfo typeInfo, String name) {
-    return new Type(name, typeInfo.getExported(), typeInfo.getMemberList());
+  static Type buildFrom(TypeInfo typeInfo, String name, SummaryFormat.Reader reader) {
+    return new Type(name, typeInfo.getExported(), typeInfo.getMemberList(), reader);
   }
 
   private final String name;
@@ -34,17 +34,23 @@ final class Type {
   private final Map<String, Member> membersBySignature = new LinkedHashMap<>();
 
   private Type superClass;
+  private Type enclosingType;
+  private boolean hasExternalSupertype;
   private final List<Type> superInterfaces = new ArrayList<>();
   private final List<Type> immediateSubtypes = new ArrayList<>();
   private boolean live;
   private boolean instantiated;
   private final Set<Member> potentiallyLiveMembers = new HashSet<>();
 
-  private Type(String name, boolean isExported, Collection<MemberInfo> members) {
+  private Type(
+      String name,
+      boolean isExported,
+      Collection<MemberInfo> members,
+      SummaryFormat.Reader reader) {
     this.name = name;
     this.isExported = isExported;
     members.forEach(memberInfo -> {
-      Member member = Member.buildFrom(memberInfo, this);
+      Member member = Member.buildFrom(memberInfo, reader.getName(memberInfo), this);
       Member previous = membersByName.put(member.getName(), member);
       Member previousBySignature = membersBySignature.put(member.getSignature(), member);
       checkState(previous == null);
@@ -80,6 +86,25 @@ final class Type {
     this.superClass = superClass;
   }
 
+  // Returns the type this type is nested in, or null for a top level type.
+  Type getEnclosingType() {
+    return enclosingType;
+  }
+
+  void setEnclosingType(Type enclosingType) {
+    this.enclosingType = enclosingType;
+  }
+
+  // Returns true if this type directly extends or implements a type that isn't in the summaries,
+  // other than java.lang.Object.
+  boolean hasExternalSupertype() {
+    return hasExternalSupertype;
+  }
+
+  void markExternalSupertype() {
+    this.hasExternalSupertype = true;
+  }
+
   Collection<Type> getSuperInterfaces() {
     return superInterfaces;
   }
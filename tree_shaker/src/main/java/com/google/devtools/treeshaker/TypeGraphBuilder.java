@@ -13,6 +13,8 @@
  */
 package com.google.devtools.treeshaker;
 
+import static com.google.devtools.treeshaker.UsedCodeMarker.INTERFACE_SUPERTYPE;
+
 import com.google.common.collect.ImmutableList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -22,17 +24,23 @@ import java.util.Set;
 
 /** Give information about inheritance relationships between types. */
 class TypeGraphBuilder {
+  private static final String OBJECT_TYPE = "java.lang.Object";
+
   private final Collection<Type> types;
   private final Set<String> externalTypeReferences;
   private final Set<String> unknownMethodReferences;
+  private final boolean hasTypeFlows;
 
   TypeGraphBuilder(ImmutableList<LibraryInfo> libraryInfos) {
     Map<String, Type> typesByName = new LinkedHashMap<>();
     externalTypeReferences = new HashSet<>();
     unknownMethodReferences = new HashSet<>();
+    hasTypeFlows = libraryInfos.stream().allMatch(LibraryInfo::getTypeFlows);
     for (LibraryInfo libraryInfo : libraryInfos) {
+      SummaryFormat.Reader reader = new SummaryFormat.Reader(libraryInfo);
       for (TypeInfo typeInfo : libraryInfo.getTypeList()) {
-        Type type = Type.buildFrom(typeInfo, libraryInfo.getTypeMap(typeInfo.getTypeId()));
+        Type type =
+            Type.buildFrom(typeInfo, libraryInfo.getTypeMap(typeInfo.getTypeId()), reader);
         typesByName.put(
             type.getName(), type); // Type names are fully qualified, no risk of overriding.
       }
@@ -58,7 +66,13 @@ class TypeGraphBuilder {
     return unknownMethodReferences;
   }
 
+  // Returns true if all summaries record the instantiated types and fields accessed by members.
+  boolean hasTypeFlows() {
+    return hasTypeFlows;
+  }
+
   private void buildCrossReferences(LibraryInfo libraryInfo, Map<String, Type> typesByName) {
+    SummaryFormat.Reader reader = new SummaryFormat.Reader(libraryInfo);
     for (TypeInfo typeInfo : libraryInfo.getTypeList()) {
       Type type = typesByName.get(libraryInfo.getTypeMap(typeInfo.getTypeId()));
       String superClassName = libraryInfo.getTypeMap(typeInfo.getExtendsType());
@@ -66,6 +80,9 @@ class TypeGraphBuilder {
 
       if (superClass == null) {
         externalTypeReferences.add(superClassName);
+        if (!superClassName.equals(INTERFACE_SUPERTYPE) && !superClassName.equals(OBJECT_TYPE)) {
+          type.markExternalSupertype();
+        }
       } else {
         superClass.addImmediateSubtype(type);
         type.setSuperClass(superClass);
@@ -75,22 +92,30 @@ class TypeGraphBuilder {
         Type superInterface = typesByName.get(libraryInfo.getTypeMap(implementsId));
         if (superInterface == null) {
           externalTypeReferences.add(libraryInfo.getTypeMap(implementsId));
+          type.markExternalSupertype();
           continue;
         }
         superInterface.addImmediateSubtype(type);
         type.addSuperInterface(superInterface);
       }
 
+      for (int innerId : reader.getInnerTypes(typeInfo)) {
+        Type innerType = typesByName.get(libraryInfo.getTypeMap(innerId));
+        if (innerType != null) {
+          innerType.setEnclosingType(type);
+        }
+      }
+
       for (MemberInfo memberInfo : typeInfo.getMemberList()) {
-        Member member = type.getMemberByName(memberInfo.getName());
+        Member member = type.getMemberByName(reader.getName(memberInfo));
 
         Type originalType = typesByName.get(libraryInfo.getTypeMap(memberInfo.getOriginalType()));
         if (originalType != null) {
           member.setOriginalMember(
-              originalType.getMemberByName(memberInfo.getOriginalMethodName()));
+              originalType.getMemberByName(reader.getOriginalMethodName(memberInfo)));
         }
 
-        for (int referencedId : memberInfo.getReferencedTypesList()) {
+        for (int referencedId : reader.getReferencedTypes(memberInfo)) {
           Type referencedType = typesByName.get(libraryInfo.getTypeMap(referencedId));
           if (referencedType == null) {
             externalTypeReferences.add(libraryInfo.getTypeMap(referencedId));
@@ -100,19 +125,40 @@ class TypeGraphBuilder {
         }
 
         for (MethodInvocation methodInvocation : memberInfo.getInvokedMethodsList()) {
+          String method = reader.getMethod(methodInvocation);
           Type enclosingType =
               typesByName.get(libraryInfo.getTypeMap(methodInvocation.getEnclosingType()));
           if (enclosingType == null) {
             externalTypeReferences.add(libraryInfo.getTypeMap(methodInvocation.getEnclosingType()));
+            member.addExternalReference(method);
             continue;
           }
-          Member referencedMember = enclosingType.getMemberByName(methodInvocation.getMethod());
+          Member referencedMember = enclosingType.getMemberByName(method);
           if (referencedMember == null) {
-            unknownMethodReferences.add(
-                enclosingType.getName() + "." + methodInvocation.getMethod());
+            unknownMethodReferences.add(enclosingType.getName() + "." + method);
+            member.addExternalReference(method);
             continue;
           }
           member.addReferencedMember(referencedMember);
+          if (methodInvocation.getSuperCall()) {
+            member.addSuperCall(referencedMember);
+          }
+        }
+
+        for (int instantiatedId : reader.getInstantiatedTypes(memberInfo)) {
+          Type instantiatedType = typesByName.get(libraryInfo.getTypeMap(instantiatedId));
+          if (instantiatedType != null) {
+            member.addInstantiatedType(instantiatedType);
+          }
+        }
+
+        for (FieldReference field : memberInfo.getAccessedFieldsList()) {
+          Type enclosingType = typesByName.get(libraryInfo.getTypeMap(field.getEnclosingType()));
+          if (enclosingType == null) {
+            member.addExternalReference(reader.getField(field));
+          } else {
+            member.addAccessedField(enclosingType.getName() + "." + reader.getField(field));
+          }
         }
       }
     }
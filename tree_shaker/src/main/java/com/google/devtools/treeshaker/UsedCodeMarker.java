@@ -20,6 +20,8 @@ import static java.lang.Math.max;
 import com.google.common.annotations.VisibleForTesting;
 import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
 import com.google.devtools.j2objc.ast.Annotation;
 import com.google.devtools.j2objc.ast.AnnotationTypeDeclaration;
 import com.google.devtools.j2objc.ast.CastExpression;
@@ -60,8 +62,10 @@ import com.google.devtools.j2objc.util.CodeReferenceMap;
 import com.google.devtools.j2objc.util.ElementUtil;
 import com.google.devtools.j2objc.util.ProGuardUsageParser;
 import com.google.devtools.j2objc.util.TypeUtil;
+import com.google.protobuf.ByteString;
 import java.io.File;
 import java.lang.reflect.Modifier;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Deque;
@@ -72,6 +76,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.stream.Stream;
 import javax.lang.model.AnnotatedConstruct;
+import javax.lang.model.element.Element;
 import javax.lang.model.element.ExecutableElement;
 import javax.lang.model.element.PackageElement;
 import javax.lang.model.element.TypeElement;
@@ -119,6 +124,7 @@ final class UsedCodeMarker extends UnitTreeVisitor {
   @Override
   public void endVisit(ClassInstanceCreation node) {
     addMethodInvocation(node.getExecutableElement());
+    addInstantiatedType(node.getExecutableElement());
     // Creating an instance of an anonymous class also creates instances of the interfaces.
     if (node.getAnonymousClassDeclaration() != null) {
       for (TypeMirror type : node.getAnonymousClassDeclaration().getSuperInterfaceTypeMirrors()) {
@@ -135,6 +141,7 @@ final class UsedCodeMarker extends UnitTreeVisitor {
   @Override
   public boolean visit(CreationReference node) {
     addMethodInvocation(node.getExecutableElement());
+    addInstantiatedType(node.getExecutableElement());
     return true;
   }
 
@@ -148,6 +155,7 @@ final class UsedCodeMarker extends UnitTreeVisitor {
   public void endVisit(EnumConstantDeclaration node) {
     pushClinit();
     addMethodInvocation(node.getExecutableElement());
+    addInstantiatedType(node.getExecutableElement());
     popClinit();
   }
 
@@ -173,6 +181,7 @@ final class UsedCodeMarker extends UnitTreeVisitor {
     VariableElement var = node.getVariableElement();
     if (var != null) {
       addReferencedTypeName(elementUtil.getBinaryName(ElementUtil.getDeclaringClass(var)));
+      addFieldAccess(var);
     }
   }
 
@@ -298,7 +307,8 @@ final class UsedCodeMarker extends UnitTreeVisitor {
 
   @Override
   public void endVisit(SuperMethodInvocation node) {
-    addMethodInvocation(node.getExecutableElement());
+    ExecutableElement element = node.getExecutableElement();
+    addMethodInvocation(getMethodName(element), getDeclaringClassName(element), true);
     addReferencedType(node.getExecutableType().getReturnType());
     node.getExecutableType().getParameterTypes().forEach(this::addReferencedType);
   }
@@ -345,6 +355,7 @@ final class UsedCodeMarker extends UnitTreeVisitor {
     if (var != null) {
       TypeElement declaringClass = ElementUtil.getDeclaringClass(var);
       addReferencedType(declaringClass.asType());
+      addFieldAccess(var);
     }
     return true;
   }
@@ -488,6 +499,41 @@ final class UsedCodeMarker extends UnitTreeVisitor {
             || isEntryClass;
 
     startTypeScope(typeName, superName, interfaces, isExported);
+    if (!ElementUtil.isLocal(type)) {
+      context.declarations.add(getDeclaration(type));
+    }
+  }
+
+  // Returns the parts of a type's declaration that code in other libraries can resolve against.
+  // Nested types are declared separately.
+  private String getDeclaration(TypeElement type) {
+    StringBuilder sb = new StringBuilder();
+    sb.append(type.getModifiers())
+        .append(' ')
+        .append(type.getKind())
+        .append(' ')
+        .append(elementUtil.getBinaryName(type))
+        .append(type.getTypeParameters())
+        .append(' ')
+        .append(type.getSuperclass())
+        .append(type.getInterfaces());
+    for (Element element : type.getEnclosedElements()) {
+      if (ElementUtil.isPrivate(element) || element instanceof TypeElement) {
+        continue;
+      }
+      sb.append('\n')
+          .append(element.getModifiers())
+          .append(' ')
+          .append(element.getKind())
+          .append(' ')
+          .append(element.getSimpleName())
+          .append(' ')
+          .append(element.asType());
+      if (element instanceof VariableElement) {
+        sb.append(" = ").append(((VariableElement) element).getConstantValue());
+      }
+    }
+    return sb.toString();
   }
 
   private void endType() {
@@ -592,6 +638,37 @@ final class UsedCodeMarker extends UnitTreeVisitor {
   private void addPseudoConstructorInvocation(TypeMirror type) {
     String typeName = getTypeMirrorName(type);
     addMethodInvocation(getPseudoConstructorName(typeName), typeName);
+    addInstantiatedTypeName(typeName);
+  }
+
+  private void addInstantiatedType(ExecutableElement constructor) {
+    addInstantiatedTypeName(getDeclaringClassName(constructor));
+  }
+
+  private void addInstantiatedTypeName(String typeName) {
+    MemberInfo.Builder member = context.memberScope.peek();
+    int typeId = getTypeId(typeName);
+    if (!member.getInstantiatedTypesList().contains(typeId)) {
+      member.addInstantiatedTypes(typeId);
+    }
+  }
+
+  // Fields are recorded as both read and written by the accessing member, for type flows.
+  private void addFieldAccess(VariableElement var) {
+    if (!ElementUtil.isField(var)) {
+      return;
+    }
+    String declTypeName = elementUtil.getBinaryName(ElementUtil.getDeclaringClass(var));
+    FieldReference field =
+        FieldReference.newBuilder()
+            .setField(
+                getMethodName(ElementUtil.getName(var), typeUtil.getSignatureName(var.asType())))
+            .setEnclosingType(getTypeId(declTypeName))
+            .build();
+    MemberInfo.Builder member = context.memberScope.peek();
+    if (!member.getAccessedFieldsList().contains(field)) {
+      member.addAccessedFields(field);
+    }
   }
 
   private void addMethodInvocation(ExecutableElement element) {
@@ -599,6 +676,10 @@ final class UsedCodeMarker extends UnitTreeVisitor {
   }
 
   private void addMethodInvocation(String methodName, String declTypeName) {
+    addMethodInvocation(methodName, declTypeName, false);
+  }
+
+  private void addMethodInvocation(String methodName, String declTypeName, boolean superCall) {
     int declTypeId = getTypeId(declTypeName);
     context
         .memberScope
@@ -607,6 +688,7 @@ final class UsedCodeMarker extends UnitTreeVisitor {
             com.google.devtools.treeshaker.MethodInvocation.newBuilder()
                 .setMethod(methodName)
                 .setEnclosingType(declTypeId)
+                .setSuperCall(superCall)
                 .build());
   }
 
@@ -663,7 +745,10 @@ final class UsedCodeMarker extends UnitTreeVisitor {
   }
 
   private static List<TypeInfo> markClasses(
-      List<TypeInfo> types, List<String> typeMap, Set<String> markedClasses) {
+      List<TypeInfo> types,
+      List<String> typeMap,
+      Set<String> markedClasses,
+      SummaryFormat.Reader reader) {
     if (markedClasses.isEmpty()) {
       return types;
     }
@@ -680,7 +765,7 @@ final class UsedCodeMarker extends UnitTreeVisitor {
         }
         // Add inner types that need to be exported to a list.
         nextMarkedClasses.addAll(
-            type.getInnerTypesList().stream().map(typeMap::get).collect(toImmutableList()));
+            reader.getInnerTypes(type).stream().map(typeMap::get).collect(toImmutableList()));
       }
       // Add type to list of marked types
       markedTypes.add(typeBuilder.build());
@@ -689,16 +774,19 @@ final class UsedCodeMarker extends UnitTreeVisitor {
     // exported.
     // This is because we do not know if the inner class has inner classes (alternative, while
     // loop).
-    return markClasses(markedTypes, typeMap, nextMarkedClasses);
+    return markClasses(markedTypes, typeMap, nextMarkedClasses, reader);
   }
 
   private static TypeInfo markMethodsOfType(
-      TypeInfo type, List<String> typeMap, Set<String> markedMethods) {
+      TypeInfo type,
+      List<String> typeMap,
+      Set<String> markedMethods,
+      SummaryFormat.Reader reader) {
     TypeInfo.Builder typeBuilder = type.toBuilder().clearMember();
     for (MemberInfo member : type.getMemberList()) {
       MemberInfo.Builder memberBuilder = member.toBuilder();
       if (markedMethods.contains(
-          getQualifiedMethodName(typeMap.get(type.getTypeId()), member.getName()))) {
+          getQualifiedMethodName(typeMap.get(type.getTypeId()), reader.getName(member)))) {
         memberBuilder.setExported(true);
       }
       typeBuilder.addMember(memberBuilder.build());
@@ -707,10 +795,13 @@ final class UsedCodeMarker extends UnitTreeVisitor {
   }
 
   private static ImmutableList<TypeInfo> markMethods(
-      List<TypeInfo> types, List<String> typeMap, Set<String> markedMethods) {
+      List<TypeInfo> types,
+      List<String> typeMap,
+      Set<String> markedMethods,
+      SummaryFormat.Reader reader) {
     List<TypeInfo> typesWithMarkedMembers = new ArrayList<>();
     for (TypeInfo type : types) {
-      typesWithMarkedMembers.add(markMethodsOfType(type, typeMap, markedMethods));
+      typesWithMarkedMembers.add(markMethodsOfType(type, typeMap, markedMethods, reader));
     }
     return ImmutableList.copyOf(typesWithMarkedMembers);
   }
@@ -722,13 +813,16 @@ final class UsedCodeMarker extends UnitTreeVisitor {
       LibraryInfo summary,
       ImmutableSet<String> exportedClasses,
       ImmutableSet<String> exportedMethods) {
+    SummaryFormat.Reader reader = new SummaryFormat.Reader(summary);
     return summary.toBuilder()
         .clearType()
         .addAllType(
             markClasses(
-                markMethods(summary.getTypeList(), summary.getTypeMapList(), exportedMethods),
+                markMethods(
+                    summary.getTypeList(), summary.getTypeMapList(), exportedMethods, reader),
                 summary.getTypeMapList(),
-                exportedClasses))
+                exportedClasses,
+                reader))
         .build();
   }
 
@@ -764,6 +858,9 @@ final class UsedCodeMarker extends UnitTreeVisitor {
     private final Deque<MemberInfo.Builder> clinitMemberScope = new ArrayDeque<>();
     private final Deque<Set<Integer>> clinitReferencedTypesScope = new ArrayDeque<>();
 
+    // The declarations of the library's types, which are hashed into its declaration hash.
+    private final List<String> declarations = new ArrayList<>();
+
     Context(CodeReferenceMap rootSet) {
       exportedMethods = getExportedMethods(rootSet);
       exportedClasses = getExportedClasses(rootSet);
@@ -775,7 +872,15 @@ final class UsedCodeMarker extends UnitTreeVisitor {
     }
 
     LibraryInfo getLibraryInfo() {
-      return libraryInfoBuilder.build();
+      // Units may be parsed in any order, so the declarations are sorted before they're hashed.
+      Hasher hasher = Hashing.sha256().newHasher();
+      declarations.stream()
+          .sorted()
+          .forEach(d -> hasher.putString(d, StandardCharsets.UTF_8).putByte((byte) 0));
+      return libraryInfoBuilder
+          .setTypeFlows(true)
+          .setDeclarationHash(ByteString.copyFrom(hasher.hash().asBytes()))
+          .build();
     }
   }
 }
@@ -0,0 +1,480 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     https://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.google.devtools.treeshaker;
+
+import static com.google.devtools.treeshaker.UsedCodeMarker.CLASS_INITIALIZER_NAME;
+import static com.google.devtools.treeshaker.UsedCodeMarker.INITIALIZER_NAME;
+import static com.google.devtools.treeshaker.UsedCodeMarker.PSEUDO_CONSTRUCTOR_PREFIX;
+import static com.google.devtools.treeshaker.UsedCodeMarker.SIGNATURE_PREFIX;
+
+import com.google.devtools.j2objc.util.CodeReferenceMap;
+import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A variable type analysis, which resolves polymorphic calls only to the instantiated types that
+ * can reach the call site, rather than to all instantiated types like RapidTypeAnalyser.
+ *
+ * <p>Summaries don't describe local variables, so types are tracked for each top level type,
+ * shared by its members and nested types (including lambdas and anonymous classes, which capture
+ * the enclosing method's variables), and for each field. Types flow along calls, filtered by the
+ * declared types of the parameters and of the return value. Types passed to or returned from
+ * code outside the summaries are tracked together, as are the entry points called by such code.
+ * Each type is propagated along each flow at most once, so the analysis runs in time close to
+ * linear in the size of the summaries.
+ */
+final class VariableTypeAnalyser {
+  private static final String OBJECT_TYPE = "java.lang.Object";
+  private static final String THROWABLE_TYPE = "java.lang.Throwable";
+
+  static CodeReferenceMap analyse(Collection<Type> types) {
+    new VariableTypeAnalyser(types).markLiveCode(types);
+    return RapidTypeAnalyser.getUnusedCode(types);
+  }
+
+  /** The types that can flow into a variable, and the variables they flow to. */
+  private static final class Node {
+    private final BitSet types = new BitSet();
+    // Types added since the node was last processed.
+    private final BitSet pendingTypes = new BitSet();
+    // The types that flow to each node.
+    private final Map<Node, BitSet> flows = new LinkedHashMap<>();
+    private final List<Member> polymorphicCalls = new ArrayList<>();
+    private final Set<Member> polymorphicCallSet = new HashSet<>();
+    private boolean queued;
+  }
+
+  private final List<Type> typesById = new ArrayList<>();
+  private final Map<Type, Integer> typeIds = new HashMap<>();
+  private final Map<String, Type> typesByName = new HashMap<>();
+  private final BitSet allTypes = new BitSet();
+  // The functional interfaces that lambdas and method references instantiate, which have
+  // pseudo-constructors.
+  private final BitSet pseudoConstructedTypes = new BitSet();
+  private final BitSet externalSubtypes = new BitSet();
+  private final Map<Type, BitSet> subtypes = new HashMap<>();
+  private final Map<String, BitSet> descriptorFilters = new HashMap<>();
+  private final Map<Member, BitSet> parameterFilters = new HashMap<>();
+  private final Map<Member, BitSet> returnFilters = new HashMap<>();
+
+  private final Map<Type, Node> typeNodes = new HashMap<>();
+  private final Map<String, Node> fieldNodes = new HashMap<>();
+  // Types passed to or returned from code outside the summaries.
+  private final Node externalNode = new Node();
+  // Lambdas and method references are instances of their functional interface, whose code is in
+  // the node that creates them. Calls to them flow to each of those nodes.
+  private final Map<Type, Set<Node>> functionalInstantiators = new HashMap<>();
+  private final Map<Type, Set<SimpleImmutableEntry<Node, Member>>> functionalCalls =
+      new HashMap<>();
+  private final Deque<Node> worklist = new ArrayDeque<>();
+
+  private VariableTypeAnalyser(Collection<Type> types) {
+    for (Type type : types) {
+      int id = typesById.size();
+      typesById.add(type);
+      typeIds.put(type, id);
+      typesByName.put(type.getName(), type);
+      allTypes.set(id);
+      if (type.getMembers().stream()
+          .anyMatch(member -> member.getName().startsWith(PSEUDO_CONSTRUCTOR_PREFIX))) {
+        pseudoConstructedTypes.set(id);
+      }
+    }
+    for (Type type : types) {
+      if (type.hasExternalSupertype()) {
+        externalSubtypes.or(getSubtypes(type));
+      }
+    }
+  }
+
+  private void markLiveCode(Collection<Type> types) {
+    types.stream().filter(Type::isExported).forEach(this::markTypeLive);
+
+    // Go over the entry points to start the traversal.
+    types.stream()
+        .flatMap(t -> t.getMembers().stream())
+        .filter(Member::isExported)
+        .forEach(this::markEntryPoint);
+
+    while (!worklist.isEmpty()) {
+      processNode(worklist.poll());
+    }
+  }
+
+  // Marks a member that is called by code outside the summaries.
+  private void markEntryPoint(Member member) {
+    Type declaringType = member.getDeclaringType();
+    markTypeLive(declaringType);
+    markMemberLive(member);
+    if (member.isConstructor()) {
+      markInstantiated(declaringType);
+      addType(externalNode, declaringType);
+    }
+    addCall(externalNode, member);
+    if (member.isPolymorphic()) {
+      addPolymorphicCall(externalNode, member);
+    }
+  }
+
+  private void markTypeLive(Type type) {
+    if (type.isLive()) {
+      return;
+    }
+
+    type.markLive();
+    markMemberLive(type.getMemberByName(CLASS_INITIALIZER_NAME));
+
+    // TODO(tball): remove when dead fields are reported (b/225384453).
+    markMemberLive(type.getMemberByName(INITIALIZER_NAME));
+
+    for (Member member : type.getMembers()) {
+      // Members that override external methods, or that have the UsedByNative or
+      // UsedByReflection annotations, are called from outside the summaries.
+      if (member.getOriginalMember() == null || member.hasUsedByNativeOrReflectionAnnotation()) {
+        markEntryPoint(member);
+      }
+    }
+
+    if (type.getSuperClass() != null) {
+      markTypeLive(type.getSuperClass());
+    }
+    type.getSuperInterfaces().forEach(this::markTypeLive);
+  }
+
+  private void markInstantiated(Type type) {
+    if (type.isInstantiated()) {
+      return;
+    }
+
+    type.instantiate();
+    markMemberLive(type.getMemberByName(INITIALIZER_NAME));
+    type.getSuperInterfaces().forEach(this::markInstantiated);
+  }
+
+  private void markMemberLive(Member member) {
+    if (member.isLive()) {
+      return;
+    }
+
+    member.markLive();
+    Node node = getTypeNode(member.getDeclaringType());
+    member.getReferencedTypes().forEach(this::markTypeLive);
+    for (Type type : member.getInstantiatedTypes()) {
+      addInstantiation(node, type);
+    }
+    for (Member referencedMember : member.getReferencedMembers()) {
+      if (referencedMember.isPolymorphic()) {
+        addPolymorphicCall(node, referencedMember);
+      } else {
+        markTypeLive(referencedMember.getDeclaringType());
+        markMemberLive(referencedMember);
+        addCall(node, referencedMember);
+      }
+    }
+    // Calls with super always reach the superclass's implementation.
+    for (Member superCall : member.getSuperCalls()) {
+      addCall(node, superCall);
+    }
+    for (String field : member.getAccessedFields()) {
+      Node fieldNode = fieldNodes.computeIfAbsent(field, f -> new Node());
+      BitSet filter = getDescriptorFilter(getFieldDescriptor(field));
+      addFlow(node, fieldNode, filter);
+      addFlow(fieldNode, node, filter);
+    }
+    for (String reference : member.getExternalReferences()) {
+      if (reference.contains("(")) {
+        addFlow(node, externalNode, getParameterFilter(reference, externalSubtypes));
+        addFlow(externalNode, node, getReturnFilter(reference));
+      } else {
+        BitSet filter = getDescriptorFilter(getFieldDescriptor(reference));
+        addFlow(node, externalNode, filter);
+        addFlow(externalNode, node, filter);
+      }
+    }
+  }
+
+  private void addInstantiation(Node node, Type type) {
+    markTypeLive(type);
+    markInstantiated(type);
+    addType(node, type);
+    if (pseudoConstructedTypes.get(typeIds.get(type))
+        && functionalInstantiators.computeIfAbsent(type, t -> new HashSet<>()).add(node)) {
+      for (SimpleImmutableEntry<Node, Member> call :
+          functionalCalls.getOrDefault(type, new HashSet<>())) {
+        addFunctionalCall(call.getKey(), node, call.getValue());
+      }
+    }
+  }
+
+  private void addPolymorphicCall(Node node, Member member) {
+    // The declared member is kept, even if it's never the target of the call.
+    markMemberLive(member);
+    if (!node.polymorphicCallSet.add(member)) {
+      return;
+    }
+    node.polymorphicCalls.add(member);
+    BitSet receivers = (BitSet) node.types.clone();
+    for (int id = receivers.nextSetBit(0); id >= 0; id = receivers.nextSetBit(id + 1)) {
+      resolvePolymorphicCall(node, member, typesById.get(id));
+    }
+  }
+
+  private void resolvePolymorphicCall(Node node, Member member, Type receiver) {
+    if (!getSubtypes(member.getDeclaringType()).get(typeIds.get(receiver))) {
+      return;
+    }
+    Member target = findImplementation(receiver, member.getSignature());
+    if (target == null) {
+      // The method is inherited from a type outside the summaries.
+      addFlow(node, externalNode, getParameterFilter(member));
+      addFlow(externalNode, node, getReturnFilter(member));
+      return;
+    }
+    markMemberLive(target);
+    addCall(node, target);
+    if (pseudoConstructedTypes.get(typeIds.get(receiver))
+        && functionalCalls
+            .computeIfAbsent(receiver, t -> new HashSet<>())
+            .add(new SimpleImmutableEntry<>(node, target))) {
+      for (Node instantiator : functionalInstantiators.getOrDefault(receiver, new HashSet<>())) {
+        addFunctionalCall(node, instantiator, target);
+      }
+    }
+  }
+
+  private void addCall(Node caller, Member callee) {
+    Node calleeNode = getTypeNode(callee.getDeclaringType());
+    addFlow(caller, calleeNode, getParameterFilter(callee));
+    addFlow(calleeNode, caller, getReturnFilter(callee));
+  }
+
+  private void addFunctionalCall(Node caller, Node instantiator, Member target) {
+    addFlow(caller, instantiator, getParameterFilter(target));
+    addFlow(instantiator, caller, getReturnFilter(target));
+  }
+
+  private void addFlow(Node from, Node to, BitSet filter) {
+    if (from == to) {
+      return;
+    }
+    BitSet flowFilter = from.flows.computeIfAbsent(to, n -> new BitSet());
+    BitSet newFilter = (BitSet) filter.clone();
+    newFilter.andNot(flowFilter);
+    if (newFilter.isEmpty()) {
+      return;
+    }
+    flowFilter.or(newFilter);
+    propagate(from.types, to, newFilter);
+  }
+
+  private void addType(Node node, Type type) {
+    BitSet types = new BitSet();
+    types.set(typeIds.get(type));
+    propagate(types, node, allTypes);
+  }
+
+  private void propagate(BitSet types, Node to, BitSet filter) {
+    BitSet newTypes = (BitSet) types.clone();
+    newTypes.and(filter);
+    newTypes.andNot(to.types);
+    if (newTypes.isEmpty()) {
+      return;
+    }
+    to.types.or(newTypes);
+    to.pendingTypes.or(newTypes);
+    if (!to.queued) {
+      to.queued = true;
+      worklist.add(to);
+    }
+  }
+
+  private void processNode(Node node) {
+    node.queued = false;
+    BitSet newTypes = (BitSet) node.pendingTypes.clone();
+    node.pendingTypes.clear();
+    for (Map.Entry<Node, BitSet> flow : node.flows.entrySet()) {
+      propagate(newTypes, flow.getKey(), flow.getValue());
+    }
+    // Calls added while resolving are resolved against all of the node's types when added.
+    int callCount = node.polymorphicCalls.size();
+    for (int id = newTypes.nextSetBit(0); id >= 0; id = newTypes.nextSetBit(id + 1)) {
+      for (int i = 0; i < callCount; i++) {
+        resolvePolymorphicCall(node, node.polymorphicCalls.get(i), typesById.get(id));
+      }
+    }
+  }
+
+  private Node getTypeNode(Type type) {
+    while (type.getEnclosingType() != null) {
+      type = type.getEnclosingType();
+    }
+    return typeNodes.computeIfAbsent(type, t -> new Node());
+  }
+
+  // Returns the member a call dispatches to for a receiver type, or null if it isn't in the
+  // summaries.
+  private static Member findImplementation(Type receiver, String signature) {
+    for (Type type = receiver; type != null; type = type.getSuperClass()) {
+      Member member = findMember(type, signature);
+      if (member != null && member.isPolymorphic()) {
+        return member;
+      }
+    }
+    // Check for default methods, and for the methods of functional interfaces.
+    Deque<Type> superInterfaces = new ArrayDeque<>();
+    Set<Type> visited = new HashSet<>();
+    for (Type type = receiver; type != null; type = type.getSuperClass()) {
+      superInterfaces.add(type);
+    }
+    while (!superInterfaces.isEmpty()) {
+      Type type = superInterfaces.poll();
+      for (Type superInterface : type.getSuperInterfaces()) {
+        if (visited.add(superInterface)) {
+          Member member = findMember(superInterface, signature);
+          if (member != null && member.isPolymorphic()) {
+            return member;
+          }
+          superInterfaces.add(superInterface);
+        }
+      }
+    }
+    return null;
+  }
+
+  private static Member findMember(Type type, String signature) {
+    Member member = type.getMemberBySignature(signature);
+    if (member != null) {
+      return member;
+    }
+    // Check for a member which original member matches the signature.
+    for (Member candidate : type.getMembers()) {
+      if (candidate.getOriginalMember() != null
+          && signature.equals(candidate.getOriginalMember().getSignature())) {
+        return candidate;
+      }
+    }
+    return null;
+  }
+
+  private BitSet getSubtypes(Type type) {
+    BitSet result = subtypes.get(type);
+    if (result == null) {
+      result = new BitSet();
+      result.set(typeIds.get(type));
+      for (Type subtype : type.getImmediateSubtypes()) {
+        result.or(getSubtypes(subtype));
+      }
+      subtypes.put(type, result);
+    }
+    return result;
+  }
+
+  // The receiver and the parameters of a call flow to the callee.
+  private BitSet getParameterFilter(Member member) {
+    BitSet filter = parameterFilters.get(member);
+    if (filter == null) {
+      BitSet receiverFilter =
+          member.isPolymorphic() || member.isConstructor()
+              ? getSubtypes(member.getDeclaringType())
+              : new BitSet();
+      filter = getParameterFilter(member.getName(), receiverFilter);
+      parameterFilters.put(member, filter);
+    }
+    return filter;
+  }
+
+  private BitSet getParameterFilter(String memberName, BitSet receiverFilter) {
+    BitSet filter = (BitSet) receiverFilter.clone();
+    for (String parameter : getParameterDescriptors(memberName)) {
+      filter.or(getDescriptorFilter(parameter));
+    }
+    return filter;
+  }
+
+  // The return value, the contents of array parameters and exceptions flow back to the caller.
+  private BitSet getReturnFilter(Member member) {
+    return returnFilters.computeIfAbsent(member, m -> getReturnFilter(m.getName()));
+  }
+
+  private BitSet getReturnFilter(String memberName) {
+    String signature = memberName.substring(memberName.indexOf(SIGNATURE_PREFIX));
+    String returnType = signature.substring(signature.indexOf(')') + 1);
+    BitSet filter = (BitSet) getDescriptorFilter(returnType).clone();
+    for (String parameter : getParameterDescriptors(memberName)) {
+      if (parameter.startsWith("[")) {
+        filter.or(getDescriptorFilter(parameter));
+      }
+    }
+    Type throwable = typesByName.get(THROWABLE_TYPE);
+    filter.or(throwable != null ? getSubtypes(throwable) : externalSubtypes);
+    return filter;
+  }
+
+  // Returns the instantiated types that can be assigned to a variable with a type descriptor.
+  // Arrays are tracked as their element types.
+  private BitSet getDescriptorFilter(String descriptor) {
+    BitSet filter = descriptorFilters.get(descriptor);
+    if (filter == null) {
+      String elementDescriptor = descriptor.substring(descriptor.lastIndexOf('[') + 1);
+      if (!elementDescriptor.startsWith("L")) {
+        filter = new BitSet();
+      } else {
+        String typeName =
+            elementDescriptor.substring(1, elementDescriptor.length() - 1).replace('/', '.');
+        Type type = typesByName.get(typeName);
+        if (typeName.equals(OBJECT_TYPE)) {
+          // Interfaces don't extend java.lang.Object in the summaries.
+          filter = allTypes;
+        } else if (type != null) {
+          filter = getSubtypes(type);
+        } else {
+          filter = externalSubtypes;
+        }
+      }
+      descriptorFilters.put(descriptor, filter);
+    }
+    return filter;
+  }
+
+  private static List<String> getParameterDescriptors(String memberName) {
+    String signature = memberName.substring(memberName.indexOf(SIGNATURE_PREFIX));
+    List<String> parameters = new ArrayList<>();
+    int i = signature.indexOf('(') + 1;
+    int end = signature.indexOf(')');
+    while (i < end) {
+      int start = i;
+      while (signature.charAt(i) == '[') {
+        i++;
+      }
+      i = signature.charAt(i) == 'L' ? signature.indexOf(';', i) + 1 : i + 1;
+      parameters.add(signature.substring(start, i));
+    }
+    return parameters;
+  }
+
+  private static String getFieldDescriptor(String field) {
+    return field.substring(field.lastIndexOf(SIGNATURE_PREFIX) + SIGNATURE_PREFIX.length());
+  }
+}
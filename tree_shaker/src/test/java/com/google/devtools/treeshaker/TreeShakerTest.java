@@ -15,21 +15,31 @@
 package com.google.devtools.treeshaker;
 
 import static com.google.common.base.StandardSystemProperty.JAVA_CLASS_PATH;
+import static com.google.common.collect.ImmutableList.toImmutableList;
 import static com.google.common.truth.Truth.assertThat;
 
 import com.google.common.base.CharMatcher;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
 import com.google.common.io.Files;
 import com.google.devtools.j2objc.util.CodeReferenceMap;
 import com.google.devtools.j2objc.util.ErrorUtil;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
 import junit.framework.TestCase;
 
 /** System tests for the TreeShaker. */
@@ -64,7 +74,13 @@ public class TreeShakerTest extends TestCase {
   }
 
   private CodeReferenceMap findUnusedCode(boolean stripReflection) throws IOException {
+    return findUnusedCode(stripReflection, null);
+  }
+
+  private CodeReferenceMap findUnusedCode(boolean stripReflection, File summaryCacheDir)
+      throws IOException {
     Options options = new Options();
+    options.setSummaryCacheDir(summaryCacheDir);
     options.setClasspath(System.getProperty(JAVA_CLASS_PATH.value()));
     options.setTreeShakerRoots(treeShakerRoots);
     options.setSourceFiles(inputFiles);
@@ -77,6 +93,19 @@ public class TreeShakerTest extends TestCase {
     return unused;
   }
 
+  private CodeReferenceMap findUnusedCodeWithVariableTypeAnalyser() throws IOException {
+    Options options = new Options();
+    options.setClasspath(System.getProperty(JAVA_CLASS_PATH.value()));
+    options.setTreeShakerRoots(treeShakerRoots);
+    options.setSourceFiles(inputFiles);
+    options.setUseVariableTypeAnalyser(true);
+    CodeReferenceMap unused = new TreeShaker(options).findUnusedCode();
+    if (ErrorUtil.errorCount() > 0) {
+      fail("TreeShaker failed with errors:\n" + Joiner.on("\n").join(ErrorUtil.getErrorMessages()));
+    }
+    return unused;
+  }
+
   // Verify that an @file can be used without failing due to missing arguments later declared.
   // b/226587676
   public void testIncompleteAtFile() throws IOException {
@@ -118,6 +147,293 @@ public class TreeShakerTest extends TestCase {
     assertThat(getUnusedMethods(unused)).containsExactly(getMethodName("p.A", "A", "()V"));
   }
 
+  public void testSummaryCache() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addSourceFile("A.java", "package p; class A { static void main() { new B().b(\"\"); } }");
+    addSourceJar(
+        "lib.jar",
+        "p/B.java", "package p; class B { void b(String s) {} void unused() {} }",
+        "p/C.java", "package p; class C { void c(String s) {} }");
+    File cacheDir = new File(tempDir, "summaries");
+
+    CodeReferenceMap unused = findUnusedCode(false, cacheDir);
+    assertThat(getUnusedClasses(unused)).containsExactly("p.C");
+    assertThat(getUnusedMethods(unused))
+        .containsExactly(getMethodName("p.A", "A", "()V"), getMethodName("p.B", "unused", "()V"));
+    // One summary for the jar, and one for the loose source files.
+    assertThat(cacheDir.list()).hasLength(2);
+
+    // Reusing the cached summaries gives the same result.
+    CodeReferenceMap cached = findUnusedCode(false, cacheDir);
+    assertThat(getUnusedClasses(cached)).isEqualTo(getUnusedClasses(unused));
+    assertThat(getUnusedMethods(cached)).isEqualTo(getUnusedMethods(unused));
+
+    // Changing a method body only re-summarizes its library, since the declarations that the
+    // other libraries' references resolve to are unchanged.
+    long timestamp = 1_000_000_000_000L;
+    for (File entry : cacheDir.listFiles()) {
+      assertTrue(entry.setLastModified(timestamp));
+    }
+    addSourceFile("A.java", "package p; class A { static void main() { new C().c(\"\"); } }");
+    inputFiles.remove(inputFiles.size() - 1);
+    unused = findUnusedCode(false, cacheDir);
+    assertThat(getUnusedClasses(unused)).containsExactly("p.B");
+    // A new entry for the loose source files, while the jar's entry isn't rewritten.
+    assertThat(cacheDir.list()).hasLength(3);
+    long unchanged =
+        Arrays.stream(cacheDir.listFiles()).filter(f -> f.lastModified() == timestamp).count();
+    assertThat(unchanged).isEqualTo(2);
+  }
+
+  public void testSummaryCacheSiblingChange() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addSourceFile(
+        "A.java",
+        "package p; class A { static void main() { new B().b(\"\"); } "
+            + "static void h(Object o) {} }");
+    addSourceJar("lib.jar", "p/B.java", "package p; class B { void b(String s) { A.h(s); } }");
+    File cacheDir = new File(tempDir, "summaries");
+
+    CodeReferenceMap unused = findUnusedCode(false, cacheDir);
+    assertThat(getUnusedMethods(unused)).doesNotContain(
+        getMethodName("p.A", "h", "(Ljava/lang/Object;)V"));
+
+    // Adding a more specific overload to A changes what B's call resolves to, so B's cached
+    // summary must not be reused.
+    addSourceFile(
+        "A.java",
+        "package p; class A { static void main() { new B().b(\"\"); } "
+            + "static void h(Object o) {} static void h(String s) {} }");
+    inputFiles.remove(inputFiles.size() - 1);
+    unused = findUnusedCode(false, cacheDir);
+    // The jar's entry is replaced, rather than added to.
+    assertThat(cacheDir.list()).hasLength(3);
+    assertThat(getUnusedMethods(unused))
+        .contains(getMethodName("p.A", "h", "(Ljava/lang/Object;)V"));
+    assertThat(getUnusedMethods(unused))
+        .doesNotContain(getMethodName("p.A", "h", "(Ljava/lang/String;)V"));
+  }
+
+  public void testSummaryFormat() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addSourceFile("A.java", "package p; class A { static void main() { new B().b(\"\"); } }");
+    addSourceFile("B.java", "package p; class B { void b(String s) { new C().c(s); } }");
+    addSourceFile("C.java", "package p; class C { void c(String s) {} void unused() {} }");
+    Options options = new Options();
+    options.setClasspath(System.getProperty(JAVA_CLASS_PATH.value()));
+    options.setTreeShakerRoots(treeShakerRoots);
+    options.setSourceFiles(inputFiles);
+    LibraryInfo summary = new TreeShaker(options).createLibraryInfo();
+    byte[] compact = SummaryFormat.toByteArray(summary);
+    assertThat(compact.length).isLessThan(summary.toByteArray().length);
+    assertThat(LibraryInfo.parseFrom(compact).getVersion()).isEqualTo(SummaryFormat.VERSION);
+
+    // Summaries in both the compact and the original format are read.
+    for (byte[] bytes : ImmutableList.of(compact, summary.toByteArray())) {
+      Options summaryOptions = new Options();
+      summaryOptions.setTreeShakerRoots(treeShakerRoots);
+      summaryOptions.setSummaries(ImmutableList.of(SummaryFormat.parseFrom(bytes)));
+      CodeReferenceMap unused = new TreeShaker(summaryOptions).findUnusedCode();
+      assertThat(getUnusedClasses(unused)).isEmpty();
+      assertThat(getUnusedMethods(unused))
+          .containsExactly(getMethodName("p.A", "A", "()V"), getMethodName("p.C", "unused", "()V"));
+    }
+
+    // Compact summaries aren't expanded when they're read, so bad string ids are checked then.
+    byte[] corrupt =
+        LibraryInfo.parseFrom(compact).toBuilder().clearStringTable().build().toByteArray();
+    try {
+      SummaryFormat.parseFrom(corrupt);
+      fail("expected invalid string ids to be rejected");
+    } catch (IOException e) {
+      assertThat(e).hasMessageThat().contains("invalid string id");
+    }
+  }
+
+  public void testVariableTypeAnalyser() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addSourceFile(
+        "A.java", "package p; class A { static void main() { new R().run(t -> t.go()); H.h(); } }");
+    addSourceFile("T.java", "package p; interface T { void go(); }");
+    addSourceFile("F.java", "package p; interface F { void f(T t); }");
+    addSourceFile("B.java", "package p; class B implements T { public void go() {} }");
+    addSourceFile("C.java", "package p; class C implements T { public void go() {} }");
+    addSourceFile("R.java", "package p; class R { void run(F f) { f.f(new B()); } }");
+    addSourceFile(
+        "H.java",
+        "package p; class H { T t; H(T t) { this.t = t; } static void h() { new H(new C()); } }");
+    CodeReferenceMap unused = findUnusedCode();
+    assertThat(getUnusedMethods(unused)).containsExactly(getMethodName("p.A", "A", "()V"));
+
+    // C is only stored in a field, so it never reaches a call to go().
+    unused = findUnusedCodeWithVariableTypeAnalyser();
+    assertThat(getUnusedClasses(unused)).isEmpty();
+    assertThat(getUnusedMethods(unused))
+        .containsExactly(getMethodName("p.A", "A", "()V"), getMethodName("p.C", "go", "()V"));
+  }
+
+  // Adds T, its implementations C and D, and V, which creates a D that's never used as a T.
+  private void addVariableTypeAnalyserSources() throws IOException {
+    addSourceFile("T.java", "package p; interface T { void go(); }");
+    addSourceFile("C.java", "package p; class C implements T { public void go() {} }");
+    addSourceFile("D.java", "package p; class D implements T { public void go() {} }");
+    addSourceFile("V.java", "package p; class V { static void keep() { Object o = new D(); } }");
+  }
+
+  public void testVariableTypeAnalyserExternalCalls() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addVariableTypeAnalyserSources();
+    addSourceFile(
+        "A.java",
+        "package p; import java.util.*; class A { static void main() { "
+            + "List<Object> l = new ArrayList<>(); S.store(l); U.use(l); V.keep(); } }");
+    addSourceFile(
+        "S.java",
+        "package p; import java.util.List; "
+            + "class S { static void store(List<Object> l) { l.add(new C()); } }");
+    addSourceFile(
+        "U.java",
+        "package p; import java.util.List; "
+            + "class U { static void use(List<Object> l) { ((T) l.get(0)).go(); } }");
+    CodeReferenceMap unused = findUnusedCodeWithVariableTypeAnalyser();
+
+    // C is passed to and returned from the list, which is outside the summaries.
+    assertThat(getUnusedMethods(unused)).doesNotContain(getMethodName("p.C", "go", "()V"));
+    assertThat(getUnusedMethods(unused)).contains(getMethodName("p.D", "go", "()V"));
+  }
+
+  public void testVariableTypeAnalyserExternalOverride() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addVariableTypeAnalyserSources();
+    addSourceFile(
+        "A.java", "package p; class A { static void main() { Object o = new B(); V.keep(); } }");
+    addSourceFile(
+        "B.java",
+        "package p; class B implements Runnable { public void run() { T t = new C(); t.go(); } }");
+    CodeReferenceMap unused = findUnusedCodeWithVariableTypeAnalyser();
+
+    // B.run() overrides an external method, so it's called from outside the summaries.
+    assertThat(getUnusedMethods(unused))
+        .containsNoneOf(getMethodName("p.B", "run", "()V"), getMethodName("p.C", "go", "()V"));
+    assertThat(getUnusedMethods(unused)).contains(getMethodName("p.D", "go", "()V"));
+  }
+
+  public void testVariableTypeAnalyserSuperCall() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addVariableTypeAnalyserSources();
+    addSourceFile(
+        "A.java", "package p; class A { static void main() { new Sub().m(new C()); V.keep(); } }");
+    addSourceFile("Base.java", "package p; class Base { void m(T t) { t.go(); } }");
+    addSourceFile(
+        "Sub.java", "package p; class Sub extends Base { @Override void m(T t) { super.m(t); } }");
+    CodeReferenceMap unused = findUnusedCodeWithVariableTypeAnalyser();
+
+    // The call with super isn't dispatched to Sub.m(), so C reaches Base.m().
+    assertThat(getUnusedMethods(unused)).doesNotContain(getMethodName("p.C", "go", "()V"));
+    assertThat(getUnusedMethods(unused)).contains(getMethodName("p.D", "go", "()V"));
+  }
+
+  public void testVariableTypeAnalyserArrays() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addVariableTypeAnalyserSources();
+    addSourceFile(
+        "A.java",
+        "package p; class A { static void main() { "
+            + "T[] ts = new T[1]; F.fill(ts); ts[0].go(); G.make()[0].go(); V.keep(); } }");
+    addSourceFile("E.java", "package p; class E implements T { public void go() {} }");
+    addSourceFile("F.java", "package p; class F { static void fill(T[] ts) { ts[0] = new C(); } }");
+    addSourceFile(
+        "G.java", "package p; class G { static T[] make() { return new T[] { new E() }; } }");
+    CodeReferenceMap unused = findUnusedCodeWithVariableTypeAnalyser();
+
+    // C is stored in an array parameter, and E is returned in an array.
+    assertThat(getUnusedMethods(unused))
+        .containsNoneOf(getMethodName("p.C", "go", "()V"), getMethodName("p.E", "go", "()V"));
+    assertThat(getUnusedMethods(unused)).contains(getMethodName("p.D", "go", "()V"));
+  }
+
+  public void testVariableTypeAnalyserEnumValues() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addSourceFile(
+        "A.java", "package p; class A { static void main() { for (B b : B.values()) b.go(); } }");
+    addSourceFile("B.java", "package p; enum B { X { @Override void go() {} }, Y; void go() {} }");
+    CodeReferenceMap unused = findUnusedCodeWithVariableTypeAnalyser();
+
+    // The constants are created in B's static initializer, and returned by values().
+    assertThat(getUnusedClasses(unused)).isEmpty();
+    assertThat(getUnusedMethods(unused))
+        .containsNoneOf(getMethodName("p.B", "go", "()V"), getMethodName("p.B$1", "go", "()V"));
+  }
+
+  public void testVariableTypeAnalyserEnclosedTypes() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addVariableTypeAnalyserSources();
+    addSourceFile("B.java", "package p; class B implements T { public void go() {} }");
+    addSourceFile("F.java", "package p; interface F { void f(); }");
+    addSourceFile(
+        "A.java",
+        "package p; class A { static void main() { T t = new C(); "
+            + "new Runnable() { public void run() { t.go(); } }.run(); "
+            + "F f = () -> N.n(); f.f(); V.keep(); } "
+            + "static class N { static void n() { Object o = new B(); } } }");
+    CodeReferenceMap unused = findUnusedCodeWithVariableTypeAnalyser();
+
+    // The nested and anonymous classes and the lambda share A's types, so the B created in N
+    // and the C captured by the anonymous class reach its call to go().
+    assertThat(getUnusedMethods(unused))
+        .containsNoneOf(getMethodName("p.B", "go", "()V"), getMethodName("p.C", "go", "()V"));
+    assertThat(getUnusedMethods(unused)).contains(getMethodName("p.D", "go", "()V"));
+  }
+
+  public void testVariableTypeAnalyserWithoutTypeFlows() throws IOException {
+    addTreeShakerRootsFile("p.A:\n    main()");
+    addVariableTypeAnalyserSources();
+    addSourceFile(
+        "A.java", "package p; class A { static void main() { B.b(new C()); V.keep(); } }");
+    addSourceFile("B.java", "package p; class B { static void b(T t) { t.go(); } }");
+    Options options = new Options();
+    options.setClasspath(System.getProperty(JAVA_CLASS_PATH.value()));
+    options.setTreeShakerRoots(treeShakerRoots);
+    options.setSourceFiles(inputFiles);
+    LibraryInfo summary =
+        new TreeShaker(options).createLibraryInfo().toBuilder().setTypeFlows(false).build();
+
+    List<LogRecord> records = new ArrayList<>();
+    Handler handler =
+        new Handler() {
+          @Override
+          public void publish(LogRecord record) {
+            records.add(record);
+          }
+
+          @Override
+          public void flush() {}
+
+          @Override
+          public void close() {}
+        };
+    Logger logger = Logger.getLogger(TreeShaker.class.getName());
+    logger.addHandler(handler);
+    try {
+      Options summaryOptions = new Options();
+      summaryOptions.setTreeShakerRoots(treeShakerRoots);
+      summaryOptions.setSummaries(ImmutableList.of(summary));
+      summaryOptions.setUseVariableTypeAnalyser(true);
+      CodeReferenceMap unused = new TreeShaker(summaryOptions).findUnusedCode();
+
+      // Rapid type analysis keeps D.go(), since D is instantiated and T.go() is called.
+      assertThat(getUnusedMethods(unused)).doesNotContain(getMethodName("p.D", "go", "()V"));
+    } finally {
+      logger.removeHandler(handler);
+    }
+    assertThat(
+            records.stream()
+                .filter(r -> r.getLevel().equals(Level.WARNING))
+                .map(LogRecord::getMessage)
+                .collect(toImmutableList()))
+        .contains("Summaries were created without type flows, using rapid type analysis instead.");
+  }
+
   public void testExportedMethod() throws IOException {
     addTreeShakerRootsFile("p.A:\n    A()\n    main()");
     addSourceFile("A.java", "package p; class A { void main() {} }");
@@ -1957,6 +2273,18 @@ public class TreeShakerTest extends TestCase {
     inputFiles.add(file.getAbsolutePath());
   }
 
+  private void addSourceJar(String jarName, String... pathsAndSources) throws IOException {
+    File jarFile = new File(tempDir, jarName);
+    try (JarOutputStream jar = new JarOutputStream(new FileOutputStream(jarFile))) {
+      for (int i = 0; i < pathsAndSources.length; i += 2) {
+        jar.putNextEntry(new JarEntry(pathsAndSources[i]));
+        jar.write(pathsAndSources[i + 1].getBytes(Charset.defaultCharset()));
+        jar.closeEntry();
+      }
+    }
+    inputFiles.add(jarFile.getAbsolutePath());
+  }
+
   private File createTempDir() throws IOException {
     File tempDir = File.createTempFile("treeshaker_testout", "");
     tempDir.delete();